@@ -539,6 +539,10 @@ public final class CodedInputStream {
 
   private final byte[] buffer;
   private RandomAccessFile raf;
+  // osmand change : i/o statistics of file
+  private long fileBytesRead;
+  private int fileSeeks;
+  private int bufferRefills;
   private int bufferSize;
   private int bufferSizeAfterLimit;
   private int bufferPos;
@@ -758,6 +762,8 @@ public final class CodedInputStream {
     	bufferSize = (int) Math.min(remain, buffer.length);
     	if(bufferSize > 0) {
     		raf.readFully(buffer, 0, bufferSize);
+    		fileBytesRead += bufferSize;
+    		bufferRefills++;
     	} else {
     		bufferSize = -1;
     	}
@@ -882,6 +888,7 @@ public final class CodedInputStream {
         	if(raf != null) {
         		raf.readFully(chunk, pos, chunk.length - pos);
         		n = chunk.length - pos;
+        		fileBytesRead += n;
         	} else {
         		n = (input == null) ? -1 :
         	    input.read(chunk, pos, chunk.length - pos);
@@ -945,6 +952,7 @@ public final class CodedInputStream {
          bufferPos = 0;
          bufferSize = 0;
       	 int n = raf.skipBytes(size - pos);
+      	 fileSeeks++;
         totalBytesRetired = (int) raf.getFilePointer();
       	 if (n <= 0) {
              throw InvalidProtocolBufferException.truncatedMessage();
@@ -976,8 +984,28 @@ public final class CodedInputStream {
 		  totalBytesRetired = (int) pointer;
 		  bufferSizeAfterLimit = 0;
 		  raf.seek(pointer);
+		  fileSeeks++;
 		  bufferPos = 0;
 		  bufferSize = 0;
 	  }
   }
+
+  // osmand change
+  /**
+   * Bytes read from file into buffer (or directly into big byte arrays).
+   */
+  public long getFileBytesRead() {
+	  return fileBytesRead;
+  }
+
+  /**
+   * Seeks and skips which moved file pointer outside of the buffer.
+   */
+  public int getFileSeeks() {
+	  return fileSeeks;
+  }
+
+  public int getBufferRefills() {
+	  return bufferRefills;
+  }
 }
@@ -107,35 +107,48 @@ public class TspAnt {
     // Adds 1 to edge lengths to ensure no zero length edges.
     public TspAnt readGraph(List<LatLon> intermediates, LatLon start, LatLon end) {
         boolean keepEndPoint = end != null;
-    	List<LatLon> l = new ArrayList<LatLon>();
-    	l.add(start);
-    	l.addAll(intermediates);
+        List<LatLon> l = new ArrayList<LatLon>();
+        l.add(start);
+        l.addAll(intermediates);
         if (keepEndPoint) {
             l.add(end);
         }
-        n = l.size() ;
+        int sz = l.size();
+        double[][] cost = new double[sz][sz];
+        for (int i = 0; i < sz; i++) {
+            for (int j = 1; j < sz; j++) {
+                cost[i][j] = MapUtils.getDistance(l.get(i), l.get(j));
+            }
+        }
+        return readGraph(cost, keepEndPoint);
+    }
+
+    // Costs between start (first), intermediates and end (last if keepEndPoint),
+    // for example travel times of RouteMatrix instead of straight line distances.
+    public TspAnt readGraph(double[][] cost, boolean keepEndPoint) {
+        n = cost.length;
 //        System.out.println("Cost");
         graph = new double[n][n];
         double maxSum = 0;
-		for (int i = 0; i < n ; i++) {
-			double maxIWeight = 0;
-			for (int j = 1; j < n ; j++) {
-				double d = Math.rint(MapUtils.getDistance(l.get(i), l.get(j))) + 0.1;
-				maxIWeight = Math.max(d, maxIWeight);
-				graph[i][j] = d;
-			}
-			maxSum += maxIWeight;
-		}
-		maxSum = Math.rint(maxSum) + 1;
-		for (int i = 0; i < n; i++) {
-			if (keepEndPoint && i == n - 1) {
-				graph[i][0] = 0.1;
-			} else {
-				graph[i][0] = maxSum;
-			}
-//			System.out.println(Arrays.toString(graph[i]));
-		}
-		
+        for (int i = 0; i < n ; i++) {
+            double maxIWeight = 0;
+            for (int j = 1; j < n ; j++) {
+                double d = Math.rint(cost[i][j]) + 0.1;
+                maxIWeight = Math.max(d, maxIWeight);
+                graph[i][j] = d;
+            }
+            maxSum += maxIWeight;
+        }
+        maxSum = Math.rint(maxSum) + 1;
+        for (int i = 0; i < n; i++) {
+            if (keepEndPoint && i == n - 1) {
+                graph[i][0] = 0.1;
+            } else {
+                graph[i][0] = maxSum;
+            }
+//            System.out.println(Arrays.toString(graph[i]));
+        }
+
         m = (int) (n * numAntFactor);
         // all memory allocations done here
         trails = new double[n][n];
@@ -130,6 +130,7 @@ public class BinaryInspector {
 		boolean vmapObjects;
 		boolean vmapCoordinates;
 		boolean vstats;
+		boolean vio;
 		boolean osm;
 		FileOutputStream osmOut = null;
 		double lattop = 85;
@@ -167,6 +168,10 @@ public class BinaryInspector {
 			return vstats;
 		}
 
+		public boolean isVio() {
+			return vio;
+		}
+
 		public VerboseInfo(String[] params) throws FileNotFoundException {
 			for (int i = 0; i < params.length; i++) {
 				if (params[i].equals("-vaddress")) {
@@ -187,6 +192,8 @@ public class BinaryInspector {
 					vmap = true;
 				} else if (params[i].equals("-vstats")) {
 					vstats = true;
+				} else if (params[i].equals("-vio")) {
+					vio = true;
 				} else if (params[i].equals("-vrouting")) {
 					vrouting = true;
 				} else if (params[i].equals("-vmapobjects")) {
@@ -525,7 +532,10 @@ public class BinaryInspector {
 				}
 				i++;
 			}
-
+			if (vInfo != null && vInfo.isVio()) {
+				println("\nI/O statistics of reading sections:");
+				print(index.getStats().toString());
+			}
 
 		} catch (IOException e) {
 			System.err.println("File doesn't have valid structure : " + filename + " " + e.getMessage());
@@ -1184,20 +1194,17 @@ public class BinaryInspector {
 				MapUtils.get31TileNumberY(verbose.lattop),
 				MapUtils.get31TileNumberY(verbose.latbottom),
 				-1, null);
-		List<TransportStop> stops = index.searchTransportIndex(sr);
+		TIntObjectHashMap<TransportRoute> routes = new TIntObjectHashMap<TransportRoute>();
+		List<TransportStop> stops = index.searchTransportIndex(sr, routes);
 		Map<Long, TransportRoute> rs = new LinkedHashMap<>();
 		List<String> lrs = new ArrayList<>();
 		println("\nStops:");
 		for (TransportStop s : stops) {
 			lrs.clear();
 			for (int pnt : s.getReferencesToRoutes()) {
-				TransportRoute route;
-				if (!lrs.contains(pnt)) {
-					TIntObjectHashMap<TransportRoute> pts = index.getTransportRoutes(new int[] { pnt });
-					route = pts.valueCollection().iterator().next();
+				TransportRoute route = routes.get(pnt);
+				if (route != null && !rs.containsKey((long) pnt)) {
 					rs.put((long) pnt, route);
-				} else {
-					route = rs.get(pnt);
 				}
 				if (route != null) {
 					//lrs.add(route.getRef() + " " + route.getName(verbose.lang));
@@ -1284,9 +1291,10 @@ public class BinaryInspector {
 		}
 		System.out.println("Inspector is console utility for working with binary indexes of OsmAnd.");
 		System.out.println("It allows print info about file, extract parts and merge indexes.");
-		System.out.println("\nUsage for print info : inspector [-vaddress] [-vcitynames] [-vstreetgroups] [-vstreets] [-vbuildings] [-vintersections] [-vmap] [-vmapobjects] [-vmapcoordinates] [-osm] [-vpoi] [-vrouting] [-vtransport] [-zoom=Zoom] [-bbox=LeftLon,TopLat,RightLon,BottomLat] [file]");
+		System.out.println("\nUsage for print info : inspector [-vaddress] [-vcitynames] [-vstreetgroups] [-vstreets] [-vbuildings] [-vintersections] [-vmap] [-vmapobjects] [-vmapcoordinates] [-osm] [-vpoi] [-vrouting] [-vtransport] [-vio] [-zoom=Zoom] [-bbox=LeftLon,TopLat,RightLon,BottomLat] [file]");
 		System.out.println("  Prints information about [file] binary index of OsmAnd.");
 		System.out.println("  -v.. more verbose output (like all cities and their streets or all map objects with tags/values and coordinates)");
+		System.out.println("  -vio prints bytes read, seeks, buffer refills, objects and time spent per section (with other -v.. options)");
 		System.out.println("\nUsage for combining indexes : inspector -c file_to_create (file_from_extract ((+|-)parts_to_extract)? )*");
 		System.out.println("\tCreate new file of extracted parts from input file. [parts_to_extract] could be parts to include or exclude.");
 		System.out.println("  Example : inspector -c output_file input_file +1,2,3\n\tExtracts 1, 2, 3 parts (could be find in print info)");
@@ -17,14 +17,13 @@ import java.io.InputStreamReader;
 import java.io.RandomAccessFile;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.TreeMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -44,6 +43,7 @@ import net.osmand.StringMatcher;
 import net.osmand.binary.BinaryMapAddressReaderAdapter.AddressRegion;
 import net.osmand.binary.BinaryMapAddressReaderAdapter.CitiesBlock;
 import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.binary.BinaryMapReaderStats.Section;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
 import net.osmand.binary.BinaryMapTransportReaderAdapter.TransportIndex;
@@ -110,6 +110,16 @@ public class BinaryMapIndexReader {
 
 	protected CodedInputStream codedIS;
 
+	private final BinaryMapReaderStats stats = new BinaryMapReaderStats();
+	private ReadListener readListener;
+	private IndexedStringTableCache stringTableCache;
+	// nested public read methods are accounted once
+	private int readDepth;
+	private long readStartTime;
+	private long readStartBytes;
+	private int readStartSeeks;
+	private int readStartRefills;
+
 	private final BinaryMapTransportReaderAdapter transportAdapter;
 	private final BinaryMapPoiReaderAdapter poiAdapter;
 	private final BinaryMapAddressReaderAdapter addressAdapter;
@@ -162,10 +172,65 @@ public class BinaryMapIndexReader {
 		routingIndexes = new ArrayList<RouteRegion>(referenceToSameFile.routingIndexes);
 		indexes = new ArrayList<BinaryIndexPart>(referenceToSameFile.indexes);
 		basemap = referenceToSameFile.basemap;
+		stringTableCache = referenceToSameFile.stringTableCache;
+		readListener = referenceToSameFile.readListener;
 		calculateCenterPointForRegions();
 	}
 
 
+	/**
+	 * I/O statistics of sections read by this reader.
+	 */
+	public BinaryMapReaderStats getStats() {
+		return stats;
+	}
+
+	public ReadListener getReadListener() {
+		return readListener;
+	}
+
+	/**
+	 * Listener is notified in addition to own statistics of reader, it could be {@link BinaryMapReaderStats}
+	 * shared by many readers.
+	 */
+	public void setReadListener(ReadListener readListener) {
+		this.readListener = readListener;
+	}
+
+	public IndexedStringTableCache getStringTableCache() {
+		return stringTableCache;
+	}
+
+	/**
+	 * Name indexes (poi and address search by name) are searched in memory when they are built by cache,
+	 * the same cache could be shared by readers of many files.
+	 */
+	public void setStringTableCache(IndexedStringTableCache stringTableCache) {
+		this.stringTableCache = stringTableCache;
+	}
+
+	private void startSectionRead() {
+		if (readDepth++ == 0 && codedIS != null) {
+			readStartTime = System.nanoTime();
+			readStartBytes = codedIS.getFileBytesRead();
+			readStartSeeks = codedIS.getFileSeeks();
+			readStartRefills = codedIS.getBufferRefills();
+		}
+	}
+
+	private void finishSectionRead(Section section, int objects) {
+		if (--readDepth == 0 && codedIS != null) {
+			long time = System.nanoTime() - readStartTime;
+			long bytes = codedIS.getFileBytesRead() - readStartBytes;
+			int seeks = codedIS.getFileSeeks() - readStartSeeks;
+			int refills = codedIS.getBufferRefills() - readStartRefills;
+			stats.sectionRead(this, section, bytes, seeks, refills, objects, time);
+			if (readListener != null) {
+				readListener.sectionRead(this, section, bytes, seeks, refills, objects, time);
+			}
+		}
+	}
+
 	public long getDateCreated() {
 		return dateCreated;
 	}
@@ -266,7 +331,25 @@ public class BinaryMapIndexReader {
 		}
 	}
 
-	private void calculateCenterPointForRegions() {
+	/**
+	 * Reads only version and creation date, they're written in the beginning of file before all sections.
+	 */
+	void readHeader() throws IOException {
+		codedIS.seek(0);
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			if (tag == OsmandOdb.OsmAndStructure.VERSION_FIELD_NUMBER) {
+				version = codedIS.readUInt32();
+			} else if (tag == OsmandOdb.OsmAndStructure.DATECREATED_FIELD_NUMBER) {
+				dateCreated = codedIS.readInt64();
+			} else {
+				return;
+			}
+		}
+	}
+
+	void calculateCenterPointForRegions() {
 		for (AddressRegion reg : addressIndexes) {
 			for (MapIndex map : mapIndexes) {
 				if (Algorithms.objectEquals(reg.name, map.name)) {
@@ -473,38 +556,82 @@ public class BinaryMapIndexReader {
 	 */
 	public TIntObjectHashMap<TransportRoute> getTransportRoutes(int[] filePointers) throws IOException {
 		TIntObjectHashMap<TransportRoute> result = new TIntObjectHashMap<TransportRoute>();
-		Map<TransportIndex, TIntArrayList> groupPoints = new HashMap<TransportIndex, TIntArrayList>();
+		loadTransportRoutes(filePointers, result);
+		return result;
+	}
+
+	/**
+	 * Loads routes of all stops in one batch, routes already contained in result are not read again.
+	 */
+	public TIntObjectHashMap<TransportRoute> loadTransportRoutes(Collection<TransportStop> stops,
+			TIntObjectHashMap<TransportRoute> result) throws IOException {
+		TIntArrayList pointers = new TIntArrayList();
+		for (TransportStop s : stops) {
+			int[] refs = s.getReferencesToRoutes();
+			if (refs != null) {
+				pointers.add(refs);
+			}
+		}
+		loadTransportRoutes(pointers.toArray(), result);
+		return result;
+	}
+
+	/**
+	 * Reads routes with file pointers missing in result. Pointers are deduplicated and sorted,
+	 * so routes are read in one mostly sequential pass (close routes are taken from the same buffer)
+	 * and string table of every transport index is read only once for the batch.
+	 * @return number of read routes
+	 */
+	public int loadTransportRoutes(int[] filePointers, TIntObjectHashMap<TransportRoute> result) throws IOException {
+		TIntArrayList pointers = new TIntArrayList(filePointers.length);
+		TIntHashSet unique = new TIntHashSet();
 		for (int filePointer : filePointers) {
-			TransportIndex ind = getTransportIndex(filePointer);
-			if (ind != null) {
-				if (!groupPoints.containsKey(ind)) {
-					groupPoints.put(ind, new TIntArrayList());
-				}
-				groupPoints.get(ind).add(filePointer);
+			if (!result.containsKey(filePointer) && unique.add(filePointer)) {
+				pointers.add(filePointer);
 			}
 		}
-		Iterator<Entry<TransportIndex, TIntArrayList>> it = groupPoints.entrySet().iterator();
-		if (it.hasNext()) {
-			Entry<TransportIndex, TIntArrayList> e = it.next();
-			TransportIndex ind = e.getKey();
-			TIntArrayList pointers = e.getValue();
-			pointers.sort();
+		pointers.sort();
+		int read = 0;
+		startSectionRead();
+		try {
+			// indexes occupy separate ranges of file, so sorted pointers are grouped by index
+			TransportIndex ind = null;
+			List<TransportRoute> indexRoutes = new ArrayList<TransportRoute>();
 			TIntObjectHashMap<String> stringTable = new TIntObjectHashMap<String>();
 			for (int i = 0; i < pointers.size(); i++) {
-				int filePointer = pointers.get(i);
+				int filePointer = pointers.getQuick(i);
+				TransportIndex pind = getTransportIndex(filePointer);
+				if (pind == null) {
+					continue;
+				}
+				if (pind != ind) {
+					initializeTransportRoutesNames(ind, indexRoutes, stringTable);
+					ind = pind;
+				}
 				TransportRoute transportRoute = transportAdapter.getTransportRoute(filePointer, stringTable, false);
+				indexRoutes.add(transportRoute);
 				result.put(filePointer, transportRoute);
+				read++;
 			}
+			initializeTransportRoutesNames(ind, indexRoutes, stringTable);
+			return read;
+		} finally {
+			finishSectionRead(Section.TRANSPORT, read);
+		}
+	}
+
+	private void initializeTransportRoutesNames(TransportIndex ind, List<TransportRoute> routes,
+			TIntObjectHashMap<String> stringTable) throws IOException {
+		if (!routes.isEmpty()) {
 			transportAdapter.initializeStringTable(ind, stringTable);
-			for (TransportRoute r : result.values(new TransportRoute[result.size()])) {
+			for (TransportRoute r : routes) {
 				transportAdapter.initializeNames(false, r, stringTable);
 			}
 		}
-		return result;
+		routes.clear();
+		stringTable.clear();
 	}
 
-	
-
 	public boolean transportStopBelongsTo(TransportStop s) {
 		return getTransportIndex(s.getFileOffset()) != null;
 	}
@@ -548,30 +675,48 @@ public class BinaryMapIndexReader {
 		return false;
 	}
 
+	/**
+	 * Searches stops and loads all routes referenced by found stops in one batch.
+	 */
+	public List<TransportStop> searchTransportIndex(SearchRequest<TransportStop> req,
+			TIntObjectHashMap<TransportRoute> routes) throws IOException {
+		int offset = req.getSearchResults().size();
+		searchTransportIndex(req);
+		List<TransportStop> res = req.getSearchResults();
+		loadTransportRoutes(res.subList(offset, res.size()), routes);
+		return res;
+	}
+
 	public List<TransportStop> searchTransportIndex(SearchRequest<TransportStop> req) throws IOException {
-		for (TransportIndex index : transportIndexes) {
-			if (index.stopsFileLength == 0 || index.right < req.left || index.left > req.right || index.top > req.bottom
-					|| index.bottom < req.top) {
-				continue;
-			}
-			codedIS.seek(index.stopsFileOffset);
-			int oldLimit = codedIS.pushLimit(index.stopsFileLength);
-			int offset = req.searchResults.size();
-			transportAdapter.searchTransportTreeBounds(0, 0, 0, 0, req);
-			codedIS.popLimit(oldLimit);
-			if (req.stringTable != null) {
-				transportAdapter.initializeStringTable(index, req.stringTable);
-				for (int i = offset; i < req.searchResults.size(); i++) {
-					TransportStop st = req.searchResults.get(i);
-					transportAdapter.initializeNames(req.stringTable, st);
+		int objects = req.searchResults.size();
+		startSectionRead();
+		try {
+			for (TransportIndex index : transportIndexes) {
+				if (index.stopsFileLength == 0 || index.right < req.left || index.left > req.right || index.top > req.bottom
+						|| index.bottom < req.top) {
+					continue;
+				}
+				codedIS.seek(index.stopsFileOffset);
+				int oldLimit = codedIS.pushLimit(index.stopsFileLength);
+				int offset = req.searchResults.size();
+				transportAdapter.searchTransportTreeBounds(0, 0, 0, 0, req);
+				codedIS.popLimit(oldLimit);
+				if (req.stringTable != null) {
+					transportAdapter.initializeStringTable(index, req.stringTable);
+					for (int i = offset; i < req.searchResults.size(); i++) {
+						TransportStop st = req.searchResults.get(i);
+						transportAdapter.initializeNames(req.stringTable, st);
+					}
 				}
 			}
+			if (req.numberOfVisitedObjects > 0) {
+				log.debug("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				log.debug("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+			}
+			return req.getSearchResults();
+		} finally {
+			finishSectionRead(Section.TRANSPORT, req.searchResults.size() - objects);
 		}
-		if (req.numberOfVisitedObjects > 0) {
-			log.debug("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-			log.debug("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
-		}
-		return req.getSearchResults();
 	}
 
 	/**
@@ -593,59 +738,75 @@ public class BinaryMapIndexReader {
 		return null;
 	}
 
-	public List<City> getCities(SearchRequest<City> resultMatcher,
+	public synchronized List<City> getCities(SearchRequest<City> resultMatcher,
 	                            int cityType) throws IOException {
 		return getCities(resultMatcher, null, null, cityType);
 	}
 
 
-	public List<City> getCities(SearchRequest<City> resultMatcher, StringMatcher matcher, String lang, int cityType)
+	public synchronized List<City> getCities(SearchRequest<City> resultMatcher, StringMatcher matcher, String lang, int cityType)
 			throws IOException {
 		List<City> cities = new ArrayList<City>();
-		for (AddressRegion r : addressIndexes) {
-			for (CitiesBlock block : r.cities) {
-				if (block.type == cityType) {
-					codedIS.seek(block.filePointer);
-					int old = codedIS.pushLimit(block.length);
-					addressAdapter.readCities(cities, resultMatcher, matcher, r.attributeTagsTable);
-					codedIS.popLimit(old);
+		startSectionRead();
+		try {
+			for (AddressRegion r : addressIndexes) {
+				for (CitiesBlock block : r.cities) {
+					if (block.type == cityType) {
+						codedIS.seek(block.filePointer);
+						int old = codedIS.pushLimit(block.length);
+						addressAdapter.readCities(cities, resultMatcher, matcher, r.attributeTagsTable);
+						codedIS.popLimit(old);
+					}
 				}
 			}
+			return cities;
+		} finally {
+			finishSectionRead(Section.ADDRESS, cities.size());
 		}
-		return cities;
 	}
 	
-	public List<City> getCities(AddressRegion region, SearchRequest<City> resultMatcher,  
+	public synchronized List<City> getCities(AddressRegion region, SearchRequest<City> resultMatcher,  
 			int cityType) throws IOException {
 		return getCities(region, resultMatcher, null, cityType);
 	}
-	public List<City> getCities(AddressRegion region, SearchRequest<City> resultMatcher, StringMatcher matcher,  
+	public synchronized List<City> getCities(AddressRegion region, SearchRequest<City> resultMatcher, StringMatcher matcher,  
 			int cityType) throws IOException {
 		List<City> cities = new ArrayList<City>();
-		for (CitiesBlock block : region.cities) {
-			if (block.type == cityType) {
-				codedIS.seek(block.filePointer);
-				int old = codedIS.pushLimit(block.length);
-				addressAdapter.readCities(cities, resultMatcher, matcher, region.attributeTagsTable);
-				codedIS.popLimit(old);
+		startSectionRead();
+		try {
+			for (CitiesBlock block : region.cities) {
+				if (block.type == cityType) {
+					codedIS.seek(block.filePointer);
+					int old = codedIS.pushLimit(block.length);
+					addressAdapter.readCities(cities, resultMatcher, matcher, region.attributeTagsTable);
+					codedIS.popLimit(old);
+				}
 			}
+			return cities;
+		} finally {
+			finishSectionRead(Section.ADDRESS, cities.size());
 		}
-		return cities;
 	}
 
-	public int preloadStreets(City c, SearchRequest<Street> resultMatcher) throws IOException {
-		AddressRegion reg;
+	public synchronized int preloadStreets(City c, SearchRequest<Street> resultMatcher) throws IOException {
+		int objects = c.getStreets().size();
+		startSectionRead();
 		try {
-			reg = checkAddressIndex(c.getFileOffset());
-		} catch (IllegalArgumentException e) {
-			throw new IOException(e.getMessage() + " while reading " + c + " (id: " + c.getId() + ")");
+			AddressRegion reg;
+			try {
+				reg = checkAddressIndex(c.getFileOffset());
+			} catch (IllegalArgumentException e) {
+				throw new IOException(e.getMessage() + " while reading " + c + " (id: " + c.getId() + ")");
+			}
+			codedIS.seek(c.getFileOffset());
+			int size = codedIS.readRawVarint32();
+			int old = codedIS.pushLimit(size);
+			addressAdapter.readCityStreets(resultMatcher, c, reg.attributeTagsTable);
+			codedIS.popLimit(old);
+			return size;
+		} finally {
+			finishSectionRead(Section.ADDRESS, c.getStreets().size() - objects);
 		}
-		codedIS.seek(c.getFileOffset());
-		int size = codedIS.readRawVarint32();
-		int old = codedIS.pushLimit(size);
-		addressAdapter.readCityStreets(resultMatcher, c, reg.attributeTagsTable);
-		codedIS.popLimit(old);
-		return size;
 	}
 
 	private AddressRegion checkAddressIndex(int offset) {
@@ -658,15 +819,21 @@ public class BinaryMapIndexReader {
 		throw new IllegalArgumentException("Illegal offset " + offset); //$NON-NLS-1$
 	}
 
-	public void preloadBuildings(Street s, SearchRequest<Building> resultMatcher) throws IOException {
-		AddressRegion reg = checkAddressIndex(s.getFileOffset());
-		codedIS.seek(s.getFileOffset());
-		int size = codedIS.readRawVarint32();
-		int old = codedIS.pushLimit(size);
-		City city = s.getCity();
-		addressAdapter.readStreet(s, resultMatcher, true, 0, 0, city != null && city.isPostcode() ? city.getName() : null,
-				reg.attributeTagsTable);
-		codedIS.popLimit(old);
+	public synchronized void preloadBuildings(Street s, SearchRequest<Building> resultMatcher) throws IOException {
+		int objects = s.getBuildings().size();
+		startSectionRead();
+		try {
+			AddressRegion reg = checkAddressIndex(s.getFileOffset());
+			codedIS.seek(s.getFileOffset());
+			int size = codedIS.readRawVarint32();
+			int old = codedIS.pushLimit(size);
+			City city = s.getCity();
+			addressAdapter.readStreet(s, resultMatcher, true, 0, 0, city != null && city.isPostcode() ? city.getName() : null,
+					reg.attributeTagsTable);
+			codedIS.popLimit(old);
+		} finally {
+			finishSectionRead(Section.ADDRESS, s.getBuildings().size() - objects);
+		}
 	}
 
 
@@ -846,75 +1013,132 @@ public class BinaryMapIndexReader {
 	}
 	
 	public List<BinaryMapDataObject> searchMapIndex(SearchRequest<BinaryMapDataObject> req, MapIndex filterMapIndex) throws IOException {
-		req.numberOfVisitedObjects = 0;
-		req.numberOfAcceptedObjects = 0;
-		req.numberOfAcceptedSubtrees = 0;
-		req.numberOfReadSubtrees = 0;
-		List<MapTree> foundSubtrees = new ArrayList<MapTree>();
-		for (MapIndex mapIndex : mapIndexes) {
-			if(filterMapIndex != null && mapIndex != filterMapIndex) {
-				continue;
-			}
-			// lazy initializing rules
-			if (mapIndex.encodingRules.isEmpty()) {
-				codedIS.seek(mapIndex.filePointer);
-				int oldLimit = codedIS.pushLimit(mapIndex.length);
-				readMapIndex(mapIndex, true);
-				codedIS.popLimit(oldLimit);
-			}
-			for (MapRoot index : mapIndex.getRoots()) {
-				if (index.minZoom <= req.zoom && index.maxZoom >= req.zoom) {
-					if (index.right < req.left || index.left > req.right || index.top > req.bottom || index.bottom < req.top) {
-						continue;
-					}
-
-					// lazy initializing trees
-					if (index.trees == null) {
-						index.trees = new ArrayList<MapTree>();
-						codedIS.seek(index.filePointer);
-						int oldLimit = codedIS.pushLimit(index.length);
-						readMapLevel(index);
-						codedIS.popLimit(oldLimit);
-					}
-
-					for (MapTree tree : index.trees) {
-						if (tree.right < req.left || tree.left > req.right || tree.top > req.bottom || tree.bottom < req.top) {
+		startSectionRead();
+		try {
+			req.numberOfVisitedObjects = 0;
+			req.numberOfAcceptedObjects = 0;
+			req.numberOfAcceptedSubtrees = 0;
+			req.numberOfReadSubtrees = 0;
+			List<MapTree> foundSubtrees = new ArrayList<MapTree>();
+			for (MapIndex mapIndex : mapIndexes) {
+				if(filterMapIndex != null && mapIndex != filterMapIndex) {
+					continue;
+				}
+				initMapEncodingRules(mapIndex);
+				for (MapRoot index : mapIndex.getRoots()) {
+					if (index.minZoom <= req.zoom && index.maxZoom >= req.zoom) {
+						if (index.right < req.left || index.left > req.right || index.top > req.bottom || index.bottom < req.top) {
 							continue;
 						}
-						codedIS.seek(tree.filePointer);
-						int oldLimit = codedIS.pushLimit(tree.length);
-						searchMapTreeBounds(tree, index, req, foundSubtrees);
-						codedIS.popLimit(oldLimit);
-					}
 
-					Collections.sort(foundSubtrees, new Comparator<MapTree>() {
-						@Override
-						public int compare(MapTree o1, MapTree o2) {
-							return o1.mapDataBlock < o2.mapDataBlock ? -1 : (o1.mapDataBlock == o2.mapDataBlock ? 0 : 1);
-						}
-					});
-					for (MapTree tree : foundSubtrees) {
-						if (!req.isCancelled()) {
-							codedIS.seek(tree.mapDataBlock);
-							int length = codedIS.readRawVarint32();
-							int oldLimit = codedIS.pushLimit(length);
-							readMapDataBlocks(req, tree, mapIndex);
+						initMapTrees(index);
+
+						for (MapTree tree : index.trees) {
+							if (tree.right < req.left || tree.left > req.right || tree.top > req.bottom || tree.bottom < req.top) {
+								continue;
+							}
+							codedIS.seek(tree.filePointer);
+							int oldLimit = codedIS.pushLimit(tree.length);
+							searchMapTreeBounds(tree, index, req, foundSubtrees);
 							codedIS.popLimit(oldLimit);
 						}
+
+						Collections.sort(foundSubtrees, new Comparator<MapTree>() {
+							@Override
+							public int compare(MapTree o1, MapTree o2) {
+								return o1.mapDataBlock < o2.mapDataBlock ? -1 : (o1.mapDataBlock == o2.mapDataBlock ? 0 : 1);
+							}
+						});
+						for (MapTree tree : foundSubtrees) {
+							if (!req.isCancelled()) {
+								codedIS.seek(tree.mapDataBlock);
+								int length = codedIS.readRawVarint32();
+								int oldLimit = codedIS.pushLimit(length);
+								readMapDataBlocks(req, tree, mapIndex);
+								codedIS.popLimit(oldLimit);
+							}
+						}
+						foundSubtrees.clear();
 					}
-					foundSubtrees.clear();
+
 				}
+			}
+			if (req.numberOfVisitedObjects > 0 && req.log) {
+				log.info("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+			}
+			return req.getSearchResults();
+		} finally {
+			finishSectionRead(Section.MAP, req.numberOfVisitedObjects);
+		}
+	}
 
+	
+
+	private void initMapEncodingRules(MapIndex mapIndex) throws IOException {
+		// lazy initializing rules, flag is set when rules are completely read
+		if (!mapIndex.encodingRulesInitialized) {
+			synchronized (mapIndex) {
+				if (!mapIndex.encodingRulesInitialized) {
+					if (mapIndex.encodingRules.isEmpty()) {
+						codedIS.seek(mapIndex.filePointer);
+						int oldLimit = codedIS.pushLimit(mapIndex.length);
+						readMapIndex(mapIndex, true);
+						codedIS.popLimit(oldLimit);
+					}
+					mapIndex.encodingRulesInitialized = true;
+				}
 			}
 		}
-		if (req.numberOfVisitedObjects > 0 && req.log) {
-			log.info("Search is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-			log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+	}
+
+	private void initMapTrees(MapRoot index) throws IOException {
+		// lazy initializing trees
+		if (index.trees == null) {
+			synchronized (index) {
+				if (index.trees == null) {
+					MapRoot root = new MapRoot();
+					root.trees = new ArrayList<MapTree>();
+					root.left = index.left;
+					root.right = index.right;
+					root.top = index.top;
+					root.bottom = index.bottom;
+					codedIS.seek(index.filePointer);
+					int oldLimit = codedIS.pushLimit(index.length);
+					readMapLevel(root);
+					codedIS.popLimit(oldLimit);
+					index.trees = root.trees;
+				}
+			}
 		}
-		return req.getSearchResults();
 	}
 
-	
+	/**
+	 * Reads lazily initialized parts of given sections (map encoding rules and trees, route encoding rules,
+	 * poi categories) ahead of searches. Sections which are not initialized here are read on first use,
+	 * readers created with {@link #BinaryMapIndexReader(RandomAccessFile, BinaryMapIndexReader)} publish
+	 * them to each other through the flags of regions.
+	 */
+	public void initLazyIndexes(Section... sections) throws IOException {
+		for (Section section : sections) {
+			if (section == Section.MAP) {
+				for (MapIndex mapIndex : mapIndexes) {
+					initMapEncodingRules(mapIndex);
+					for (MapRoot root : mapIndex.getRoots()) {
+						initMapTrees(root);
+					}
+				}
+			} else if (section == Section.ROUTE) {
+				for (RouteRegion routeRegion : routingIndexes) {
+					initRouteRegion(routeRegion);
+				}
+			} else if (section == Section.POI) {
+				for (PoiRegion poiRegion : poiIndexes) {
+					initCategories(poiRegion);
+				}
+			}
+		}
+	}
 
 	protected void readMapDataBlocks(SearchRequest<BinaryMapDataObject> req, MapTree tree, MapIndex root) throws IOException {
 		List<BinaryMapDataObject> tempResults = null;
@@ -946,9 +1170,8 @@ public class BinaryMapIndexReader {
 					req.stat.lastObjectSize += length;
 					req.stat.addBlockHeader(MapDataBlock.DATAOBJECTS_FIELD_NUMBER, length);
 				}
-				BinaryMapDataObject mapObject = readMapDataObject(tree, req, root);
+				BinaryMapDataObject mapObject = readMapDataObject(tree, req, root, baseId);
 				if (mapObject != null) {
-					mapObject.setId(mapObject.getId() + baseId);
 					if (READ_STATS) {
 						req.publish(mapObject);
 					}
@@ -1063,13 +1286,18 @@ public class BinaryMapIndexReader {
 
 	private int MASK_TO_READ = ~((1 << SHIFT_COORDINATES) - 1);
 	private BinaryMapDataObject readMapDataObject(MapTree tree , SearchRequest<BinaryMapDataObject> req, 
-			MapIndex root) throws IOException {
+			MapIndex root, long baseId) throws IOException {
 		int tag = WireFormat.getTagFieldNumber(codedIS.readTag());
 		boolean area = OsmandOdb.MapData.AREACOORDINATES_FIELD_NUMBER == tag;
 		if (!area && OsmandOdb.MapData.COORDINATES_FIELD_NUMBER != tag) {
 			throw new IllegalArgumentException();
 		}
-		req.cacheCoordinates.clear();
+		// all fields are decoded into reusable buffers, object is created only when it is accepted
+		MapDataObjectView view = req.mapObjectView;
+		view.clear();
+		view.area = area;
+		view.mapIndex = root;
+		TIntArrayList coordinates = view.coordinates;
 		int size = codedIS.readRawVarint32();
 		if (READ_STATS) {
 			req.stat.lastObjectCoordinates += size;
@@ -1088,8 +1316,8 @@ public class BinaryMapIndexReader {
 		while (codedIS.getBytesUntilLimit() > 0) {
 			int x = (codedIS.readSInt32() << SHIFT_COORDINATES) + px;
 			int y = (codedIS.readSInt32() << SHIFT_COORDINATES) + py;
-			req.cacheCoordinates.add(x);
-			req.cacheCoordinates.add(y);
+			coordinates.add(x);
+			coordinates.add(y);
 			px = x;
 			py = y;
 			if (!contains && req.left <= x && req.right >= x && req.top <= y && req.bottom >= y) {
@@ -1115,13 +1343,7 @@ public class BinaryMapIndexReader {
 		}
 
 		// read 
-
-		List<TIntArrayList> innercoordinates = null;
-		TIntArrayList additionalTypes = null;
-		TIntObjectHashMap<String> stringNames = null;
-		TIntArrayList stringOrder = null;
 		long id = 0;
-
 		boolean loop = true;
 		while (loop) {
 			int t = codedIS.readTag();
@@ -1131,11 +1353,7 @@ public class BinaryMapIndexReader {
 				loop = false;
 				break;
 			case OsmandOdb.MapData.POLYGONINNERCOORDINATES_FIELD_NUMBER:
-				if (innercoordinates == null) {
-					innercoordinates = new ArrayList<TIntArrayList>();
-				}
-				TIntArrayList polygon = new TIntArrayList();
-				innercoordinates.add(polygon);
+				TIntArrayList polygon = view.addInnerPolygon();
 				px = tree.left & MASK_TO_READ;
 				py = tree.top & MASK_TO_READ;
 				size = codedIS.readRawVarint32();
@@ -1156,7 +1374,7 @@ public class BinaryMapIndexReader {
 				codedIS.popLimit(old);
 				break;
 			case OsmandOdb.MapData.ADDITIONALTYPES_FIELD_NUMBER:
-				additionalTypes = new TIntArrayList();
+				view.additionalTypes.resetQuick();
 				int sizeL = codedIS.readRawVarint32();
 				old = codedIS.pushLimit(sizeL);
 				if(READ_STATS) {
@@ -1165,13 +1383,13 @@ public class BinaryMapIndexReader {
 							sizeL);
 				}
 				while (codedIS.getBytesUntilLimit() > 0) {
-					additionalTypes.add(codedIS.readRawVarint32());
+					view.additionalTypes.add(codedIS.readRawVarint32());
 				}
 				codedIS.popLimit(old);
 
 				break;
 			case OsmandOdb.MapData.TYPES_FIELD_NUMBER:
-				req.cacheTypes.clear();
+				view.types.resetQuick();
 				sizeL = codedIS.readRawVarint32();
 				old = codedIS.pushLimit(sizeL);
 				if(READ_STATS) {
@@ -1179,12 +1397,12 @@ public class BinaryMapIndexReader {
 					req.stat.lastObjectTypes += sizeL;
 				}
 				while (codedIS.getBytesUntilLimit() > 0) {
-					req.cacheTypes.add(codedIS.readRawVarint32());
+					view.types.add(codedIS.readRawVarint32());
 				}
 				codedIS.popLimit(old);
 				boolean accept = true;
 				if (req.searchFilter != null) {
-					accept = req.searchFilter.accept(req.cacheTypes, root);
+					accept = req.searchFilter.accept(view.types, root);
 				}
 				if (!accept) {
 					codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
@@ -1201,15 +1419,14 @@ public class BinaryMapIndexReader {
 				}
 				break;
 			case OsmandOdb.MapData.STRINGNAMES_FIELD_NUMBER:
-				stringNames = new TIntObjectHashMap<String>();
-				stringOrder = new TIntArrayList();
+				view.nameTypes.resetQuick();
+				view.nameIndexes.resetQuick();
+				view.names = true;
 				sizeL = codedIS.readRawVarint32();
 				old = codedIS.pushLimit(sizeL);
 				while (codedIS.getBytesUntilLimit() > 0) {
-					int stag = codedIS.readRawVarint32();
-					int pId = codedIS.readRawVarint32();
-					stringNames.put(stag, ((char)pId)+"");
-					stringOrder.add(stag);
+					view.nameTypes.add(codedIS.readRawVarint32());
+					view.nameIndexes.add(codedIS.readRawVarint32());
 				}
 				codedIS.popLimit(old);
 				if(READ_STATS) {
@@ -1222,132 +1439,146 @@ public class BinaryMapIndexReader {
 				break;
 			}
 		}
-		BinaryMapDataObject dataObject = new BinaryMapDataObject();
-		dataObject.area = area;
-		dataObject.coordinates = req.cacheCoordinates.toArray();
-		dataObject.objectNames = stringNames;
-		dataObject.namesOrder = stringOrder;
-		if (innercoordinates == null) {
-			dataObject.polygonInnerCoordinates = new int[0][0];
-		} else {
-			dataObject.polygonInnerCoordinates = new int[innercoordinates.size()][];
-			for (int i = 0; i < innercoordinates.size(); i++) {
-				dataObject.polygonInnerCoordinates[i] = innercoordinates.get(i).toArray();
-			}
-		}
-		dataObject.types = req.cacheTypes.toArray();
-		if (additionalTypes != null) {
-			dataObject.additionalTypes = additionalTypes.toArray();
-		} else {
-			dataObject.additionalTypes = new int[0];
+		view.id = id + baseId;
+		if (req.mapObjectVisitor != null && !req.mapObjectVisitor.visit(view)) {
+			return null;
 		}
-		dataObject.id = id;
-		dataObject.area = area;
-		dataObject.mapIndex = root;
-		return dataObject;
+		return view.toDataObject();
 	}
 
-	public List<MapObject> searchAddressDataByName(SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
-		for (AddressRegion reg : addressIndexes) {
-			if (reg.indexNameOffset != -1) {
-				codedIS.seek(reg.indexNameOffset);
-				int len = readInt();
-				int old = codedIS.pushLimit(len);
-				addressAdapter.searchAddressDataByName(reg, req, typeFilter);
-				codedIS.popLimit(old);
+	public synchronized List<MapObject> searchAddressDataByName(SearchRequest<MapObject> req, List<Integer> typeFilter) throws IOException {
+		int objects = req.searchResults.size();
+		startSectionRead();
+		try {
+			for (AddressRegion reg : addressIndexes) {
+				if (reg.indexNameOffset != -1) {
+					codedIS.seek(reg.indexNameOffset);
+					int len = readInt();
+					int old = codedIS.pushLimit(len);
+					addressAdapter.searchAddressDataByName(reg, req, typeFilter);
+					codedIS.popLimit(old);
+				}
 			}
+			return req.getSearchResults();
+		} finally {
+			finishSectionRead(Section.ADDRESS, req.searchResults.size() - objects);
 		}
-		return req.getSearchResults();
 	}
 
-	public List<MapObject> searchAddressDataByName(SearchRequest<MapObject> req) throws IOException {
+	public synchronized List<MapObject> searchAddressDataByName(SearchRequest<MapObject> req) throws IOException {
 		return searchAddressDataByName(req, null);
 	}
 
 	public void initCategories(PoiRegion poiIndex) throws IOException {
-		poiAdapter.initCategories(poiIndex);
-	}
-
-	public List<Amenity> searchPoiByName(SearchRequest<Amenity> req) throws IOException {
-		if (req.nameQuery == null || req.nameQuery.length() == 0) {
-			throw new IllegalArgumentException();
-		}
-		for (PoiRegion poiIndex : poiIndexes) {
+		startSectionRead();
+		try {
 			poiAdapter.initCategories(poiIndex);
-			codedIS.seek(poiIndex.filePointer);
-			int old = codedIS.pushLimit(poiIndex.length);
-			poiAdapter.searchPoiByName(poiIndex, req);
-			codedIS.popLimit(old);
+		} finally {
+			finishSectionRead(Section.POI, 0);
 		}
-		return req.getSearchResults();
 	}
 
-	public Map<PoiCategory, List<String>> searchPoiCategoriesByName(String query, Map<PoiCategory, List<String>> map) throws IOException {
-		if (query == null || query.length() == 0) {
-			throw new IllegalArgumentException();
+	public synchronized List<Amenity> searchPoiByName(SearchRequest<Amenity> req) throws IOException {
+		int objects = req.searchResults.size();
+		startSectionRead();
+		try {
+			if (req.nameQuery == null || req.nameQuery.length() == 0) {
+				throw new IllegalArgumentException();
+			}
+			for (PoiRegion poiIndex : poiIndexes) {
+				poiAdapter.initCategories(poiIndex);
+				codedIS.seek(poiIndex.filePointer);
+				int old = codedIS.pushLimit(poiIndex.length);
+				poiAdapter.searchPoiByName(poiIndex, req);
+				codedIS.popLimit(old);
+			}
+			return req.getSearchResults();
+		} finally {
+			finishSectionRead(Section.POI, req.searchResults.size() - objects);
 		}
-		Collator collator = OsmAndCollator.primaryCollator();
-		for (PoiRegion poiIndex : poiIndexes) {
-			poiAdapter.initCategories(poiIndex);
-			for (int i = 0; i < poiIndex.categories.size(); i++) {
-				String cat = poiIndex.categories.get(i);
-				PoiCategory catType = poiIndex.categoriesType.get(i);
-				if (CollatorStringMatcher.cmatches(collator, cat, query, StringMatcherMode.CHECK_STARTS_FROM_SPACE)) {
-					map.put(catType, null);
-				} else {
-					List<String> subcats = poiIndex.subcategories.get(i);
-					for (int j = 0; j < subcats.size(); j++) {
-						if (CollatorStringMatcher.cmatches(collator, subcats.get(j), query, StringMatcherMode.CHECK_STARTS_FROM_SPACE)) {
-							if (!map.containsKey(catType)) {
-								map.put(catType, new ArrayList<String>());
-							}
-							List<String> list = map.get(catType);
-							if (list != null) {
-								list.add(subcats.get(j));
+	}
+
+	public synchronized Map<PoiCategory, List<String>> searchPoiCategoriesByName(String query, Map<PoiCategory, List<String>> map) throws IOException {
+		startSectionRead();
+		try {
+			if (query == null || query.length() == 0) {
+				throw new IllegalArgumentException();
+			}
+			Collator collator = OsmAndCollator.primaryCollator();
+			for (PoiRegion poiIndex : poiIndexes) {
+				poiAdapter.initCategories(poiIndex);
+				for (int i = 0; i < poiIndex.categories.size(); i++) {
+					String cat = poiIndex.categories.get(i);
+					PoiCategory catType = poiIndex.categoriesType.get(i);
+					if (CollatorStringMatcher.cmatches(collator, cat, query, StringMatcherMode.CHECK_STARTS_FROM_SPACE)) {
+						map.put(catType, null);
+					} else {
+						List<String> subcats = poiIndex.subcategories.get(i);
+						for (int j = 0; j < subcats.size(); j++) {
+							if (CollatorStringMatcher.cmatches(collator, subcats.get(j), query, StringMatcherMode.CHECK_STARTS_FROM_SPACE)) {
+								if (!map.containsKey(catType)) {
+									map.put(catType, new ArrayList<String>());
+								}
+								List<String> list = map.get(catType);
+								if (list != null) {
+									list.add(subcats.get(j));
+								}
 							}
-						}
 
+						}
 					}
 				}
 			}
+			return map;
+		} finally {
+			finishSectionRead(Section.POI, 0);
+		}
+	}
+
+	public synchronized List<Amenity> searchPoi(SearchRequest<Amenity> req) throws IOException {
+		startSectionRead();
+		try {
+			req.numberOfVisitedObjects = 0;
+			req.numberOfAcceptedObjects = 0;
+			req.numberOfAcceptedSubtrees = 0;
+			req.numberOfReadSubtrees = 0;
+			for (PoiRegion poiIndex : poiIndexes) {
+				poiAdapter.initCategories(poiIndex);
+				codedIS.seek(poiIndex.filePointer);
+				int old = codedIS.pushLimit(poiIndex.length);
+				poiAdapter.searchPoiIndex(req.left, req.right, req.top, req.bottom, req, poiIndex);
+				codedIS.popLimit(old);
+			}
+			log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+			log.info("Search poi is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+			return req.getSearchResults();
+		} finally {
+			finishSectionRead(Section.POI, req.numberOfVisitedObjects);
 		}
-		return map;
 	}
 
-	public List<Amenity> searchPoi(SearchRequest<Amenity> req) throws IOException {
-		req.numberOfVisitedObjects = 0;
-		req.numberOfAcceptedObjects = 0;
-		req.numberOfAcceptedSubtrees = 0;
-		req.numberOfReadSubtrees = 0;
-		for (PoiRegion poiIndex : poiIndexes) {
+	public synchronized List<Amenity> searchPoi(PoiRegion poiIndex, SearchRequest<Amenity> req) throws IOException {
+		startSectionRead();
+		try {
+			req.numberOfVisitedObjects = 0;
+			req.numberOfAcceptedObjects = 0;
+			req.numberOfAcceptedSubtrees = 0;
+			req.numberOfReadSubtrees = 0;
+
 			poiAdapter.initCategories(poiIndex);
 			codedIS.seek(poiIndex.filePointer);
 			int old = codedIS.pushLimit(poiIndex.length);
 			poiAdapter.searchPoiIndex(req.left, req.right, req.top, req.bottom, req, poiIndex);
 			codedIS.popLimit(old);
-		}
-		log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
-		log.info("Search poi is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-
-		return req.getSearchResults();
-	}
-
-	public List<Amenity> searchPoi(PoiRegion poiIndex, SearchRequest<Amenity> req) throws IOException {
-		req.numberOfVisitedObjects = 0;
-		req.numberOfAcceptedObjects = 0;
-		req.numberOfAcceptedSubtrees = 0;
-		req.numberOfReadSubtrees = 0;
 
-		poiAdapter.initCategories(poiIndex);
-		codedIS.seek(poiIndex.filePointer);
-		int old = codedIS.pushLimit(poiIndex.length);
-		poiAdapter.searchPoiIndex(req.left, req.right, req.top, req.bottom, req, poiIndex);
-		codedIS.popLimit(old);
-
-		log.info("Search poi is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
-		log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
+			log.info("Search poi is done. Visit " + req.numberOfVisitedObjects + " objects. Read " + req.numberOfAcceptedObjects + " objects."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+			log.info("Read " + req.numberOfReadSubtrees + " subtrees. Go through " + req.numberOfAcceptedSubtrees + " subtrees.");   //$NON-NLS-1$//$NON-NLS-2$//$NON-NLS-3$
 
-		return req.getSearchResults();
+			return req.getSearchResults();
+		} finally {
+			finishSectionRead(Section.POI, req.numberOfVisitedObjects);
+		}
 	}
 
 	protected List<String> readStringTable() throws IOException {
@@ -1534,6 +1765,25 @@ public class BinaryMapIndexReader {
 
 	}
 
+	public static interface ReadListener {
+
+		/**
+		 * Called by reader (in the reading thread) when public read method of section is finished.
+		 */
+		public void sectionRead(BinaryMapIndexReader reader, Section section, long bytesRead, int seeks, int refills,
+				int objects, long timeNanos);
+	}
+
+	public static interface MapDataObjectVisitor {
+
+		/**
+		 * Called for every object in bbox accepted by search filter, view is reused for the next object.
+		 * @return true if object should be created and published
+		 */
+		public boolean visit(MapDataObjectView view);
+
+	}
+
 	public static interface SearchPoiTypeFilter {
 
 		public boolean accept(PoiCategory type, String subcategory);
@@ -1613,6 +1863,8 @@ public class BinaryMapIndexReader {
 		// cache information
 		TIntArrayList cacheCoordinates = new TIntArrayList();
 		TIntArrayList cacheTypes = new TIntArrayList();
+		MapDataObjectView mapObjectView = new MapDataObjectView();
+		MapDataObjectVisitor mapObjectVisitor = null;
 
 		MapObjectStat stat = new MapObjectStat();
 
@@ -1623,7 +1875,7 @@ public class BinaryMapIndexReader {
 		int numberOfAcceptedObjects = 0;
 		int numberOfReadSubtrees = 0;
 		int numberOfAcceptedSubtrees = 0;
-		boolean interrupted = false;
+		volatile boolean interrupted = false;
 
 
 		protected SearchRequest() {
@@ -1669,6 +1921,13 @@ public class BinaryMapIndexReader {
 			return searchResults;
 		}
 
+		/**
+		 * Visitor to check decoded map objects before they're created, objects rejected by visitor are not published.
+		 */
+		public void setMapObjectVisitor(MapDataObjectVisitor mapObjectVisitor) {
+			this.mapObjectVisitor = mapObjectVisitor;
+		}
+
 		public void setInterrupted(boolean interrupted) {
 			this.interrupted = interrupted;
 		}
@@ -1746,6 +2005,7 @@ public class BinaryMapIndexReader {
 		List<MapRoot> roots = new ArrayList<MapRoot>();
 
 		Map<String, Map<String, Integer>> encodingRules = new HashMap<String, Map<String, Integer>>();
+		volatile boolean encodingRulesInitialized;
 		public TIntObjectMap<TagValuePair> decodingRules = new TIntObjectHashMap<TagValuePair>();
 		public int nameEncodingType = 0;
 		public int nameEnEncodingType = -1;
@@ -2004,7 +2264,7 @@ public class BinaryMapIndexReader {
 			return maxZoom;
 		}
 
-		private List<MapTree> trees = null;
+		private volatile List<MapTree> trees = null;
 
 
 		public MapZooms.MapZoomPair getMapZoom() {
@@ -2284,6 +2544,99 @@ public class BinaryMapIndexReader {
 
 	}
 
+	/**
+	 * Search indexed string table at current position (limit of table is pushed) in memory of
+	 * string table cache if it is built, otherwise table is read from file and cache builds it.
+	 */
+	int searchIndexedStringTable(Collator instance, String query, TIntArrayList list) throws IOException {
+		if (stringTableCache == null) {
+			return readIndexedStringTable(instance, query, "", list, 0);
+		}
+		long offset = codedIS.getTotalBytesRead();
+		int length = codedIS.getBytesUntilLimit();
+		IndexedStringTableCache.StringTable table = stringTableCache.get(file, offset);
+		if (table == null && !stringTableCache.isBackground() && stringTableCache.isAllowed(length)) {
+			table = readIndexedStringTableEntries();
+			stringTableCache.put(file, offset, table);
+		} else if (table == null) {
+			stringTableCache.build(file, offset, length);
+			return readIndexedStringTable(instance, query, "", list, 0);
+		}
+		codedIS.skipRawBytes(codedIS.getBytesUntilLimit());
+		return table.search(instance, query, list);
+	}
+
+	/**
+	 * Reads indexed string table from offset of file (used to build it in background by own reader).
+	 */
+	IndexedStringTableCache.StringTable readIndexedStringTable(long offset, int length) throws IOException {
+		codedIS.seek(offset);
+		int oldLimit = codedIS.pushLimit(length);
+		IndexedStringTableCache.StringTable table = readIndexedStringTableEntries();
+		codedIS.popLimit(oldLimit);
+		return table;
+	}
+
+	private IndexedStringTableCache.StringTable readIndexedStringTableEntries() throws IOException {
+		IndexedStringTableCache.StringTableBuilder builder = new IndexedStringTableCache.StringTableBuilder();
+		readIndexedStringTableEntries(builder);
+		return builder.build();
+	}
+
+	private int readIndexedStringTableEntries(IndexedStringTableCache.StringTableBuilder builder) throws IOException {
+		int table = builder.addTable();
+		while (true) {
+			int t = codedIS.readTag();
+			int tag = WireFormat.getTagFieldNumber(t);
+			switch (tag) {
+			case 0:
+				return table;
+			case OsmandOdb.IndexedStringTable.KEY_FIELD_NUMBER:
+				builder.addKey(table, codedIS.readString());
+				break;
+			case OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER:
+				builder.addValue(table, readInt());
+				break;
+			case OsmandOdb.IndexedStringTable.SUBTABLES_FIELD_NUMBER:
+				int len = codedIS.readRawVarint32();
+				int oldLim = codedIS.pushLimit(len);
+				int subtable = readIndexedStringTableEntries(builder);
+				codedIS.popLimit(oldLim);
+				builder.addSubtable(table, subtable);
+				break;
+			default:
+				skipUnknownField(t);
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Checks key of indexed string table : query starts with key or key starts with query.
+	 * @return number of matched chars (list is cleared if it is bigger than previous) or -1 if key doesn't match
+	 * or matches less chars than already found
+	 */
+	static int matchIndexedStringKey(Collator instance, String key, String query, TIntArrayList list, int charMatches) {
+		// check query is part of key (the best matching)
+		if (CollatorStringMatcher.cmatches(instance, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+			if (query.length() >= charMatches) {
+				if (query.length() > charMatches) {
+					list.clear();
+				}
+				return query.length();
+			}
+			// check key is part of query
+		} else if (CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
+			if (key.length() >= charMatches) {
+				if (key.length() > charMatches) {
+					list.clear();
+				}
+				return key.length();
+			}
+		}
+		return -1;
+	}
+
 	int readIndexedStringTable(Collator instance, String query, String prefix, TIntArrayList list, int charMatches) throws IOException {
 		String key = null;
 		while (true) {
@@ -2297,28 +2650,11 @@ public class BinaryMapIndexReader {
 				if(prefix.length() > 0){
 					key = prefix + key;
 				}
-				// check query is part of key (the best matching)
-				if(CollatorStringMatcher.cmatches(instance, key, query, StringMatcherMode.CHECK_ONLY_STARTS_WITH)){
-					if(query.length() >= charMatches){
-						if(query.length() > charMatches){
-							charMatches = query.length();
-							list.clear();
-						}
-					} else {
-						key = null;
-					}
-					// check key is part of query
-				} else if (CollatorStringMatcher.cmatches(instance, query, key, StringMatcherMode.CHECK_ONLY_STARTS_WITH)) {
-					if (key.length() >= charMatches) {
-						if (key.length() > charMatches) {
-							charMatches = key.length();
-							list.clear();
-						}
-					} else {
-						key = null;
-					}
-				} else {
+				int matches = matchIndexedStringKey(instance, key, query, list, charMatches);
+				if (matches < 0) {
 					key = null;
+				} else {
+					charMatches = matches;
 				}
 				break;
 			case OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER :
@@ -2550,34 +2886,56 @@ public class BinaryMapIndexReader {
 
 
 	public List<RouteSubregion> searchRouteIndexTree(SearchRequest<?> req, List<RouteSubregion> list) throws IOException {
-		req.numberOfVisitedObjects = 0;
-		req.numberOfAcceptedObjects = 0;
-		req.numberOfAcceptedSubtrees = 0;
-		req.numberOfReadSubtrees = 0;
-		if (routeAdapter != null) {
-			routeAdapter.initRouteTypesIfNeeded(req, list);
-			return routeAdapter.searchRouteRegionTree(req, list,
-					new ArrayList<BinaryMapRouteReaderAdapter.RouteSubregion>());
+		startSectionRead();
+		try {
+			req.numberOfVisitedObjects = 0;
+			req.numberOfAcceptedObjects = 0;
+			req.numberOfAcceptedSubtrees = 0;
+			req.numberOfReadSubtrees = 0;
+			if (routeAdapter != null) {
+				routeAdapter.initRouteTypesIfNeeded(req, list);
+				return routeAdapter.searchRouteRegionTree(req, list,
+						new ArrayList<BinaryMapRouteReaderAdapter.RouteSubregion>());
+			}
+			return Collections.emptyList();
+		} finally {
+			finishSectionRead(Section.ROUTE, 0);
 		}
-		return Collections.emptyList();
 	}
 
 	public void loadRouteIndexData(List<RouteSubregion> toLoad, ResultMatcher<RouteDataObject> matcher) throws IOException {
-		if (routeAdapter != null) {
-			routeAdapter.loadRouteRegionData(toLoad, matcher);
+		int objects = 0;
+		startSectionRead();
+		try {
+			if (routeAdapter != null) {
+				objects = routeAdapter.loadRouteRegionData(toLoad, matcher);
+			}
+		} finally {
+			finishSectionRead(Section.ROUTE, objects);
 		}
 	}
 
 	public List<RouteDataObject> loadRouteIndexData(RouteSubregion rs) throws IOException {
-		if (routeAdapter != null) {
-			return routeAdapter.loadRouteRegionData(rs);
+		List<RouteDataObject> res = Collections.emptyList();
+		startSectionRead();
+		try {
+			if (routeAdapter != null) {
+				res = routeAdapter.loadRouteRegionData(rs);
+			}
+			return res;
+		} finally {
+			finishSectionRead(Section.ROUTE, res.size());
 		}
-		return Collections.emptyList();
 	}
 
 	public void initRouteRegion(RouteRegion routeReg) throws IOException {
-		if (routeAdapter != null) {
-			routeAdapter.initRouteRegion(routeReg);
+		startSectionRead();
+		try {
+			if (routeAdapter != null) {
+				routeAdapter.initRouteRegion(routeReg);
+			}
+		} finally {
+			finishSectionRead(Section.ROUTE, 0);
 		}
 	}
 
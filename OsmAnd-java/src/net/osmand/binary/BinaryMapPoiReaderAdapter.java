@@ -54,6 +54,7 @@ public class BinaryMapPoiReaderAdapter {
 		List<PoiCategory> categoriesType = new ArrayList<PoiCategory>();
 		List<List<String>> subcategories = new ArrayList<List<String>>();
 		List<PoiSubType> subTypes = new ArrayList<PoiSubType>();
+		volatile boolean categoriesInitialized;
 
 		int left31;
 		int right31;
@@ -253,11 +254,18 @@ public class BinaryMapPoiReaderAdapter {
 	}
 
 	public void initCategories(PoiRegion region) throws IOException {
-		if (region.categories.isEmpty()) {
-			codedIS.seek(region.filePointer);
-			int oldLimit = codedIS.pushLimit(region.length);
-			readPoiIndex(region, true);
-			codedIS.popLimit(oldLimit);
+		if (!region.categoriesInitialized) {
+			synchronized (region) {
+				if (!region.categoriesInitialized) {
+					if (region.categories.isEmpty()) {
+						codedIS.seek(region.filePointer);
+						int oldLimit = codedIS.pushLimit(region.length);
+						readPoiIndex(region, true);
+						codedIS.popLimit(oldLimit);
+					}
+					region.categoriesInitialized = true;
+				}
+			}
 		}
 	}
 
@@ -356,7 +364,7 @@ public class BinaryMapPoiReaderAdapter {
 				int oldLimit = codedIS.pushLimit(length);
 				dataOffsets = new TIntArrayList();
 				offset = codedIS.getTotalBytesRead();
-				map.readIndexedStringTable(instance, query, "", dataOffsets, 0);
+				map.searchIndexedStringTable(instance, query, dataOffsets);
 				codedIS.popLimit(oldLimit);
 				break;
 			}
@@ -0,0 +1,169 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapReaderStats.Section;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Pool of readers of one OBF file to be used from many threads at once.
+ * Index metadata (map levels, route and poi regions) is parsed only once by the reference reader and shared
+ * by all pooled readers, only sections given to the pool are read ahead, others are read on first use.
+ * When file is memory mapped, pooled readers read regions mapped by the reference reader (file is mapped once),
+ * though every pooled reader still opens its own file descriptor. Pool keeps at most
+ * {@link #DEFAULT_MAX_IDLE_READERS} idle readers by default, readers released above that are closed.
+ * <p>
+ * Usage:
+ * <pre>
+ * BinaryMapIndexReader reader = pool.acquire();
+ * try {
+ *     reader.searchMapIndex(req);
+ * } finally {
+ *     pool.release(reader);
+ * }
+ * </pre>
+ */
+public class BinaryMapReaderPool {
+
+	private final static Log log = PlatformUtil.getLog(BinaryMapReaderPool.class);
+
+	public static final int DEFAULT_MAX_IDLE_READERS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+	private final File file;
+	private final BinaryMapIndexReader reference;
+	private final MappedRandomAccessFile mapped;
+	private final boolean ownReference;
+	private final ConcurrentLinkedQueue<BinaryMapIndexReader> idle = new ConcurrentLinkedQueue<BinaryMapIndexReader>();
+	private final AtomicInteger idleCount = new AtomicInteger();
+	private final AtomicInteger created = new AtomicInteger();
+	private final AtomicInteger acquired = new AtomicInteger();
+	private volatile int maxIdleReaders = DEFAULT_MAX_IDLE_READERS;
+	private volatile boolean closed;
+
+	public BinaryMapReaderPool(File file, boolean memoryMapped, Section... sections) throws IOException {
+		this(new BinaryMapIndexReader(memoryMapped ? new MappedRandomAccessFile(file) :
+				new RandomAccessFile(file, "r"), file), true, sections);
+	}
+
+	/**
+	 * Creates pool over already initialized reader. Reader becomes owned by the pool and shouldn't be used directly.
+	 */
+	public BinaryMapReaderPool(BinaryMapIndexReader reference, Section... sections) throws IOException {
+		this(reference, true, sections);
+	}
+
+	/**
+	 * Creates pool over already initialized reader, reader which is not owned by the pool is not closed with
+	 * the pool and could be used by its owner (but not at the same time as pool is created).
+	 * Lazily initialized parts of given sections (which are used by the caller) are read by reference reader.
+	 */
+	public BinaryMapReaderPool(BinaryMapIndexReader reference, boolean ownReference, Section... sections)
+			throws IOException {
+		this.reference = reference;
+		this.ownReference = ownReference;
+		this.file = reference.getFile();
+		RandomAccessFile raf = reference.getRaf();
+		this.mapped = raf instanceof MappedRandomAccessFile ? (MappedRandomAccessFile) raf : null;
+		reference.initLazyIndexes(sections);
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	/**
+	 * Maximum number of idle readers kept open by the pool (readers acquired at once are limited by the caller).
+	 */
+	public void setMaxIdleReaders(int maxIdleReaders) {
+		this.maxIdleReaders = maxIdleReaders;
+	}
+
+	public int getMaxIdleReaders() {
+		return maxIdleReaders;
+	}
+
+	public boolean isMemoryMapped() {
+		return mapped != null;
+	}
+
+	/**
+	 * Reader to check which data file contains (regions, bounds). It shouldn't be used for searches.
+	 */
+	public BinaryMapIndexReader getReference() {
+		return reference;
+	}
+
+	public BinaryMapIndexReader acquire() throws IOException {
+		if (closed) {
+			throw new IllegalStateException("Pool is closed " + file.getName());
+		}
+		acquired.incrementAndGet();
+		BinaryMapIndexReader reader = idle.poll();
+		if (reader != null) {
+			idleCount.decrementAndGet();
+		} else {
+			RandomAccessFile raf = mapped != null ? new MappedRandomAccessFile(mapped) :
+					new RandomAccessFile(file, "r");
+			reader = new BinaryMapIndexReader(raf, reference);
+			created.incrementAndGet();
+		}
+		return reader;
+	}
+
+	public void release(BinaryMapIndexReader reader) {
+		acquired.decrementAndGet();
+		if (!closed) {
+			if (idleCount.incrementAndGet() <= maxIdleReaders) {
+				idle.add(reader);
+				return;
+			}
+			idleCount.decrementAndGet();
+		}
+		closeReader(reader);
+	}
+
+	/**
+	 * Closes acquired reader instead of returning it to the pool (reader which failed could be in wrong state).
+	 */
+	public void discard(BinaryMapIndexReader reader) {
+		acquired.decrementAndGet();
+		closeReader(reader);
+	}
+
+	public int getCreatedReadersCount() {
+		return created.get();
+	}
+
+	public int getAcquiredReadersCount() {
+		return acquired.get();
+	}
+
+	/**
+	 * Closes idle readers and owned reference reader, acquired readers are closed when they're released.
+	 */
+	public void close() {
+		closed = true;
+		BinaryMapIndexReader reader;
+		while ((reader = idle.poll()) != null) {
+			idleCount.decrementAndGet();
+			closeReader(reader);
+		}
+		if (ownReference) {
+			closeReader(reference);
+		}
+	}
+
+	private void closeReader(BinaryMapIndexReader reader) {
+		try {
+			reader.close();
+		} catch (IOException e) {
+			log.error(e.getMessage(), e);
+		}
+	}
+}
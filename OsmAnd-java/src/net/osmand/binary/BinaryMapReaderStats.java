@@ -0,0 +1,109 @@
+package net.osmand.binary;
+
+import java.util.Formatter;
+
+import net.osmand.binary.BinaryMapIndexReader.ReadListener;
+
+/**
+ * I/O statistics of reading sections of OBF file : bytes read from file, seeks outside of the buffer,
+ * buffer refills, decoded objects and time spent in public read methods of {@link BinaryMapIndexReader}.
+ * Every reader keeps own statistics ({@link BinaryMapIndexReader#getStats()}), the same instance could be also
+ * set as {@link ReadListener} of many readers to aggregate statistics of several files.
+ */
+public class BinaryMapReaderStats implements ReadListener {
+
+	public enum Section {
+		MAP, POI, ADDRESS, ROUTE, TRANSPORT
+	}
+
+	public static class SectionStats {
+		int calls;
+		long bytesRead;
+		long seeks;
+		long refills;
+		long objects;
+		long timeNanos;
+
+		public int getCalls() {
+			return calls;
+		}
+
+		public long getBytesRead() {
+			return bytesRead;
+		}
+
+		public long getSeeks() {
+			return seeks;
+		}
+
+		public long getRefills() {
+			return refills;
+		}
+
+		public long getObjects() {
+			return objects;
+		}
+
+		public long getTimeNanos() {
+			return timeNanos;
+		}
+	}
+
+	private final SectionStats[] sections = new SectionStats[Section.values().length];
+
+	public BinaryMapReaderStats() {
+		for (int i = 0; i < sections.length; i++) {
+			sections[i] = new SectionStats();
+		}
+	}
+
+	@Override
+	public synchronized void sectionRead(BinaryMapIndexReader reader, Section section, long bytesRead, int seeks,
+			int refills, int objects, long timeNanos) {
+		SectionStats s = sections[section.ordinal()];
+		s.calls++;
+		s.bytesRead += bytesRead;
+		s.seeks += seeks;
+		s.refills += refills;
+		s.objects += objects;
+		s.timeNanos += timeNanos;
+	}
+
+	/**
+	 * Returns copy of statistics of section.
+	 */
+	public synchronized SectionStats getSectionStats(Section section) {
+		SectionStats s = sections[section.ordinal()];
+		SectionStats c = new SectionStats();
+		c.calls = s.calls;
+		c.bytesRead = s.bytesRead;
+		c.seeks = s.seeks;
+		c.refills = s.refills;
+		c.objects = s.objects;
+		c.timeNanos = s.timeNanos;
+		return c;
+	}
+
+	public synchronized void reset() {
+		for (int i = 0; i < sections.length; i++) {
+			sections[i] = new SectionStats();
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		Formatter f = new Formatter();
+		f.format("%-10s %8s %12s %8s %8s %10s %10s%n", "Section", "Calls", "Bytes", "Seeks", "Refills", "Objects", "Time, ms");
+		for (Section section : Section.values()) {
+			SectionStats s = sections[section.ordinal()];
+			if (s.calls == 0) {
+				continue;
+			}
+			f.format("%-10s %8d %12d %8d %8d %10d %10.1f%n", section, s.calls, s.bytesRead, s.seeks, s.refills,
+					s.objects, s.timeNanos / 1e6);
+		}
+		String res = f.toString();
+		f.close();
+		return res;
+	}
+}
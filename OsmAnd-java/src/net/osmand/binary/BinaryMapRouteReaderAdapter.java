@@ -14,6 +14,7 @@ import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import net.osmand.PlatformUtil;
 import net.osmand.ResultMatcher;
@@ -206,9 +207,10 @@ public class BinaryMapRouteReaderAdapter {
 	}
 
 	public static class RouteRegion extends BinaryIndexPart {
-		public int regionsRead;
+		public final AtomicInteger regionsRead = new AtomicInteger();
 		public List<RouteTypeRule> routeEncodingRules = new ArrayList<BinaryMapRouteReaderAdapter.RouteTypeRule>();
 		public Map<String, Integer> decodingRules = null;
+		volatile boolean encodingRulesInitialized;
 		List<RouteSubregion> subregions = new ArrayList<RouteSubregion>();
 		List<RouteSubregion> basesubregions = new ArrayList<RouteSubregion>();
 		
@@ -433,7 +435,7 @@ public class BinaryMapRouteReaderAdapter {
 		public int top;
 		public int bottom;
 		public int shiftToData;
-		public List<RouteSubregion> subregions = null;
+		public volatile List<RouteSubregion> subregions = null;
 		public List<RouteDataObject> dataObjects = null;
 		
 		public int getEstimatedSize(){
@@ -476,6 +478,10 @@ public class BinaryMapRouteReaderAdapter {
 	
 	
 	protected void readRouteIndex(RouteRegion region) throws IOException {
+		readRouteIndex(region, true);
+	}
+	
+	private void readRouteIndex(RouteRegion region, boolean readSubregions) throws IOException {
 		int routeEncodingRule = 1;
 		while(true){
 			int t = codedIS.readTag();
@@ -498,6 +504,10 @@ public class BinaryMapRouteReaderAdapter {
 				RouteSubregion subregion = new RouteSubregion(region);
 				subregion.length = readInt();
 				subregion.filePointer = codedIS.getTotalBytesRead();
+				if (!readSubregions) {
+					codedIS.skipRawBytes(subregion.length);
+					break;
+				}
 				int oldLimit = codedIS.pushLimit(subregion.length);
 				readRouteTree(subregion, null, 0, true);
 				if(tag == OsmandOdb.OsmAndRoutingIndex.ROOTBOXES_FIELD_NUMBER) {
@@ -648,9 +658,9 @@ public class BinaryMapRouteReaderAdapter {
 			}
 		}
 	}
-	private void readRouteTreeData(RouteSubregion routeTree,  TLongArrayList idTables,
+	private List<RouteDataObject> readRouteTreeData(RouteSubregion routeTree,  TLongArrayList idTables,
 			TLongObjectHashMap<TLongArrayList> restrictions) throws IOException {
-		routeTree.dataObjects = new ArrayList<RouteDataObject>();
+		List<RouteDataObject> dataObjects = new ArrayList<RouteDataObject>();
 		idTables.clear();
 		restrictions.clear();
 		List<String> stringTable = null;
@@ -663,7 +673,7 @@ public class BinaryMapRouteReaderAdapter {
 				while (it.hasNext()) {
 					it.advance();
 					int from = (int) it.key();
-					RouteDataObject fromr = routeTree.dataObjects.get(from);
+					RouteDataObject fromr = dataObjects.get(from);
 					fromr.restrictions = new long[it.value().size()];
 					for (int k = 0; k < fromr.restrictions.length; k++) {
 						int to = (int) (it.value().get(k) >> RouteDataObject.RESTRICTION_SHIFT);
@@ -671,7 +681,7 @@ public class BinaryMapRouteReaderAdapter {
 						fromr.restrictions[k] = valto;
 					}
 				}
-				for (RouteDataObject o : routeTree.dataObjects) {
+				for (RouteDataObject o : dataObjects) {
 					if (o != null) {
 						if (o.id < idTables.size()) {
 							o.id = idTables.get((int) o.id);
@@ -693,15 +703,15 @@ public class BinaryMapRouteReaderAdapter {
 						}
 					}
 				}
-				return;
+				return dataObjects;
 			case RouteDataBlock.DATAOBJECTS_FIELD_NUMBER :
 				int length = codedIS.readRawVarint32();
 				int oldLimit = codedIS.pushLimit(length);
 				RouteDataObject obj = readRouteDataObject(routeTree.routeReg, routeTree.left, routeTree.top);
-				while(obj.id >= routeTree.dataObjects.size()) {
-					routeTree.dataObjects.add(null);
+				while(obj.id >= dataObjects.size()) {
+					dataObjects.add(null);
 				}
-				routeTree.dataObjects.set((int) obj.id,obj);
+				dataObjects.set((int) obj.id,obj);
 				codedIS.popLimit(oldLimit);
 				break;
 			case RouteDataBlock.IDTABLE_FIELD_NUMBER :
@@ -802,15 +812,20 @@ public class BinaryMapRouteReaderAdapter {
 	private RouteSubregion readRouteTree(RouteSubregion thisTree, RouteSubregion parentTree, int depth,
 			boolean readCoordinates) throws IOException {
 		boolean readChildren = depth != 0; 
+		// children are published when they're completely read, so tree could be shared between readers
+		List<RouteSubregion> subregions = null;
 		if(readChildren) {
-			thisTree.subregions = new ArrayList<BinaryMapRouteReaderAdapter.RouteSubregion>();
+			subregions = new ArrayList<BinaryMapRouteReaderAdapter.RouteSubregion>();
 		}
-		thisTree.routeReg.regionsRead++;
+		thisTree.routeReg.regionsRead.incrementAndGet();
 		while(true){
 			int t = codedIS.readTag();
 			int tag = WireFormat.getTagFieldNumber(t);
 			switch (tag) {
 			case 0:
+				if (subregions != null) {
+					thisTree.subregions = subregions;
+				}
 				return thisTree;
 			case RouteDataBox.LEFT_FIELD_NUMBER :
 				int i = codedIS.readSInt32();
@@ -840,7 +855,7 @@ public class BinaryMapRouteReaderAdapter {
 				thisTree.shiftToData = readInt();
 				if(!readChildren) {
 					// usually 0
-					thisTree.subregions = new ArrayList<BinaryMapRouteReaderAdapter.RouteSubregion>();
+					subregions = new ArrayList<BinaryMapRouteReaderAdapter.RouteSubregion>();
 					readChildren = true;
 				}
 				break;
@@ -851,7 +866,7 @@ public class BinaryMapRouteReaderAdapter {
 					subregion.filePointer = codedIS.getTotalBytesRead();
 					int oldLimit = codedIS.pushLimit(subregion.length);
 					readRouteTree(subregion, thisTree, depth - 1, true);
-					thisTree.subregions.add(subregion);
+					subregions.add(subregion);
 					codedIS.popLimit(oldLimit);
 					codedIS.seek(subregion.filePointer + subregion.length);
 				} else {
@@ -875,11 +890,20 @@ public class BinaryMapRouteReaderAdapter {
 	}
 
 	public void initRouteRegion(RouteRegion routeReg) throws IOException, InvalidProtocolBufferException {
-		if (routeReg.routeEncodingRules.isEmpty()) {
-			codedIS.seek(routeReg.filePointer);
-			int oldLimit = codedIS.pushLimit(routeReg.length);
-			readRouteIndex(routeReg);
-			codedIS.popLimit(oldLimit);
+		// flag is set when rules are completely read, partly filled rules are never used by other threads
+		if (!routeReg.encodingRulesInitialized) {
+			synchronized (routeReg) {
+				if (!routeReg.encodingRulesInitialized) {
+					if (routeReg.routeEncodingRules.isEmpty()) {
+						codedIS.seek(routeReg.filePointer);
+						int oldLimit = codedIS.pushLimit(routeReg.length);
+						// region restored from cached index has subregions, only encoding rules are missing
+						readRouteIndex(routeReg, routeReg.subregions.isEmpty() && routeReg.basesubregions.isEmpty());
+						codedIS.popLimit(oldLimit);
+					}
+					routeReg.encodingRulesInitialized = true;
+				}
+			}
 		}
 	}
 
@@ -887,19 +911,18 @@ public class BinaryMapRouteReaderAdapter {
 	public List<RouteDataObject> loadRouteRegionData(RouteSubregion rs) throws IOException {
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<TLongArrayList> restrictionMap = new TLongObjectHashMap<TLongArrayList>();
-		if (rs.dataObjects == null) {
-			codedIS.seek(rs.filePointer + rs.shiftToData);
-			int limit = codedIS.readRawVarint32();
-			int oldLimit = codedIS.pushLimit(limit);
-			readRouteTreeData(rs, idMap, restrictionMap);
-			codedIS.popLimit(oldLimit);
-		}
-		List<RouteDataObject> res = rs.dataObjects;
-		rs.dataObjects = null;
+		codedIS.seek(rs.filePointer + rs.shiftToData);
+		int limit = codedIS.readRawVarint32();
+		int oldLimit = codedIS.pushLimit(limit);
+		List<RouteDataObject> res = readRouteTreeData(rs, idMap, restrictionMap);
+		codedIS.popLimit(oldLimit);
 		return res;
 	}
 	
-	public void loadRouteRegionData(List<RouteSubregion> toLoad, ResultMatcher<RouteDataObject> matcher) throws IOException {
+	/**
+	 * Returns number of read objects.
+	 */
+	public int loadRouteRegionData(List<RouteSubregion> toLoad, ResultMatcher<RouteDataObject> matcher) throws IOException {
 		Collections.sort(toLoad, new Comparator<RouteSubregion>() {
 			@Override
 			public int compare(RouteSubregion o1, RouteSubregion o2) {
@@ -910,21 +933,31 @@ public class BinaryMapRouteReaderAdapter {
 		});
 		TLongArrayList idMap = new TLongArrayList();
 		TLongObjectHashMap<TLongArrayList> restrictionMap = new TLongObjectHashMap<TLongArrayList>();
+		int objects = 0;
 		for (RouteSubregion rs : toLoad) {
-			if (rs.dataObjects == null) {
-				codedIS.seek(rs.filePointer + rs.shiftToData);
-				int limit = codedIS.readRawVarint32();
-				int oldLimit = codedIS.pushLimit(limit);
-				readRouteTreeData(rs, idMap, restrictionMap);
-				codedIS.popLimit(oldLimit);
-			}
-			for (RouteDataObject ro : rs.dataObjects) {
+			codedIS.seek(rs.filePointer + rs.shiftToData);
+			int limit = codedIS.readRawVarint32();
+			int oldLimit = codedIS.pushLimit(limit);
+			List<RouteDataObject> dataObjects = readRouteTreeData(rs, idMap, restrictionMap);
+			codedIS.popLimit(oldLimit);
+			for (RouteDataObject ro : dataObjects) {
 				if (ro != null) {
+					objects++;
 					matcher.publish(ro);
 				}
 			}
-			// free objects
-			rs.dataObjects = null;
+		}
+		return objects;
+	}
+
+	private void readRouteSubregionTree(SearchRequest<?> req, RouteSubregion rs) throws IOException {
+		synchronized (rs) {
+			if (rs.subregions == null) {
+				codedIS.seek(rs.filePointer);
+				int old = codedIS.pushLimit(rs.length);
+				readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
+				codedIS.popLimit(old);
+			}
 		}
 	}
 
@@ -933,10 +966,7 @@ public class BinaryMapRouteReaderAdapter {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
 				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					int old = codedIS.pushLimit(rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+					readRouteSubregionTree(req, rs);
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 
@@ -954,10 +984,7 @@ public class BinaryMapRouteReaderAdapter {
 		for (RouteSubregion rs : list) {
 			if (req.intersects(rs.left, rs.top, rs.right, rs.bottom)) {
 				if (rs.subregions == null) {
-					codedIS.seek(rs.filePointer);
-					int old = codedIS.pushLimit(rs.length);
-					readRouteTree(rs, null, req.contains(rs.left, rs.top, rs.right, rs.bottom) ? -1 : 1, false);
-					codedIS.popLimit(old);
+					readRouteSubregionTree(req, rs);
 				}
 				searchRouteRegionTree(req, rs.subregions, toLoad);
 
@@ -5,6 +5,8 @@ import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
 
 import net.osmand.PlatformUtil;
 import net.osmand.binary.BinaryMapAddressReaderAdapter.AddressRegion;
@@ -37,6 +39,14 @@ public class CachedOsmandIndexes {
 	private Log log = PlatformUtil.getLog(CachedOsmandIndexes.class);
 	private boolean hasChanged = true;
 	
+	// timing of readers initialization (nanoseconds)
+	private long timeToReadCache;
+	private long timeToInitFromCache;
+	private long timeToInitFromFiles;
+	private int readersFromCache;
+	private int readersFromFiles;
+	private int invalidatedEntries;
+	
 	public static final int VERSION = 2;
 
 	public void addToCache(BinaryMapIndexReader reader, File f) {
@@ -47,7 +57,16 @@ public class CachedOsmandIndexes {
 			storedIndexBuilder.setDateCreated(System.currentTimeMillis());
 			if(storedIndex != null) {
 				for(FileIndex ex : storedIndex.getFileIndexList()) {
-					storedIndexBuilder.addFileIndex(ex);
+					if (!ex.getFileName().equals(f.getName())) {
+						storedIndexBuilder.addFileIndex(ex);
+					}
+				}
+			}
+		} else {
+			// replace outdated entry of the same file
+			for (int i = storedIndexBuilder.getFileIndexCount() - 1; i >= 0; i--) {
+				if (storedIndexBuilder.getFileIndex(i).getFileName().equals(f.getName())) {
+					removeFileIndex(i);
 				}
 			}
 		}
@@ -169,37 +188,67 @@ public class CachedOsmandIndexes {
 		routing.addSubregions(rpart);
 	}
 	
+	private void removeFileIndex(int index) {
+		// generated builder doesn't support removal of one element
+		List<FileIndex> list = new ArrayList<FileIndex>(storedIndexBuilder.getFileIndexList());
+		list.remove(index);
+		storedIndexBuilder.clearFileIndex();
+		storedIndexBuilder.addAllFileIndex(list);
+	}
+	
 	public BinaryMapIndexReader getReader(File f) throws IOException {
-		RandomAccessFile mf = new RandomAccessFile(f.getPath(), "r");
+		return getReader(f, new RandomAccessFile(f.getPath(), "r"));
+	}
+	
+	/**
+	 * Creates reader from cached index without parsing sections of the file, map rules, route rules,
+	 * poi categories and transport string tables are read on first use.
+	 * Cached entry is used only if file has the same name, size, version and creation date,
+	 * otherwise file is parsed and entry is replaced.
+	 */
+	public BinaryMapIndexReader getReader(File f, RandomAccessFile mf) throws IOException {
+		long time = System.nanoTime();
 		FileIndex found = null;
 		if (storedIndex != null) {
 			for (int i = 0; i < storedIndex.getFileIndexCount(); i++) {
 				FileIndex fi = storedIndex.getFileIndex(i);
 				if (f.length() == fi.getSize() && f.getName().equals(fi.getFileName())) {
-					// f.lastModified() == fi.getDateModified()
 					found = fi;
 					break;
 				}
 			}
 		}
 		BinaryMapIndexReader reader = null;
-		if (found == null) {
-			long val = System.currentTimeMillis();
+		if (found != null) {
+			reader = initFileIndex(found, mf, f);
+			if (reader == null) {
+				invalidatedEntries++;
+				mf.seek(0);
+			}
+		}
+		if (reader == null) {
 			reader = new BinaryMapIndexReader(mf, f);
 			addToCache(reader, f);
+			long t = System.nanoTime() - time;
+			timeToInitFromFiles += t;
+			readersFromFiles++;
 			if (log.isDebugEnabled()) {
-				log.debug("Initializing db " + f.getAbsolutePath() + " " + (System.currentTimeMillis() - val ) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+				log.debug("Initializing db " + f.getAbsolutePath() + " " + (t / 1000000) + "ms"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
 			}
 		} else {
-			reader = initFileIndex(found, mf, f);
+			timeToInitFromCache += System.nanoTime() - time;
+			readersFromCache++;
 		}
 		return reader;
 	}
 	
 	private BinaryMapIndexReader initFileIndex(FileIndex found, RandomAccessFile mf, File f) throws IOException {
 		BinaryMapIndexReader reader = new BinaryMapIndexReader(mf, f, false);
-		reader.version = found.getVersion();
-		reader.dateCreated = found.getDateModified();
+		reader.readHeader();
+		long dateModified = reader.dateCreated == 0 ? f.lastModified() : reader.dateCreated;
+		if (reader.version != found.getVersion() || dateModified != found.getDateModified()) {
+			return null;
+		}
 		
 		for(MapPart index : found.getMapIndexList()) {
 			MapIndex mi = new MapIndex();
@@ -300,12 +349,12 @@ public class CachedOsmandIndexes {
 			reader.routingIndexes.add(mi);
 			reader.indexes.add(mi);
 		}
-		
+		reader.calculateCenterPointForRegions();
 		return reader;
 	}
 
 	public void readFromFile(File f, int version) throws IOException {
-		long time = System.currentTimeMillis();
+		long time = System.nanoTime();
 		FileInputStream is = new FileInputStream(f);
 		try {
 			storedIndex = OsmandIndex.OsmAndStoredIndex.newBuilder().mergeFrom(is).build();
@@ -316,11 +365,12 @@ public class CachedOsmandIndexes {
 		} finally {
 			is.close();
 		}
-		log.info("Initialize cache " + (System.currentTimeMillis() - time));
+		timeToReadCache = System.nanoTime() - time;
+		log.info("Initialize cache " + (timeToReadCache / 1000000));
 	}
 	
 	public void writeToFile(File f) throws IOException {
-		if (hasChanged) {
+		if (hasChanged && storedIndexBuilder != null) {
 			FileOutputStream outputStream = new FileOutputStream(f);
 			try {
 				storedIndexBuilder.build().writeTo(outputStream);
@@ -329,5 +379,36 @@ public class CachedOsmandIndexes {
 			}
 		}
 	}
+	
+	public long getTimeToReadCache() {
+		return timeToReadCache;
+	}
+	
+	public long getTimeToInitFromCache() {
+		return timeToInitFromCache;
+	}
+	
+	public long getTimeToInitFromFiles() {
+		return timeToInitFromFiles;
+	}
+	
+	public int getReadersFromCache() {
+		return readersFromCache;
+	}
+	
+	public int getReadersFromFiles() {
+		return readersFromFiles;
+	}
+	
+	public int getInvalidatedEntries() {
+		return invalidatedEntries;
+	}
+	
+	public String getTimingStatistics() {
+		return String.format("Indexes cache read in %d ms, %d readers from cache in %d ms, "
+				+ "%d readers parsed from files in %d ms (%d outdated entries)",
+				timeToReadCache / 1000000, readersFromCache, timeToInitFromCache / 1000000,
+				readersFromFiles, timeToInitFromFiles / 1000000, invalidatedEntries);
+	}
 
 }
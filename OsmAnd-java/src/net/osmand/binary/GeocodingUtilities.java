@@ -143,9 +143,17 @@ public class GeocodingUtilities {
 
 	public List<GeocodingResult> reverseGeocodingSearch(RoutingContext ctx, double lat, double lon, boolean allowEmptyNames) throws IOException {
 		RoutePlannerFrontEnd rp = new RoutePlannerFrontEnd(false);
-		List<GeocodingResult> lst = new ArrayList<GeocodingUtilities.GeocodingResult>();
 		List<RouteSegmentPoint> listR = new ArrayList<BinaryRoutePlanner.RouteSegmentPoint>();
 		rp.findRouteSegment(lat, lon, ctx, listR);
+		return reverseGeocodingSearch(listR, lat, lon, allowEmptyNames);
+	}
+
+	/**
+	 * @param listR nearest segments of roads sorted by distance
+	 */
+	public List<GeocodingResult> reverseGeocodingSearch(List<RouteSegmentPoint> listR, double lat, double lon,
+			boolean allowEmptyNames) {
+		List<GeocodingResult> lst = new ArrayList<GeocodingUtilities.GeocodingResult>();
 		double distSquare = 0;
 		TLongHashSet set = new TLongHashSet();
 		Set<String> streetNames = new HashSet<String>();
@@ -223,6 +231,15 @@ public class GeocodingUtilities {
 	public List<GeocodingResult> justifyReverseGeocodingSearch(final GeocodingResult road, BinaryMapIndexReader reader,
 			double knownMinBuildingDistance, final ResultMatcher<GeocodingResult> result) throws IOException {
 		// test address index search
+		List<GeocodingResult> streetsList = searchStreets(road, reader, DISTANCE_STREET_NAME_PROXIMITY_BY_NAME, result);
+		return justifyReverseGeocodingSearch(road, streetsList, reader, knownMinBuildingDistance);
+	}
+
+	/**
+	 * @return streets with the same name as road within radius from search point of road
+	 */
+	public List<GeocodingResult> searchStreets(final GeocodingResult road, BinaryMapIndexReader reader,
+			final int radius, final ResultMatcher<GeocodingResult> result) throws IOException {
 		final List<GeocodingResult> streetsList = new ArrayList<GeocodingResult>();
 		boolean addCommonWords = false;
 		List<String> streetNamesUsed = prepareStreetName(road.streetName, addCommonWords);
@@ -250,7 +267,7 @@ public class GeocodingUtilities {
 								double d = MapUtils.getDistance(object.getLocation(), road.searchPoint.getLatitude(),
 										road.searchPoint.getLongitude());
 								// double check to suport old format
-								if (d < DISTANCE_STREET_NAME_PROXIMITY_BY_NAME) {
+								if (d < radius) {
 									GeocodingResult rs = new GeocodingResult(road);
 									rs.street = (Street) object;
 									// set connection point to sort
@@ -269,10 +286,18 @@ public class GeocodingUtilities {
 							return result != null && result.isCancelled();
 						}
 					}, mainWord, StringMatcherMode.CHECK_EQUALS_FROM_SPACE);
-			req.setBBoxRadius(road.getLocation().getLatitude(), road.getLocation().getLongitude(), DISTANCE_STREET_NAME_PROXIMITY_BY_NAME);
+			req.setBBoxRadius(road.getLocation().getLatitude(), road.getLocation().getLongitude(), radius);
 			reader.searchAddressDataByName(req);
 		}
+		return streetsList;
+	}
 
+	/**
+	 * @param streetsList streets with the same name as road
+	 * @param reader reader to load buildings of streets or null if they are already loaded
+	 */
+	public List<GeocodingResult> justifyReverseGeocodingSearch(final GeocodingResult road, List<GeocodingResult> streetsList,
+			BinaryMapIndexReader reader, double knownMinBuildingDistance) throws IOException {
 		final List<GeocodingResult> res = new ArrayList<GeocodingResult>();
 		if (streetsList.size() == 0) {
 			res.add(road);
@@ -314,8 +339,10 @@ public class GeocodingUtilities {
 	private List<GeocodingResult> loadStreetBuildings(final GeocodingResult road, BinaryMapIndexReader reader,
 			GeocodingResult street) throws IOException {
 		final List<GeocodingResult> streetBuildings = new ArrayList<GeocodingResult>();
-		reader.preloadBuildings(street.street, null);
-		log.info("Preload buildings " + street.street.getName() + " " + street.city.getName() + " " + street.street.getId());
+		if (reader != null) {
+			reader.preloadBuildings(street.street, null);
+			log.info("Preload buildings " + street.street.getName() + " " + street.city.getName() + " " + street.street.getId());
+		}
 		for (Building b : street.street.getBuildings()) {
 			if (b.getLatLon2() != null) {
 				double slat = b.getLocation().getLatitude();
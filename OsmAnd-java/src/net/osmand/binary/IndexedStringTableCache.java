@@ -0,0 +1,291 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TByteArrayList;
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import net.osmand.Collator;
+import net.osmand.PlatformUtil;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * In-memory copies of indexed string tables (prefix trees of names used by poi and address search by name)
+ * of many files within memory limit. Table is built after the first search in it (in background by executor
+ * with own file handle or in the calling thread if executor is not set), the next searches don't read file.
+ * Least recently used tables are removed when memory limit is exceeded.
+ * <p>
+ * Table keeps entries of file in the same order (key, values, subtable), so search gives exactly the same
+ * offsets as reading the file.
+ */
+public class IndexedStringTableCache {
+
+	private static final Log log = PlatformUtil.getLog(IndexedStringTableCache.class);
+
+	private final long memoryLimit;
+	private final Executor executor;
+	// access order to evict least recently used tables
+	private final LinkedHashMap<String, StringTable> tables = new LinkedHashMap<String, StringTable>(16, 0.75f, true);
+	private final Set<String> building = new HashSet<String>();
+	private long memoryUsage;
+	private int hits;
+	private int misses;
+
+	/**
+	 * @param executor executor to build tables in background or null to build them in the calling thread
+	 */
+	public IndexedStringTableCache(long memoryLimit, Executor executor) {
+		this.memoryLimit = memoryLimit;
+		this.executor = executor;
+	}
+
+	private static String filePrefix(File file) {
+		return file.getAbsolutePath() + ":";
+	}
+
+	/**
+	 * Tables of file which was replaced (map update) are not found by the key, they're removed as least recently
+	 * used or by {@link #clear(File)}.
+	 */
+	private static String key(File file, long offset) {
+		return filePrefix(file) + file.length() + ":" + file.lastModified() + ":" + offset;
+	}
+
+	public synchronized StringTable get(File file, long offset) {
+		StringTable table = tables.get(key(file, offset));
+		if (table != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return table;
+	}
+
+	boolean isBackground() {
+		return executor != null;
+	}
+
+	/**
+	 * Table is not built if it is bigger than memory limit in file.
+	 */
+	boolean isAllowed(int length) {
+		return length < memoryLimit;
+	}
+
+	public synchronized void put(File file, long offset, StringTable table) {
+		String key = key(file, offset);
+		if (table.getMemoryUsage() > memoryLimit || tables.containsKey(key)) {
+			return;
+		}
+		memoryUsage += table.getMemoryUsage();
+		tables.put(key, table);
+		Iterator<Entry<String, StringTable>> it = tables.entrySet().iterator();
+		while (memoryUsage > memoryLimit && it.hasNext()) {
+			Entry<String, StringTable> e = it.next();
+			memoryUsage -= e.getValue().getMemoryUsage();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Builds table in background (nothing is done if executor is not set or table is already building).
+	 */
+	void build(final File file, final long offset, final int length) {
+		if (executor == null || !isAllowed(length)) {
+			return;
+		}
+		final String key = key(file, offset);
+		synchronized (this) {
+			if (tables.containsKey(key) || !building.add(key)) {
+				return;
+			}
+		}
+		executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					long time = System.currentTimeMillis();
+					RandomAccessFile raf = new RandomAccessFile(file, "r");
+					try {
+						BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, file, false);
+						StringTable table = reader.readIndexedStringTable(offset, length);
+						put(file, offset, table);
+						log.info("String table of " + file.getName() + " (" + table.getMemoryUsage() / 1024 + " kb) is built in "
+								+ (System.currentTimeMillis() - time) + " ms");
+					} finally {
+						raf.close();
+					}
+				} catch (IOException e) {
+					log.error("String table of " + file.getName() + " is not built", e);
+				} finally {
+					synchronized (IndexedStringTableCache.this) {
+						building.remove(key);
+					}
+				}
+			}
+		});
+	}
+
+	public synchronized long getMemoryUsage() {
+		return memoryUsage;
+	}
+
+	public synchronized int size() {
+		return tables.size();
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	public synchronized void clear() {
+		tables.clear();
+		memoryUsage = 0;
+	}
+
+	/**
+	 * Removes tables of file (when file is deleted or replaced).
+	 */
+	public synchronized void clear(File file) {
+		String prefix = filePrefix(file);
+		Iterator<Entry<String, StringTable>> it = tables.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<String, StringTable> e = it.next();
+			if (e.getKey().startsWith(prefix)) {
+				memoryUsage -= e.getValue().getMemoryUsage();
+				it.remove();
+			}
+		}
+	}
+
+	static class StringTableBuilder {
+		private final List<TByteArrayList> types = new ArrayList<TByteArrayList>();
+		private final List<TIntArrayList> args = new ArrayList<TIntArrayList>();
+		private final List<String> keys = new ArrayList<String>();
+
+		int addTable() {
+			types.add(new TByteArrayList());
+			args.add(new TIntArrayList());
+			return types.size() - 1;
+		}
+
+		void addKey(int table, String key) {
+			types.get(table).add(StringTable.KEY);
+			args.get(table).add(keys.size());
+			keys.add(key);
+		}
+
+		void addValue(int table, int value) {
+			types.get(table).add(StringTable.VALUE);
+			args.get(table).add(value);
+		}
+
+		void addSubtable(int table, int subtable) {
+			types.get(table).add(StringTable.SUBTABLE);
+			args.get(table).add(subtable);
+		}
+
+		StringTable build() {
+			int[] tableStart = new int[types.size() + 1];
+			for (int i = 0; i < types.size(); i++) {
+				tableStart[i + 1] = tableStart[i] + types.get(i).size();
+			}
+			byte[] t = new byte[tableStart[types.size()]];
+			int[] a = new int[t.length];
+			for (int i = 0; i < types.size(); i++) {
+				types.get(i).toArray(t, 0, tableStart[i], types.get(i).size());
+				args.get(i).toArray(a, 0, tableStart[i], args.get(i).size());
+			}
+			return new StringTable(keys.toArray(new String[keys.size()]), t, a, tableStart);
+		}
+	}
+
+	/**
+	 * Entries of all tables (subtables included) in flat arrays : type of entry and its argument
+	 * (index of key, value or index of subtable).
+	 */
+	public static class StringTable {
+		static final byte KEY = 0;
+		static final byte VALUE = 1;
+		static final byte SUBTABLE = 2;
+
+		private final String[] keys;
+		private final byte[] types;
+		private final int[] args;
+		private final int[] tableStart;
+		private final long memoryUsage;
+
+		StringTable(String[] keys, byte[] types, int[] args, int[] tableStart) {
+			this.keys = keys;
+			this.types = types;
+			this.args = args;
+			this.tableStart = tableStart;
+			long size = 4 * 16 + types.length * 5l + tableStart.length * 4l + keys.length * 4l;
+			for (String k : keys) {
+				size += 40 + 2 * k.length();
+			}
+			this.memoryUsage = size;
+		}
+
+		public long getMemoryUsage() {
+			return memoryUsage;
+		}
+
+		public int getKeysCount() {
+			return keys.length;
+		}
+
+		/**
+		 * The same search as {@link BinaryMapIndexReader#readIndexedStringTable}.
+		 */
+		public int search(Collator instance, String query, TIntArrayList list) {
+			return search(instance, query, 0, "", list, 0);
+		}
+
+		private int search(Collator instance, String query, int table, String prefix, TIntArrayList list, int charMatches) {
+			String key = null;
+			for (int i = tableStart[table]; i < tableStart[table + 1]; i++) {
+				switch (types[i]) {
+				case KEY:
+					key = keys[args[i]];
+					if (prefix.length() > 0) {
+						key = prefix + key;
+					}
+					int matches = BinaryMapIndexReader.matchIndexedStringKey(instance, key, query, list, charMatches);
+					if (matches < 0) {
+						key = null;
+					} else {
+						charMatches = matches;
+					}
+					break;
+				case VALUE:
+					if (key != null) {
+						list.add(args[i]);
+					}
+					break;
+				case SUBTABLE:
+					if (key != null) {
+						charMatches = search(instance, query, args[i], key, list, charMatches);
+					}
+					break;
+				}
+			}
+			return charMatches;
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader.MapDataObjectVisitor;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+
+/**
+ * Map object decoded into buffers reused for all objects of the search request.
+ * It is passed to {@link MapDataObjectVisitor} and is valid only during the visit call,
+ * {@link BinaryMapDataObject} is created only for objects which visitor wants to keep.
+ * Names are not resolved yet (string table is stored after all objects of the block),
+ * so only name types are available.
+ */
+public class MapDataObjectView {
+
+	final TIntArrayList coordinates = new TIntArrayList();
+	final TIntArrayList types = new TIntArrayList();
+	final TIntArrayList additionalTypes = new TIntArrayList();
+	// name type and index in string table of block
+	final TIntArrayList nameTypes = new TIntArrayList();
+	final TIntArrayList nameIndexes = new TIntArrayList();
+	// object has names field (it could be empty)
+	boolean names;
+	private final List<TIntArrayList> innerPolygons = new ArrayList<TIntArrayList>();
+	int innerPolygonsCount;
+	boolean area;
+	long id;
+	MapIndex mapIndex;
+
+	void clear() {
+		coordinates.resetQuick();
+		types.resetQuick();
+		additionalTypes.resetQuick();
+		nameTypes.resetQuick();
+		nameIndexes.resetQuick();
+		names = false;
+		innerPolygonsCount = 0;
+		area = false;
+		id = 0;
+		mapIndex = null;
+	}
+
+	TIntArrayList addInnerPolygon() {
+		if (innerPolygonsCount == innerPolygons.size()) {
+			innerPolygons.add(new TIntArrayList());
+		}
+		TIntArrayList polygon = innerPolygons.get(innerPolygonsCount++);
+		polygon.resetQuick();
+		return polygon;
+	}
+
+	public boolean isArea() {
+		return area;
+	}
+
+	public long getId() {
+		return id;
+	}
+
+	public MapIndex getMapIndex() {
+		return mapIndex;
+	}
+
+	public int getPointsLength() {
+		return coordinates.size() / 2;
+	}
+
+	public int getPoint31XTile(int ind) {
+		return coordinates.getQuick(2 * ind);
+	}
+
+	public int getPoint31YTile(int ind) {
+		return coordinates.getQuick(2 * ind + 1);
+	}
+
+	public int getTypesLength() {
+		return types.size();
+	}
+
+	public int getType(int ind) {
+		return types.getQuick(ind);
+	}
+
+	public int getAdditionalTypesLength() {
+		return additionalTypes.size();
+	}
+
+	public int getAdditionalType(int ind) {
+		return additionalTypes.getQuick(ind);
+	}
+
+	public boolean containsType(int type) {
+		return types.contains(type) || additionalTypes.contains(type);
+	}
+
+	public int getInnerPolygonsCount() {
+		return innerPolygonsCount;
+	}
+
+	public int getInnerPolygonPointsLength(int polygon) {
+		return innerPolygons.get(polygon).size() / 2;
+	}
+
+	public int getInnerPolygonPoint31XTile(int polygon, int ind) {
+		return innerPolygons.get(polygon).getQuick(2 * ind);
+	}
+
+	public int getInnerPolygonPoint31YTile(int polygon, int ind) {
+		return innerPolygons.get(polygon).getQuick(2 * ind + 1);
+	}
+
+	public int getNamesLength() {
+		return nameTypes.size();
+	}
+
+	public int getNameType(int ind) {
+		return nameTypes.getQuick(ind);
+	}
+
+	/**
+	 * Creates object with own copies of buffers.
+	 */
+	public BinaryMapDataObject toDataObject() {
+		BinaryMapDataObject dataObject = new BinaryMapDataObject();
+		dataObject.area = area;
+		dataObject.coordinates = coordinates.toArray();
+		if (names) {
+			dataObject.objectNames = new TIntObjectHashMap<String>();
+			dataObject.namesOrder = new TIntArrayList(nameTypes.size());
+			for (int i = 0; i < nameTypes.size(); i++) {
+				// replaced with value from string table when block is read
+				dataObject.objectNames.put(nameTypes.getQuick(i), ((char) nameIndexes.getQuick(i)) + "");
+				dataObject.namesOrder.add(nameTypes.getQuick(i));
+			}
+		}
+		dataObject.polygonInnerCoordinates = new int[innerPolygonsCount][];
+		for (int i = 0; i < innerPolygonsCount; i++) {
+			dataObject.polygonInnerCoordinates[i] = innerPolygons.get(i).toArray();
+		}
+		dataObject.types = types.toArray();
+		dataObject.additionalTypes = additionalTypes.toArray();
+		dataObject.id = id;
+		dataObject.mapIndex = mapIndex;
+		return dataObject;
+	}
+}
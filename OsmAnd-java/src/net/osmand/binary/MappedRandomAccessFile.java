@@ -0,0 +1,146 @@
+package net.osmand.binary;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Read-only random access file backed by memory mapped regions of the file.
+ * It could be passed to {@link BinaryMapIndexReader} instead of plain {@link RandomAccessFile}:
+ * CodedInputStream refills its buffer by copying from mapped memory instead of doing seek() + read() system calls.
+ * Files bigger than one region (1 GB by default) are mapped by several regions.
+ * Several files with their own positions could read the same mapped regions (see {@link #MappedRandomAccessFile(MappedRandomAccessFile)}).
+ */
+public class MappedRandomAccessFile extends RandomAccessFile {
+
+	public static final int DEFAULT_REGION_SIZE = 1 << 30;
+
+	private final File file;
+	private final long length;
+	private final int regionSize;
+	// position of mapped buffers is changed on every read, so instance is not thread safe (as RandomAccessFile)
+	private final ByteBuffer[] regions;
+	private long pointer;
+
+	public MappedRandomAccessFile(File file) throws IOException {
+		this(file, DEFAULT_REGION_SIZE);
+	}
+
+	public MappedRandomAccessFile(File file, int regionSize) throws IOException {
+		super(file, "r");
+		if (regionSize <= 0) {
+			throw new IllegalArgumentException("Illegal region size " + regionSize);
+		}
+		this.file = file;
+		this.regionSize = regionSize;
+		FileChannel channel = getChannel();
+		this.length = channel.size();
+		int count = (int) ((length + regionSize - 1) / regionSize);
+		regions = new ByteBuffer[count];
+		for (int i = 0; i < count; i++) {
+			long start = (long) i * regionSize;
+			regions[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, length - start));
+		}
+	}
+
+	/**
+	 * Creates file which reads regions already mapped by other file, file is not mapped again
+	 * (only position is not shared, so both files could be read from different threads).
+	 */
+	public MappedRandomAccessFile(MappedRandomAccessFile mapped) throws IOException {
+		super(mapped.file, "r");
+		this.file = mapped.file;
+		this.regionSize = mapped.regionSize;
+		this.length = mapped.length;
+		regions = new ByteBuffer[mapped.regions.length];
+		for (int i = 0; i < regions.length; i++) {
+			regions[i] = mapped.regions[i].duplicate();
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+
+	public int getRegionSize() {
+		return regionSize;
+	}
+
+	public int getRegionsCount() {
+		return regions.length;
+	}
+
+	@Override
+	public int read() throws IOException {
+		if (pointer >= length) {
+			return -1;
+		}
+		ByteBuffer region = regions[(int) (pointer / regionSize)];
+		int b = region.get((int) (pointer % regionSize)) & 0xff;
+		pointer++;
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b) throws IOException {
+		return read(b, 0, b.length);
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (off < 0 || len < 0 || len > b.length - off) {
+			throw new IndexOutOfBoundsException();
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (pointer >= length) {
+			return -1;
+		}
+		int toRead = (int) Math.min(len, length - pointer);
+		int read = 0;
+		while (read < toRead) {
+			ByteBuffer region = regions[(int) (pointer / regionSize)];
+			int regionPos = (int) (pointer % regionSize);
+			int chunk = Math.min(toRead - read, region.limit() - regionPos);
+			region.position(regionPos);
+			region.get(b, off + read, chunk);
+			read += chunk;
+			pointer += chunk;
+		}
+		return read;
+	}
+
+	@Override
+	public int skipBytes(int n) throws IOException {
+		if (n <= 0) {
+			return 0;
+		}
+		long newPointer = Math.min(pointer + n, length);
+		int skipped = (int) (newPointer - pointer);
+		pointer = newPointer;
+		return skipped;
+	}
+
+	@Override
+	public void seek(long pos) throws IOException {
+		if (pos < 0) {
+			throw new EOFException("Negative seek offset " + pos);
+		}
+		pointer = pos;
+	}
+
+	@Override
+	public long getFilePointer() throws IOException {
+		return pointer;
+	}
+
+	@Override
+	public long length() throws IOException {
+		return length;
+	}
+
+}
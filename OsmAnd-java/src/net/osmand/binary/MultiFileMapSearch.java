@@ -0,0 +1,188 @@
+package net.osmand.binary;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+
+/**
+ * Executes one map search request over many files in parallel.
+ * Every file intersecting the bbox of the request is searched in own task of executor by own copy of request,
+ * objects are published to the original request (and its {@link ResultMatcher}) as soon as they're read.
+ * Objects with the same id found in several files (basemap and detailed map, overlapping border regions)
+ * are published only once. Statistics of file requests (visited objects, read subtrees) are summed in the original request.
+ * When one of files fails or calling thread is interrupted, other tasks are stopped and search returns only
+ * when none of readers is used.
+ * <p>
+ * Reader is not thread safe, so the same reader shouldn't be used by other threads during the search
+ * (readers acquired from {@link BinaryMapReaderPool} could be used).
+ * Map object visitor of the request is called from several threads.
+ */
+public class MultiFileMapSearch {
+
+	private final ExecutorService executor;
+	private final boolean ownExecutor;
+
+	public MultiFileMapSearch(ExecutorService executor) {
+		this.executor = executor;
+		this.ownExecutor = false;
+	}
+
+	public MultiFileMapSearch(int threads) {
+		final AtomicInteger counter = new AtomicInteger();
+		this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "MultiFileMapSearch-" + counter.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		this.ownExecutor = true;
+	}
+
+	public List<BinaryMapDataObject> searchMapIndex(Collection<BinaryMapIndexReader> readers,
+			final SearchRequest<BinaryMapDataObject> req) throws IOException {
+		List<BinaryMapIndexReader> toSearch = new ArrayList<BinaryMapIndexReader>();
+		for (BinaryMapIndexReader reader : readers) {
+			if (!req.isBboxSpecified() || reader.containsMapData(req.left, req.top, req.right, req.bottom, req.zoom)) {
+				toSearch.add(reader);
+			}
+		}
+		final Set<Long> publishedIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		final AtomicBoolean limitExceeded = new AtomicBoolean();
+		final AtomicBoolean stopped = new AtomicBoolean();
+		final AtomicInteger running = new AtomicInteger();
+		req.numberOfVisitedObjects = 0;
+		req.numberOfAcceptedObjects = 0;
+		req.numberOfAcceptedSubtrees = 0;
+		req.numberOfReadSubtrees = 0;
+		List<Future<SearchRequest<BinaryMapDataObject>>> futures = new ArrayList<Future<SearchRequest<BinaryMapDataObject>>>();
+		boolean completed = false;
+		try {
+			for (final BinaryMapIndexReader reader : toSearch) {
+				futures.add(executor.submit(new Callable<SearchRequest<BinaryMapDataObject>>() {
+					@Override
+					public SearchRequest<BinaryMapDataObject> call() throws Exception {
+						running.incrementAndGet();
+						try {
+							SearchRequest<BinaryMapDataObject> fileReq = buildFileRequest(req, publishedIds, limitExceeded);
+							// reader is not used after search is stopped (it could be released by caller)
+							if (!stopped.get() && !fileReq.isCancelled()) {
+								reader.searchMapIndex(fileReq);
+							}
+							return fileReq;
+						} finally {
+							synchronized (running) {
+								running.decrementAndGet();
+								running.notifyAll();
+							}
+						}
+					}
+				}));
+			}
+			for (Future<SearchRequest<BinaryMapDataObject>> f : futures) {
+				SearchRequest<BinaryMapDataObject> fileReq = f.get();
+				req.numberOfVisitedObjects += fileReq.numberOfVisitedObjects;
+				req.numberOfAcceptedObjects += fileReq.numberOfAcceptedObjects;
+				req.numberOfAcceptedSubtrees += fileReq.numberOfAcceptedSubtrees;
+				req.numberOfReadSubtrees += fileReq.numberOfReadSubtrees;
+				if (fileReq.isOcean()) {
+					req.publishOceanTile(true);
+				}
+				if (fileReq.isLand()) {
+					req.publishOceanTile(false);
+				}
+			}
+			completed = true;
+		} catch (InterruptedException e) {
+			req.setInterrupted(true);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			// other tasks are stopped and the first error is reported
+			req.setInterrupted(true);
+			throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+		} finally {
+			if (!completed) {
+				stopped.set(true);
+				for (Future<SearchRequest<BinaryMapDataObject>> f : futures) {
+					f.cancel(false);
+				}
+				waitForTasks(running);
+			}
+		}
+		return req.getSearchResults();
+	}
+
+	// tasks which have started before search is stopped are waited for (even if current thread is interrupted)
+	private static void waitForTasks(AtomicInteger running) {
+		boolean interrupted = false;
+		synchronized (running) {
+			while (running.get() > 0) {
+				try {
+					running.wait();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// results of original request are changed only under its lock, other threads check limit by the shared flag
+	static SearchRequest<BinaryMapDataObject> buildFileRequest(final SearchRequest<BinaryMapDataObject> req,
+			final Set<Long> publishedIds, final AtomicBoolean limitExceeded) {
+		SearchRequest<BinaryMapDataObject> fileReq = BinaryMapIndexReader.buildSearchRequest(req.left, req.right,
+				req.top, req.bottom, req.zoom, req.searchFilter, new ResultMatcher<BinaryMapDataObject>() {
+
+					@Override
+					public boolean publish(BinaryMapDataObject object) {
+						if (!limitExceeded.get() && publishedIds.add(object.getId())) {
+							synchronized (req) {
+								if (!req.limitExceeded()) {
+									req.publish(object);
+								}
+								if (req.limitExceeded()) {
+									limitExceeded.set(true);
+								}
+							}
+						}
+						// results are collected by original request
+						return false;
+					}
+
+					@Override
+					public boolean isCancelled() {
+						return limitExceeded.get() || req.isCancelled();
+					}
+				});
+		fileReq.log = req.log;
+		fileReq.mapObjectVisitor = req.mapObjectVisitor;
+		return fileReq;
+	}
+
+	/**
+	 * Stops threads if executor was created by this instance.
+	 */
+	public void shutdown() {
+		if (ownExecutor) {
+			executor.shutdown();
+		}
+	}
+}
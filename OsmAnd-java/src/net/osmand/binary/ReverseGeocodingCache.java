@@ -0,0 +1,379 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import net.osmand.binary.GeocodingUtilities.GeocodingResult;
+import net.osmand.data.LatLon;
+import net.osmand.data.QuadPoint;
+import net.osmand.data.Street;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutingContext;
+import net.osmand.util.MapUtils;
+
+/**
+ * Cache of reverse geocoding for dense sequences of points (tracks). It keeps within memory limit
+ * (least recently used entries are removed) :
+ * <ul>
+ * <li>roads of tiles (zoom {@link #ROADS_ZOOM}) loaded by routing context with grid index of their segments
+ * to find nearest segments of roads without scanning all roads of routing tiles;</li>
+ * <li>streets found by road name in address index for area (zoom {@link #STREETS_ZOOM} tile) with their cities
+ * and buildings, so address index is searched once for all points of area.</li>
+ * </ul>
+ * Results are the same as of {@link GeocodingUtilities} (roads within
+ * {@link GeocodingUtilities#STOP_SEARCHING_STREET_WITHOUT_MULTIPLIER_RADIUS} are checked). Entries are kept by
+ * map files (and router of roads), cache is thread safe.
+ */
+public class ReverseGeocodingCache {
+
+	public static final int ROADS_ZOOM = 16;
+	public static final int STREETS_ZOOM = 12;
+	// cells of grid index per side of roads tile
+	private static final int CELLS_SHIFT = 3;
+
+	private final long memoryLimit;
+	// access order to evict least recently used entries
+	private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true);
+	private final GeocodingUtilities geocoding = new GeocodingUtilities();
+	private long memoryUsage;
+	private int hits;
+	private int misses;
+
+	private static abstract class CacheEntry {
+		String key;
+		long memoryUsage;
+	}
+
+	/**
+	 * Segments of roads in cells of tile (segment is added to every cell which its bbox intersects).
+	 */
+	static class RoadsTile extends CacheEntry {
+		private final long left;
+		private final long top;
+		private final int cellShift;
+		private final RouteDataObject[] roads;
+		private final int[] cellStart;
+		private final int[] segmentRoads;
+		private final int[] segmentPoints;
+
+		RoadsTile(int tileX, int tileY, List<RouteDataObject> objects) {
+			int cellsSide = 1 << CELLS_SHIFT;
+			cellShift = 31 - ROADS_ZOOM - CELLS_SHIFT;
+			left = ((long) tileX) << (31 - ROADS_ZOOM);
+			top = ((long) tileY) << (31 - ROADS_ZOOM);
+			long right = left + (1l << (31 - ROADS_ZOOM)) - 1;
+			long bottom = top + (1l << (31 - ROADS_ZOOM)) - 1;
+			TIntArrayList[] cells = new TIntArrayList[cellsSide * cellsSide];
+			List<RouteDataObject> tileRoads = new ArrayList<RouteDataObject>();
+			int segments = 0;
+			long size = 64;
+			for (RouteDataObject r : objects) {
+				if (r.getPointsLength() <= 1) {
+					continue;
+				}
+				boolean added = false;
+				for (int j = 1; j < r.getPointsLength(); j++) {
+					long minX = Math.max(left, Math.min(r.getPoint31XTile(j - 1), r.getPoint31XTile(j)));
+					long maxX = Math.min(right, Math.max(r.getPoint31XTile(j - 1), r.getPoint31XTile(j)));
+					long minY = Math.max(top, Math.min(r.getPoint31YTile(j - 1), r.getPoint31YTile(j)));
+					long maxY = Math.min(bottom, Math.max(r.getPoint31YTile(j - 1), r.getPoint31YTile(j)));
+					if (minX > maxX || minY > maxY) {
+						continue;
+					}
+					if (!added) {
+						tileRoads.add(r);
+						size += 100 + r.getPointsLength() * 8l;
+						added = true;
+					}
+					for (int cx = (int) ((minX - left) >> cellShift); cx <= (int) ((maxX - left) >> cellShift); cx++) {
+						for (int cy = (int) ((minY - top) >> cellShift); cy <= (int) ((maxY - top) >> cellShift); cy++) {
+							int c = (cy << CELLS_SHIFT) + cx;
+							if (cells[c] == null) {
+								cells[c] = new TIntArrayList();
+							}
+							cells[c].add(tileRoads.size() - 1);
+							cells[c].add(j);
+							segments++;
+						}
+					}
+				}
+			}
+			roads = tileRoads.toArray(new RouteDataObject[tileRoads.size()]);
+			cellStart = new int[cells.length + 1];
+			segmentRoads = new int[segments];
+			segmentPoints = new int[segments];
+			for (int c = 0; c < cells.length; c++) {
+				int k = cellStart[c];
+				if (cells[c] != null) {
+					for (int i = 0; i < cells[c].size(); i += 2, k++) {
+						segmentRoads[k] = cells[c].get(i);
+						segmentPoints[k] = cells[c].get(i + 1);
+					}
+				}
+				cellStart[c + 1] = k;
+			}
+			memoryUsage = size + segments * 8l + cellStart.length * 4l;
+		}
+
+		int getRoadsCount() {
+			return roads.length;
+		}
+
+		/**
+		 * Puts the nearest segment of every road intersecting bbox to map by road id.
+		 */
+		void search(int px, int py, long bboxLeft, long bboxTop, long bboxRight, long bboxBottom,
+				TLongObjectHashMap<RouteSegmentPoint> nearest) {
+			int maxCell = (1 << CELLS_SHIFT) - 1;
+			int cx1 = (int) Math.max(0, (bboxLeft - left) >> cellShift);
+			int cx2 = (int) Math.min(maxCell, (bboxRight - left) >> cellShift);
+			int cy1 = (int) Math.max(0, (bboxTop - top) >> cellShift);
+			int cy2 = (int) Math.min(maxCell, (bboxBottom - top) >> cellShift);
+			for (int cy = cy1; cy <= cy2; cy++) {
+				for (int cx = cx1; cx <= cx2; cx++) {
+					int c = (cy << CELLS_SHIFT) + cx;
+					for (int k = cellStart[c]; k < cellStart[c + 1]; k++) {
+						RouteDataObject r = roads[segmentRoads[k]];
+						int j = segmentPoints[k];
+						QuadPoint pr = MapUtils.getProjectionPoint31(px, py, r.getPoint31XTile(j - 1),
+								r.getPoint31YTile(j - 1), r.getPoint31XTile(j), r.getPoint31YTile(j));
+						double distSquare = MapUtils.squareDist31TileMetric((int) pr.x, (int) pr.y, px, py);
+						RouteSegmentPoint p = nearest.get(r.getId());
+						if (p == null || distSquare < p.distSquare) {
+							p = new RouteSegmentPoint(r, j, distSquare);
+							p.preciseX = (int) pr.x;
+							p.preciseY = (int) pr.y;
+							nearest.put(r.getId(), p);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static class StreetsEntry extends CacheEntry {
+		private final Street[] streets;
+		private final boolean[] buildingsLoaded;
+
+		StreetsEntry(List<GeocodingResult> found) {
+			streets = new Street[found.size()];
+			buildingsLoaded = new boolean[found.size()];
+			long size = 64;
+			for (int i = 0; i < streets.length; i++) {
+				streets[i] = found.get(i).street;
+				size += 200;
+			}
+			memoryUsage = size;
+		}
+	}
+
+	public ReverseGeocodingCache(long memoryLimit) {
+		this.memoryLimit = memoryLimit;
+	}
+
+	/**
+	 * Nearest segments of roads (with copies of roads) within
+	 * {@link GeocodingUtilities#STOP_SEARCHING_STREET_WITHOUT_MULTIPLIER_RADIUS} sorted by distance.
+	 */
+	public List<RouteSegmentPoint> findRouteSegments(RoutingContext ctx, double lat, double lon) {
+		int px = MapUtils.get31TileNumberX(lon);
+		int py = MapUtils.get31TileNumberY(lat);
+		// meters are the same along x and y in small area of mercator projection
+		double metersPerUnit = MapUtils.measuredDist31(px, py, px + (1 << 12), py) / (1 << 12);
+		long radius = (long) (GeocodingUtilities.STOP_SEARCHING_STREET_WITHOUT_MULTIPLIER_RADIUS / metersPerUnit) + 1;
+		long bboxLeft = Math.max(0, px - radius);
+		long bboxRight = Math.min(Integer.MAX_VALUE, px + radius);
+		long bboxTop = Math.max(0, py - radius);
+		long bboxBottom = Math.min(Integer.MAX_VALUE, py + radius);
+		int shift = 31 - ROADS_ZOOM;
+		TLongObjectHashMap<RouteSegmentPoint> nearest = new TLongObjectHashMap<RouteSegmentPoint>();
+		String roadsKey = getRoadsKey(ctx);
+		for (int tx = (int) (bboxLeft >> shift); tx <= (int) (bboxRight >> shift); tx++) {
+			for (int ty = (int) (bboxTop >> shift); ty <= (int) (bboxBottom >> shift); ty++) {
+				getRoadsTile(ctx, roadsKey, tx, ty).search(px, py, bboxLeft, bboxTop, bboxRight, bboxBottom, nearest);
+			}
+		}
+		List<RouteSegmentPoint> list = new ArrayList<RouteSegmentPoint>(nearest.size());
+		for (RouteSegmentPoint p : nearest.valueCollection()) {
+			// roads of cache are not modified by caller
+			RouteSegmentPoint c = new RouteSegmentPoint(new RouteDataObject(p.getRoad()), p.getSegmentStart(), p.distSquare);
+			c.preciseX = p.preciseX;
+			c.preciseY = p.preciseY;
+			list.add(c);
+		}
+		Collections.sort(list, new Comparator<RouteSegmentPoint>() {
+
+			@Override
+			public int compare(RouteSegmentPoint o1, RouteSegmentPoint o2) {
+				return Double.compare(o1.distSquare, o2.distSquare);
+			}
+		});
+		return list;
+	}
+
+	/**
+	 * The same as {@link GeocodingUtilities#reverseGeocodingSearch(RoutingContext, double, double, boolean)}.
+	 */
+	public List<GeocodingResult> reverseGeocodingSearch(RoutingContext ctx, double lat, double lon, boolean allowEmptyNames) {
+		return geocoding.reverseGeocodingSearch(findRouteSegments(ctx, lat, lon), lat, lon, allowEmptyNames);
+	}
+
+	/**
+	 * The same as {@link GeocodingUtilities#justifyReverseGeocodingSearch(GeocodingResult, BinaryMapIndexReader, double, net.osmand.ResultMatcher)},
+	 * streets and their buildings are taken from cache.
+	 */
+	public List<GeocodingResult> justifyReverseGeocodingSearch(GeocodingResult road, BinaryMapIndexReader reader,
+			double knownMinBuildingDistance) throws IOException {
+		StreetsEntry e = getStreets(road, reader);
+		List<GeocodingResult> streetsList = new ArrayList<GeocodingResult>();
+		List<Integer> indexes = new ArrayList<Integer>();
+		for (int i = 0; i < e.streets.length; i++) {
+			Street s = e.streets[i];
+			if (MapUtils.getDistance(s.getLocation(), road.searchPoint) < GeocodingUtilities.DISTANCE_STREET_NAME_PROXIMITY_BY_NAME) {
+				GeocodingResult rs = new GeocodingResult(road);
+				rs.street = s;
+				rs.connectionPoint = s.getLocation();
+				rs.city = s.getCity();
+				streetsList.add(rs);
+				indexes.add(i);
+			}
+		}
+		// buildings are needed only for streets which are not far from the closest one
+		double closest = Double.MAX_VALUE;
+		for (GeocodingResult rs : streetsList) {
+			closest = Math.min(closest, rs.getDistance());
+		}
+		for (int k = 0; k < streetsList.size(); k++) {
+			if (streetsList.get(k).getDistance() <= closest + GeocodingUtilities.DISTANCE_STREET_FROM_CLOSEST_WITH_SAME_NAME) {
+				loadBuildings(e, indexes.get(k), reader);
+			}
+		}
+		return geocoding.justifyReverseGeocodingSearch(road, streetsList, null, knownMinBuildingDistance);
+	}
+
+	// roads of tiles are loaded from files of context and filtered by its router
+	private static String getRoadsKey(RoutingContext ctx) {
+		StringBuilder key = new StringBuilder("r").append(ctx.config.routerName);
+		for (BinaryMapIndexReader reader : ctx.getMaps()) {
+			key.append(':').append(reader.getFile());
+		}
+		return key.append(':').toString();
+	}
+
+	private RoadsTile getRoadsTile(RoutingContext ctx, String roadsKey, int tx, int ty) {
+		String key = roadsKey + tx + "_" + ty;
+		RoadsTile tile = (RoadsTile) get(key);
+		if (tile == null) {
+			long size = 1l << (31 - ROADS_ZOOM);
+			List<RouteDataObject> objects = new ArrayList<RouteDataObject>();
+			ctx.loadTileData((int) ((((long) tx) << (31 - ROADS_ZOOM)) + size / 2),
+					(int) ((((long) ty) << (31 - ROADS_ZOOM)) + size / 2), ROADS_ZOOM, objects);
+			tile = new RoadsTile(tx, ty, objects);
+			put(key, tile);
+		}
+		return tile;
+	}
+
+	private StreetsEntry getStreets(GeocodingResult road, BinaryMapIndexReader reader) throws IOException {
+		int shift = 31 - STREETS_ZOOM;
+		int tx = MapUtils.get31TileNumberX(road.searchPoint.getLongitude()) >> shift;
+		int ty = MapUtils.get31TileNumberY(road.searchPoint.getLatitude()) >> shift;
+		String key = "s" + reader.getFile() + ":" + road.streetName + ":" + tx + "_" + ty;
+		StreetsEntry e = (StreetsEntry) get(key);
+		if (e == null) {
+			// streets of all points of tile are searched from its center
+			LatLon center = new LatLon(MapUtils.get31LatitudeY((ty << shift) + (1 << (shift - 1))),
+					MapUtils.get31LongitudeX((tx << shift) + (1 << (shift - 1))));
+			LatLon corner = new LatLon(MapUtils.get31LatitudeY(ty << shift), MapUtils.get31LongitudeX(tx << shift));
+			GeocodingResult c = new GeocodingResult();
+			c.searchPoint = center;
+			c.connectionPoint = center;
+			c.streetName = road.streetName;
+			int radius = GeocodingUtilities.DISTANCE_STREET_NAME_PROXIMITY_BY_NAME
+					+ (int) MapUtils.getDistance(center, corner) + 1;
+			e = new StreetsEntry(geocoding.searchStreets(c, reader, radius, null));
+			put(key, e);
+		}
+		return e;
+	}
+
+	private void loadBuildings(StreetsEntry e, int i, BinaryMapIndexReader reader) throws IOException {
+		int buildings;
+		synchronized (e) {
+			if (e.buildingsLoaded[i]) {
+				return;
+			}
+			reader.preloadBuildings(e.streets[i], null);
+			e.buildingsLoaded[i] = true;
+			buildings = e.streets[i].getBuildings().size();
+		}
+		addMemoryUsage(e, buildings * 100l);
+	}
+
+	private synchronized CacheEntry get(String key) {
+		CacheEntry e = entries.get(key);
+		if (e != null) {
+			hits++;
+		} else {
+			misses++;
+		}
+		return e;
+	}
+
+	private synchronized void put(String key, CacheEntry e) {
+		if (e.memoryUsage > memoryLimit || entries.containsKey(key)) {
+			return;
+		}
+		e.key = key;
+		entries.put(key, e);
+		memoryUsage += e.memoryUsage;
+		evict();
+	}
+
+	private synchronized void addMemoryUsage(CacheEntry e, long delta) {
+		e.memoryUsage += delta;
+		if (e.key != null && entries.get(e.key) == e) {
+			memoryUsage += delta;
+			evict();
+		}
+	}
+
+	private void evict() {
+		Iterator<Entry<String, CacheEntry>> it = entries.entrySet().iterator();
+		while (memoryUsage > memoryLimit && it.hasNext()) {
+			Entry<String, CacheEntry> e = it.next();
+			memoryUsage -= e.getValue().memoryUsage;
+			it.remove();
+		}
+	}
+
+	public synchronized long getMemoryUsage() {
+		return memoryUsage;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	public synchronized int getHits() {
+		return hits;
+	}
+
+	public synchronized int getMisses() {
+		return misses;
+	}
+
+	public synchronized void clear() {
+		entries.clear();
+		memoryUsage = 0;
+	}
+}
@@ -35,7 +35,25 @@ public class RouteDataObject {
 	public int[] nameIds;
 	// mixed array [0, height, cumulative_distance height, cumulative_distance, height, ...] - length is length(points)*2
 	public float[] heightDistanceArray = null;
+	// routing attributes (speed, priority, oneway, obstacles) packed by router which calculated them
+	public RoutingAttributes routingAttributes = null;
+	// speeds by time of day (see net.osmand.router.TrafficSpeedProfiles) assigned when routing tile is loaded
+	public byte[] speedProfile = null;
 	
+	/**
+	 * Attributes and their owner are published together, so thread which reads the field never gets attributes
+	 * of other router.
+	 */
+	public static class RoutingAttributes {
+		public final Object owner;
+		public final float[] values;
+
+		public RoutingAttributes(Object owner, float[] values) {
+			this.owner = owner;
+			this.values = values;
+		}
+	}
+
 	public RouteDataObject(RouteRegion region) {
 		this.region = region;
 	}
@@ -61,6 +79,7 @@ public class RouteDataObject {
 		this.pointTypes = copy.pointTypes;
 		this.pointNames = copy.pointNames;
 		this.pointNameTypes = copy.pointNameTypes;
+		this.nameIds = copy.nameIds;
 		this.id = copy.id;
 	}
 	
@@ -417,6 +436,8 @@ public class RouteDataObject {
 		int[][] opointTypes = pointTypes;
 		pointsX = new int[pointsX.length + 1];
 		pointsY = new int[pointsY.length + 1];
+		// obstacles of points are shifted
+		routingAttributes = null;
 		boolean insTypes = this.pointTypes != null && this.pointTypes.length > pos;
 		if (insTypes) {
 			pointTypes = new int[opointTypes.length + 1][];
@@ -0,0 +1,314 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Calculates the best route and alternative routes between 2 points with router of routing context.
+ * <p>
+ * Alternatives are found by plateau method : bidirectional search continues after the best route is found
+ * (while routes are not longer than {@link #setMaxStretch} of the best one) and every segment where forward and
+ * reverse search trees meet gives via route (forward tree to the segment and reverse tree from it).
+ * Via routes are taken by time if they have no loops and share not more than {@link #setMaxSimilarity} of
+ * distance with every taken route. If there are not enough of them, search is repeated with time on roads
+ * of found routes multiplied by penalty.
+ * <p>
+ * Every route is prepared by {@link RouteResultPreparation} and has precise start and end points
+ * (start and end roads are copied for every route, so roads of context are not modified).
+ */
+public class AlternativeRoutesCalculator {
+
+	private final static Log log = PlatformUtil.getLog(AlternativeRoutesCalculator.class);
+
+	private final RoutingContext ctx;
+	private int maxRoutes = 3;
+	private float maxStretch = 1.3f;
+	private float maxSimilarity = 0.7f;
+	private float searchExpansion = 1f;
+	private float penalty = 1.5f;
+
+	// state of search
+	private final List<FinalRouteSegment> viaSegments = new ArrayList<FinalRouteSegment>();
+	private float maxTime;
+	private int maxVisitedSegments;
+
+	static class Candidate {
+		final List<RouteSegmentResult> segments;
+		// start point of edge by its end point (route passes every point once)
+		final TLongObjectHashMap<Long> edges = new TLongObjectHashMap<Long>();
+		double length;
+		boolean prepared;
+
+		Candidate(List<RouteSegmentResult> segments) {
+			this.segments = segments;
+		}
+	}
+
+	public AlternativeRoutesCalculator(RoutingContext ctx) {
+		this.ctx = ctx;
+	}
+
+	/**
+	 * Number of routes including the best one (3 by default).
+	 */
+	public void setMaxRoutes(int maxRoutes) {
+		this.maxRoutes = maxRoutes;
+	}
+
+	/**
+	 * Alternative route could be slower than the best one not more than in this ratio (1.3 by default).
+	 */
+	public void setMaxStretch(float maxStretch) {
+		this.maxStretch = maxStretch;
+	}
+
+	/**
+	 * Max part of route distance which could be shared with every other route (0.7 by default).
+	 */
+	public void setMaxSimilarity(float maxSimilarity) {
+		this.maxSimilarity = maxSimilarity;
+	}
+
+	/**
+	 * Search continues after the best route is found while visited segments are not more than
+	 * (1 + expansion) of segments visited to find the best route (1 by default).
+	 */
+	public void setSearchExpansion(float searchExpansion) {
+		this.searchExpansion = searchExpansion;
+	}
+
+	/**
+	 * Multiplier of time on roads of found routes when search is repeated (1.5 by default).
+	 */
+	public void setPenalty(float penalty) {
+		this.penalty = penalty;
+	}
+
+	/**
+	 * @return routes sorted by time (the first is the best route), empty if route is not found
+	 * or null if start or end point is not found on roads
+	 */
+	public List<List<RouteSegmentResult>> calculate(LatLon start, LatLon end) throws IOException, InterruptedException {
+		long time = System.nanoTime();
+		RoutePlannerFrontEnd frontEnd = new RoutePlannerFrontEnd(false);
+		RouteSegmentPoint sp = frontEnd.findRouteSegment(start.getLatitude(), start.getLongitude(), ctx, null);
+		RouteSegmentPoint ep = frontEnd.findRouteSegment(end.getLatitude(), end.getLongitude(), ctx, null);
+		if (sp == null || ep == null) {
+			return null;
+		}
+		if (ctx.calculationProgress == null) {
+			ctx.calculationProgress = new RouteCalculationProgress();
+		}
+		List<List<RouteSegmentResult>> res = new ArrayList<List<RouteSegmentResult>>();
+		ctx.initStartAndTargetPoints(sp, ep);
+		viaSegments.clear();
+		maxTime = 0;
+		FinalRouteSegment best = new BinaryRoutePlanner().searchRouteInternal(ctx, sp, ep, null, this);
+		if (best == null) {
+			return res;
+		}
+		float bestTime = best.distanceFromStart;
+		int visitedSegments = ctx.visitedSegments;
+		RouteResultPreparation preparation = new RouteResultPreparation();
+		List<Candidate> routes = new ArrayList<Candidate>();
+		Collections.sort(viaSegments, new Comparator<FinalRouteSegment>() {
+			@Override
+			public int compare(FinalRouteSegment o1, FinalRouteSegment o2) {
+				return Float.compare(o1.distanceFromStart, o2.distanceFromStart);
+			}
+		});
+		for (FinalRouteSegment via : viaSegments) {
+			if (routes.size() >= maxRoutes) {
+				break;
+			}
+			Candidate c = createCandidate(preparation.convertFinalSegmentToResults(ctx, via));
+			if (c != null && (routes.isEmpty() || isDifferent(c, routes))) {
+				routes.add(c);
+			}
+		}
+		int plateauRoutes = routes.size();
+		viaSegments.clear();
+
+		// penalty method
+		float bestPreparedTime = -1;
+		TLongHashSet penalizedRoads = new TLongHashSet();
+		for (int attempt = 0; attempt < maxRoutes && routes.size() < maxRoutes && !routes.isEmpty(); attempt++) {
+			for (Candidate c : routes) {
+				addRoads(penalizedRoads, c.segments);
+			}
+			if (bestPreparedTime < 0) {
+				bestPreparedTime = getTime(prepare(routes.get(0)));
+			}
+			ctx.penalizedRoads = penalizedRoads;
+			ctx.roadPenalty = penalty;
+			FinalRouteSegment f;
+			try {
+				f = new BinaryRoutePlanner().searchRouteInternal(ctx, sp, ep, null);
+			} finally {
+				ctx.penalizedRoads = null;
+				ctx.roadPenalty = 1;
+			}
+			visitedSegments += ctx.visitedSegments;
+			if (f == null) {
+				break;
+			}
+			Candidate c = createCandidate(preparation.convertFinalSegmentToResults(ctx, f));
+			if (c == null) {
+				continue;
+			}
+			addRoads(penalizedRoads, c.segments);
+			if (getTime(prepare(c)) <= bestPreparedTime * maxStretch && isDifferent(c, routes)) {
+				routes.add(c);
+			}
+		}
+
+		for (Candidate c : routes) {
+			List<RouteSegmentResult> route = prepare(c);
+			frontEnd.makeStartEndPointsPrecise(ctx, route, start, end, null);
+			res.add(route);
+		}
+		ctx.routingTime = bestTime;
+		ctx.visitedSegments = visitedSegments;
+		log.info("Alternative routes : " + res.size() + " routes (" + plateauRoutes + " by plateau), "
+				+ visitedSegments + " segments visited in " + (System.nanoTime() - time) / 1e6 + " ms");
+		return res;
+	}
+
+	/**
+	 * @return false if search should be stopped
+	 */
+	boolean continueSearch(RoutingContext ctx, RouteSegment segment, RouteSegment opposite) {
+		if (opposite == null || ctx.visitedSegments > maxVisitedSegments
+				|| ctx.memoryOverhead > ctx.config.memoryLimitation * 0.9) {
+			return false;
+		}
+		return segment.distanceFromStart + segment.distanceToEnd <= maxTime
+				|| opposite.distanceFromStart + opposite.distanceToEnd <= maxTime;
+	}
+
+	void addViaSegment(RoutingContext ctx, FinalRouteSegment segment) {
+		if (viaSegments.isEmpty()) {
+			maxTime = segment.distanceFromStart * maxStretch;
+			maxVisitedSegments = (int) (ctx.visitedSegments * (1 + searchExpansion));
+		}
+		if (segment.distanceFromStart <= maxTime) {
+			viaSegments.add(segment);
+		}
+	}
+
+	private List<RouteSegmentResult> prepare(Candidate c) throws IOException {
+		if (!c.prepared) {
+			// precise points are inserted into copies of start and end roads
+			copyRoad(c.segments, 0);
+			copyRoad(c.segments, c.segments.size() - 1);
+			new RouteResultPreparation().prepareResult(ctx, c.segments);
+			c.prepared = true;
+		}
+		return c.segments;
+	}
+
+	private static void copyRoad(List<RouteSegmentResult> segments, int i) {
+		RouteSegmentResult s = segments.get(i);
+		RouteSegmentResult copy = new RouteSegmentResult(new RouteDataObject(s.getObject()), s.getStartPointIndex(),
+				s.getEndPointIndex());
+		copy.setRoutingTime(s.getRoutingTime());
+		segments.set(i, copy);
+	}
+
+	private static float getTime(List<RouteSegmentResult> segments) {
+		float time = 0;
+		for (RouteSegmentResult s : segments) {
+			time += s.getSegmentTime();
+		}
+		return time;
+	}
+
+	private static void addRoads(TLongHashSet roads, List<RouteSegmentResult> segments) {
+		for (RouteSegmentResult s : segments) {
+			roads.add(s.getObject().getId());
+		}
+	}
+
+	/**
+	 * @return candidate with edges of route or null if route is empty or passes the same point twice
+	 */
+	static Candidate createCandidate(List<RouteSegmentResult> segments) {
+		if (segments.isEmpty()) {
+			return null;
+		}
+		Candidate c = new Candidate(segments);
+		TLongHashSet points = new TLongHashSet();
+		RouteSegmentResult first = segments.get(0);
+		points.add(ContractionHierarchy.nodeKey(first.getObject().getPoint31XTile(first.getStartPointIndex()),
+				first.getObject().getPoint31YTile(first.getStartPointIndex())));
+		for (RouteSegmentResult s : segments) {
+			RouteDataObject road = s.getObject();
+			int step = s.getStartPointIndex() < s.getEndPointIndex() ? 1 : -1;
+			for (int i = s.getStartPointIndex(); i != s.getEndPointIndex(); i += step) {
+				int x = road.getPoint31XTile(i);
+				int y = road.getPoint31YTile(i);
+				int nx = road.getPoint31XTile(i + step);
+				int ny = road.getPoint31YTile(i + step);
+				if (x == nx && y == ny) {
+					continue;
+				}
+				long point = ContractionHierarchy.nodeKey(nx, ny);
+				if (!points.add(point)) {
+					return null;
+				}
+				c.edges.put(point, ContractionHierarchy.nodeKey(x, y));
+				c.length += BinaryRoutePlanner.squareRootDist(x, y, nx, ny);
+			}
+		}
+		return c;
+	}
+
+	/**
+	 * Part of candidate distance shared with route.
+	 */
+	static double getSimilarity(Candidate c, Candidate route) {
+		if (c.length == 0) {
+			return 1;
+		}
+		double shared = 0;
+		for (RouteSegmentResult s : c.segments) {
+			RouteDataObject road = s.getObject();
+			int step = s.getStartPointIndex() < s.getEndPointIndex() ? 1 : -1;
+			for (int i = s.getStartPointIndex(); i != s.getEndPointIndex(); i += step) {
+				int x = road.getPoint31XTile(i);
+				int y = road.getPoint31YTile(i);
+				int nx = road.getPoint31XTile(i + step);
+				int ny = road.getPoint31YTile(i + step);
+				Long start = route.edges.get(ContractionHierarchy.nodeKey(nx, ny));
+				if (start != null && start.longValue() == ContractionHierarchy.nodeKey(x, y)) {
+					shared += BinaryRoutePlanner.squareRootDist(x, y, nx, ny);
+				}
+			}
+		}
+		return shared / c.length;
+	}
+
+	private boolean isDifferent(Candidate c, List<Candidate> routes) {
+		for (Candidate r : routes) {
+			if (getSimilarity(c, r) > maxSimilarity) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
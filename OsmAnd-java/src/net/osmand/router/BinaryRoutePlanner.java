@@ -1,13 +1,10 @@
 package net.osmand.router;
 
-import gnu.trove.map.hash.TLongObjectHashMap;
-
 import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
-import java.util.PriorityQueue;
 
 import net.osmand.PlatformUtil;
 import net.osmand.binary.RouteDataObject;
@@ -22,8 +19,8 @@ public class BinaryRoutePlanner {
 	private static final boolean TEST_SPECIFIC = false;
 
 	private static final int REVERSE_WAY_RESTRICTION_ONLY = 1024;
-	/*private*/ static final int STANDARD_ROAD_IN_QUEUE_OVERHEAD = 220;
-	/*private*/ static final int STANDARD_ROAD_VISITED_OVERHEAD = 150;
+	// visited segments between predictions of tiles to load in background
+	private static final int PREFETCH_INTERVAL = 64;
 
 	protected static final Log log = PlatformUtil.getLog(BinaryRoutePlanner.class);
 
@@ -37,19 +34,6 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private static class SegmentsComparator implements Comparator<RouteSegment> {
-		final RoutingContext ctx;
-
-		public SegmentsComparator(RoutingContext ctx) {
-			this.ctx = ctx;
-		}
-
-		@Override
-		public int compare(RouteSegment o1, RouteSegment o2) {
-			return ctx.roadPriorityComparator(o1.distanceFromStart, o1.distanceToEnd, o2.distanceFromStart, o2.distanceToEnd);
-		}
-	}
-
 	private static class NonHeuristicSegmentsComparator implements Comparator<RouteSegment> {
 		public NonHeuristicSegmentsComparator() {
 		}
@@ -64,11 +48,21 @@ public class BinaryRoutePlanner {
 	 * Calculate route between start.segmentEnd and end.segmentStart (using A* algorithm)
 	 * return list of segments
 	 */
-	@SuppressWarnings("unused")
 	FinalRouteSegment searchRouteInternal(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
 			RouteSegment recalculationEnd ) throws InterruptedException, IOException {
+		return searchRouteInternal(ctx, start, end, recalculationEnd, null);
+	}
+
+	/**
+	 * Calculate route (see above), if alternatives are not null search continues after the best route is found
+	 * and segments where forward and reverse search meet are collected as via segments of alternative routes.
+	 */
+	@SuppressWarnings("unused")
+	FinalRouteSegment searchRouteInternal(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
+			RouteSegment recalculationEnd, AlternativeRoutesCalculator alternatives) throws InterruptedException, IOException {
 		// measure time
 		ctx.timeToLoad = 0;
+		ctx.timeToLoadHidden = 0;
 		ctx.visitedSegments = 0;
 		ctx.memoryOverhead = 1000;
 		ctx.timeToCalculate = System.nanoTime();
@@ -76,12 +70,12 @@ public class BinaryRoutePlanner {
 
 		// Initializing priority queue to visit way segments 
 		Comparator<RouteSegment> nonHeuristicSegmentsComparator = new NonHeuristicSegmentsComparator();
-		PriorityQueue<RouteSegment> graphDirectSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
-		PriorityQueue<RouteSegment> graphReverseSegments = new PriorityQueue<RouteSegment>(50, new SegmentsComparator(ctx));
+		RouteSegmentQueue graphDirectSegments = new RouteSegmentQueue(ctx.config.heuristicCoefficient);
+		RouteSegmentQueue graphReverseSegments = new RouteSegmentQueue(ctx.config.heuristicCoefficient);
 
 		// Set to not visit one segment twice (stores road.id << X + segmentStart)
-		TLongObjectHashMap<RouteSegment> visitedDirectSegments = new TLongObjectHashMap<RouteSegment>();
-		TLongObjectHashMap<RouteSegment> visitedOppositeSegments = new TLongObjectHashMap<RouteSegment>();
+		VisitedSegmentsMap visitedDirectSegments = new VisitedSegmentsMap();
+		VisitedSegmentsMap visitedOppositeSegments = new VisitedSegmentsMap();
 
 		initQueuesWithStartEnd(ctx, start, end, recalculationEnd, graphDirectSegments, graphReverseSegments, 
 				visitedDirectSegments, visitedOppositeSegments);
@@ -89,7 +83,7 @@ public class BinaryRoutePlanner {
 		// Extract & analyze segment with min(f(x)) from queue while final segment is not found
 		boolean forwardSearch = true;
 
-		PriorityQueue<RouteSegment> graphSegments = graphDirectSegments;
+		RouteSegmentQueue graphSegments = graphDirectSegments;
 
 		FinalRouteSegment finalSegment = null;
 		boolean onlyBackward = ctx.getPlanRoadDirection() < 0;
@@ -97,25 +91,34 @@ public class BinaryRoutePlanner {
 		while (!graphSegments.isEmpty()) {
 			RouteSegment segment = graphSegments.poll();
 			// use accumulative approach
-			ctx.memoryOverhead = (visitedDirectSegments.size() + visitedOppositeSegments.size()) * STANDARD_ROAD_VISITED_OVERHEAD +
-					(graphDirectSegments.size() +
-					graphReverseSegments.size()) * STANDARD_ROAD_IN_QUEUE_OVERHEAD;
+			ctx.memoryOverhead = (int) (getMemoryUsage(graphDirectSegments, visitedDirectSegments)
+					+ getMemoryUsage(graphReverseSegments, visitedOppositeSegments)) + ctx.getPrefetchedMemoryUsage();
 			
 			if (TRACE_ROUTING) {
 				printRoad(">", segment, !forwardSearch);
 			}
 //			if(segment.getParentRoute() != null)
 //			System.out.println(segment.getRoad().getId() + " - " + segment.getParentRoute().getRoad().getId());
+			if (finalSegment != null && !alternatives.continueSearch(ctx, segment,
+					forwardSearch ? graphReverseSegments.peek() : graphDirectSegments.peek())) {
+				break;
+			}
 			if (segment instanceof FinalRouteSegment) {
-				if (RoutingContext.SHOW_GC_SIZE) {
-					log.warn("Estimated overhead " + (ctx.memoryOverhead / (1 << 20)) + " mb");
-					printMemoryConsumption("Memory occupied after calculation : ");
+				if (finalSegment == null) {
+					if (RoutingContext.SHOW_GC_SIZE) {
+						log.warn("Estimated overhead " + (ctx.memoryOverhead / (1 << 20)) + " mb");
+						printMemoryConsumption("Memory occupied after calculation : ");
+					}
+					finalSegment = (FinalRouteSegment) segment;
+					if (TRACE_ROUTING) {
+						println("Final segment found");
+					}
 				}
-				finalSegment = (FinalRouteSegment) segment;
-				if (TRACE_ROUTING) {
-					println("Final segment found");
+				if (alternatives == null) {
+					break;
 				}
-				break;
+				alternatives.addViaSegment(ctx, (FinalRouteSegment) segment);
+				continue;
 			}
 			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95 && RoutingContext.SHOW_GC_SIZE) {
 				printMemoryConsumption("Memory occupied before exception : ");
@@ -134,11 +137,22 @@ public class BinaryRoutePlanner {
 						visitedDirectSegments, doNotAddIntersections);
 			}
 			updateCalculationProgress(ctx, graphDirectSegments, graphReverseSegments);
+			if (ctx.visitedSegments % PREFETCH_INTERVAL == 0) {
+				ctx.prefetchTiles(graphDirectSegments.peek(), graphReverseSegments.peek());
+			}
 
-			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() <= 0, graphReverseSegments, end, visitedOppositeSegments,
-					"Route is not found to selected target point.");
-			checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() >= 0, graphDirectSegments, start, visitedDirectSegments,
-					"Route is not found from selected start point.");
+			if (finalSegment != null) {
+				// search for alternatives ends when one of directions has nothing to visit, the best route is kept
+				if ((ctx.getPlanRoadDirection() <= 0 && graphReverseSegments.isEmpty())
+						|| (ctx.getPlanRoadDirection() >= 0 && graphDirectSegments.isEmpty())) {
+					break;
+				}
+			} else {
+				checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() <= 0, graphReverseSegments, end, visitedOppositeSegments,
+						"Route is not found to selected target point.");
+				checkIfGraphIsEmpty(ctx, ctx.getPlanRoadDirection() >= 0, graphDirectSegments, start, visitedDirectSegments,
+						"Route is not found from selected start point.");
+			}
 			if (ctx.planRouteIn2Directions()) {
 				forwardSearch = (nonHeuristicSegmentsComparator.compare(graphDirectSegments.peek(), graphReverseSegments.peek()) < 0);
 //				if (graphDirectSegments.size() * 2 > graphReverseSegments.size()) {
@@ -168,11 +182,86 @@ public class BinaryRoutePlanner {
 			}
 		}
 		printDebugMemoryInformation(ctx, graphDirectSegments, graphReverseSegments, visitedDirectSegments, visitedOppositeSegments);
+		if (ctx.config.incrementalRecalculation && finalSegment != null && recalculationEnd == null
+				&& ctx.getPlanRoadDirection() <= 0 && ctx.penalizedRoads == null) {
+			ReverseSearchTree tree = new ReverseSearchTree(ctx, end, visitedOppositeSegments);
+			if (tree.getMemoryUsage() < ctx.config.memoryLimitation * ReverseSearchTree.MAX_MEMORY_PART) {
+				ctx.reverseSearchTree = tree;
+			} else {
+				log.info("Reverse search tree isn't kept " + tree.getMemoryUsage() / (1 << 20) + " mb");
+			}
+		}
+		return finalSegment;
+	}
+
+	/**
+	 * Calculate route from start point to the target of reverse search tree kept from previous calculation.
+	 * Only forward search is done and it stops when it reaches the tree.
+	 * return final segment or null if the tree is not reached
+	 */
+	FinalRouteSegment searchRouteIncremental(final RoutingContext ctx, RouteSegmentPoint start, ReverseSearchTree tree)
+			throws InterruptedException, IOException {
+		ctx.timeToLoad = 0;
+		ctx.timeToLoadHidden = 0;
+		ctx.visitedSegments = 0;
+		ctx.memoryOverhead = 1000;
+		ctx.timeToCalculate = System.nanoTime();
+		ctx.targetX = tree.targetX;
+		ctx.targetY = tree.targetY;
+
+		RouteSegmentQueue graphDirectSegments = new RouteSegmentQueue(ctx.config.heuristicCoefficient);
+		// reverse search is not continued
+		RouteSegmentQueue graphReverseSegments = new RouteSegmentQueue(ctx.config.heuristicCoefficient);
+		VisitedSegmentsMap visitedDirectSegments = new VisitedSegmentsMap();
+		VisitedSegmentsMap visitedOppositeSegments = tree.visited;
+
+		RouteSegment startPos = initRouteSegment(ctx, start, true);
+		RouteSegment startNeg = initRouteSegment(ctx, start, false);
+		checkInitialDirection(ctx, start, startPos, startNeg);
+		float estimatedDistance = estimatedDistance(ctx, ctx.targetX, ctx.targetY, ctx.startX, ctx.startY);
+		if (startPos != null) {
+			startPos.distanceToEnd = estimatedDistance;
+			graphDirectSegments.add(startPos);
+		}
+		if (startNeg != null) {
+			startNeg.distanceToEnd = estimatedDistance;
+			graphDirectSegments.add(startNeg);
+		}
+		FinalRouteSegment finalSegment = null;
+		while (!graphDirectSegments.isEmpty()) {
+			RouteSegment segment = graphDirectSegments.poll();
+			// visited segments of tree (and their roads) are counted by tree
+			ctx.memoryOverhead = (int) (getMemoryUsage(graphDirectSegments, visitedDirectSegments) + tree.getMemoryUsage())
+					+ ctx.getPrefetchedMemoryUsage();
+			if (segment instanceof FinalRouteSegment) {
+				finalSegment = (FinalRouteSegment) segment;
+				break;
+			}
+			if (ctx.memoryOverhead > ctx.config.memoryLimitation * 0.95) {
+				throw new IllegalStateException("There is no enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+			}
+			ctx.visitedSegments++;
+			processRouteSegment(ctx, false, graphDirectSegments, visitedDirectSegments, segment, visitedOppositeSegments,
+					false);
+			updateCalculationProgress(ctx, graphDirectSegments, graphReverseSegments);
+			if (ctx.visitedSegments % PREFETCH_INTERVAL == 0) {
+				ctx.prefetchTiles(graphDirectSegments.peek(), null);
+			}
+			if (ctx.calculationProgress != null && ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException("Route calculation interrupted");
+			}
+		}
+		if (finalSegment != null) {
+			tree.reused++;
+		}
+		printInfo("Incremental recalculation (tree used " + tree.reused + " times, " + visitedOppositeSegments.size()
+				+ " segments) : " + (finalSegment != null ? "tree is reached" : "tree is not reached"));
+		printDebugMemoryInformation(ctx, graphDirectSegments, null, visitedDirectSegments, visitedOppositeSegments);
 		return finalSegment;
 	}
 
 	protected void checkIfGraphIsEmpty(final RoutingContext ctx, boolean allowDirection,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegmentPoint pnt, TLongObjectHashMap<RouteSegment> visited,
+			RouteSegmentQueue graphSegments, RouteSegmentPoint pnt, VisitedSegmentsMap visited,
 			String msg) {
 		if (allowDirection && graphSegments.isEmpty()) {
 			if (pnt.others != null) {
@@ -242,27 +331,14 @@ public class BinaryRoutePlanner {
 
 
 	private void initQueuesWithStartEnd(final RoutingContext ctx, RouteSegment start, RouteSegment end,
-			RouteSegment recalculationEnd, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
-			TLongObjectHashMap<RouteSegment> visitedDirectSegments, TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
+			RouteSegment recalculationEnd, RouteSegmentQueue graphDirectSegments, RouteSegmentQueue graphReverseSegments, 
+			VisitedSegmentsMap visitedDirectSegments, VisitedSegmentsMap visitedOppositeSegments) {
 		RouteSegment startPos = initRouteSegment(ctx, start, true);
 		RouteSegment startNeg = initRouteSegment(ctx, start, false);
 		RouteSegment endPos = initRouteSegment(ctx, end, true);
 		RouteSegment endNeg = initRouteSegment(ctx, end, false);
 		// for start : f(start) = g(start) + h(start) = 0 + h(start) = h(start)
-		if (ctx.config.initialDirection != null) {
-			// mark here as positive for further check
-			double plusDir = start.getRoad().directionRoute(start.getSegmentStart(), true);
-			double diff = plusDir - ctx.config.initialDirection;
-			if (Math.abs(MapUtils.alignAngleDifference(diff)) <= Math.PI / 3) {
-				if (startNeg != null) {
-					startNeg.distanceFromStart += 500;
-				}
-			} else if (Math.abs(MapUtils.alignAngleDifference(diff - Math.PI)) <= Math.PI / 3) {
-				if (startPos != null) {
-					startPos.distanceFromStart += 500;
-				}
-			}
-		}
+		checkInitialDirection(ctx, start, startPos, startNeg);
 		if (recalculationEnd != null) {
 			ctx.targetX = recalculationEnd.getRoad().getPoint31XTile(recalculationEnd.getSegmentStart());
 			ctx.targetY = recalculationEnd.getRoad().getPoint31YTile(recalculationEnd.getSegmentStart());
@@ -297,6 +373,25 @@ public class BinaryRoutePlanner {
 	}
 
 
+	private void checkInitialDirection(final RoutingContext ctx, RouteSegment start, RouteSegment startPos,
+			RouteSegment startNeg) {
+		if (ctx.config.initialDirection != null) {
+			// mark here as positive for further check
+			double plusDir = start.getRoad().directionRoute(start.getSegmentStart(), true);
+			double diff = plusDir - ctx.config.initialDirection;
+			if (Math.abs(MapUtils.alignAngleDifference(diff)) <= Math.PI / 3) {
+				if (startNeg != null) {
+					startNeg.distanceFromStart += 500;
+				}
+			} else if (Math.abs(MapUtils.alignAngleDifference(diff - Math.PI)) <= Math.PI / 3) {
+				if (startPos != null) {
+					startPos.distanceFromStart += 500;
+				}
+			}
+		}
+	}
+
+
 	private void printMemoryConsumption(String string) {
 		long h1 = RoutingContext.runGCUsedMemory();
 		float mb = (1 << 20);
@@ -304,8 +399,8 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private void updateCalculationProgress(final RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments,
-			PriorityQueue<RouteSegment> graphReverseSegments) {
+	private void updateCalculationProgress(final RoutingContext ctx, RouteSegmentQueue graphDirectSegments,
+			RouteSegmentQueue graphReverseSegments) {
 		if (ctx.calculationProgress != null) {
 			ctx.calculationProgress.reverseSegmentQueueSize = graphReverseSegments.size();
 			ctx.calculationProgress.directSegmentQueueSize = graphDirectSegments.size();
@@ -358,6 +453,14 @@ public class BinaryRoutePlanner {
 		return (float) result;
 	}
 
+	/**
+	 * Memory of queue and visited map of search direction and of segments created by search they refer to
+	 * (roads of segments belong to tiles of context).
+	 */
+	static long getMemoryUsage(RouteSegmentQueue queue, VisitedSegmentsMap visited) {
+		return queue.getMemoryUsage() + visited.getMemoryUsage()
+				+ (long) (queue.size() + visited.size()) * RouteTileCompactor.ROUTE_SEGMENT;
+	}
 
 	private static void println(String logMsg) {
 //		log.info(logMsg);
@@ -368,10 +471,11 @@ public class BinaryRoutePlanner {
 		log.warn(logMsg);
 	}
 	
-	public void printDebugMemoryInformation(RoutingContext ctx, PriorityQueue<RouteSegment> graphDirectSegments, PriorityQueue<RouteSegment> graphReverseSegments, 
-			TLongObjectHashMap<RouteSegment> visitedDirectSegments,TLongObjectHashMap<RouteSegment> visitedOppositeSegments) {
+	public void printDebugMemoryInformation(RoutingContext ctx, RouteSegmentQueue graphDirectSegments, RouteSegmentQueue graphReverseSegments, 
+			VisitedSegmentsMap visitedDirectSegments,VisitedSegmentsMap visitedOppositeSegments) {
 		printInfo("Time to calculate : " + (System.nanoTime() - ctx.timeToCalculate) / 1e6 + 
-				", time to load : " + ctx.timeToLoad / 1e6 + ", time to load headers : " + ctx.timeToLoadHeaders / 1e6 + 
+				", time to load : " + ctx.timeToLoad / 1e6 + " (hidden by prefetch : " + ctx.timeToLoadHidden / 1e6 + ")" +
+				", time to load headers : " + ctx.timeToLoadHeaders / 1e6 + 
 				", time to calc dev : " + ctx.timeNanoToCalcDeviation/ 1e6);
 		int maxLoadedTiles = Math.max(ctx.maxLoadedTiles, ctx.getCurrentlyLoadedTiles());
 		printInfo("Current loaded tiles : " + ctx.getCurrentlyLoadedTiles() + ", maximum loaded tiles " + maxLoadedTiles);
@@ -379,6 +483,8 @@ public class BinaryRoutePlanner {
 				", loaded more than once same tiles "
 				+ ctx.loadedPrevUnloadedTiles);
 		printInfo("Visited roads " + ctx.visitedSegments + ", relaxed roads " + ctx.relaxedSegments);
+		printInfo("Routing attributes of " + ctx.global.attributes + " roads (" + ctx.global.attributesSize / 1024
+				+ " KB) calculated in " + ctx.global.timeToCalcAttributes / 1e6 + " ms");
 		if (graphDirectSegments != null && graphReverseSegments != null) {
 			printInfo("Priority queues sizes : " + graphDirectSegments.size() + "/" + graphReverseSegments.size());
 		}
@@ -391,8 +497,8 @@ public class BinaryRoutePlanner {
 
 	@SuppressWarnings("unused")
 	private void processRouteSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, TLongObjectHashMap<RouteSegment> visitedSegments, 
-            RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments, boolean doNotAddIntersections) throws IOException {
+			RouteSegmentQueue graphSegments, VisitedSegmentsMap visitedSegments, 
+            RouteSegment segment, VisitedSegmentsMap oppositeSegments, boolean doNotAddIntersections) throws IOException {
 		final RouteDataObject road = segment.road;
 		boolean initDirectionAllowed = checkIfInitialMovementAllowedOnSegment(ctx, reverseWaySearch, visitedSegments, segment, road);
 		if (TEST_SPECIFIC && road.getId() >> 6 == TEST_ID) {
@@ -475,7 +581,8 @@ public class BinaryRoutePlanner {
 			// could be expensive calculation
 			// 3. get intersected ways
 			final RouteSegment roadNext = ctx.loadRouteSegment(x, y, ctx.config.memoryLimitation - ctx.memoryOverhead);
-			float distStartObstacles = segment.distanceFromStart + calculateTimeWithObstacles(ctx, road, segmentDist, obstaclesTime);
+			float distStartObstacles = segment.distanceFromStart + calculateTimeWithObstacles(ctx, road, segmentDist, obstaclesTime,
+					reverseWaySearch ? segment.distanceToEnd : segment.distanceFromStart);
 			if (ctx.precalculatedRouteDirection != null && ctx.precalculatedRouteDirection.isFollowNext()) {
 				// reset to f
 //				distStartObstacles = 0;
@@ -497,7 +604,7 @@ public class BinaryRoutePlanner {
 	}
 
 	private boolean checkIfInitialMovementAllowedOnSegment(final RoutingContext ctx, boolean reverseWaySearch,
-			TLongObjectHashMap<RouteSegment> visitedSegments, RouteSegment segment, final RouteDataObject road) {
+			VisitedSegmentsMap visitedSegments, RouteSegment segment, final RouteDataObject road) {
 		boolean directionAllowed;
 		int oneway = ctx.getRouter().isOneWay(road);
 		// use positive direction as agreed
@@ -549,7 +656,7 @@ public class BinaryRoutePlanner {
 	}
 
 	private boolean checkIfOppositeSegmentWasVisited(final RoutingContext ctx, boolean reverseWaySearch,
-			PriorityQueue<RouteSegment> graphSegments, RouteSegment segment, TLongObjectHashMap<RouteSegment> oppositeSegments,
+			RouteSegmentQueue graphSegments, RouteSegment segment, VisitedSegmentsMap oppositeSegments,
 			int segmentPoint, float segmentDist, float obstaclesTime) {
 		RouteDataObject road = segment.getRoad();
 		long opp = calculateRoutePointId(road, segment.isPositive() ? segmentPoint - 1 : segmentPoint, !segment.isPositive());
@@ -560,7 +667,8 @@ public class BinaryRoutePlanner {
 			if (checkViaRestrictions(from, to)) {
 				FinalRouteSegment frs = new FinalRouteSegment(road, segmentPoint);
 				float distStartObstacles = segment.distanceFromStart
-						+ calculateTimeWithObstacles(ctx, road, segmentDist, obstaclesTime);
+						+ calculateTimeWithObstacles(ctx, road, segmentDist, obstaclesTime,
+								reverseWaySearch ? segment.distanceToEnd : segment.distanceFromStart);
 				frs.setParentRoute(segment);
 				frs.setParentSegmentEnd(segmentPoint);
 				frs.reverseWaySearch = reverseWaySearch;
@@ -578,19 +686,72 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private float calculateTimeWithObstacles(RoutingContext ctx, RouteDataObject road, float distOnRoadToPass, float obstaclesTime) {
-		float priority = ctx.getRouter().defineSpeedPriority(road);
-		float speed = (ctx.getRouter().defineRoutingSpeed(road) * priority);
+	/**
+	 * @param timeFromDeparture time to reach the road after departure (for reverse search it is estimated
+	 * by the heuristic distance to start), used to find speed by time of day
+	 */
+	private float calculateTimeWithObstacles(RoutingContext ctx, RouteDataObject road, float distOnRoadToPass, float obstaclesTime,
+			float timeFromDeparture) {
+		float time = -1;
+		if (road.speedProfile != null) {
+			float speed = TrafficSpeedProfiles.getSpeed(road.speedProfile, ctx.departureSecondOfDay + (int) timeFromDeparture,
+					ctx.getRouter());
+			if (speed > 0) {
+				time = calculateTimeWithSpeed(ctx.getRouter(), road, speed, distOnRoadToPass, obstaclesTime);
+			}
+		}
+		if (time < 0) {
+			time = calculateTimeWithObstacles(ctx.getRouter(), road, distOnRoadToPass, obstaclesTime);
+		}
+		if (ctx.penalizedRoads != null && ctx.penalizedRoads.contains(road.getId())) {
+			time *= ctx.roadPenalty;
+		}
+		return time;
+	}
+
+	/*private*/ static float calculateTimeWithObstacles(VehicleRouter router, RouteDataObject road, float distOnRoadToPass,
+			float obstaclesTime) {
+		return calculateTimeWithSpeed(router, road, router.defineRoutingSpeed(road), distOnRoadToPass, obstaclesTime);
+	}
+
+	private static float calculateTimeWithSpeed(VehicleRouter router, RouteDataObject road, float routingSpeed,
+			float distOnRoadToPass, float obstaclesTime) {
+		float priority = router.defineSpeedPriority(road);
+		float speed = (routingSpeed * priority);
 		if (speed == 0) {
-			speed = (ctx.getRouter().getMinDefaultSpeed() * priority);
+			speed = (router.getMinDefaultSpeed() * priority);
 		}
 		// speed can not exceed max default speed according to A*
-		if (speed > ctx.getRouter().getMaxDefaultSpeed()) {
-			speed = ctx.getRouter().getMaxDefaultSpeed();
+		if (speed > router.getMaxDefaultSpeed()) {
+			speed = router.getMaxDefaultSpeed();
 		}
 		return obstaclesTime + distOnRoadToPass / speed;
 	}
 
+	/**
+	 * Time to move along road from point to point (without turns), negative if movement is not allowed by obstacles.
+	 */
+	/*private*/ static float calculateSegmentTime(VehicleRouter router, RouteDataObject road, int from, int to) {
+		int step = from < to ? 1 : -1;
+		float dist = 0;
+		float obstacles = 0;
+		for (int i = from + step; i != to + step; i += step) {
+			int prev = i - step;
+			dist += squareRootDist(road.getPoint31XTile(prev), road.getPoint31YTile(prev), road.getPoint31XTile(i),
+					road.getPoint31YTile(i));
+			float obstacle = router.defineRoutingObstacle(road, i);
+			if (obstacle < 0) {
+				return -1;
+			}
+			double heightObstacle = router.defineHeightObstacle(road, (short) prev, (short) i);
+			if (heightObstacle < 0) {
+				return -1;
+			}
+			obstacles += obstacle + heightObstacle;
+		}
+		return calculateTimeWithObstacles(router, road, dist, obstacles);
+	}
+
 	private long calculateRoutePointId(final RouteDataObject road, int intervalId, boolean positive) {
 		if (intervalId < 0) {
 			// should be assert
@@ -706,8 +867,8 @@ public class BinaryRoutePlanner {
 	}
 
 
-	private RouteSegment processIntersections(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
-			TLongObjectHashMap<RouteSegment> visitedSegments,  float distFromStart, RouteSegment segment,
+	private RouteSegment processIntersections(RoutingContext ctx, RouteSegmentQueue graphSegments,
+			VisitedSegmentsMap visitedSegments,  float distFromStart, RouteSegment segment,
 			short segmentPoint, RouteSegment inputNext, boolean reverseWaySearch, boolean doNotAddIntersections, 
 			boolean[] processFurther) {
 		boolean thereAreRestrictions;
@@ -777,8 +938,8 @@ public class BinaryRoutePlanner {
 
 
 	@SuppressWarnings("unused")
-	private void processOneRoadIntersection(RoutingContext ctx, PriorityQueue<RouteSegment> graphSegments,
-			TLongObjectHashMap<RouteSegment> visitedSegments, float distFromStart, float distanceToEnd,  RouteSegment segment,
+	private void processOneRoadIntersection(RoutingContext ctx, RouteSegmentQueue graphSegments,
+			VisitedSegmentsMap visitedSegments, float distFromStart, float distanceToEnd,  RouteSegment segment,
 			int segmentPoint, RouteSegment next) {
 		if (next != null) {
 			float obstaclesTime = (float) ctx.getRouter().calculateTurnTime(next, next.isPositive()? 
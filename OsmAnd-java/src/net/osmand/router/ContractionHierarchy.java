@@ -0,0 +1,729 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TIntLongHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.osm.MapRenderingTypes;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Contraction hierarchy of road graph built by {@link ContractionHierarchyBuilder} for one routing profile.
+ * Nodes of the graph are road intersections and road ends, edges are parts of roads between them with travel time
+ * defined by router (speed, priority and obstacles as in {@link BinaryRoutePlanner}), shortcuts replace paths
+ * through contracted nodes. Query is bidirectional Dijkstra which goes only to nodes of higher rank,
+ * found path is unpacked to parts of original roads.
+ * <p>
+ * Graph is node based, so turn times and turn restrictions are not part of it : hierarchy is not used by routers
+ * with turn costs and path which goes through restricted turn is rejected (route is calculated by A*).
+ * Hierarchy is saved next to the first map file ({@link #getHierarchyFile(File, String)}) and it is valid only
+ * for the same map files, routing profile, its parameters and impassable roads ({@link #isValidFor(RoutingConfiguration)}).
+ */
+public class ContractionHierarchy {
+
+	private final static Log log = PlatformUtil.getLog(ContractionHierarchy.class);
+
+	public static final String FILE_EXT = ".ch";
+	private static final int MAGIC = 0x4f534348;
+	private static final int VERSION = 2;
+	static final long SHORTCUT = Long.MIN_VALUE;
+	private static final long MASK_31 = (1l << 31) - 1;
+
+	final String routerName;
+	// router name, parameters and impassable roads used to build the hierarchy
+	final String profileKey;
+	final String[] fileNames;
+	final long[] fileDates;
+
+	// sorted (x31 << 31 | y31) of nodes, node id is index in array
+	final long[] nodeKeys;
+	final int[] rank;
+
+	final int[] edgeFrom;
+	final int[] edgeTo;
+	final float[] edgeCost;
+	// road id and start/end point of road or SHORTCUT and 2 edges replaced by shortcut
+	final long[] edgeRoad;
+	final int[] edgeA;
+	final int[] edgeB;
+
+	// edges to nodes of higher rank grouped by start node
+	private final int[] upStart;
+	private final int[] upEdges;
+	// edges from nodes of higher rank grouped by end node
+	private final int[] downStart;
+	private final int[] downEdges;
+
+	ContractionHierarchy(String routerName, String profileKey, String[] fileNames, long[] fileDates, long[] nodeKeys, int[] rank,
+			int[] edgeFrom, int[] edgeTo, float[] edgeCost, long[] edgeRoad, int[] edgeA, int[] edgeB) {
+		this.routerName = routerName;
+		this.profileKey = profileKey;
+		this.fileNames = fileNames;
+		this.fileDates = fileDates;
+		this.nodeKeys = nodeKeys;
+		this.rank = rank;
+		this.edgeFrom = edgeFrom;
+		this.edgeTo = edgeTo;
+		this.edgeCost = edgeCost;
+		this.edgeRoad = edgeRoad;
+		this.edgeA = edgeA;
+		this.edgeB = edgeB;
+		int nodes = nodeKeys.length;
+		upStart = new int[nodes + 1];
+		downStart = new int[nodes + 1];
+		for (int e = 0; e < edgeFrom.length; e++) {
+			if (rank[edgeFrom[e]] < rank[edgeTo[e]]) {
+				upStart[edgeFrom[e] + 1]++;
+			} else {
+				downStart[edgeTo[e] + 1]++;
+			}
+		}
+		for (int i = 0; i < nodes; i++) {
+			upStart[i + 1] += upStart[i];
+			downStart[i + 1] += downStart[i];
+		}
+		upEdges = new int[upStart[nodes]];
+		downEdges = new int[downStart[nodes]];
+		int[] upPos = Arrays.copyOf(upStart, nodes);
+		int[] downPos = Arrays.copyOf(downStart, nodes);
+		for (int e = 0; e < edgeFrom.length; e++) {
+			if (rank[edgeFrom[e]] < rank[edgeTo[e]]) {
+				upEdges[upPos[edgeFrom[e]]++] = e;
+			} else {
+				downEdges[downPos[edgeTo[e]]++] = e;
+			}
+		}
+	}
+
+	public static File getHierarchyFile(File mapFile, String routerName) {
+		return new File(mapFile.getParentFile(), mapFile.getName() + "." + routerName + FILE_EXT);
+	}
+
+	static String getProfileKey(RoutingConfiguration config) {
+		StringBuilder key = new StringBuilder(config.routerName);
+		for (Entry<String, String> e : new TreeMap<String, String>(config.routerParams).entrySet()) {
+			key.append(';').append(e.getKey()).append('=').append(e.getValue());
+		}
+		long[] impassable = config.router.getImpassableRoadIds();
+		Arrays.sort(impassable);
+		for (long id : impassable) {
+			key.append(";-").append(id);
+		}
+		return key.toString();
+	}
+
+	static long nodeKey(int x31, int y31) {
+		return (((long) x31) << 31) | y31;
+	}
+
+	public String getRouterName() {
+		return routerName;
+	}
+
+	public int getNodesCount() {
+		return nodeKeys.length;
+	}
+
+	public int getEdgesCount() {
+		return edgeFrom.length;
+	}
+
+	int getNode(int x31, int y31) {
+		int ind = Arrays.binarySearch(nodeKeys, nodeKey(x31, y31));
+		return ind < 0 ? -1 : ind;
+	}
+
+	int getNodeX(int node) {
+		return (int) (nodeKeys[node] >>> 31);
+	}
+
+	int getNodeY(int node) {
+		return (int) (nodeKeys[node] & MASK_31);
+	}
+
+	/**
+	 * Checks that hierarchy was built for the same profile with the same parameters and impassable roads
+	 * and router doesn't add turn time which is not part of the graph.
+	 */
+	public boolean isValidFor(RoutingConfiguration config) {
+		return routerName.equals(config.routerName) && profileKey.equals(getProfileKey(config))
+				&& !config.router.hasTurnCosts();
+	}
+
+	/**
+	 * Checks that hierarchy was built from the same versions of files (in any order) for the configuration.
+	 */
+	public boolean isValidFor(BinaryMapIndexReader[] readers, RoutingConfiguration config) {
+		if (!isValidFor(config) || readers.length != fileNames.length) {
+			return false;
+		}
+		boolean[] found = new boolean[fileNames.length];
+		for (BinaryMapIndexReader r : readers) {
+			int i = 0;
+			while (i < fileNames.length && (found[i] || !fileNames[i].equals(r.getFile().getName())
+					|| fileDates[i] != r.getDateCreated())) {
+				i++;
+			}
+			if (i == fileNames.length) {
+				return false;
+			}
+			found[i] = true;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds route between points using hierarchy, returned segments are not prepared yet
+	 * (see {@link RouteResultPreparation#prepareResult(RoutingContext, List)}).
+	 * @return null if points are not connected by the graph, roads of path couldn't be loaded
+	 * or path goes through restricted turn
+	 */
+	public List<RouteSegmentResult> searchRoute(RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end)
+			throws IOException {
+		VehicleRouter router = ctx.getRouter();
+		AccessNodes startNodes = findAccessNodes(router, start, false);
+		AccessNodes endNodes = findAccessNodes(router, end, true);
+		float direct = calculateDirectCost(router, start, end);
+		Query q = new Query();
+		float cost = q.run(startNodes.nodes.toArray(), startNodes.costs(), endNodes.nodes.toArray(), endNodes.costs(),
+				direct);
+		ctx.visitedSegments = q.settled;
+		List<RouteSegmentResult> res = new ArrayList<RouteSegmentResult>();
+		if (cost < 0) {
+			if (direct == Float.POSITIVE_INFINITY) {
+				return null;
+			}
+			boolean positive = isPositiveDirection(start, end);
+			res.add(new RouteSegmentResult(start.getRoad(), positive ? start.getSegmentStart() - 1 : start.getSegmentStart(),
+					positive ? end.getSegmentStart() : end.getSegmentStart() - 1));
+			ctx.routingTime = direct;
+			return res;
+		}
+		int startAccess = startNodes.nodes.indexOf(q.getStartNode());
+		int endAccess = endNodes.nodes.indexOf(q.getEndNode());
+		int sp = startNodes.pointIndexes.get(startAccess);
+		append(res, start.getRoad(), sp > start.getSegmentStart() - 1 ? start.getSegmentStart() - 1 : start.getSegmentStart(), sp);
+		TLongObjectHashMap<RouteDataObject> roads = new TLongObjectHashMap<RouteDataObject>();
+		TIntArrayList path = q.unpackPath();
+		for (int i = 0; i < path.size(); i++) {
+			int e = path.get(i);
+			RouteDataObject road = roads.get(edgeRoad[e]);
+			if (road == null) {
+				road = loadRoad(ctx, edgeFrom[e], edgeRoad[e]);
+				if (road == null) {
+					log.warn("Road " + edgeRoad[e] + " of hierarchy is not found in map");
+					return null;
+				}
+				roads.put(edgeRoad[e], road);
+			}
+			append(res, road, edgeA[e], edgeB[e]);
+		}
+		int ep = endNodes.pointIndexes.get(endAccess);
+		append(res, end.getRoad(), ep, ep < end.getSegmentStart() ? end.getSegmentStart() : end.getSegmentStart() - 1);
+		if (router.restrictionsAware() && !isAllowedByRestrictions(ctx, res)) {
+			log.info("Path of contraction hierarchy goes through restricted turn");
+			return null;
+		}
+		ctx.routingTime = cost;
+		return res;
+	}
+
+	/**
+	 * Checks turns between roads of path as A* does : turn is forbidden by "no" restriction of previous road
+	 * and by "only" restriction of previous road to another road of the same junction.
+	 */
+	private boolean isAllowedByRestrictions(RoutingContext ctx, List<RouteSegmentResult> res) {
+		for (int i = 1; i < res.size(); i++) {
+			RouteSegmentResult prev = res.get(i - 1);
+			RouteDataObject from = prev.getObject();
+			RouteDataObject to = res.get(i).getObject();
+			if (from.getId() == to.getId()) {
+				continue;
+			}
+			int type = getRestrictionType(from, to.getId());
+			if (isNoRestriction(type)) {
+				return false;
+			}
+			if (type == -1) {
+				int x = from.getPoint31XTile(prev.getEndPointIndex());
+				int y = from.getPoint31YTile(prev.getEndPointIndex());
+				for (int k = 0; k < from.getRestrictionLength(); k++) {
+					if (!isNoRestriction(from.getRestrictionType(k))
+							&& isRoadAtJunction(ctx, x, y, from.getRestrictionId(k))) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	private static int getRestrictionType(RouteDataObject from, long to) {
+		for (int k = 0; k < from.getRestrictionLength(); k++) {
+			if (from.getRestrictionId(k) == to) {
+				return from.getRestrictionType(k);
+			}
+		}
+		return -1;
+	}
+
+	private static boolean isNoRestriction(int type) {
+		return type == MapRenderingTypes.RESTRICTION_NO_LEFT_TURN || type == MapRenderingTypes.RESTRICTION_NO_RIGHT_TURN
+				|| type == MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON || type == MapRenderingTypes.RESTRICTION_NO_U_TURN;
+	}
+
+	private static boolean isRoadAtJunction(RoutingContext ctx, int x31, int y31, long roadId) {
+		RouteSegment s = ctx.loadRouteSegment(x31, y31, ctx.config.memoryLimitation);
+		while (s != null) {
+			if (s.getRoad().getId() == roadId) {
+				return true;
+			}
+			s = s.getNext();
+		}
+		return false;
+	}
+
+	private void append(List<RouteSegmentResult> res, RouteDataObject road, int start, int end) {
+		if (start == end) {
+			return;
+		}
+		if (!res.isEmpty()) {
+			RouteSegmentResult last = res.get(res.size() - 1);
+			boolean lastPositive = last.getStartPointIndex() < last.getEndPointIndex();
+			if (last.getObject().getId() == road.getId() && last.getEndPointIndex() == start
+					&& lastPositive == (start < end)) {
+				last.setEndPointIndex(end);
+				return;
+			}
+		}
+		res.add(new RouteSegmentResult(road, start, end));
+	}
+
+	private RouteDataObject loadRoad(RoutingContext ctx, int node, long roadId) {
+		RouteSegment s = ctx.loadRouteSegment(getNodeX(node), getNodeY(node), ctx.config.memoryLimitation);
+		while (s != null) {
+			if (s.getRoad().getId() == roadId) {
+				return s.getRoad();
+			}
+			s = s.getNext();
+		}
+		return null;
+	}
+
+	private static class AccessNodes {
+		final TIntArrayList nodes = new TIntArrayList(2);
+		final TIntArrayList pointIndexes = new TIntArrayList(2);
+		final List<Float> costs = new ArrayList<Float>(2);
+
+		float[] costs() {
+			float[] res = new float[costs.size()];
+			for (int i = 0; i < res.length; i++) {
+				res[i] = costs.get(i);
+			}
+			return res;
+		}
+	}
+
+	/**
+	 * Finds nearest nodes along the road of point in both directions (allowed by oneway) :
+	 * nodes reachable from the point or nodes from which the point is reachable.
+	 */
+	private AccessNodes findAccessNodes(VehicleRouter router, RouteSegmentPoint p, boolean toPoint) {
+		AccessNodes res = new AccessNodes();
+		RouteDataObject road = p.getRoad();
+		int oneway = router.isOneWay(road);
+		int segment = p.getSegmentStart();
+		if (oneway >= 0) {
+			walkToNode(router, p, toPoint ? segment - 1 : segment, toPoint ? -1 : 1, res);
+		}
+		if (oneway <= 0) {
+			walkToNode(router, p, toPoint ? segment : segment - 1, toPoint ? 1 : -1, res);
+		}
+		return res;
+	}
+
+	private void walkToNode(VehicleRouter router, RouteSegmentPoint p, int from, int step, AccessNodes res) {
+		RouteDataObject road = p.getRoad();
+		float dist = 0;
+		float obstacles = 0;
+		int px = p.preciseX;
+		int py = p.preciseY;
+		for (int i = from; i >= 0 && i < road.getPointsLength(); i += step) {
+			int x = road.getPoint31XTile(i);
+			int y = road.getPoint31YTile(i);
+			dist += BinaryRoutePlanner.squareRootDist(px, py, x, y);
+			float obstacle = router.defineRoutingObstacle(road, i);
+			if (obstacle < 0) {
+				return;
+			}
+			obstacles += obstacle;
+			int node = getNode(x, y);
+			if (node >= 0) {
+				res.nodes.add(node);
+				res.pointIndexes.add(i);
+				res.costs.add(BinaryRoutePlanner.calculateTimeWithObstacles(router, road, dist, obstacles));
+				return;
+			}
+			px = x;
+			py = y;
+		}
+	}
+
+	private static boolean isPositiveDirection(RouteSegmentPoint start, RouteSegmentPoint end) {
+		if (start.getSegmentStart() != end.getSegmentStart()) {
+			return start.getSegmentStart() < end.getSegmentStart();
+		}
+		RouteDataObject road = start.getRoad();
+		int x = road.getPoint31XTile(start.getSegmentStart() - 1);
+		int y = road.getPoint31YTile(start.getSegmentStart() - 1);
+		return BinaryRoutePlanner.squareRootDist(x, y, start.preciseX, start.preciseY) <= BinaryRoutePlanner
+				.squareRootDist(x, y, end.preciseX, end.preciseY);
+	}
+
+	/**
+	 * Cost to move along the road when both points are on the same road.
+	 */
+	private float calculateDirectCost(VehicleRouter router, RouteSegmentPoint start, RouteSegmentPoint end) {
+		RouteDataObject road = start.getRoad();
+		if (road.getId() != end.getRoad().getId()) {
+			return Float.POSITIVE_INFINITY;
+		}
+		boolean positive = isPositiveDirection(start, end);
+		int oneway = router.isOneWay(road);
+		if ((positive && oneway < 0) || (!positive && oneway > 0)) {
+			return Float.POSITIVE_INFINITY;
+		}
+		float dist = 0;
+		float obstacles = 0;
+		int px = start.preciseX;
+		int py = start.preciseY;
+		int from = positive ? start.getSegmentStart() : start.getSegmentStart() - 1;
+		int to = positive ? end.getSegmentStart() : end.getSegmentStart() - 1;
+		for (int i = from; i != to; i += positive ? 1 : -1) {
+			int x = road.getPoint31XTile(i);
+			int y = road.getPoint31YTile(i);
+			dist += BinaryRoutePlanner.squareRootDist(px, py, x, y);
+			float obstacle = router.defineRoutingObstacle(road, i);
+			if (obstacle < 0) {
+				return Float.POSITIVE_INFINITY;
+			}
+			obstacles += obstacle;
+			px = x;
+			py = y;
+		}
+		dist += BinaryRoutePlanner.squareRootDist(px, py, end.preciseX, end.preciseY);
+		return BinaryRoutePlanner.calculateTimeWithObstacles(router, road, dist, obstacles);
+	}
+
+	/**
+	 * Bidirectional search over upward graph. Distance and parent edge of visited node are packed into one long.
+	 */
+	class Query {
+		private final TIntLongHashMap forward = new TIntLongHashMap();
+		private final TIntLongHashMap backward = new TIntLongHashMap();
+		private final FloatHeap forwardQueue = new FloatHeap();
+		private final FloatHeap backwardQueue = new FloatHeap();
+		private float best;
+		private int meet = -1;
+		int settled;
+
+		/**
+		 * @return cost of the best path or -1 if there is no path cheaper than bestKnown
+		 */
+		float run(int[] startNodes, float[] startCosts, int[] endNodes, float[] endCosts, float bestKnown) {
+			for (int i = 0; i < startNodes.length; i++) {
+				relax(forward, forwardQueue, startNodes[i], startCosts[i], -1);
+			}
+			for (int i = 0; i < endNodes.length; i++) {
+				relax(backward, backwardQueue, endNodes[i], endCosts[i], -1);
+			}
+			best = bestKnown;
+			meet = -1;
+			while (true) {
+				boolean f = !forwardQueue.isEmpty() && forwardQueue.peekKey() < best;
+				boolean b = !backwardQueue.isEmpty() && backwardQueue.peekKey() < best;
+				if (!f && !b) {
+					break;
+				}
+				if (f && (!b || forwardQueue.peekKey() <= backwardQueue.peekKey())) {
+					step(true);
+				} else {
+					step(false);
+				}
+			}
+			return meet == -1 ? -1 : best;
+		}
+
+		private void step(boolean direct) {
+			TIntLongHashMap visited = direct ? forward : backward;
+			TIntLongHashMap opposite = direct ? backward : forward;
+			FloatHeap queue = direct ? forwardQueue : backwardQueue;
+			float d = queue.peekKey();
+			int node = queue.peekValue();
+			queue.remove();
+			if (d > cost(visited.get(node))) {
+				return;
+			}
+			settled++;
+			if (opposite.containsKey(node)) {
+				float c = d + cost(opposite.get(node));
+				if (c < best) {
+					best = c;
+					meet = node;
+				}
+			}
+			int[] start = direct ? upStart : downStart;
+			int[] edges = direct ? upEdges : downEdges;
+			for (int k = start[node]; k < start[node + 1]; k++) {
+				int e = edges[k];
+				relax(visited, queue, direct ? edgeTo[e] : edgeFrom[e], d + edgeCost[e], e);
+			}
+		}
+
+		private void relax(TIntLongHashMap visited, FloatHeap queue, int node, float cost, int edge) {
+			if (!visited.containsKey(node) || cost < cost(visited.get(node))) {
+				visited.put(node, pack(cost, edge));
+				queue.push(cost, node);
+			}
+		}
+
+		int getStartNode() {
+			int node = meet;
+			int e;
+			while ((e = edge(forward.get(node))) != -1) {
+				node = edgeFrom[e];
+			}
+			return node;
+		}
+
+		int getEndNode() {
+			int node = meet;
+			int e;
+			while ((e = edge(backward.get(node))) != -1) {
+				node = edgeTo[e];
+			}
+			return node;
+		}
+
+		/**
+		 * Returns original edges of found path in order of movement.
+		 */
+		TIntArrayList unpackPath() {
+			TIntArrayList path = new TIntArrayList();
+			int node = meet;
+			int e;
+			while ((e = edge(forward.get(node))) != -1) {
+				path.add(e);
+				node = edgeFrom[e];
+			}
+			path.reverse();
+			node = meet;
+			while ((e = edge(backward.get(node))) != -1) {
+				path.add(e);
+				node = edgeTo[e];
+			}
+			TIntArrayList res = new TIntArrayList(path.size() * 4);
+			TIntArrayList stack = new TIntArrayList();
+			for (int i = 0; i < path.size(); i++) {
+				stack.add(path.get(i));
+				while (!stack.isEmpty()) {
+					int s = stack.removeAt(stack.size() - 1);
+					if (edgeRoad[s] == SHORTCUT) {
+						stack.add(edgeB[s]);
+						stack.add(edgeA[s]);
+					} else {
+						res.add(s);
+					}
+				}
+			}
+			return res;
+		}
+	}
+
+	private static long pack(float cost, int edge) {
+		return (((long) Float.floatToRawIntBits(cost)) << 32) | (edge & 0xffffffffl);
+	}
+
+	private static float cost(long packed) {
+		return Float.intBitsToFloat((int) (packed >>> 32));
+	}
+
+	private static int edge(long packed) {
+		return (int) packed;
+	}
+
+	/**
+	 * Binary min heap of int values with float keys, the same value could be added several times.
+	 */
+	static class FloatHeap {
+		private float[] keys = new float[64];
+		private int[] values = new int[64];
+		private int size;
+
+		public boolean isEmpty() {
+			return size == 0;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public void clear() {
+			size = 0;
+		}
+
+		public float peekKey() {
+			return keys[0];
+		}
+
+		public int peekValue() {
+			return values[0];
+		}
+
+		public void push(float key, int value) {
+			if (size == keys.length) {
+				keys = Arrays.copyOf(keys, size * 2);
+				values = Arrays.copyOf(values, size * 2);
+			}
+			int i = size++;
+			while (i > 0) {
+				int parent = (i - 1) >> 1;
+				if (keys[parent] <= key) {
+					break;
+				}
+				keys[i] = keys[parent];
+				values[i] = values[parent];
+				i = parent;
+			}
+			keys[i] = key;
+			values[i] = value;
+		}
+
+		public void remove() {
+			size--;
+			if (size == 0) {
+				return;
+			}
+			float key = keys[size];
+			int value = values[size];
+			int i = 0;
+			while (true) {
+				int child = 2 * i + 1;
+				if (child >= size) {
+					break;
+				}
+				if (child + 1 < size && keys[child + 1] < keys[child]) {
+					child++;
+				}
+				if (key <= keys[child]) {
+					break;
+				}
+				keys[i] = keys[child];
+				values[i] = values[child];
+				i = child;
+			}
+			keys[i] = key;
+			values[i] = value;
+		}
+	}
+
+	public void writeToFile(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(routerName);
+			out.writeUTF(profileKey);
+			out.writeInt(fileNames.length);
+			for (int i = 0; i < fileNames.length; i++) {
+				out.writeUTF(fileNames[i]);
+				out.writeLong(fileDates[i]);
+			}
+			out.writeInt(nodeKeys.length);
+			for (int i = 0; i < nodeKeys.length; i++) {
+				out.writeLong(nodeKeys[i]);
+				out.writeInt(rank[i]);
+			}
+			out.writeInt(edgeFrom.length);
+			for (int e = 0; e < edgeFrom.length; e++) {
+				out.writeInt(edgeFrom[e]);
+				out.writeInt(edgeTo[e]);
+				out.writeFloat(edgeCost[e]);
+				out.writeLong(edgeRoad[e]);
+				out.writeInt(edgeA[e]);
+				out.writeInt(edgeB[e]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static ContractionHierarchy readFromFile(File file) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16));
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				throw new IOException("Unsupported contraction hierarchy file " + file.getName());
+			}
+			String routerName = in.readUTF();
+			String profileKey = in.readUTF();
+			int files = in.readInt();
+			String[] fileNames = new String[files];
+			long[] fileDates = new long[files];
+			for (int i = 0; i < files; i++) {
+				fileNames[i] = in.readUTF();
+				fileDates[i] = in.readLong();
+			}
+			int nodes = in.readInt();
+			long[] nodeKeys = new long[nodes];
+			int[] rank = new int[nodes];
+			for (int i = 0; i < nodes; i++) {
+				nodeKeys[i] = in.readLong();
+				rank[i] = in.readInt();
+			}
+			int edges = in.readInt();
+			int[] edgeFrom = new int[edges];
+			int[] edgeTo = new int[edges];
+			float[] edgeCost = new float[edges];
+			long[] edgeRoad = new long[edges];
+			int[] edgeA = new int[edges];
+			int[] edgeB = new int[edges];
+			for (int e = 0; e < edges; e++) {
+				edgeFrom[e] = in.readInt();
+				edgeTo[e] = in.readInt();
+				edgeCost[e] = in.readFloat();
+				edgeRoad[e] = in.readLong();
+				edgeA[e] = in.readInt();
+				edgeB[e] = in.readInt();
+			}
+			return new ContractionHierarchy(routerName, profileKey, fileNames, fileDates, nodeKeys, rank, edgeFrom, edgeTo, edgeCost,
+					edgeRoad, edgeA, edgeB);
+		} finally {
+			in.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Contraction hierarchy " + routerName + " : " + nodeKeys.length + " nodes, " + edgeFrom.length + " edges";
+	}
+}
@@ -0,0 +1,394 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.ContractionHierarchy.FloatHeap;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Offline preprocessing of routing sections of map files into {@link ContractionHierarchy} for one routing profile.
+ * Files are read twice : first pass finds intersections of roads accepted by router, second pass creates edges
+ * between them. Nodes are contracted in order of edge difference (lazy updates), witness search is limited
+ * by number of settled nodes, so some extra shortcuts could be created.
+ * <p>
+ * Usage: ContractionHierarchyBuilder [-router=car] [-routingXmlPath=routing.xml] file1.obf [file2.obf ...]
+ * Hierarchy is written next to the first file, all road data of files is processed in memory (use big -Xmx).
+ */
+public class ContractionHierarchyBuilder {
+
+	private final static Log log = PlatformUtil.getLog(ContractionHierarchyBuilder.class);
+	private static final int WITNESS_SETTLED_LIMIT = 500;
+	private static final float INF = Float.POSITIVE_INFINITY;
+
+	private final RoutingConfiguration config;
+	private final VehicleRouter router;
+
+	private int edges;
+	private int[] edgeFrom = new int[1024];
+	private int[] edgeTo = new int[1024];
+	private float[] edgeCost = new float[1024];
+	private long[] edgeRoad = new long[1024];
+	private int[] edgeA = new int[1024];
+	private int[] edgeB = new int[1024];
+
+	// contraction state
+	private TIntArrayList[] outEdges;
+	private TIntArrayList[] inEdges;
+	private boolean[] contracted;
+	private int[] contractedNeighbours;
+	private float[] witnessDist;
+	private final TIntArrayList witnessVisited = new TIntArrayList();
+	private final FloatHeap witnessQueue = new FloatHeap();
+
+	public ContractionHierarchyBuilder(RoutingConfiguration config) {
+		this.config = config;
+		this.router = config.router;
+	}
+
+	ContractionHierarchyBuilder() {
+		this.config = null;
+		this.router = null;
+	}
+
+	/**
+	 * Builds hierarchy for router of configuration with its parameters and impassable roads.
+	 */
+	public ContractionHierarchy build(BinaryMapIndexReader[] readers) throws IOException {
+		long time = System.currentTimeMillis();
+		// 1. intersections and ends of roads are nodes
+		final TLongHashSet points = new TLongHashSet();
+		final TLongHashSet nodes = new TLongHashSet();
+		readRoads(readers, new ResultMatcher<RouteDataObject>() {
+			@Override
+			public boolean publish(RouteDataObject road) {
+				int last = road.getPointsLength() - 1;
+				for (int i = 0; i <= last; i++) {
+					long key = ContractionHierarchy.nodeKey(road.getPoint31XTile(i), road.getPoint31YTile(i));
+					if (!points.add(key) || i == 0 || i == last) {
+						nodes.add(key);
+					}
+				}
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		points.clear();
+		final long[] nodeKeys = nodes.toArray();
+		nodes.clear();
+		Arrays.sort(nodeKeys);
+		log.info("Road graph nodes " + nodeKeys.length + " found in " + (System.currentTimeMillis() - time) + " ms");
+		// 2. parts of roads between nodes are edges
+		readRoads(readers, new ResultMatcher<RouteDataObject>() {
+			@Override
+			public boolean publish(RouteDataObject road) {
+				addRoadEdges(road, nodeKeys);
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		});
+		log.info("Road graph edges " + edges + " created in " + (System.currentTimeMillis() - time) + " ms");
+		String[] fileNames = new String[readers.length];
+		long[] fileDates = new long[readers.length];
+		for (int i = 0; i < readers.length; i++) {
+			fileNames[i] = readers[i].getFile().getName();
+			fileDates[i] = readers[i].getDateCreated();
+		}
+		ContractionHierarchy ch = contract(config.routerName, ContractionHierarchy.getProfileKey(config), fileNames,
+				fileDates, nodeKeys);
+		log.info(ch + " built in " + (System.currentTimeMillis() - time) + " ms");
+		return ch;
+	}
+
+	private void readRoads(BinaryMapIndexReader[] readers, final ResultMatcher<RouteDataObject> matcher)
+			throws IOException {
+		final TLongHashSet roadIds = new TLongHashSet();
+		ResultMatcher<RouteDataObject> accepted = new ResultMatcher<RouteDataObject>() {
+			@Override
+			public boolean publish(RouteDataObject road) {
+				// the same road could be stored in several files
+				if (road.getPointsLength() > 1 && router.acceptLine(road) && roadIds.add(road.getId())) {
+					matcher.publish(road);
+				}
+				return false;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		};
+		for (BinaryMapIndexReader reader : readers) {
+			for (RouteRegion reg : reader.getRoutingIndexes()) {
+				SearchRequest<RouteDataObject> req = BinaryMapIndexReader.buildSearchRouteRequest(0, Integer.MAX_VALUE, 0,
+						Integer.MAX_VALUE, null);
+				List<RouteSubregion> subregions = reader.searchRouteIndexTree(req, reg.getSubregions());
+				reader.loadRouteIndexData(subregions, accepted);
+			}
+		}
+	}
+
+	private void addRoadEdges(RouteDataObject road, long[] nodeKeys) {
+		int oneway = router.isOneWay(road);
+		int prevNode = -1;
+		int prevPoint = -1;
+		for (int i = 0; i < road.getPointsLength(); i++) {
+			int node = Arrays.binarySearch(nodeKeys,
+					ContractionHierarchy.nodeKey(road.getPoint31XTile(i), road.getPoint31YTile(i)));
+			if (node < 0) {
+				continue;
+			}
+			if (prevNode >= 0 && prevNode != node) {
+				if (oneway >= 0) {
+					float cost = calculateCost(road, prevPoint, i);
+					if (cost != INF) {
+						addEdge(prevNode, node, cost, road.getId(), prevPoint, i);
+					}
+				}
+				if (oneway <= 0) {
+					float cost = calculateCost(road, i, prevPoint);
+					if (cost != INF) {
+						addEdge(node, prevNode, cost, road.getId(), i, prevPoint);
+					}
+				}
+			}
+			prevNode = node;
+			prevPoint = i;
+		}
+	}
+
+	private float calculateCost(RouteDataObject road, int from, int to) {
+		float time = BinaryRoutePlanner.calculateSegmentTime(router, road, from, to);
+		return time < 0 ? INF : time;
+	}
+
+	int addEdge(int from, int to, float cost, long road, int a, int b) {
+		if (edges == edgeFrom.length) {
+			int sz = edges * 2;
+			edgeFrom = Arrays.copyOf(edgeFrom, sz);
+			edgeTo = Arrays.copyOf(edgeTo, sz);
+			edgeCost = Arrays.copyOf(edgeCost, sz);
+			edgeRoad = Arrays.copyOf(edgeRoad, sz);
+			edgeA = Arrays.copyOf(edgeA, sz);
+			edgeB = Arrays.copyOf(edgeB, sz);
+		}
+		edgeFrom[edges] = from;
+		edgeTo[edges] = to;
+		edgeCost[edges] = cost;
+		edgeRoad[edges] = road;
+		edgeA[edges] = a;
+		edgeB[edges] = b;
+		if (outEdges != null) {
+			outEdges[from].add(edges);
+			inEdges[to].add(edges);
+		}
+		return edges++;
+	}
+
+	ContractionHierarchy contract(String routerName, String profileKey, String[] fileNames, long[] fileDates,
+			long[] nodeKeys) {
+		int nodes = nodeKeys.length;
+		outEdges = new TIntArrayList[nodes];
+		inEdges = new TIntArrayList[nodes];
+		for (int i = 0; i < nodes; i++) {
+			outEdges[i] = new TIntArrayList(4);
+			inEdges[i] = new TIntArrayList(4);
+		}
+		for (int e = 0; e < edges; e++) {
+			outEdges[edgeFrom[e]].add(e);
+			inEdges[edgeTo[e]].add(e);
+		}
+		contracted = new boolean[nodes];
+		contractedNeighbours = new int[nodes];
+		witnessDist = new float[nodes];
+		Arrays.fill(witnessDist, INF);
+		int[] rank = new int[nodes];
+		FloatHeap order = new FloatHeap();
+		for (int v = 0; v < nodes; v++) {
+			order.push(calculatePriority(v), v);
+		}
+		int r = 0;
+		while (!order.isEmpty()) {
+			int v = order.peekValue();
+			order.remove();
+			// lazy update : priority could grow since node was added
+			float priority = calculatePriority(v);
+			if (!order.isEmpty() && priority > order.peekKey()) {
+				order.push(priority, v);
+				continue;
+			}
+			contractNode(v, false);
+			contracted[v] = true;
+			rank[v] = r++;
+			updateNeighbours(v);
+			if (r % 100000 == 0) {
+				log.info("Contracted " + r + " nodes of " + nodes + ", edges " + edges);
+			}
+		}
+		outEdges = null;
+		inEdges = null;
+		witnessDist = null;
+		return new ContractionHierarchy(routerName, profileKey, fileNames, fileDates, nodeKeys, rank,
+				Arrays.copyOf(edgeFrom, edges), Arrays.copyOf(edgeTo, edges), Arrays.copyOf(edgeCost, edges),
+				Arrays.copyOf(edgeRoad, edges), Arrays.copyOf(edgeA, edges), Arrays.copyOf(edgeB, edges));
+	}
+
+	private float calculatePriority(int v) {
+		int shortcuts = contractNode(v, true);
+		int degree = 0;
+		for (int i = 0; i < inEdges[v].size(); i++) {
+			if (!contracted[edgeFrom[inEdges[v].get(i)]]) {
+				degree++;
+			}
+		}
+		for (int i = 0; i < outEdges[v].size(); i++) {
+			if (!contracted[edgeTo[outEdges[v].get(i)]]) {
+				degree++;
+			}
+		}
+		return shortcuts - degree + contractedNeighbours[v];
+	}
+
+	private void updateNeighbours(int v) {
+		for (int i = 0; i < inEdges[v].size(); i++) {
+			contractedNeighbours[edgeFrom[inEdges[v].get(i)]]++;
+		}
+		for (int i = 0; i < outEdges[v].size(); i++) {
+			contractedNeighbours[edgeTo[outEdges[v].get(i)]]++;
+		}
+	}
+
+	/**
+	 * Adds shortcuts for paths through v which have no witness path (or only counts them).
+	 */
+	private int contractNode(int v, boolean simulate) {
+		int shortcuts = 0;
+		TIntArrayList in = inEdges[v];
+		TIntArrayList out = outEdges[v];
+		for (int i = 0; i < in.size(); i++) {
+			int e1 = in.get(i);
+			int u = edgeFrom[e1];
+			if (contracted[u]) {
+				continue;
+			}
+			float maxCost = -1;
+			for (int j = 0; j < out.size(); j++) {
+				int w = edgeTo[out.get(j)];
+				if (!contracted[w] && w != u) {
+					maxCost = Math.max(maxCost, edgeCost[e1] + edgeCost[out.get(j)]);
+				}
+			}
+			if (maxCost < 0) {
+				continue;
+			}
+			searchWitness(u, v, maxCost);
+			for (int j = 0; j < out.size(); j++) {
+				int e2 = out.get(j);
+				int w = edgeTo[e2];
+				float cost = edgeCost[e1] + edgeCost[e2];
+				if (contracted[w] || w == u || witnessDist[w] <= cost) {
+					continue;
+				}
+				shortcuts++;
+				if (!simulate) {
+					addEdge(u, w, cost, ContractionHierarchy.SHORTCUT, e1, e2);
+				}
+			}
+		}
+		return shortcuts;
+	}
+
+	private void searchWitness(int source, int excluded, float maxCost) {
+		for (int i = 0; i < witnessVisited.size(); i++) {
+			witnessDist[witnessVisited.get(i)] = INF;
+		}
+		witnessVisited.resetQuick();
+		witnessQueue.clear();
+		witnessDist[source] = 0;
+		witnessVisited.add(source);
+		witnessQueue.push(0, source);
+		int settled = 0;
+		while (!witnessQueue.isEmpty()) {
+			float d = witnessQueue.peekKey();
+			int u = witnessQueue.peekValue();
+			witnessQueue.remove();
+			if (d > witnessDist[u]) {
+				continue;
+			}
+			if (d > maxCost || ++settled > WITNESS_SETTLED_LIMIT) {
+				break;
+			}
+			TIntArrayList out = outEdges[u];
+			for (int i = 0; i < out.size(); i++) {
+				int e = out.get(i);
+				int w = edgeTo[e];
+				if (contracted[w] || w == excluded) {
+					continue;
+				}
+				float nd = d + edgeCost[e];
+				if (nd < witnessDist[w]) {
+					if (witnessDist[w] == INF) {
+						witnessVisited.add(w);
+					}
+					witnessDist[w] = nd;
+					witnessQueue.push(nd, w);
+				}
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		String routerName = "car";
+		String routingXml = null;
+		List<File> files = new java.util.ArrayList<File>();
+		for (String a : args) {
+			if (a.startsWith("-router=")) {
+				routerName = a.substring("-router=".length());
+			} else if (a.startsWith("-routingXmlPath=")) {
+				routingXml = a.substring("-routingXmlPath=".length());
+			} else {
+				files.add(new File(a));
+			}
+		}
+		if (files.isEmpty()) {
+			System.out.println("Usage: ContractionHierarchyBuilder [-router=car] [-routingXmlPath=routing.xml] file1.obf [file2.obf ...]");
+			return;
+		}
+		RoutingConfiguration.Builder builder = routingXml == null ? RoutingConfiguration.getDefault() :
+				RoutingConfiguration.parseFromInputStream(new java.io.FileInputStream(routingXml));
+		RoutingConfiguration config = builder.build(routerName, RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+		BinaryMapIndexReader[] readers = new BinaryMapIndexReader[files.size()];
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new BinaryMapIndexReader(new RandomAccessFile(files.get(i), "r"), files.get(i));
+		}
+		ContractionHierarchy ch = new ContractionHierarchyBuilder(config).build(readers);
+		File out = ContractionHierarchy.getHierarchyFile(files.get(0), config.routerName);
+		ch.writeToFile(out);
+		System.out.println(ch + " saved to " + out.getAbsolutePath());
+		for (BinaryMapIndexReader r : readers) {
+			r.close();
+		}
+	}
+}
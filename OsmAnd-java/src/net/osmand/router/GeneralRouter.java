@@ -3,13 +3,16 @@ package net.osmand.router;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteTypeRule;
 import net.osmand.binary.RouteDataObject;
+import net.osmand.binary.RouteDataObject.RoutingAttributes;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
 import net.osmand.util.Algorithms;
 import net.osmand.util.MapUtils;
 
 import java.io.PrintStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -18,6 +21,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import gnu.trove.set.hash.TLongHashSet;
 
@@ -59,6 +63,14 @@ public class GeneralRouter implements VehicleRouter {
 	private TLongHashSet impassableRoads;
 	private GeneralRouterProfile profile;
 	
+	// packed routing attributes of road (RouteDataObject.routingAttributes)
+	private static final int ATTR_SPEED = 0;
+	private static final int ATTR_PRIORITY = 1;
+	private static final int ATTR_ONEWAY = 2;
+	private static final int ATTR_PENALTY_TRANSITION = 3;
+	// routing obstacles of points (if road has point types)
+	private static final int ATTR_OBSTACLES = 4;
+	
 	
 	public enum RouteDataObjectAttribute {
 		ROAD_SPEED("speed"),
@@ -301,6 +313,10 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public float defineRoutingObstacle(RouteDataObject road, int point) {
+		float[] attrs = getRoutingAttributes(road);
+		if (attrs != null) {
+			return ATTR_OBSTACLES + point < attrs.length ? attrs[ATTR_OBSTACLES + point] : 0;
+		}
 		int[] pointTypes = road.getPointTypes(point);
 		if(pointTypes != null){
 			return getObjContext(RouteDataObjectAttribute.ROUTING_OBSTACLES).evaluateFloat(road.region, pointTypes, 0);
@@ -330,8 +346,8 @@ public class GeneralRouter implements VehicleRouter {
 				int percentIncl = (int) (incl * 100);
 				percentIncl = (percentIncl + 2)/ 3 * 3 - 2; // 1, 4, 7, 10, .   
 				if(percentIncl >= 1) {
-					objContext.paramContext.incline = diff > 0 ? percentIncl : -percentIncl;
-					sum += objContext.evaluateFloat(road, 0) * (diff > 0? diff : -diff );
+					int incline = diff > 0 ? percentIncl : -percentIncl;
+					sum += objContext.evaluateFloat(road, incline, 0) * (diff > 0? diff : -diff );
 				}
 			}
 		}
@@ -341,16 +357,28 @@ public class GeneralRouter implements VehicleRouter {
 	
 	@Override
 	public int isOneWay(RouteDataObject road) {
+		float[] attrs = getRoutingAttributes(road);
+		if (attrs != null) {
+			return (int) attrs[ATTR_ONEWAY];
+		}
 		return getObjContext(RouteDataObjectAttribute.ONEWAY).evaluateInt(road, 0);
 	}
 	
 	@Override
 	public float getPenaltyTransition(RouteDataObject road) {
+		float[] attrs = getRoutingAttributes(road);
+		if (attrs != null) {
+			return attrs[ATTR_PENALTY_TRANSITION];
+		}
 		return getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).evaluateInt(road, 0);
 	}
 
 	@Override
 	public float defineRoutingSpeed(RouteDataObject road) {
+		float[] attrs = getRoutingAttributes(road);
+		if (attrs != null) {
+			return attrs[ATTR_SPEED];
+		}
 		return Math.min(defineVehicleSpeed(road), maxDefaultSpeed);
 	}
 	
@@ -362,8 +390,38 @@ public class GeneralRouter implements VehicleRouter {
 
 	@Override
 	public float defineSpeedPriority(RouteDataObject road) {
+		float[] attrs = getRoutingAttributes(road);
+		if (attrs != null) {
+			return attrs[ATTR_PRIORITY];
+		}
 		return getObjContext(RouteDataObjectAttribute.ROAD_PRIORITIES).evaluateFloat(road, 1f);
 	}
+	
+	@Override
+	public int cacheRoutingAttributes(RouteDataObject road) {
+		int obstacles = road.pointTypes == null ? 0 : road.pointTypes.length;
+		// attributes are calculated by this router itself, so clear previous ones first
+		road.routingAttributes = null;
+		float[] attrs = new float[ATTR_OBSTACLES + obstacles];
+		attrs[ATTR_SPEED] = defineRoutingSpeed(road);
+		attrs[ATTR_PRIORITY] = defineSpeedPriority(road);
+		attrs[ATTR_ONEWAY] = isOneWay(road);
+		attrs[ATTR_PENALTY_TRANSITION] = getPenaltyTransition(road);
+		for (int i = 0; i < obstacles; i++) {
+			attrs[ATTR_OBSTACLES + i] = defineRoutingObstacle(road, i);
+		}
+		road.routingAttributes = new RoutingAttributes(this, attrs);
+		// holder and array
+		return 24 + 16 + 4 * attrs.length;
+	}
+	
+	private float[] getRoutingAttributes(RouteDataObject road) {
+		RoutingAttributes attrs = road.routingAttributes;
+		if (attrs != null && attrs.owner == this) {
+			return attrs.values;
+		}
+		return null;
+	}
 
 	@Override
 	public float getMinDefaultSpeed() {
@@ -386,6 +444,14 @@ public class GeneralRouter implements VehicleRouter {
 	public double getRoundaboutTurn() {
 		return roundaboutTurn;
 	}
+
+	/**
+	 * Turn time could be added between roads (turns, roundabouts or penalty of transition between roads).
+	 */
+	public boolean hasTurnCosts() {
+		return leftTurn > 0 || rightTurn > 0 || roundaboutTurn > 0
+				|| getObjContext(RouteDataObjectAttribute.PENALTY_TRANSITION).rules.size() > 0;
+	}
 	@Override
 	public double calculateTurnTime(RouteSegment segment, int segmentEnd, RouteSegment prev, int prevSegmentEnd) {
 		float ts = getPenaltyTransition(segment.getRoad());
@@ -500,6 +566,9 @@ public class GeneralRouter implements VehicleRouter {
 	public class RouteAttributeContext {
 		List<RouteAttributeEvalRule> rules = new ArrayList<RouteAttributeEvalRule>();
 		ParameterContext paramContext = null;
+		// compiled rules : result for each distinct types combination (and incline of segment) of region
+		private final Map<RouteRegion, TypesResultTable> compiled = new ConcurrentHashMap<RouteRegion, TypesResultTable>();
+		private volatile TypesResultTable lastCompiled;
 		
 		public RouteAttributeContext(){
 		}
@@ -534,9 +603,58 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		private Object evaluate(RouteDataObject ro) {
-			return evaluate(convert(ro.region, ro.types));
+			return evaluate(ro.region, ro.types, 0);
 		}
-
+		
+		/**
+		 * Compiled result of rules, incline (percent) is used only by rules of obstacle_srtm_alt_speed.
+		 */
+		Object evaluate(RouteRegion region, int[] types, int incline) {
+			TypesResultTable table = getCompiled(region);
+			if (table == null) {
+				return evaluateRules(region, types, incline);
+			}
+			Object o = table.get(types, incline);
+			if (o == null) {
+				synchronized (universalRules) {
+					o = table.get(types, incline);
+					if (o == null) {
+						o = table.put(types, incline, evaluate(convert(region, types), incline));
+					}
+				}
+			}
+			return o == TypesResultTable.NO_RESULT ? null : o;
+		}
+		
+		private Object evaluateRules(RouteRegion region, int[] types, int incline) {
+			// tag masks and conversion of region types are shared between routers
+			synchronized (universalRules) {
+				return evaluate(convert(region, types), incline);
+			}
+		}
+		
+		private TypesResultTable getCompiled(RouteRegion region) {
+			TypesResultTable table = lastCompiled;
+			if (table != null && table.region == region) {
+				return table;
+			}
+			if (region == null) {
+				return null;
+			}
+			table = compiled.get(region);
+			if (table == null) {
+				synchronized (compiled) {
+					table = compiled.get(region);
+					if (table == null) {
+						table = new TypesResultTable(region);
+						compiled.put(region, table);
+					}
+				}
+			}
+			lastCompiled = table;
+			return table;
+		}
+		
 		public void printRules(PrintStream out) {
 			for(RouteAttributeEvalRule r : rules) {
 				r.printRule(out);
@@ -547,6 +665,8 @@ public class GeneralRouter implements VehicleRouter {
 			RouteAttributeEvalRule ev = new RouteAttributeEvalRule();
 			ev.registerSelectValue(selectValue, selectType);
 			rules.add(ev);	
+			compiled.clear();
+			lastCompiled = null;
 			return ev;
 		}
 		
@@ -554,10 +674,20 @@ public class GeneralRouter implements VehicleRouter {
 			return rules.get(rules.size() - 1);
 		}
 
-		private Object evaluate(BitSet types) {
+		/**
+		 * Interpreted result of rules for types converted by {@link #convert(RouteRegion, int[])}.
+		 */
+		Object evaluate(BitSet types, int incline) {
+			ParameterContext pc = paramContext;
+			if (pc == null || incline != 0) {
+				// incline is evaluated with own context, context of router is shared between threads
+				pc = new ParameterContext();
+				pc.vars = paramContext == null ? Collections.<String, String>emptyMap() : paramContext.vars;
+				pc.incline = incline;
+			}
 			for (int k = 0; k < rules.size(); k++) {
 				RouteAttributeEvalRule r = rules.get(k);
-				Object o = r.eval(types, paramContext);
+				Object o = r.eval(types, pc);
 				if (o != null) {
 					return o;
 				}
@@ -593,7 +723,7 @@ public class GeneralRouter implements VehicleRouter {
 		}
 		
 		public int evaluateInt(RouteRegion region, int[] types, int defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types, 0);
 			if(!(o instanceof Number)){
 				return defValue;
 			}
@@ -608,15 +738,23 @@ public class GeneralRouter implements VehicleRouter {
 			return ((Number)o).floatValue();
 		}
 		
+		public float evaluateFloat(RouteDataObject ro, int incline, float defValue) {
+			Object o = evaluate(ro.region, ro.types, incline);
+			if(!(o instanceof Number)) {
+				return defValue;
+			}
+			return ((Number)o).floatValue();
+		}
+		
 		public float evaluateFloat(RouteRegion region, int[] types, float defValue) {
-			Object o = evaluate(convert(region, types));
+			Object o = evaluate(region, types, 0);
 			if(!(o instanceof Number)) {
 				return defValue;
 			}
 			return ((Number)o).floatValue();
 		}
 		
-		private BitSet convert(RouteRegion reg, int[] types) {
+		BitSet convert(RouteRegion reg, int[] types) {
 			BitSet b = new BitSet(universalRules.size());
 			Map<Integer, Integer> map = regionConvert.get(reg);
 			if(map == null){
@@ -726,7 +864,6 @@ public class GeneralRouter implements VehicleRouter {
 		protected String selectType = null;
 		protected BitSet filterTypes = new BitSet();
 		protected BitSet filterNotTypes = new BitSet();
-		protected BitSet evalFilterTypes = new BitSet();
 		
 		protected Set<String> onlyTags = new LinkedHashSet<String>();
 		protected Set<String> onlyNotTags = new LinkedHashSet<String>();
@@ -842,7 +979,7 @@ public class GeneralRouter implements VehicleRouter {
 			parameters.add(param);
 		}
 
-		public synchronized Object eval(BitSet types, ParameterContext paramContext) {
+		public Object eval(BitSet types, ParameterContext paramContext) {
 			if (matches(types, paramContext)) {
 				return calcSelectValue(types, paramContext);
 			}
@@ -927,14 +1064,11 @@ public class GeneralRouter implements VehicleRouter {
 		}
 
 		private boolean checkAllTypesShouldBePresent(BitSet types) {
-			// Bitset method subset is missing "filterTypes.isSubset(types)"    
-			// reset previous evaluation
-			// evalFilterTypes.clear(); // not needed same as or()
-			evalFilterTypes.or(filterTypes);
-			// evaluate bit intersection and check if filterTypes contained as set in types
-			evalFilterTypes.and(types);
-			if(!evalFilterTypes.equals(filterTypes)) {
-				return false;
+			// Bitset method subset is missing "filterTypes.isSubset(types)"
+			for (int i = filterTypes.nextSetBit(0); i >= 0; i = filterTypes.nextSetBit(i + 1)) {
+				if (!types.get(i)) {
+					return false;
+				}
 			}
 			return true;
 		}
@@ -942,6 +1076,88 @@ public class GeneralRouter implements VehicleRouter {
 	}
 
 
+	/**
+	 * Open addressing table of rules results by types of region objects and incline. Lookup doesn't lock and allocate,
+	 * new entries are added under lock (entries are immutable, so reader sees either entry or empty slot).
+	 */
+	private static class TypesResultTable {
+		static final Object NO_RESULT = new Object();
+		
+		final RouteRegion region;
+		private volatile TypesResult[] table = new TypesResult[64];
+		private int size;
+		
+		TypesResultTable(RouteRegion region) {
+			this.region = region;
+		}
+		
+		private static class TypesResult {
+			final int[] types;
+			final int incline;
+			final int hash;
+			final Object result;
+			
+			TypesResult(int[] types, int incline, int hash, Object result) {
+				this.types = types;
+				this.incline = incline;
+				this.hash = hash;
+				this.result = result;
+			}
+		}
+		
+		private static int hash(int[] types, int incline) {
+			int h = Arrays.hashCode(types) * 31 + incline;
+			return h ^ (h >>> 16);
+		}
+		
+		/**
+		 * @return result, {@link #NO_RESULT} if no rule matches or null if types were not evaluated yet
+		 */
+		Object get(int[] types, int incline) {
+			TypesResult[] t = table;
+			int h = hash(types, incline);
+			int mask = t.length - 1;
+			for (int i = h & mask; ; i = (i + 1) & mask) {
+				TypesResult e = t[i];
+				if (e == null) {
+					return null;
+				}
+				if (e.hash == h && e.incline == incline && Arrays.equals(e.types, types)) {
+					return e.result;
+				}
+			}
+		}
+		
+		synchronized Object put(int[] types, int incline, Object result) {
+			if (result == null) {
+				result = NO_RESULT;
+			}
+			TypesResult[] t = table;
+			if ((size + 1) * 2 > t.length) {
+				TypesResult[] nt = new TypesResult[t.length * 2];
+				for (TypesResult e : t) {
+					if (e != null) {
+						insert(nt, e);
+					}
+				}
+				t = nt;
+			}
+			insert(t, new TypesResult(types.clone(), incline, hash(types, incline), result));
+			size++;
+			table = t;
+			return result;
+		}
+		
+		private static void insert(TypesResult[] t, TypesResult e) {
+			int mask = t.length - 1;
+			int i = e.hash & mask;
+			while (t[i] != null) {
+				i = (i + 1) & mask;
+			}
+			t[i] = e;
+		}
+	}
+
 	public void printRules(PrintStream out) {
 		for(int i = 0; i < RouteDataObjectAttribute.values().length ; i++) {
 			out.println(RouteDataObjectAttribute.values()[i]);
@@ -0,0 +1,333 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.util.MapUtils;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Calculates what is reachable from start point in given time with router of routing context.
+ * Search expands road points from start without target (Dijkstra bounded by time) using the same
+ * segment times as {@link RouteMatrix} and doesn't modify segments of context. Memory of loaded tiles and
+ * search structures is limited by {@link RoutingConfiguration#memoryLimitation}, calculation could be
+ * cancelled by {@link RouteCalculationProgress#isCancelled}. Turn restrictions and turn costs are not taken into
+ * account (point of road network is reached once whatever road leads to it). Every segment which search starts to
+ * pass in max time is kept in result, even if its end is reached faster by other road.
+ * <p>
+ * Polygon of time band is star-shaped hull : the farthest reached point in every direction sector from start.
+ */
+public class IsochroneCalculator {
+
+	private final static Log log = PlatformUtil.getLog(IsochroneCalculator.class);
+	private static final int DEFAULT_SECTORS = 72;
+
+	private final RoutingContext ctx;
+	private int sectors = DEFAULT_SECTORS;
+
+	public static class ReachedSegment {
+		final RouteDataObject road;
+		final int startPoint;
+		final int endPoint;
+		final float startTime;
+		final float endTime;
+
+		ReachedSegment(RouteDataObject road, int startPoint, int endPoint, float startTime, float endTime) {
+			this.road = road;
+			this.startPoint = startPoint;
+			this.endPoint = endPoint;
+			this.startTime = startTime;
+			this.endTime = endTime;
+		}
+
+		public RouteDataObject getRoad() {
+			return road;
+		}
+
+		public int getStartPoint() {
+			return startPoint;
+		}
+
+		public int getEndPoint() {
+			return endPoint;
+		}
+
+		public float getStartTime() {
+			return startTime;
+		}
+
+		/**
+		 * Time to reach end point by this segment, it could be bigger than max time of search (segment is reached partially).
+		 */
+		public float getEndTime() {
+			return endTime;
+		}
+	}
+
+	// the earliest reached segments of every road by segment index and direction
+	private static class RoadSegments {
+		final TLongObjectHashMap<ReachedSegment[]> roads = new TLongObjectHashMap<ReachedSegment[]>();
+		long arraysLength;
+		int size;
+
+		void add(ReachedSegment s) {
+			int ind = 2 * Math.min(s.startPoint, s.endPoint) + (s.startPoint < s.endPoint ? 0 : 1);
+			ReachedSegment[] segments = roads.get(s.road.getId());
+			// road with the same id could have more points in other file
+			if (segments == null || ind >= segments.length) {
+				int length = Math.max(ind + 1, 2 * (s.road.getPointsLength() - 1));
+				ReachedSegment[] old = segments;
+				segments = new ReachedSegment[length];
+				if (old != null) {
+					System.arraycopy(old, 0, segments, 0, old.length);
+					arraysLength -= old.length;
+				}
+				roads.put(s.road.getId(), segments);
+				arraysLength += segments.length;
+			}
+			if (segments[ind] == null) {
+				segments[ind] = s;
+				size++;
+			} else if (s.startTime < segments[ind].startTime) {
+				segments[ind] = s;
+			}
+		}
+
+		long getMemoryUsage() {
+			return roads.capacity() * 13l + arraysLength * 4 + size * 40l;
+		}
+
+		void addTo(List<ReachedSegment> res) {
+			for (ReachedSegment[] segments : roads.valueCollection()) {
+				for (ReachedSegment s : segments) {
+					if (s != null) {
+						res.add(s);
+					}
+				}
+			}
+		}
+	}
+
+	public static class Result {
+		final int startX;
+		final int startY;
+		final float maxTime;
+		final List<ReachedSegment> segments = new ArrayList<ReachedSegment>();
+		int visitedPoints;
+
+		Result(int startX, int startY, float maxTime) {
+			this.startX = startX;
+			this.startY = startY;
+			this.maxTime = maxTime;
+		}
+
+		public List<ReachedSegment> getSegments() {
+			return segments;
+		}
+
+		public float getMaxTime() {
+			return maxTime;
+		}
+
+		public int getVisitedPoints() {
+			return visitedPoints;
+		}
+	}
+
+	public IsochroneCalculator(RoutingContext ctx) {
+		this.ctx = ctx;
+	}
+
+	/**
+	 * Number of direction sectors of polygon (72 by default).
+	 */
+	public void setSectors(int sectors) {
+		this.sectors = sectors;
+	}
+
+	/**
+	 * @return reached segments or null if start point is not found on roads
+	 */
+	public Result calculate(LatLon start, float maxTime) throws IOException, InterruptedException {
+		long time = System.nanoTime();
+		RouteSegmentPoint sp = new RoutePlannerFrontEnd(false).findRouteSegment(start.getLatitude(), start.getLongitude(),
+				ctx, null);
+		if (sp == null) {
+			return null;
+		}
+		VehicleRouter router = ctx.getRouter();
+		Result result = new Result(sp.preciseX, sp.preciseY, maxTime);
+		RoadPointQueue queue = new RoadPointQueue();
+		TLongHashSet settled = new TLongHashSet();
+		// the fastest segment to every reached point, labels of search
+		TLongObjectHashMap<ReachedSegment> reached = new TLongObjectHashMap<ReachedSegment>();
+		RoadSegments segments = new RoadSegments();
+		RouteDataObject road = sp.getRoad();
+		int oneway = router.isOneWay(road);
+		int s = sp.getSegmentStart();
+		if (oneway >= 0) {
+			addStartSegment(reached, segments, queue, router, road, s - 1, s, sp);
+		}
+		if (oneway <= 0) {
+			addStartSegment(reached, segments, queue, router, road, s, s - 1, sp);
+		}
+		while (!queue.isEmpty()) {
+			float cost = queue.peekKey();
+			if (cost > maxTime) {
+				break;
+			}
+			long point = queue.peekPoint();
+			queue.remove();
+			if (!settled.add(point)) {
+				continue;
+			}
+			result.visitedPoints++;
+			expand(result, queue, settled, reached, segments, point, cost);
+			if ((result.visitedPoints & 1023) == 0) {
+				checkLimits(queue, settled, reached, segments, result);
+			}
+		}
+		segments.addTo(result.segments);
+		ctx.visitedSegments = result.visitedPoints;
+		log.info("Isochrone " + maxTime + " s : " + result.segments.size() + " segments, " + result.visitedPoints
+				+ " points visited in " + (System.nanoTime() - time) / 1e6 + " ms");
+		return result;
+	}
+
+	private void checkLimits(RoadPointQueue queue, TLongHashSet settled, TLongObjectHashMap<ReachedSegment> reached,
+			RoadSegments segments, Result result) throws InterruptedException {
+		if (ctx.calculationProgress != null) {
+			ctx.calculationProgress.visitedSegments = result.visitedPoints;
+			if (ctx.calculationProgress.isCancelled) {
+				throw new InterruptedException("Isochrone calculation interrupted");
+			}
+		}
+		// search structures and reached segments (roads belong to tiles)
+		long overhead = queue.getMemoryUsage() + settled.capacity() * 9l + reached.capacity() * (13l + 40l)
+				+ segments.getMemoryUsage();
+		ctx.memoryOverhead = (int) overhead;
+		if (overhead + ctx.getCurrentEstimatedSize() > ctx.config.memoryLimitation * 0.95) {
+			throw new IllegalStateException("There is no enough memory " + ctx.config.memoryLimitation / (1 << 20) + " Mb");
+		}
+	}
+
+	private void addStartSegment(TLongObjectHashMap<ReachedSegment> reached, RoadSegments segments,
+			RoadPointQueue queue, VehicleRouter router, RouteDataObject road, int from, int to, RouteSegmentPoint sp) {
+		float d = (float) BinaryRoutePlanner.squareRootDist(sp.preciseX, sp.preciseY, road.getPoint31XTile(to),
+				road.getPoint31YTile(to));
+		float t = BinaryRoutePlanner.calculateTimeWithObstacles(router, road, d, 0);
+		long next = ContractionHierarchy.nodeKey(road.getPoint31XTile(to), road.getPoint31YTile(to));
+		ReachedSegment segment = new ReachedSegment(road, from, to, 0, t);
+		segments.add(segment);
+		ReachedSegment prev = reached.get(next);
+		if (prev == null || t < prev.endTime) {
+			reached.put(next, segment);
+			queue.push(t, next, d);
+		}
+	}
+
+	private void expand(Result result, RoadPointQueue queue, TLongHashSet settled,
+			TLongObjectHashMap<ReachedSegment> reached, RoadSegments segments, long point, float cost) {
+		VehicleRouter router = ctx.getRouter();
+		int x31 = (int) (point >>> 31);
+		int y31 = (int) (point & ((1l << 31) - 1));
+		RouteSegment s = ctx.loadRouteSegment(x31, y31, ctx.config.memoryLimitation - ctx.memoryOverhead);
+		while (s != null) {
+			RouteDataObject road = s.getRoad();
+			int i = s.getSegmentStart();
+			int oneway = router.isOneWay(road);
+			if (oneway >= 0 && i + 1 < road.getPointsLength()) {
+				relax(result, queue, settled, reached, segments, router, road, i, i + 1, cost);
+			}
+			if (oneway <= 0 && i > 0) {
+				relax(result, queue, settled, reached, segments, router, road, i, i - 1, cost);
+			}
+			s = s.getNext();
+		}
+	}
+
+	private void relax(Result result, RoadPointQueue queue, TLongHashSet settled,
+			TLongObjectHashMap<ReachedSegment> reached, RoadSegments segments, VehicleRouter router,
+			RouteDataObject road, int from, int to, float cost) {
+		float t = BinaryRoutePlanner.calculateSegmentTime(router, road, from, to);
+		if (t < 0) {
+			return;
+		}
+		// segment is kept even if it is reached partially or its end is reached faster by other segment
+		ReachedSegment segment = new ReachedSegment(road, from, to, cost, cost + t);
+		segments.add(segment);
+		long next = ContractionHierarchy.nodeKey(road.getPoint31XTile(to), road.getPoint31YTile(to));
+		if (settled.contains(next)) {
+			return;
+		}
+		ReachedSegment prev = reached.get(next);
+		if (prev != null && prev.endTime <= cost + t) {
+			return;
+		}
+		reached.put(next, segment);
+		if (cost + t <= result.maxTime) {
+			queue.push(cost + t, next, 0);
+		}
+	}
+
+	/**
+	 * Polygon of area reachable in time (not bigger than max time of result).
+	 */
+	public List<LatLon> calculatePolygon(Result result, float time) {
+		double[] sectorDist = new double[sectors];
+		int[] sectorX = new int[sectors];
+		int[] sectorY = new int[sectors];
+		for (ReachedSegment s : result.segments) {
+			if (s.startTime > time) {
+				continue;
+			}
+			int x = s.road.getPoint31XTile(s.endPoint);
+			int y = s.road.getPoint31YTile(s.endPoint);
+			if (s.endTime > time) {
+				// segment is reached partially
+				int sx = s.road.getPoint31XTile(s.startPoint);
+				int sy = s.road.getPoint31YTile(s.startPoint);
+				double k = (time - s.startTime) / (s.endTime - s.startTime);
+				x = (int) (sx + (x - sx) * k);
+				y = (int) (sy + (y - sy) * k);
+			}
+			double dx = MapUtils.convert31XToMeters(x, result.startX, result.startY);
+			double dy = MapUtils.convert31YToMeters(result.startY, y, result.startX);
+			double dist = dx * dx + dy * dy;
+			int sector = (int) ((Math.atan2(dy, dx) + Math.PI) / (2 * Math.PI) * sectors) % sectors;
+			if (dist > sectorDist[sector]) {
+				sectorDist[sector] = dist;
+				sectorX[sector] = x;
+				sectorY[sector] = y;
+			}
+		}
+		List<LatLon> polygon = new ArrayList<LatLon>();
+		for (int i = 0; i < sectors; i++) {
+			if (sectorDist[i] > 0) {
+				polygon.add(new LatLon(MapUtils.get31LatitudeY(sectorY[i]), MapUtils.get31LongitudeX(sectorX[i])));
+			}
+		}
+		return polygon;
+	}
+
+	/**
+	 * Polygons of time bands (for example 5, 10 and 15 minutes).
+	 */
+	public List<List<LatLon>> calculatePolygons(Result result, float[] bands) {
+		List<List<LatLon>> res = new ArrayList<List<LatLon>>();
+		for (float band : bands) {
+			res.add(calculatePolygon(result, Math.min(band, result.maxTime)));
+		}
+		return res;
+	}
+}
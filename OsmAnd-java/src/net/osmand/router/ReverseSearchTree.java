@@ -0,0 +1,114 @@
+package net.osmand.router;
+
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+
+/**
+ * Reverse search (from target point) of the last route calculation kept in routing context when
+ * {@link RoutingConfiguration#incrementalRecalculation} is enabled. Segments of the tree know time to the target
+ * and the way to it, so recalculation to the same target only searches forward from the new start point
+ * until it reaches the tree.
+ * <p>
+ * Result preparation inserts precise start and end points into roads, which shifts point indexes of segments
+ * kept in the tree, so original points of these roads are remembered and restored before the tree is used.
+ * <p>
+ * Tree keeps its segments and their roads in memory after data of context is unloaded, so it is kept only
+ * if it takes less than {@link #MAX_MEMORY_PART} of memory limit.
+ */
+class ReverseSearchTree {
+
+	static final float MAX_MEMORY_PART = 0.25f;
+
+	final VisitedSegmentsMap visited;
+	final VehicleRouter router;
+	// router parameters and impassable roads
+	private final String profileKey;
+	private final BinaryMapIndexReader[] maps;
+	private final long memoryUsage;
+	final int targetX;
+	final int targetY;
+	private final long endRoadId;
+	private final int endSegmentStart;
+	private final List<RouteDataObject> modifiedRoads = new ArrayList<RouteDataObject>();
+	private final List<Object[]> originalPoints = new ArrayList<Object[]>();
+	int reused;
+
+	ReverseSearchTree(RoutingContext ctx, RouteSegmentPoint end, VisitedSegmentsMap visited) {
+		this.visited = visited;
+		this.router = ctx.getRouter();
+		this.profileKey = ContractionHierarchy.getProfileKey(ctx.config);
+		this.maps = ctx.getMaps();
+		this.memoryUsage = estimateMemoryUsage(visited);
+		this.targetX = ctx.targetX;
+		this.targetY = ctx.targetY;
+		this.endRoadId = end.getRoad().getId();
+		this.endSegmentStart = end.getSegmentStart();
+	}
+
+	/**
+	 * Tree could be used if route is calculated by the same router with the same parameters and impassable roads
+	 * on the same maps to the same road segment.
+	 */
+	boolean isValidFor(RoutingContext ctx, RouteSegmentPoint end) {
+		return router == ctx.getRouter() && end.getRoad().getId() == endRoadId
+				&& end.getSegmentStart() == endSegmentStart && visited.size() > 0
+				&& profileKey.equals(ContractionHierarchy.getProfileKey(ctx.config))
+				&& Arrays.equals(maps, ctx.getMaps());
+	}
+
+	/**
+	 * Remember points of road before they are modified.
+	 */
+	void keepPoints(RouteDataObject road) {
+		for (RouteDataObject r : modifiedRoads) {
+			if (r == road) {
+				return;
+			}
+		}
+		modifiedRoads.add(road);
+		originalPoints.add(new Object[] { road.pointsX, road.pointsY, road.pointTypes, road.heightDistanceArray });
+	}
+
+	void restorePoints() {
+		for (int i = 0; i < modifiedRoads.size(); i++) {
+			RouteDataObject road = modifiedRoads.get(i);
+			Object[] points = originalPoints.get(i);
+			if (road.pointsX != points[0]) {
+				road.pointsX = (int[]) points[0];
+				road.pointsY = (int[]) points[1];
+				road.pointTypes = (int[][]) points[2];
+				road.heightDistanceArray = (float[]) points[3];
+				road.routingAttributes = null;
+			}
+		}
+		modifiedRoads.clear();
+		originalPoints.clear();
+	}
+
+	/**
+	 * Estimated size of map, its segments and roads of segments in bytes.
+	 */
+	long getMemoryUsage() {
+		return memoryUsage;
+	}
+
+	private static long estimateMemoryUsage(VisitedSegmentsMap visited) {
+		long size = visited.getMemoryUsage();
+		TLongHashSet roads = new TLongHashSet();
+		for (RouteSegment s : visited.values()) {
+			size += RouteTileCompactor.ROUTE_SEGMENT;
+			if (roads.add(s.getRoad().getId())) {
+				size += RoutingContext.getEstimatedSize(s.getRoad());
+			}
+		}
+		return size;
+	}
+}
@@ -0,0 +1,97 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of road points (with distance) by time, the same point could be added several times.
+ */
+class RoadPointQueue {
+
+	private float[] keys = new float[64];
+	private long[] points = new long[64];
+	private float[] distances = new float[64];
+	private int size;
+
+	void clear() {
+		size = 0;
+	}
+
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Bytes occupied by arrays of queue.
+	 */
+	long getMemoryUsage() {
+		return 3 * RouteSegmentQueue.ARRAY_HEADER + (long) keys.length * (4 + 8 + 4);
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	float peekKey() {
+		return keys[0];
+	}
+
+	long peekPoint() {
+		return points[0];
+	}
+
+	float peekDistance() {
+		return distances[0];
+	}
+
+	void push(float key, long point, float dist) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			points = Arrays.copyOf(points, size * 2);
+			distances = Arrays.copyOf(distances, size * 2);
+		}
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] <= key) {
+				break;
+			}
+			move(parent, i);
+			i = parent;
+		}
+		keys[i] = key;
+		points[i] = point;
+		distances[i] = dist;
+	}
+
+	void remove() {
+		size--;
+		if (size == 0) {
+			return;
+		}
+		float key = keys[size];
+		long point = points[size];
+		float dist = distances[size];
+		int i = 0;
+		int half = size >>> 1;
+		while (i < half) {
+			int child = 2 * i + 1;
+			if (child + 1 < size && keys[child + 1] < keys[child]) {
+				child++;
+			}
+			if (key <= keys[child]) {
+				break;
+			}
+			move(child, i);
+			i = child;
+		}
+		keys[i] = key;
+		points[i] = point;
+		distances[i] = dist;
+	}
+
+	private void move(int from, int to) {
+		keys[to] = keys[from];
+		points[to] = points[from];
+		distances[to] = distances[from];
+	}
+}
@@ -0,0 +1,446 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapReaderPool;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Matrix of travel times and distances from many sources to many targets.
+ * Every row is one-to-many Dijkstra search from the source over road points which stops when all targets are reached.
+ * Search keeps own labels and doesn't modify segments of routing context, so tiles loaded by one context are
+ * reused by all rows it calculates. Rows could be calculated in parallel by executor : every task has own readers
+ * taken from pools and own routing context, decoded tiles are shared by all contexts through
+ * {@link RoutingConfiguration#routeSubregionCache} (when it is set).
+ * <p>
+ * Time is calculated as in {@link BinaryRoutePlanner} except turn costs, which depend on the incoming road.
+ */
+public class RouteMatrix {
+
+	private final static Log log = PlatformUtil.getLog(RouteMatrix.class);
+	public static final float UNREACHABLE = -1;
+	// without max time row search stops at time of route to the farthest target driven with min speed of router
+	// and this detour, so one unreachable target doesn't make every row search in the whole graph
+	private static final float MAX_DETOUR = 3;
+	private static final float MIN_TIME_LIMIT = 10 * 60;
+
+	private final RoutingConfiguration config;
+	private final BinaryMapReaderPool[] pools;
+	private ExecutorService executor;
+	private int parallelism = 1;
+	private float maxTime = 0;
+
+	public static class Result {
+		final float[][] times;
+		final float[][] distances;
+		int visitedPoints;
+
+		Result(int sources, int targets) {
+			times = new float[sources][targets];
+			distances = new float[sources][targets];
+			for (int i = 0; i < sources; i++) {
+				Arrays.fill(times[i], UNREACHABLE);
+				Arrays.fill(distances[i], UNREACHABLE);
+			}
+		}
+
+		/**
+		 * @return time in seconds or {@link RouteMatrix#UNREACHABLE}
+		 */
+		public float getTime(int source, int target) {
+			return times[source][target];
+		}
+
+		/**
+		 * @return distance in meters of the fastest route or {@link RouteMatrix#UNREACHABLE}
+		 */
+		public float getDistance(int source, int target) {
+			return distances[source][target];
+		}
+
+		public float[][] getTimes() {
+			return times;
+		}
+
+		public float[][] getDistances() {
+			return distances;
+		}
+
+		public int getVisitedPoints() {
+			return visitedPoints;
+		}
+
+		/**
+		 * Times as cost matrix for {@link net.osmand.TspAnt} and {@link net.osmand.TspHeldKarp},
+		 * unreachable pairs cost more than any tour through reachable ones.
+		 */
+		public double[][] getTimeCosts() {
+			double total = 1;
+			for (float[] row : times) {
+				for (float t : row) {
+					if (t > 0) {
+						total += t;
+					}
+				}
+			}
+			double[][] res = new double[times.length][];
+			for (int i = 0; i < times.length; i++) {
+				res[i] = new double[times[i].length];
+				for (int j = 0; j < times[i].length; j++) {
+					res[i][j] = times[i][j] == UNREACHABLE ? total : times[i][j];
+				}
+			}
+			return res;
+		}
+	}
+
+	// source or target projected on the road
+	private static class Location {
+		final RouteDataObject road;
+		// projection lies between segment - 1 and segment
+		final int segment;
+		final int x31;
+		final int y31;
+
+		Location(RouteSegmentPoint p) {
+			this.road = p.getRoad();
+			this.segment = p.getSegmentStart();
+			this.x31 = p.preciseX;
+			this.y31 = p.preciseY;
+		}
+
+		long pointKey(int ind) {
+			return ContractionHierarchy.nodeKey(road.getPoint31XTile(ind), road.getPoint31YTile(ind));
+		}
+
+		float distToPoint(int ind) {
+			return (float) BinaryRoutePlanner.squareRootDist(x31, y31, road.getPoint31XTile(ind), road.getPoint31YTile(ind));
+		}
+	}
+
+	public RouteMatrix(RoutingConfiguration config, BinaryMapReaderPool[] pools) {
+		this.config = config;
+		this.pools = pools;
+	}
+
+	/**
+	 * Rows are calculated by parallelism tasks of executor (null - in calling thread).
+	 */
+	public void setExecutor(ExecutorService executor, int parallelism) {
+		this.executor = executor;
+		this.parallelism = Math.max(1, parallelism);
+	}
+
+	/**
+	 * Targets which can't be reached in maxTime seconds are unreachable (0 - limit of every row is estimated by
+	 * straight line distance to the farthest target and min speed of router).
+	 */
+	public void setMaxTime(float maxTime) {
+		this.maxTime = maxTime;
+	}
+
+	public Result calculate(List<LatLon> sources, List<LatLon> targets) throws IOException, InterruptedException {
+		long time = System.currentTimeMillis();
+		final Result result = new Result(sources.size(), targets.size());
+		final Location[] sourceLocations = new Location[sources.size()];
+		final Location[] targetLocations = new Location[targets.size()];
+		BinaryMapIndexReader[] readers = acquireReaders();
+		try {
+			RoutingContext ctx = buildContext(readers);
+			locate(ctx, sources, sourceLocations);
+			locate(ctx, targets, targetLocations);
+		} finally {
+			releaseReaders(readers);
+		}
+		final TLongObjectHashMap<TIntArrayList> targetPoints = new TLongObjectHashMap<TIntArrayList>();
+		for (int t = 0; t < targetLocations.length; t++) {
+			Location l = targetLocations[t];
+			if (l != null) {
+				addTargetPoint(targetPoints, l.pointKey(l.segment - 1), t);
+				addTargetPoint(targetPoints, l.pointKey(l.segment), t);
+			}
+		}
+		final AtomicInteger nextRow = new AtomicInteger();
+		if (executor == null || parallelism == 1 || sources.size() == 1) {
+			calculateRows(result, nextRow, sourceLocations, targetLocations, targetPoints);
+		} else {
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			for (int i = 0; i < Math.min(parallelism, sources.size()); i++) {
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						calculateRows(result, nextRow, sourceLocations, targetLocations, targetPoints);
+						return null;
+					}
+				}));
+			}
+			try {
+				for (Future<?> f : futures) {
+					f.get();
+				}
+			} catch (ExecutionException e) {
+				for (Future<?> f : futures) {
+					f.cancel(true);
+				}
+				if (e.getCause() instanceof IOException) {
+					throw (IOException) e.getCause();
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		log.info("Route matrix " + sources.size() + "x" + targets.size() + " calculated in "
+				+ (System.currentTimeMillis() - time) + " ms, visited points " + result.visitedPoints);
+		return result;
+	}
+
+	private static void addTargetPoint(TLongObjectHashMap<TIntArrayList> targetPoints, long key, int target) {
+		TIntArrayList l = targetPoints.get(key);
+		if (l == null) {
+			l = new TIntArrayList(1);
+			targetPoints.put(key, l);
+		}
+		l.add(target);
+	}
+
+	private void locate(RoutingContext ctx, List<LatLon> points, Location[] res) throws IOException {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		for (int i = 0; i < points.size(); i++) {
+			RouteSegmentPoint p = fe.findRouteSegment(points.get(i).getLatitude(), points.get(i).getLongitude(), ctx, null);
+			if (p != null) {
+				res[i] = new Location(p);
+			} else {
+				log.warn("Point " + points.get(i) + " is not found on roads");
+			}
+		}
+	}
+
+	private BinaryMapIndexReader[] acquireReaders() throws IOException {
+		BinaryMapIndexReader[] readers = new BinaryMapIndexReader[pools.length];
+		for (int i = 0; i < pools.length; i++) {
+			readers[i] = pools[i].acquire();
+		}
+		return readers;
+	}
+
+	private void releaseReaders(BinaryMapIndexReader[] readers) {
+		for (int i = 0; i < pools.length; i++) {
+			pools[i].release(readers[i]);
+		}
+	}
+
+	private RoutingContext buildContext(BinaryMapIndexReader[] readers) {
+		return new RoutingContext(config, null, readers, RouteCalculationMode.NORMAL);
+	}
+
+	private void calculateRows(Result result, AtomicInteger nextRow, Location[] sources, Location[] targets,
+			TLongObjectHashMap<TIntArrayList> targetPoints) throws IOException, InterruptedException {
+		BinaryMapIndexReader[] readers = acquireReaders();
+		try {
+			Search search = new Search(buildContext(readers), targets, targetPoints);
+			int row;
+			while ((row = nextRow.getAndIncrement()) < sources.length) {
+				if (Thread.interrupted()) {
+					throw new InterruptedException("Route matrix calculation interrupted");
+				}
+				if (sources[row] != null) {
+					int visited = search.run(sources[row], result.times[row], result.distances[row]);
+					synchronized (result) {
+						result.visitedPoints += visited;
+					}
+				}
+			}
+		} finally {
+			releaseReaders(readers);
+		}
+	}
+
+	private class Search {
+		private final RoutingContext ctx;
+		private final VehicleRouter router;
+		private final Location[] targets;
+		private final TLongObjectHashMap<TIntArrayList> targetPoints;
+		private final RoadPointQueue queue = new RoadPointQueue();
+		private final TLongHashSet settled = new TLongHashSet();
+		private float[] times;
+		private float[] distances;
+		private int found;
+		private float maxFound;
+		private float timeLimit;
+
+		Search(RoutingContext ctx, Location[] targets, TLongObjectHashMap<TIntArrayList> targetPoints) {
+			this.ctx = ctx;
+			this.router = ctx.getRouter();
+			this.targets = targets;
+			this.targetPoints = targetPoints;
+		}
+
+		int run(Location source, float[] times, float[] distances) throws IOException {
+			this.times = times;
+			this.distances = distances;
+			found = 0;
+			maxFound = 0;
+			queue.clear();
+			settled.clear();
+			int reachable = 0;
+			float farthest = 0;
+			for (Location t : targets) {
+				if (t != null) {
+					reachable++;
+					farthest = Math.max(farthest, (float) BinaryRoutePlanner.squareRootDist(source.x31, source.y31,
+							t.x31, t.y31));
+				}
+			}
+			timeLimit = maxTime > 0 ? maxTime :
+					Math.max(MIN_TIME_LIMIT, farthest * MAX_DETOUR / router.getMinDefaultSpeed());
+			int oneway = router.isOneWay(source.road);
+			if (oneway >= 0) {
+				float d = source.distToPoint(source.segment);
+				queue.push(time(source.road, d), source.pointKey(source.segment), d);
+			}
+			if (oneway <= 0) {
+				float d = source.distToPoint(source.segment - 1);
+				queue.push(time(source.road, d), source.pointKey(source.segment - 1), d);
+			}
+			for (int t = 0; t < targets.length; t++) {
+				if (targets[t] != null && targets[t].road.getId() == source.road.getId()) {
+					calculateOnSameRoad(source, t, oneway);
+				}
+			}
+			int visited = 0;
+			while (!queue.isEmpty()) {
+				float cost = queue.peekKey();
+				if ((found == reachable && cost >= maxFound) || cost > timeLimit) {
+					break;
+				}
+				long point = queue.peekPoint();
+				float dist = queue.peekDistance();
+				queue.remove();
+				if (!settled.add(point)) {
+					continue;
+				}
+				visited++;
+				TIntArrayList pointTargets = targetPoints.get(point);
+				if (pointTargets != null) {
+					for (int i = 0; i < pointTargets.size(); i++) {
+						reachTarget(pointTargets.get(i), point, cost, dist);
+					}
+				}
+				expand(point, cost, dist);
+			}
+			return visited;
+		}
+
+		private float time(RouteDataObject road, float dist) {
+			return BinaryRoutePlanner.calculateTimeWithObstacles(router, road, dist, 0);
+		}
+
+		private void update(int target, float time, float dist) {
+			if (time > timeLimit) {
+				return;
+			}
+			if (times[target] == UNREACHABLE || time < times[target]) {
+				if (times[target] == UNREACHABLE) {
+					found++;
+				}
+				times[target] = time;
+				distances[target] = dist;
+				maxFound = 0;
+				for (float t : times) {
+					maxFound = Math.max(maxFound, t);
+				}
+			}
+		}
+
+		private void reachTarget(int target, long point, float cost, float dist) {
+			Location t = targets[target];
+			int oneway = router.isOneWay(t.road);
+			// move from point to projection along target road
+			if (oneway >= 0 && t.pointKey(t.segment - 1) == point) {
+				float d = t.distToPoint(t.segment - 1);
+				update(target, cost + time(t.road, d), dist + d);
+			}
+			if (oneway <= 0 && t.pointKey(t.segment) == point) {
+				float d = t.distToPoint(t.segment);
+				update(target, cost + time(t.road, d), dist + d);
+			}
+		}
+
+		private void calculateOnSameRoad(Location s, int target, int oneway) {
+			Location t = targets[target];
+			float sPos = s.distToPoint(s.segment - 1);
+			float tPos = t.distToPoint(t.segment - 1);
+			boolean ahead = t.segment > s.segment || (t.segment == s.segment && tPos >= sPos);
+			float d;
+			if (t.segment == s.segment) {
+				d = Math.abs(tPos - sPos);
+			} else if (ahead) {
+				d = s.distToPoint(s.segment) + roadDistance(s.road, s.segment, t.segment - 1) + tPos;
+			} else {
+				d = sPos + roadDistance(s.road, t.segment, s.segment - 1) + t.distToPoint(t.segment);
+			}
+			if ((ahead && oneway >= 0) || (!ahead && oneway <= 0)) {
+				update(target, time(s.road, d), d);
+			}
+		}
+
+		private float roadDistance(RouteDataObject road, int from, int to) {
+			float d = 0;
+			for (int i = from + 1; i <= to; i++) {
+				d += BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(i - 1), road.getPoint31YTile(i - 1),
+						road.getPoint31XTile(i), road.getPoint31YTile(i));
+			}
+			return d;
+		}
+
+		private void expand(long point, float cost, float dist) {
+			int x31 = (int) (point >>> 31);
+			int y31 = (int) (point & ((1l << 31) - 1));
+			RouteSegment s = ctx.loadRouteSegment(x31, y31, ctx.config.memoryLimitation);
+			while (s != null) {
+				RouteDataObject road = s.getRoad();
+				int i = s.getSegmentStart();
+				int oneway = router.isOneWay(road);
+				if (oneway >= 0 && i + 1 < road.getPointsLength()) {
+					relax(road, i, i + 1, cost, dist);
+				}
+				if (oneway <= 0 && i > 0) {
+					relax(road, i, i - 1, cost, dist);
+				}
+				s = s.getNext();
+			}
+		}
+
+		private void relax(RouteDataObject road, int from, int to, float cost, float dist) {
+			long next = ContractionHierarchy.nodeKey(road.getPoint31XTile(to), road.getPoint31YTile(to));
+			if (settled.contains(next)) {
+				return;
+			}
+			float t = BinaryRoutePlanner.calculateSegmentTime(router, road, from, to);
+			if (t >= 0) {
+				float d = (float) BinaryRoutePlanner.squareRootDist(road.getPoint31XTile(from), road.getPoint31YTile(from),
+						road.getPoint31XTile(to), road.getPoint31YTile(to));
+				queue.push(cost + t, next, dist + d);
+			}
+		}
+	}
+}
@@ -4,17 +4,22 @@ package net.osmand.router;
 import net.osmand.NativeLibrary;
 import net.osmand.PlatformUtil;
 import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapReaderPool;
+import net.osmand.binary.BinaryMapReaderStats.Section;
 import net.osmand.binary.BinaryMapRouteReaderAdapter;
 import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
 import net.osmand.binary.RouteDataObject;
 import net.osmand.data.LatLon;
 import net.osmand.data.QuadPoint;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegment;
 import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
 import net.osmand.util.MapUtils;
 
 import org.apache.commons.logging.Log;
 
+import gnu.trove.list.array.TIntArrayList;
+
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -22,12 +27,21 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class RoutePlannerFrontEnd {
 
 	private boolean useOldVersion;
 	protected static final Log log = PlatformUtil.getLog(RoutePlannerFrontEnd.class);
+	// how often progress of legs calculated at once is summed
+	private static final long LEG_PROGRESS_UPDATE_MS = 100;
 	public boolean useSmartRouteRecalculation = true;
+	// reverse search of the last calculation, used by the next calculation with new context to the same target
+	private ReverseSearchTree reverseSearchTree;
 
 	public RoutePlannerFrontEnd(boolean useOldVersion) {
 		this.useOldVersion = useOldVersion;
@@ -36,7 +50,9 @@ public class RoutePlannerFrontEnd {
 	public enum RouteCalculationMode {
 		BASE,
 		NORMAL,
-		COMPLEX
+		COMPLEX,
+		// precalculated contraction hierarchy of configuration, A* if hierarchy is missing or route is not found
+		HIERARCHY
 	}
 
 	public RoutingContext buildRoutingContext(RoutingConfiguration config, NativeLibrary nativeLibrary, BinaryMapIndexReader[] map, RouteCalculationMode rm) {
@@ -139,6 +155,14 @@ public class RoutePlannerFrontEnd {
 		if (ctx.calculationProgress == null) {
 			ctx.calculationProgress = new RouteCalculationProgress();
 		}
+		if (ctx.reverseSearchTree == null && useSmartRouteRecalculation) {
+			ctx.reverseSearchTree = reverseSearchTree;
+		}
+		reverseSearchTree = null;
+		if (ctx.reverseSearchTree != null) {
+			// points of roads should be the same as during calculation of the tree
+			ctx.reverseSearchTree.restorePoints();
+		}
 		boolean intermediatesEmpty = intermediates == null || intermediates.isEmpty();
 		List<LatLon> targets = new ArrayList<>();
 		targets.add(end);
@@ -163,7 +187,7 @@ public class RoutePlannerFrontEnd {
 			List<RouteSegmentResult> ls = searchRoute(nctx, start, end, intermediates);
 			routeDirection = PrecalculatedRouteDirection.build(ls, ctx.config.DEVIATION_RADIUS, ctx.getRouter().getMaxDefaultSpeed());
 		}
-		if (intermediatesEmpty && ctx.nativeLib != null) {
+		if (intermediatesEmpty && ctx.nativeLib != null && ctx.calculationMode != RouteCalculationMode.HIERARCHY) {
 			ctx.startX = MapUtils.get31TileNumberX(start.getLongitude());
 			ctx.startY = MapUtils.get31TileNumberY(start.getLatitude());
 			ctx.targetX = MapUtils.get31TileNumberX(end.getLongitude());
@@ -179,7 +203,7 @@ public class RoutePlannerFrontEnd {
 			if (res != null) {
 				new RouteResultPreparation().printResults(ctx, start, end, res);
 			}
-			makeStartEndPointsPrecise(res, start, end, intermediates);
+			makeStartEndPointsPrecise(ctx, res, start, end, intermediates);
 			return res;
 		}
 		int indexNotFound = 0;
@@ -198,18 +222,23 @@ public class RoutePlannerFrontEnd {
 			return null;
 		}
 		List<RouteSegmentResult> res = searchRoute(ctx, points, routeDirection);
+		if (useSmartRouteRecalculation) {
+			reverseSearchTree = ctx.reverseSearchTree;
+		}
 		// make start and end more precise
-		makeStartEndPointsPrecise(res, start, end, intermediates);
+		makeStartEndPointsPrecise(ctx, res, start, end, intermediates);
 		if (res != null) {
 			new RouteResultPreparation().printResults(ctx, start, end, res);
 		}
 		return res;
 	}
 
-	protected void makeStartEndPointsPrecise(List<RouteSegmentResult> res, LatLon start, LatLon end, List<LatLon> intermediates) {
+	protected void makeStartEndPointsPrecise(RoutingContext ctx, List<RouteSegmentResult> res, LatLon start, LatLon end,
+			List<LatLon> intermediates) {
+		ReverseSearchTree tree = ctx.reverseSearchTree;
 		if (res.size() > 0) {
-			updateResult(res.get(0), start, true);
-			updateResult(res.get(res.size() - 1), end, false);
+			updateResult(res.get(0), start, true, tree);
+			updateResult(res.get(res.size() - 1), end, false, tree);
 			if (intermediates != null) {
 				int k = 1;
 				for (int i = 0; i < intermediates.size(); i++) {
@@ -228,9 +257,9 @@ public class RoutePlannerFrontEnd {
 									break;
 								}
 							}
-							updateResult(res.get(k), ll, false);
+							updateResult(res.get(k), ll, false, tree);
 							if (k < res.size() - 1) {
-								updateResult(res.get(k + 1), ll, true);
+								updateResult(res.get(k + 1), ll, true, tree);
 							}
 							break;
 						}
@@ -250,7 +279,7 @@ public class RoutePlannerFrontEnd {
 		return currentsDist;
 	}
 
-	private void updateResult(RouteSegmentResult routeSegmentResult, LatLon point, boolean st) {
+	private void updateResult(RouteSegmentResult routeSegmentResult, LatLon point, boolean st, ReverseSearchTree tree) {
 		int px = MapUtils.get31TileNumberX(point.getLongitude());
 		int py = MapUtils.get31TileNumberY(point.getLatitude());
 		int pind = st ? routeSegmentResult.getStartPointIndex() : routeSegmentResult.getEndPointIndex();
@@ -291,6 +320,9 @@ public class RoutePlannerFrontEnd {
 		}
 
 		if (insert != 0) {
+			if (tree != null) {
+				tree.keepPoints(r);
+			}
 			if (st && routeSegmentResult.getStartPointIndex() < routeSegmentResult.getEndPointIndex()) {
 				routeSegmentResult.setEndPointIndex(routeSegmentResult.getEndPointIndex() + 1);
 			}
@@ -337,6 +369,29 @@ public class RoutePlannerFrontEnd {
 		if (routeDirection != null) {
 			ctx.precalculatedRouteDirection = routeDirection.adopt(ctx);
 		}
+		ReverseSearchTree tree = ctx.reverseSearchTree;
+		ctx.reverseSearchTree = null;
+		if (tree != null && tree.isValidFor(ctx, end) && ctx.nativeLib == null && !useOldVersion
+				&& ctx.calculationMode != RouteCalculationMode.HIERARCHY) {
+			refreshProgressDistance(ctx);
+			FinalRouteSegment finalSegment = new BinaryRoutePlanner().searchRouteIncremental(ctx, start, tree);
+			if (finalSegment != null) {
+				ctx.reverseSearchTree = tree;
+				ctx.finalRouteSegment = finalSegment;
+				return new RouteResultPreparation().prepareResult(ctx, finalSegment);
+			}
+			log.info("Route doesn't reach reverse search tree, it is calculated from scratch");
+			ctx.initStartAndTargetPoints(start, recalculationEnd != null ? recalculationEnd : end);
+		}
+		ContractionHierarchy ch = ctx.config.contractionHierarchy;
+		if (ctx.calculationMode == RouteCalculationMode.HIERARCHY && ch != null && recalculationEnd == null
+				&& ch.isValidFor(ctx.getMaps(), ctx.config)) {
+			List<RouteSegmentResult> res = ch.searchRoute(ctx, start, end);
+			if (res != null) {
+				return new RouteResultPreparation().prepareResult(ctx, res);
+			}
+			log.info("Route is not found in contraction hierarchy, A* is used");
+		}
 		if (ctx.nativeLib != null) {
 			return runNativeRouting(ctx, recalculationEnd);
 		} else {
@@ -434,6 +489,11 @@ public class RoutePlannerFrontEnd {
 			}
 			return searchRoute(ctx, points.get(0), points.get(1), routeDirection);
 		}
+		// with speeds by time of day leg departs at arrival time of the previous leg, so legs are calculated one by one
+		if (ctx.config.intermediateLegsExecutor != null && ctx.previouslyCalculatedRoute == null && ctx.nativeLib == null
+				&& ctx.visitor == null && ctx.config.speedProfiles == null) {
+			return searchRouteLegsInParallel(ctx, points, routeDirection);
+		}
 
 		ArrayList<RouteSegmentResult> firstPartRecalculatedRoute = null;
 		ArrayList<RouteSegmentResult> restPartRecalculatedRoute = null;
@@ -464,6 +524,7 @@ public class RoutePlannerFrontEnd {
 			}
 		}
 		List<RouteSegmentResult> results = new ArrayList<RouteSegmentResult>();
+		TIntArrayList joints = new TIntArrayList();
 		for (int i = 0; i < points.size() - 1; i++) {
 			RoutingContext local = new RoutingContext(ctx);
 			if (i == 0) {
@@ -473,18 +534,16 @@ public class RoutePlannerFrontEnd {
 			}
 			local.visitor = ctx.visitor;
 			local.calculationProgress = ctx.calculationProgress;
+			if (!results.isEmpty()) {
+				local.setDepartureTime(results.get(results.size() - 1).getArrivalTime(), ctx.getDepartureTimeZone());
+			}
 			List<RouteSegmentResult> res = searchRouteInternalPrepare(local, points.get(i), points.get(i + 1), routeDirection);
 
+			if (i > 0) {
+				joints.add(results.size());
+			}
 			results.addAll(res);
-			ctx.distinctLoadedTiles += local.distinctLoadedTiles;
-			ctx.loadedTiles += local.loadedTiles;
-			ctx.visitedSegments += local.visitedSegments;
-			ctx.loadedPrevUnloadedTiles += local.loadedPrevUnloadedTiles;
-			ctx.timeToCalculate += local.timeToCalculate;
-			ctx.timeToLoad += local.timeToLoad;
-			ctx.timeToLoadHeaders += local.timeToLoadHeaders;
-			ctx.relaxedSegments += local.relaxedSegments;
-			ctx.routingTime += local.routingTime;
+			addLegStatistics(ctx, local);
 
 			local.unloadAllData(ctx);
 			if (restPartRecalculatedRoute != null) {
@@ -493,10 +552,192 @@ public class RoutePlannerFrontEnd {
 			}
 		}
 		ctx.unloadAllData();
+		new RouteResultPreparation().prepareTurnsAtJoints(ctx, results, joints);
 		return results;
 
 	}
 
+	private void addLegStatistics(RoutingContext ctx, RoutingContext local) {
+		ctx.distinctLoadedTiles += local.distinctLoadedTiles;
+		ctx.loadedTiles += local.loadedTiles;
+		ctx.visitedSegments += local.visitedSegments;
+		ctx.loadedPrevUnloadedTiles += local.loadedPrevUnloadedTiles;
+		ctx.timeToCalculate += local.timeToCalculate;
+		ctx.timeToLoad += local.timeToLoad;
+		ctx.timeToLoadHidden += local.timeToLoadHidden;
+		ctx.timeToLoadHeaders += local.timeToLoadHeaders;
+		ctx.relaxedSegments += local.relaxedSegments;
+		ctx.routingTime += local.routingTime;
+	}
+
+	/**
+	 * Calculates legs between intermediate points at once by executor of configuration. Every leg has own readers
+	 * taken from pools of route files, own routing context with a part of memory limit (decoded tiles are shared by
+	 * {@link RoutingConfiguration#routeSubregionCache}) and own progress which is summed into progress of calculation,
+	 * start and end points are copied because search modifies them.
+	 */
+	private List<RouteSegmentResult> searchRouteLegsInParallel(final RoutingContext ctx, List<RouteSegmentPoint> points,
+			final PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
+		int legs = points.size() - 1;
+		final RoutingContext[] locals = new RoutingContext[legs];
+		final RouteCalculationProgress[] progress = new RouteCalculationProgress[legs];
+		final RoutingConfiguration legConfig = ctx.config.copy(ctx.config.memoryLimitation / legs);
+		final BinaryMapReaderPool[] pools = openPools(ctx);
+		List<Future<List<RouteSegmentResult>>> futures = new ArrayList<Future<List<RouteSegmentResult>>>();
+		try {
+			for (int i = 0; i < legs; i++) {
+				final int leg = i;
+				final RouteSegmentPoint start = copyPoint(points.get(i));
+				final RouteSegmentPoint end = copyPoint(points.get(i + 1));
+				progress[i] = new RouteCalculationProgress();
+				progress[i].isCancelled = ctx.calculationProgress != null && ctx.calculationProgress.isCancelled;
+				futures.add(ctx.config.intermediateLegsExecutor.submit(new Callable<List<RouteSegmentResult>>() {
+					@Override
+					public List<RouteSegmentResult> call() throws Exception {
+						BinaryMapIndexReader[] readers = new BinaryMapIndexReader[pools.length];
+						try {
+							for (int k = 0; k < pools.length; k++) {
+								readers[k] = pools[k].acquire();
+							}
+							RoutingContext local = new RoutingContext(legConfig, null, readers, ctx.calculationMode);
+							local.leftSideNavigation = ctx.leftSideNavigation;
+							local.calculationProgress = progress[leg];
+							locals[leg] = local;
+							List<RouteSegmentResult> res = searchRouteInternalPrepare(local, start, end, routeDirection);
+							local.unloadAllData();
+							return res;
+						} finally {
+							for (int k = 0; k < readers.length; k++) {
+								if (readers[k] != null) {
+									pools[k].release(readers[k]);
+								}
+							}
+						}
+					}
+				}));
+			}
+			List<RouteSegmentResult> results = new ArrayList<RouteSegmentResult>();
+			TIntArrayList joints = new TIntArrayList();
+			for (int i = 0; i < legs; i++) {
+				List<RouteSegmentResult> res = waitLeg(ctx, futures.get(i), progress);
+				if (i > 0) {
+					joints.add(results.size());
+				}
+				results.addAll(res);
+				addLegStatistics(ctx, locals[i]);
+			}
+			mergeLegsProgress(ctx.calculationProgress, progress);
+			new RouteResultPreparation().prepareTurnsAtJoints(ctx, results, joints);
+			return results;
+		} catch (ExecutionException e) {
+			cancelLegs(futures, progress);
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof InterruptedException) {
+				throw (InterruptedException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalStateException(cause);
+		} catch (InterruptedException e) {
+			cancelLegs(futures, progress);
+			throw e;
+		} finally {
+			// readers still acquired by cancelled legs are closed by pools when they are released
+			for (BinaryMapReaderPool pool : pools) {
+				pool.close();
+			}
+		}
+	}
+
+	private static List<RouteSegmentResult> waitLeg(RoutingContext ctx, Future<List<RouteSegmentResult>> future,
+			RouteCalculationProgress[] progress) throws ExecutionException, InterruptedException {
+		while (true) {
+			try {
+				return future.get(LEG_PROGRESS_UPDATE_MS, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				mergeLegsProgress(ctx.calculationProgress, progress);
+			}
+		}
+	}
+
+	private static void cancelLegs(List<Future<List<RouteSegmentResult>>> futures, RouteCalculationProgress[] progress) {
+		for (RouteCalculationProgress p : progress) {
+			if (p != null) {
+				p.isCancelled = true;
+			}
+		}
+		for (Future<?> f : futures) {
+			f.cancel(true);
+		}
+	}
+
+	/**
+	 * Sums progress of legs into progress of calculation and passes its cancellation to the legs.
+	 */
+	private static void mergeLegsProgress(RouteCalculationProgress total, RouteCalculationProgress[] progress) {
+		if (total == null) {
+			return;
+		}
+		float distanceFromBegin = 0, distanceFromEnd = 0, directDistance = 0, reverseDistance = 0;
+		float totalEstimatedDistance = 0, routingCalculatedTime = 0;
+		int directSegmentQueueSize = 0, reverseSegmentQueueSize = 0, loadedTiles = 0, visitedSegments = 0;
+		boolean requestPrivateAccessRouting = false;
+		for (RouteCalculationProgress p : progress) {
+			if (p == null) {
+				continue;
+			}
+			if (total.isCancelled) {
+				p.isCancelled = true;
+			}
+			distanceFromBegin += p.distanceFromBegin;
+			distanceFromEnd += p.distanceFromEnd;
+			directDistance += p.directDistance;
+			reverseDistance += p.reverseDistance;
+			totalEstimatedDistance += p.totalEstimatedDistance;
+			routingCalculatedTime += p.routingCalculatedTime;
+			directSegmentQueueSize += p.directSegmentQueueSize;
+			reverseSegmentQueueSize += p.reverseSegmentQueueSize;
+			loadedTiles += p.loadedTiles;
+			visitedSegments += p.visitedSegments;
+			requestPrivateAccessRouting |= p.requestPrivateAccessRouting;
+		}
+		total.distanceFromBegin = distanceFromBegin;
+		total.distanceFromEnd = distanceFromEnd;
+		total.directDistance = directDistance;
+		total.reverseDistance = reverseDistance;
+		total.totalEstimatedDistance = totalEstimatedDistance;
+		total.routingCalculatedTime = routingCalculatedTime;
+		total.directSegmentQueueSize = directSegmentQueueSize;
+		total.reverseSegmentQueueSize = reverseSegmentQueueSize;
+		total.loadedTiles = loadedTiles;
+		total.visitedSegments = visitedSegments;
+		total.requestPrivateAccessRouting |= requestPrivateAccessRouting;
+	}
+
+	private static RouteSegmentPoint copyPoint(RouteSegmentPoint p) {
+		RouteSegmentPoint c = new RouteSegmentPoint(new RouteDataObject(p.getRoad()), p.getSegmentStart(), p.distSquare);
+		c.preciseX = p.preciseX;
+		c.preciseY = p.preciseY;
+		if (p.others != null) {
+			c.others = new ArrayList<RouteSegmentPoint>(p.others.size());
+			for (RouteSegmentPoint o : p.others) {
+				c.others.add(o == p ? c : copyPoint(o));
+			}
+		}
+		return c;
+	}
+
+	private static BinaryMapReaderPool[] openPools(RoutingContext ctx) throws IOException {
+		BinaryMapIndexReader[] maps = ctx.getMaps();
+		BinaryMapReaderPool[] pools = new BinaryMapReaderPool[maps.length];
+		for (int i = 0; i < maps.length; i++) {
+			pools[i] = new BinaryMapReaderPool(maps[i], false, Section.ROUTE);
+		}
+		return pools;
+	}
+
 	@SuppressWarnings("static-access")
 	private List<RouteSegmentResult> searchRoute(final RoutingContext ctx, RouteSegmentPoint start, RouteSegmentPoint end,
 	                                             PrecalculatedRouteDirection routeDirection) throws IOException, InterruptedException {
@@ -63,6 +63,23 @@ public class RouteResultPreparation {
 		return result;
 	}
 
+	/**
+	 * Legs between intermediate points are prepared separately, so first segment of every leg
+	 * has no turn relative to the previous leg. Turns and descriptions are recalculated after legs are joined.
+	 */
+	void prepareTurnsAtJoints(RoutingContext ctx, List<RouteSegmentResult> result, TIntArrayList joints) {
+		if (joints.isEmpty()) {
+			return;
+		}
+		for (int i = 0; i < joints.size(); i++) {
+			int j = joints.get(i);
+			if (j > 0 && j < result.size()) {
+				result.get(j).setTurnType(getTurnInfo(result, j, ctx.leftSideNavigation));
+			}
+		}
+		addTurnInfoDescriptions(result);
+	}
+
 	protected void ignorePrecedingStraightsOnSameIntersection(boolean leftside, List<RouteSegmentResult> result) {
 		//Issue 2571: Ignore TurnType.C if immediately followed by another turn in non-motorway cases, as these likely belong to the very same intersection
 		RouteSegmentResult nextSegment = null;
@@ -111,13 +128,18 @@ public class RouteResultPreparation {
 	private void calculateTimeSpeed(RoutingContext ctx, List<RouteSegmentResult> result) throws IOException {
 		//for Naismith
 		boolean usePedestrianHeight = ((((GeneralRouter) ctx.getRouter()).getProfile() == GeneralRouterProfile.PEDESTRIAN) && ((GeneralRouter) ctx.getRouter()).getHeightObstacles());
-
+		// time from departure to the start of segment
+		double timeFromDeparture = 0;
 		for (int i = 0; i < result.size(); i++) {
 			RouteSegmentResult rr = result.get(i);
 			RouteDataObject road = rr.getObject();
 			double distOnRoadToPass = 0;
 			double speed = ctx.getRouter().defineVehicleSpeed(road);
-			if (speed == 0) {
+			float profileSpeed = road.speedProfile == null ? 0 : TrafficSpeedProfiles.getSpeed(road.speedProfile,
+					ctx.departureSecondOfDay + (int) timeFromDeparture, ctx.getRouter());
+			if (profileSpeed > 0) {
+				speed = profileSpeed;
+			} else if (speed == 0) {
 				speed = ctx.getRouter().getMinDefaultSpeed();
 			} else {
 				if(speed > 15) {
@@ -170,6 +192,8 @@ public class RouteResultPreparation {
 			rr.setSegmentTime((float) distOnRoadToPass);
 			rr.setSegmentSpeed((float) speed);
 			rr.setDistance((float) distance);
+			timeFromDeparture += distOnRoadToPass;
+			rr.setArrivalTime(ctx.getDepartureTime() + (long) (timeFromDeparture * 1000));
 		}
 	}
 
@@ -251,7 +275,7 @@ public class RouteResultPreparation {
 		}
 	}
 
-	private List<RouteSegmentResult> convertFinalSegmentToResults(RoutingContext ctx, FinalRouteSegment finalSegment) {
+	List<RouteSegmentResult> convertFinalSegmentToResults(RoutingContext ctx, FinalRouteSegment finalSegment) {
 		List<RouteSegmentResult> result = new ArrayList<RouteSegmentResult>();
 		if (finalSegment != null) {
 			ctx.routingTime = finalSegment.distanceFromStart;
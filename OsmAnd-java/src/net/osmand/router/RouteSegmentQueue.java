@@ -0,0 +1,115 @@
+package net.osmand.router;
+
+import java.util.Arrays;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Priority queue of A* segments ordered by f(x) = g(x) + heuristicCoefficient * h(x).
+ * Key is calculated once when segment is added and kept in primitive array next to the segment,
+ * so sifting doesn't call comparator. Segment which got better distance is added again (segments are shared
+ * by direct and reverse search, so there is no decrease-key), outdated entry is polled later and
+ * skipped by visited check of planner.
+ */
+public class RouteSegmentQueue {
+
+	// array header + reference (compressed oops)
+	static final int ARRAY_HEADER = 16;
+	static final int REFERENCE_SIZE = 4;
+
+	private final float heuristicCoefficient;
+	private float[] keys;
+	private RouteSegment[] segments;
+	private int size;
+
+	public RouteSegmentQueue(float heuristicCoefficient) {
+		this(heuristicCoefficient, 64);
+	}
+
+	public RouteSegmentQueue(float heuristicCoefficient, int capacity) {
+		this.heuristicCoefficient = heuristicCoefficient;
+		this.keys = new float[Math.max(capacity, 2)];
+		this.segments = new RouteSegment[keys.length];
+	}
+
+	public void add(RouteSegment segment) {
+		if (size == keys.length) {
+			keys = Arrays.copyOf(keys, size * 2);
+			segments = Arrays.copyOf(segments, size * 2);
+		}
+		float key = segment.distanceFromStart + heuristicCoefficient * segment.distanceToEnd;
+		int i = size++;
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (keys[parent] <= key) {
+				break;
+			}
+			keys[i] = keys[parent];
+			segments[i] = segments[parent];
+			i = parent;
+		}
+		keys[i] = key;
+		segments[i] = segment;
+	}
+
+	public RouteSegment peek() {
+		return size == 0 ? null : segments[0];
+	}
+
+	/**
+	 * Key of the head segment (NaN if queue is empty).
+	 */
+	public float peekKey() {
+		return size == 0 ? Float.NaN : keys[0];
+	}
+
+	public RouteSegment poll() {
+		if (size == 0) {
+			return null;
+		}
+		RouteSegment res = segments[0];
+		size--;
+		float key = keys[size];
+		RouteSegment segment = segments[size];
+		segments[size] = null;
+		if (size > 0) {
+			int i = 0;
+			int half = size >>> 1;
+			while (i < half) {
+				int child = 2 * i + 1;
+				if (child + 1 < size && keys[child + 1] < keys[child]) {
+					child++;
+				}
+				if (key <= keys[child]) {
+					break;
+				}
+				keys[i] = keys[child];
+				segments[i] = segments[child];
+				i = child;
+			}
+			keys[i] = key;
+			segments[i] = segment;
+		}
+		return res;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public void clear() {
+		Arrays.fill(segments, 0, size, null);
+		size = 0;
+	}
+
+	/**
+	 * Bytes occupied by arrays of queue (segments themselves belong to route tiles).
+	 */
+	public long getMemoryUsage() {
+		return 2 * ARRAY_HEADER + (long) keys.length * (4 + REFERENCE_SIZE);
+	}
+}
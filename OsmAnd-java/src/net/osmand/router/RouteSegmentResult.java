@@ -20,6 +20,7 @@ public class RouteSegmentResult {
 	private RouteSegmentResult[][] preAttachedRoutes;
 	private float segmentTime;
 	private float routingTime;
+	private long arrivalTime;
 	private float speed;
 	private float distance;
 	private String description = "";
@@ -147,6 +148,17 @@ public class RouteSegmentResult {
 		return routingTime;
 	}
 	
+	/**
+	 * Time (ms) of arrival to the end point of segment counted from departure time of routing context.
+	 */
+	public long getArrivalTime() {
+		return arrivalTime;
+	}
+	
+	public void setArrivalTime(long arrivalTime) {
+		this.arrivalTime = arrivalTime;
+	}
+	
 	public LatLon getStartPoint() {
 		return convertPoint(object, startPointIndex);
 	}
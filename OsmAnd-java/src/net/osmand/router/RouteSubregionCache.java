@@ -0,0 +1,218 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map.Entry;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Process-wide cache of decoded route subregions, so routing contexts
+ * (recalculations, different profiles) don't decode the same blocks of the same file again.
+ * Blocks are identified by file and file pointer of subregion. Cache is limited by estimated size of objects
+ * ({@link RoutingContext#getEstimatedSize(RouteDataObject)}) and evicts least recently used blocks.
+ * <p>
+ * Route planner modifies loaded objects (inserts start/end points into result segments),
+ * so cache stores and returns shallow copies of objects: arrays are shared, object fields are not.
+ */
+public class RouteSubregionCache {
+
+	public static final int DEFAULT_MAX_SIZE = 64 * (1 << 20);
+
+	private static class Key {
+		private final String file;
+		private final long filePointer;
+
+		public Key(File file, RouteSubregion subregion) {
+			this.file = file.getAbsolutePath();
+			this.filePointer = subregion.filePointer;
+		}
+
+		@Override
+		public int hashCode() {
+			return file.hashCode() * 31 + (int) (filePointer ^ (filePointer >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return filePointer == other.filePointer && file.equals(other.file);
+		}
+	}
+
+	private static class Block {
+		private final List<RouteDataObject> objects;
+		private final int size;
+
+		public Block(List<RouteDataObject> objects, int size) {
+			this.objects = objects;
+			this.size = size;
+		}
+	}
+
+	private static RouteSubregionCache DEFAULT;
+
+	// access ordered
+	private final LinkedHashMap<Key, Block> blocks = new LinkedHashMap<Key, Block>(256, 0.75f, true);
+	private int maxSize;
+	private long size;
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	public RouteSubregionCache(int maxSize) {
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Cache shared by whole process, it is not used by routing unless set to configuration.
+	 */
+	public static synchronized RouteSubregionCache getDefault() {
+		if (DEFAULT == null) {
+			DEFAULT = new RouteSubregionCache(DEFAULT_MAX_SIZE);
+		}
+		return DEFAULT;
+	}
+
+	/**
+	 * Returns objects of subregion from cache or decodes them by reader and puts into cache.
+	 */
+	public List<RouteDataObject> loadRouteIndexData(BinaryMapIndexReader reader, RouteSubregion subregion)
+			throws IOException {
+		List<RouteDataObject> res = get(reader.getFile(), subregion);
+		if (res == null) {
+			// decode outside of lock, concurrent misses of the same block are rare and only waste time
+			res = reader.loadRouteIndexData(subregion);
+			put(reader.getFile(), subregion, res);
+		}
+		return res;
+	}
+
+	public List<RouteDataObject> get(File file, RouteSubregion subregion) {
+		Block block;
+		synchronized (this) {
+			block = blocks.get(new Key(file, subregion));
+			if (block == null) {
+				misses++;
+				return null;
+			}
+			hits++;
+		}
+		return copy(block.objects);
+	}
+
+	public void put(File file, RouteSubregion subregion, List<RouteDataObject> objects) {
+		int sz = 0;
+		for (RouteDataObject o : objects) {
+			if (o != null) {
+				sz += RoutingContext.getEstimatedSize(o);
+			}
+		}
+		if (sz > maxSize) {
+			return;
+		}
+		Block block = new Block(copy(objects), sz);
+		synchronized (this) {
+			Block previous = blocks.put(new Key(file, subregion), block);
+			if (previous != null) {
+				size -= previous.size;
+			}
+			size += sz;
+			evict();
+		}
+	}
+
+	private void evict() {
+		Iterator<Entry<Key, Block>> it = blocks.entrySet().iterator();
+		while (size > maxSize && it.hasNext()) {
+			Block b = it.next().getValue();
+			it.remove();
+			size -= b.size;
+			evictions++;
+		}
+	}
+
+	private static List<RouteDataObject> copy(List<RouteDataObject> objects) {
+		List<RouteDataObject> res = new ArrayList<RouteDataObject>(objects.size());
+		for (RouteDataObject o : objects) {
+			if (o == null) {
+				res.add(null);
+				continue;
+			}
+			RouteDataObject c = new RouteDataObject(o);
+			// types of points are interned in place by RouteTileCompactor of context which takes the copy
+			if (o.pointTypes != null) {
+				c.pointTypes = o.pointTypes.clone();
+			}
+			res.add(c);
+		}
+		return res;
+	}
+
+	/**
+	 * Removes blocks of the file, should be called when file is closed or updated.
+	 */
+	public synchronized void clear(File file) {
+		String path = file.getAbsolutePath();
+		Iterator<Entry<Key, Block>> it = blocks.entrySet().iterator();
+		while (it.hasNext()) {
+			Entry<Key, Block> e = it.next();
+			if (e.getKey().file.equals(path)) {
+				size -= e.getValue().size;
+				it.remove();
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		blocks.clear();
+		size = 0;
+	}
+
+	public synchronized void setMaxSize(int maxSize) {
+		this.maxSize = maxSize;
+		evict();
+	}
+
+	public synchronized int getMaxSize() {
+		return maxSize;
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getBlocksCount() {
+		return blocks.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Route subregion cache " + blocks.size() + " blocks, size " + (size / 1024) + " KB of " + (maxSize / 1024)
+				+ " KB, hits " + hits + " misses " + misses + " evictions " + evictions;
+	}
+}
@@ -0,0 +1,186 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import net.osmand.binary.RouteDataObject;
+
+/**
+ * Compacts road objects while they're added to one loaded tile and measures their real heap footprint.
+ * Roads of one tile mostly share the same set of types, point types and names,
+ * so equal arrays (and name maps) are replaced with one shared instance.
+ * Shared arrays are counted in footprint only once.
+ * <p>
+ * Arrays of {@link RouteDataObject} are supposed to be immutable, methods changing objects
+ * (for example {@link RouteDataObject#insert(int, int, int)}) create new arrays, so sharing is safe.
+ * Compactor is used only during loading of the tile and released after that.
+ */
+class RouteTileCompactor {
+
+	// 64-bit JVM with compressed references
+	static final int OBJECT_HEADER = 12;
+	static final int ARRAY_HEADER = 16;
+	static final int REFERENCE = 4;
+	// region, 10 arrays/maps, id
+	static final int ROUTE_DATA_OBJECT = align(OBJECT_HEADER + 11 * REFERENCE + 8);
+	// road, next, opposite, parent, 2 floats, 2 shorts, byte
+	static final int ROUTE_SEGMENT = align(OBJECT_HEADER + 4 * REFERENCE + 2 * 4 + 2 * 2 + 1);
+	// long key, value reference and state byte in open addressing map with load factor 0.5
+	static final int ROUTE_SEGMENT_ENTRY = 2 * (8 + REFERENCE + 1);
+
+	private static class IntArrayKey {
+		private final int[] array;
+		private final int hash;
+
+		public IntArrayKey(int[] array) {
+			this.array = array;
+			this.hash = Arrays.hashCode(array);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof IntArrayKey && Arrays.equals(array, ((IntArrayKey) obj).array);
+		}
+	}
+
+	private final Map<IntArrayKey, int[]> intArrays = new HashMap<IntArrayKey, int[]>();
+	private final Map<TIntObjectHashMap<String>, TIntObjectHashMap<String>> namesMaps =
+			new HashMap<TIntObjectHashMap<String>, TIntObjectHashMap<String>>();
+	// objects which are already counted (strings shared by tile string table, arrays shared with other objects)
+	private final IdentityHashMap<Object, Object> counted = new IdentityHashMap<Object, Object>();
+	private int sharedSize;
+
+	/**
+	 * Replaces arrays of object with shared instances and returns heap footprint of object which wasn't
+	 * counted before for this tile.
+	 */
+	public int compact(RouteDataObject o) {
+		int sz = ROUTE_DATA_OBJECT;
+		o.types = intern(o.types);
+		sz += footprint(o.types);
+		sz += footprint(o.pointsX);
+		sz += footprint(o.pointsY);
+		sz += footprint(o.nameIds);
+		if (o.restrictions != null && o.restrictions.length == 0) {
+			o.restrictions = null;
+		}
+		if (o.restrictions != null) {
+			sz += arraySize(o.restrictions.length, 8);
+		}
+		if (o.pointTypes != null) {
+			boolean empty = true;
+			for (int i = 0; i < o.pointTypes.length; i++) {
+				if (o.pointTypes[i] != null) {
+					o.pointTypes[i] = intern(o.pointTypes[i]);
+					sz += footprint(o.pointTypes[i]);
+					empty = false;
+				}
+			}
+			if (empty) {
+				o.pointTypes = null;
+			} else {
+				sz += arraySize(o.pointTypes.length, REFERENCE);
+			}
+		}
+		if (o.pointNames != null) {
+			sz += arraySize(o.pointNames.length, REFERENCE);
+			for (int i = 0; i < o.pointNames.length; i++) {
+				if (o.pointNames[i] != null) {
+					sz += arraySize(o.pointNames[i].length, REFERENCE);
+					for (String s : o.pointNames[i]) {
+						sz += footprint(s);
+					}
+				}
+			}
+		}
+		if (o.pointNameTypes != null) {
+			sz += arraySize(o.pointNameTypes.length, REFERENCE);
+			for (int i = 0; i < o.pointNameTypes.length; i++) {
+				sz += footprint(o.pointNameTypes[i]);
+			}
+		}
+		if (o.names != null) {
+			TIntObjectHashMap<String> shared = namesMaps.get(o.names);
+			if (shared == null) {
+				namesMaps.put(o.names, o.names);
+			} else {
+				o.names = shared;
+			}
+			sz += footprint(o.names);
+		}
+		return sz;
+	}
+
+	/**
+	 * Size of arrays and maps which were replaced by shared instances.
+	 */
+	public int getSharedSize() {
+		return sharedSize;
+	}
+
+	private int[] intern(int[] array) {
+		if (array == null) {
+			return null;
+		}
+		IntArrayKey key = new IntArrayKey(array);
+		int[] shared = intArrays.get(key);
+		if (shared == null) {
+			intArrays.put(key, array);
+			return array;
+		}
+		if (shared != array) {
+			sharedSize += arraySize(array.length, 4);
+		}
+		return shared;
+	}
+
+	private boolean firstTime(Object o) {
+		return counted.put(o, o) == null;
+	}
+
+	private int footprint(int[] array) {
+		if (array == null || !firstTime(array)) {
+			return 0;
+		}
+		return arraySize(array.length, 4);
+	}
+
+	private int footprint(String s) {
+		if (s == null || !firstTime(s)) {
+			return 0;
+		}
+		// string object and its char array
+		return align(OBJECT_HEADER + REFERENCE + 4) + arraySize(s.length(), 2);
+	}
+
+	private int footprint(TIntObjectHashMap<String> names) {
+		if (!firstTime(names)) {
+			sharedSize += align(OBJECT_HEADER + 8 * 4) + arraySize(names.capacity(), 4 + REFERENCE + 1);
+			return 0;
+		}
+		// map object with keys, values and states arrays
+		int sz = align(OBJECT_HEADER + 8 * 4) + arraySize(names.capacity(), 4) + arraySize(names.capacity(), REFERENCE)
+				+ arraySize(names.capacity(), 1);
+		for (String s : names.valueCollection()) {
+			sz += footprint(s);
+		}
+		return sz;
+	}
+
+	static int arraySize(int length, int elementSize) {
+		return align(ARRAY_HEADER + length * elementSize);
+	}
+
+	static int align(int size) {
+		return (size + 7) & ~7;
+	}
+}
@@ -19,6 +19,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ExecutorService;
 
 public class RoutingConfiguration {
 	
@@ -42,6 +43,8 @@ public class RoutingConfiguration {
 	// use GeneralRouter and not interface to simplify native access !
 	public GeneralRouter router = new GeneralRouter(GeneralRouterProfile.CAR, new LinkedHashMap<String, String>());
 	public String routerName = "";
+	// parameters used to build router from profile (empty - default values)
+	public Map<String, String> routerParams = new LinkedHashMap<String, String>();
 	
 	// 1.4 Used to calculate route in movement
 	public Double initialDirection;
@@ -49,6 +52,50 @@ public class RoutingConfiguration {
 	// 1.5 Recalculate distance help
 	public float recalculateDistance = 20000f;
 	
+	// 1.6 Decoded route data shared between routing contexts (null - not cached)
+	public RouteSubregionCache routeSubregionCache;
+	
+	// 1.7 Background loading of tiles ahead of search (null - tiles are loaded only when needed)
+	public ExecutorService tilePrefetchExecutor;
+	
+	// 1.8 Precalculated contraction hierarchy used by RouteCalculationMode.HIERARCHY (null - A* is used)
+	public ContractionHierarchy contractionHierarchy;
+	
+	// 1.9 Calculation of legs between intermediate points at once (null - legs are calculated one by one)
+	public ExecutorService intermediateLegsExecutor;
+	
+	// 1.10 Keep reverse search of last calculation in routing context to recalculate route to the same target
+	// by forward search only
+	public boolean incrementalRecalculation;
+	
+	// 1.11 Speeds of ways by time of day used instead of speeds of car router (null - speeds don't depend on time)
+	public TrafficSpeedProfiles speedProfiles;
+	
+	/**
+	 * Copy of configuration with another memory limit, used when several searches of one calculation run at once
+	 * and share its memory. Router and shared caches are not copied.
+	 */
+	public RoutingConfiguration copy(int memoryLimitation) {
+		RoutingConfiguration c = new RoutingConfiguration();
+		c.attributes = attributes;
+		c.heuristicCoefficient = heuristicCoefficient;
+		c.ZOOM_TO_LOAD_TILES = ZOOM_TO_LOAD_TILES;
+		c.memoryLimitation = memoryLimitation;
+		c.planRoadDirection = planRoadDirection;
+		c.router = router;
+		c.routerName = routerName;
+		c.routerParams = routerParams;
+		c.initialDirection = initialDirection;
+		c.recalculateDistance = recalculateDistance;
+		c.routeSubregionCache = routeSubregionCache;
+		c.tilePrefetchExecutor = tilePrefetchExecutor;
+		c.contractionHierarchy = contractionHierarchy;
+		c.intermediateLegsExecutor = intermediateLegsExecutor;
+		c.incrementalRecalculation = incrementalRecalculation;
+		c.speedProfiles = speedProfiles;
+		return c;
+	}
+	
 
 	public static class Builder {
 		// Design time storage
@@ -57,6 +104,13 @@ public class RoutingConfiguration {
 		private Map<String, String> attributes = new LinkedHashMap<String, String>();
 		private HashMap<Long, Location> impassableRoadLocations = new HashMap<Long, Location>();
 		private List<RouteDataObject> impassableRoads = new ArrayList<RouteDataObject>();  
+		private RouteSubregionCache routeSubregionCache;
+		private ExecutorService tilePrefetchExecutor;
+		private Map<String, ContractionHierarchy> contractionHierarchies = new LinkedHashMap<String, ContractionHierarchy>();
+		private ExecutorService intermediateLegsExecutor;
+		// route is recalculated to the same target by one front end, see RoutePlannerFrontEnd.useSmartRouteRecalculation
+		private boolean incrementalRecalculation = true;
+		private TrafficSpeedProfiles speedProfiles;
 		
 		// Example
 //		{
@@ -79,6 +133,7 @@ public class RoutingConfiguration {
 				i.router = routers.get(router);
 				if (params != null) {
 					i.router = i.router.build(params);
+					i.routerParams.putAll(params);
 				}
 				i.routerName = router;
 			}
@@ -99,12 +154,76 @@ public class RoutingConfiguration {
 				i.memoryLimitation = memoryLimitMB * (1 << 20);
 			}
 			i.planRoadDirection = parseSilentInt(getAttribute(i.router, "planRoadDirection"), i.planRoadDirection);
+			i.routeSubregionCache = routeSubregionCache;
+			i.tilePrefetchExecutor = tilePrefetchExecutor;
+			// hierarchy is used only if it's built with the same parameters and impassable roads
+			ContractionHierarchy ch = contractionHierarchies.get(i.routerName);
+			if (ch != null && ch.isValidFor(i)) {
+				i.contractionHierarchy = ch;
+			}
+			i.intermediateLegsExecutor = intermediateLegsExecutor;
+			i.incrementalRecalculation = incrementalRecalculation;
+			// speeds of traffic are measured for cars
+			if (i.router.getProfile() == GeneralRouterProfile.CAR) {
+				i.speedProfiles = speedProfiles;
+			}
 //			i.planRoadDirection = 1;
 			
 			return i;
 		}
 		
 
+		public RouteSubregionCache getRouteSubregionCache() {
+			return routeSubregionCache;
+		}
+		
+		public void setRouteSubregionCache(RouteSubregionCache routeSubregionCache) {
+			this.routeSubregionCache = routeSubregionCache;
+		}
+		
+		public ExecutorService getTilePrefetchExecutor() {
+			return tilePrefetchExecutor;
+		}
+		
+		public void setTilePrefetchExecutor(ExecutorService tilePrefetchExecutor) {
+			this.tilePrefetchExecutor = tilePrefetchExecutor;
+		}
+		
+		public ContractionHierarchy getContractionHierarchy(String routerName) {
+			return contractionHierarchies.get(routerName);
+		}
+		
+		/**
+		 * Sets hierarchy for profile {@link ContractionHierarchy#getRouterName()}, other profiles are not affected.
+		 */
+		public void setContractionHierarchy(ContractionHierarchy contractionHierarchy) {
+			contractionHierarchies.put(contractionHierarchy.getRouterName(), contractionHierarchy);
+		}
+		
+		public ExecutorService getIntermediateLegsExecutor() {
+			return intermediateLegsExecutor;
+		}
+		
+		public void setIntermediateLegsExecutor(ExecutorService intermediateLegsExecutor) {
+			this.intermediateLegsExecutor = intermediateLegsExecutor;
+		}
+		
+		public boolean isIncrementalRecalculation() {
+			return incrementalRecalculation;
+		}
+		
+		public void setIncrementalRecalculation(boolean incrementalRecalculation) {
+			this.incrementalRecalculation = incrementalRecalculation;
+		}
+		
+		public TrafficSpeedProfiles getSpeedProfiles() {
+			return speedProfiles;
+		}
+		
+		public void setSpeedProfiles(TrafficSpeedProfiles speedProfiles) {
+			this.speedProfiles = speedProfiles;
+		}
+		
 		public List<RouteDataObject> getImpassableRoads() {
 			return impassableRoads;
 		}
@@ -17,6 +17,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.TimeZone;
 
 import net.osmand.NativeLibrary;
 import net.osmand.NativeLibrary.NativeRouteSearchResult;
@@ -65,6 +66,10 @@ public class RoutingContext {
 	
 	public RouteCalculationProgress calculationProgress;
 	public boolean leftSideNavigation;
+	// time of departure (ms) and time zone of route used with speeds by time of day (RoutingConfiguration.speedProfiles)
+	private long departureTime = System.currentTimeMillis();
+	private TimeZone departureTimeZone = TimeZone.getDefault();
+	int departureSecondOfDay = TrafficSpeedProfiles.getSecondOfDay(departureTime, departureTimeZone);
 	public List<RouteSegmentResult> previouslyCalculatedRoute;
 	public PrecalculatedRouteDirection precalculatedRouteDirection;
 
@@ -75,10 +80,19 @@ public class RoutingContext {
 	// Needs to be a sorted array list . Another option to use hashmap but it will be more memory expensive
 	List<RoutingSubregionTile> subregionTiles = new ArrayList<RoutingSubregionTile>();
 	
+	// created on first use when prefetch executor is configured
+	RoutingTilePrefetcher prefetcher = null;
+	
 	// 3. Warm object caches
 	ArrayList<RouteSegment> segmentsToVisitPrescripted = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	ArrayList<RouteSegment> segmentsToVisitNotForbidden = new ArrayList<BinaryRoutePlanner.RouteSegment>(5);
 	
+	// 4. Reverse search of last calculation (RoutingConfiguration.incrementalRecalculation), kept after data is unloaded
+	ReverseSearchTree reverseSearchTree = null;
+	// time on roads of already found routes is multiplied by penalty (alternative routes by penalty method)
+	TLongHashSet penalizedRoads = null;
+	float roadPenalty = 1;
+	
 	
 	// 5. debug information (package accessor)
 	public TileStatistics global = new TileStatistics();
@@ -88,6 +102,8 @@ public class RoutingContext {
 	
 	long timeNanoToCalcDeviation = 0;
 	long timeToLoad = 0;
+	// time of loading done by prefetcher in background (not included in timeToLoad)
+	long timeToLoadHidden = 0;
 	long timeToLoadHeaders = 0;
 	long timeToFindInitialSegments = 0;
 	long timeToCalculate = 0;
@@ -114,6 +130,9 @@ public class RoutingContext {
 		this.map.putAll(cp.map);
 		this.calculationMode = cp.calculationMode;
 		this.leftSideNavigation = cp.leftSideNavigation;
+		this.departureTime = cp.departureTime;
+		this.departureTimeZone = cp.departureTimeZone;
+		this.departureSecondOfDay = cp.departureSecondOfDay;
 		this.reverseMap.putAll(cp.reverseMap);
 		this.nativeLib = cp.nativeLib;
 		// copy local data and clear caches
@@ -154,6 +173,23 @@ public class RoutingContext {
 	}
 	
 	
+	public long getDepartureTime() {
+		return departureTime;
+	}
+	
+	public TimeZone getDepartureTimeZone() {
+		return departureTimeZone;
+	}
+	
+	/**
+	 * @param timeZone local time zone of route, speeds by time of day are defined in local time
+	 */
+	public void setDepartureTime(long departureTime, TimeZone timeZone) {
+		this.departureTime = departureTime;
+		this.departureTimeZone = timeZone;
+		this.departureSecondOfDay = TrafficSpeedProfiles.getSecondOfDay(departureTime, timeZone);
+	}
+	
 	public RouteSegmentVisitor getVisitor() {
 		return visitor;
 	}
@@ -234,6 +270,47 @@ public class RoutingContext {
 		subregionTiles.clear();
 		tileRoutes.clear();		
 		indexedSubregions.clear();
+		if (prefetcher != null) {
+			prefetcher.close();
+			prefetcher = null;
+		}
+	}
+	
+	/**
+	 * Estimated size of route data decoded in background and not used yet.
+	 */
+	public int getPrefetchedMemoryUsage() {
+		return prefetcher == null ? 0 : prefetcher.getMemoryUsage();
+	}
+
+	boolean isTileLoaded(long tileId) {
+		List<RoutingSubregionTile> subregions = indexedSubregions.get(tileId);
+		if (subregions == null) {
+			return false;
+		}
+		for (RoutingSubregionTile ts : subregions) {
+			if (!ts.isLoaded()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Schedules background loading of tiles around frontier segments of direct and reverse search.
+	 */
+	public void prefetchTiles(RouteSegment directFrontier, RouteSegment reverseFrontier) {
+		if (config.tilePrefetchExecutor == null || nativeLib != null) {
+			return;
+		}
+		if (prefetcher == null) {
+			try {
+				prefetcher = new RoutingTilePrefetcher(this, config.tilePrefetchExecutor);
+			} catch (IOException e) {
+				throw new RuntimeException("Loading data exception", e);
+			}
+		}
+		prefetcher.prefetch(directFrontier, reverseFrontier);
 	}
 	
 	private int searchSubregionTile(RouteSubregion subregion){
@@ -315,7 +392,17 @@ public class RoutingContext {
 			try {
 				BinaryMapIndexReader reader = reverseMap.get(ts.subregion.routeReg);
 				ts.setLoadedNonNative();
-				List<RouteDataObject> res = reader.loadRouteIndexData(ts.subregion);
+				List<RouteDataObject> res = null;
+				if (prefetcher != null) {
+					res = prefetcher.take(ts.subregion);
+				}
+				if (res != null) {
+					// already decoded in background
+				} else if (config.routeSubregionCache != null) {
+					res = config.routeSubregionCache.loadRouteIndexData(reader, ts.subregion);
+				} else {
+					res = reader.loadRouteIndexData(ts.subregion);
+				}
 //				System.out.println(ts.subregion.shiftToData + " " + res);
 				if(toLoad != null) {
 					toLoad.addAll(res);
@@ -324,7 +411,7 @@ public class RoutingContext {
 						if(ro != null) {
 							if(config.router.acceptLine(ro)) {
 								if(excludeNotAllowed != null && !excludeNotAllowed.contains(ro.getId())) {
-									ts.add(ro);
+									ts.add(ro, config);
 								}
 							} else if(excludeNotAllowed != null && ro.getId() > 0){
 								excludeNotAllowed.add(ro.getId());
@@ -338,6 +425,8 @@ public class RoutingContext {
 				}
 			} catch (IOException e) {
 				throw new RuntimeException("Loading data exception", e);
+			} finally {
+				ts.setLoadingFinished();
 			}
 
 			timeToLoad += (System.nanoTime() - now);
@@ -358,10 +447,15 @@ public class RoutingContext {
 			if(global != null) {
 				global.allRoutes += ts.tileStatistics.allRoutes;
 				global.coordinates += ts.tileStatistics.coordinates;
+				global.sharedSize += ts.tileStatistics.sharedSize;
+				global.attributes += ts.tileStatistics.attributes;
+				global.attributesSize += ts.tileStatistics.attributesSize;
+				global.speedProfiles += ts.tileStatistics.speedProfiles;
 			}
 			distinctLoadedTiles++;
 		}
 		global.size += ts.tileStatistics.size;
+		global.timeToCalcAttributes += ts.tileStatistics.timeToCalcAttributes;
 	}
 
 	private List<RoutingSubregionTile> loadTileHeaders(final int x31, final int y31) {
@@ -645,6 +739,8 @@ public class RoutingContext {
 		private int isLoaded = 0;
 		private TLongObjectMap<RouteSegment> routes = null;
 		private TLongHashSet excludedIds = null;
+		// exists only while tile is being loaded
+		private RouteTileCompactor compactor = null;
 
 		public RoutingSubregionTile(RouteSubregion subregion) {
 			this.subregion = subregion;
@@ -756,16 +852,35 @@ public class RoutingContext {
 			searchResult = null;
 			routes = null;
 			excludedIds = null;
+			compactor = null;
 		}
 		
 		public void setLoadedNonNative(){
 			isLoaded = Math.abs(isLoaded) + 1;
 			routes = new TLongObjectHashMap<BinaryRoutePlanner.RouteSegment>();
 			tileStatistics = new TileStatistics();
+			compactor = new RouteTileCompactor();
 		}
 		
-		public void add(RouteDataObject ro) {
-			tileStatistics.addObject(ro);
+		public void setLoadingFinished() {
+			if (compactor != null) {
+				tileStatistics.sharedSize = compactor.getSharedSize();
+				compactor = null;
+			}
+		}
+		
+		public void add(RouteDataObject ro, RoutingConfiguration config) {
+			if (compactor == null) {
+				compactor = new RouteTileCompactor();
+			}
+			tileStatistics.addObject(ro, compactor.compact(ro));
+			long nanoTime = System.nanoTime();
+			tileStatistics.addAttributes(config.router.cacheRoutingAttributes(ro));
+			ro.speedProfile = config.speedProfiles == null ? null : config.speedProfiles.getProfile(ro.getId() >> 6);
+			if (ro.speedProfile != null) {
+				tileStatistics.speedProfiles++;
+			}
+			tileStatistics.timeToCalcAttributes += System.nanoTime() - nanoTime;
 			for (int i = 0; i < ro.pointsX.length; i++) {
 				int x31 = ro.getPoint31XTile(i);
 				int y31 = ro.getPoint31YTile(i);
@@ -791,9 +906,10 @@ public class RoutingContext {
 				routes = new TLongObjectHashMap<BinaryRoutePlanner.RouteSegment>();
 				for (RouteDataObject ro : r.objects) {
 					if (ro != null && ctx.config.router.acceptLine(ro)) {
-						add(ro);
+						add(ro, ctx.config);
 					}
 				}
+				setLoadingFinished();
 			} else {
 				searchResult = r;
 				tileStatistics.size += 100;
@@ -835,21 +951,39 @@ public class RoutingContext {
 	}
 	
 	protected static class TileStatistics {
+		// heap footprint of objects and route segments in bytes
 		public int size = 0;
+		// size of arrays replaced by instances shared between objects of tile
+		public int sharedSize = 0;
 		public int allRoutes = 0;
 		public int coordinates = 0;
+		// routes with routing attributes calculated on load and their size in bytes (included in size)
+		public int attributes = 0;
+		public int attributesSize = 0;
+		public long timeToCalcAttributes = 0;
+		// routes with speeds by time of day
+		public int speedProfiles = 0;
 		
 		@Override
 		public String toString() {
 			return "All routes " + allRoutes + 
-					" size " + (size / 1024f) + " KB coordinates " + coordinates + " ratio coord " + (((float)size) / coordinates)
+					" size " + (size / 1024f) + " KB (shared " + (sharedSize / 1024f) + " KB, attributes " 
+					+ (attributesSize / 1024f) + " KB) coordinates " + coordinates
+					+ " ratio coord " + (((float)size) / coordinates)
 					+ " ratio routes " + (((float)size) / allRoutes);
 		}
 
-		public void addObject(RouteDataObject o) {
+		public void addObject(RouteDataObject o, int footprint) {
 			allRoutes++;
 			coordinates += o.getPointsLength() * 2;
-			size += getEstimatedSize(o);
+			size += footprint + o.getPointsLength() * 
+					(RouteTileCompactor.ROUTE_SEGMENT + RouteTileCompactor.ROUTE_SEGMENT_ENTRY);
+		}
+		
+		public void addAttributes(int footprint) {
+			attributes++;
+			attributesSize += footprint;
+			size += footprint;
 		}
 
 		
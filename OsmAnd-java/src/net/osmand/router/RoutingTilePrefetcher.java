@@ -0,0 +1,304 @@
+package net.osmand.router;
+
+import gnu.trove.set.hash.TLongHashSet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.osmand.PlatformUtil;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapReaderPool;
+import net.osmand.binary.BinaryMapReaderStats.Section;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Reads route tiles which are likely to be visited soon in background, so A* doesn't wait for disk.
+ * Route planner periodically passes the heads of direct and reverse queues, the tile of the segment and
+ * the next tile in direction to the target (start for reverse search) are scheduled.
+ * Background task searches subregions of the tile in own copy of route tree with readers of own pools
+ * and decodes their data, {@link RoutingContext#loadSubregionTile} takes decoded data instead of reading it.
+ * <p>
+ * Context itself (and its route tree) is never used from background threads. Estimated size of prefetched data
+ * is a part of memory overhead of context, least recently prefetched subregions are evicted when there are
+ * too many of them.
+ */
+public class RoutingTilePrefetcher {
+
+	private final static Log log = PlatformUtil.getLog(RoutingTilePrefetcher.class);
+	// decoded subregions waiting to be used by context
+	private static final int MAX_PREFETCHED_SUBREGIONS = 256;
+
+	private static class Prefetched {
+		final List<RouteDataObject> objects;
+		final long loadTime;
+		final int size;
+
+		public Prefetched(List<RouteDataObject> objects, long loadTime, int size) {
+			this.objects = objects;
+			this.loadTime = loadTime;
+			this.size = size;
+		}
+	}
+
+	// subregions of context and of own tree of prefetcher are different objects of the same file blocks
+	private static class SubregionKey {
+		final RouteRegion region;
+		final int filePointer;
+
+		public SubregionKey(RouteSubregion subregion) {
+			this.region = subregion.routeReg;
+			this.filePointer = subregion.filePointer;
+		}
+
+		@Override
+		public int hashCode() {
+			return System.identityHashCode(region) * 31 + filePointer;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof SubregionKey)) {
+				return false;
+			}
+			SubregionKey other = (SubregionKey) obj;
+			return region == other.region && filePointer == other.filePointer;
+		}
+	}
+
+	private final RoutingContext ctx;
+	private final ExecutorService executor;
+	private final int zoom;
+	// own copy of route tree roots (subtrees are read lazily by background tasks) and pool for every file
+	private final Map<BinaryMapReaderPool, List<RouteSubregion>> roots =
+			new LinkedHashMap<BinaryMapReaderPool, List<RouteSubregion>>();
+	// insertion ordered, guarded by itself
+	private final LinkedHashMap<SubregionKey, Prefetched> prefetched = new LinkedHashMap<SubregionKey, Prefetched>();
+	private volatile int prefetchedSize;
+	// accessed only by routing thread
+	private final TLongHashSet scheduledTiles = new TLongHashSet();
+	private final AtomicInteger pendingTasks = new AtomicInteger();
+	private final AtomicLong backgroundLoadTime = new AtomicLong();
+	private final AtomicInteger evicted = new AtomicInteger();
+	private volatile boolean closed;
+
+	private int scheduled;
+	private int used;
+
+	public RoutingTilePrefetcher(RoutingContext ctx, ExecutorService executor) throws IOException {
+		this.ctx = ctx;
+		this.executor = executor;
+		this.zoom = ctx.config.ZOOM_TO_LOAD_TILES;
+		for (Entry<BinaryMapIndexReader, List<RouteSubregion>> e : ctx.map.entrySet()) {
+			List<RouteSubregion> copy = new ArrayList<RouteSubregion>();
+			for (RouteSubregion sub : e.getValue()) {
+				copy.add(new RouteSubregion(sub));
+			}
+			// only route rules (shared by readers) are read before background tasks start
+			roots.put(new BinaryMapReaderPool(e.getKey(), false, Section.ROUTE), copy);
+		}
+	}
+
+	/**
+	 * Schedules tiles around frontier segments of direct and reverse search.
+	 */
+	public void prefetch(RouteSegment directFrontier, RouteSegment reverseFrontier) {
+		if (directFrontier != null) {
+			prefetch(directFrontier, ctx.targetX, ctx.targetY);
+		}
+		if (reverseFrontier != null) {
+			prefetch(reverseFrontier, ctx.startX, ctx.startY);
+		}
+	}
+
+	private void prefetch(RouteSegment segment, int goalX, int goalY) {
+		int x31 = segment.getRoad().getPoint31XTile(segment.getSegmentStart());
+		int y31 = segment.getRoad().getPoint31YTile(segment.getSegmentStart());
+		int tileX = x31 >> (31 - zoom);
+		int tileY = y31 >> (31 - zoom);
+		schedule(tileX, tileY);
+		// next tile in direction of goal
+		long dx = (long) goalX - x31;
+		long dy = (long) goalY - y31;
+		long max = Math.max(Math.abs(dx), Math.abs(dy));
+		if (max > (1 << (31 - zoom)) / 2) {
+			int stepX = Math.abs(dx) * 2 >= max ? Long.signum(dx) : 0;
+			int stepY = Math.abs(dy) * 2 >= max ? Long.signum(dy) : 0;
+			schedule(tileX + stepX, tileY + stepY);
+		}
+	}
+
+	private void schedule(final int tileX, final int tileY) {
+		long tileId = (((long) tileX) << zoom) + tileY;
+		if (closed || scheduledTiles.contains(tileId) || ctx.isTileLoaded(tileId)) {
+			return;
+		}
+		scheduledTiles.add(tileId);
+		scheduled++;
+		pendingTasks.incrementAndGet();
+		try {
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						if (!closed) {
+							loadTile(tileX, tileY);
+						}
+					} catch (IOException e) {
+						log.error(e.getMessage(), e);
+					} catch (IllegalStateException e) {
+						// pools are closed while task was running
+						if (!closed) {
+							throw e;
+						}
+					} finally {
+						pendingTasks.decrementAndGet();
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			pendingTasks.decrementAndGet();
+		}
+	}
+
+	private void loadTile(int tileX, int tileY) throws IOException {
+		int shift = 31 - zoom;
+		SearchRequest<RouteDataObject> request = BinaryMapIndexReader.buildSearchRouteRequest(tileX << shift,
+				(tileX + 1) << shift, tileY << shift, (tileY + 1) << shift, null);
+		for (Entry<BinaryMapReaderPool, List<RouteSubregion>> r : roots.entrySet()) {
+			if (r.getValue().isEmpty()) {
+				continue;
+			}
+			BinaryMapReaderPool pool = r.getKey();
+			BinaryMapIndexReader reader = pool.acquire();
+			try {
+				// own tree is read lazily by background tasks (subtrees are read under lock of subregion)
+				List<RouteSubregion> subregs = reader.searchRouteIndexTree(request, r.getValue());
+				for (RouteSubregion sub : subregs) {
+					SubregionKey key = new SubregionKey(sub);
+					synchronized (prefetched) {
+						if (closed || prefetched.containsKey(key)) {
+							continue;
+						}
+					}
+					long now = System.nanoTime();
+					List<RouteDataObject> res;
+					if (ctx.config.routeSubregionCache != null) {
+						res = ctx.config.routeSubregionCache.loadRouteIndexData(reader, sub);
+					} else {
+						res = reader.loadRouteIndexData(sub);
+					}
+					long time = System.nanoTime() - now;
+					backgroundLoadTime.addAndGet(time);
+					int size = 0;
+					for (RouteDataObject o : res) {
+						if (o != null) {
+							size += RoutingContext.getEstimatedSize(o);
+						}
+					}
+					put(key, new Prefetched(res, time, size));
+				}
+			} finally {
+				pool.release(reader);
+			}
+		}
+	}
+
+	private void put(SubregionKey key, Prefetched p) {
+		synchronized (prefetched) {
+			if (closed || prefetched.containsKey(key)) {
+				return;
+			}
+			prefetched.put(key, p);
+			int size = prefetchedSize + p.size;
+			// subregions prefetched long ago were probably passed by search without loading
+			Iterator<Prefetched> it = prefetched.values().iterator();
+			while (prefetched.size() > MAX_PREFETCHED_SUBREGIONS && it.hasNext()) {
+				size -= it.next().size;
+				it.remove();
+				evicted.incrementAndGet();
+			}
+			prefetchedSize = size;
+		}
+	}
+
+	/**
+	 * Returns data of subregion decoded in background or null if it is not ready yet.
+	 * Time spent to decode returned data is added to hidden load time of context.
+	 */
+	public List<RouteDataObject> take(RouteSubregion subregion) {
+		Prefetched p;
+		synchronized (prefetched) {
+			p = prefetched.remove(new SubregionKey(subregion));
+			if (p == null) {
+				return null;
+			}
+			prefetchedSize -= p.size;
+		}
+		used++;
+		ctx.timeToLoadHidden += p.loadTime;
+		return p.objects;
+	}
+
+	public int getScheduledTiles() {
+		return scheduled;
+	}
+
+	public int getUsedSubregions() {
+		return used;
+	}
+
+	public int getEvictedSubregions() {
+		return evicted.get();
+	}
+
+	/**
+	 * Estimated size of decoded data waiting to be used by context.
+	 */
+	public int getMemoryUsage() {
+		return prefetchedSize;
+	}
+
+	public int getPendingTasks() {
+		return pendingTasks.get();
+	}
+
+	public long getBackgroundLoadTime() {
+		return backgroundLoadTime.get();
+	}
+
+	/**
+	 * Drops prefetched data and closes readers, tasks which are still running close their readers on finish.
+	 */
+	public void close() {
+		closed = true;
+		synchronized (prefetched) {
+			prefetched.clear();
+			prefetchedSize = 0;
+		}
+		for (BinaryMapReaderPool pool : roots.keySet()) {
+			pool.close();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Prefetched tiles " + scheduled + ", used subregions " + used + ", evicted " + evicted.get()
+				+ ", background load time "
+				+ backgroundLoadTime.get() / 1e6 + " ms";
+	}
+}
@@ -0,0 +1,115 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Speeds of ways by time of day (15 minutes buckets) used instead of static speeds of car routing profiles
+ * when they are set to {@link RoutingConfiguration#speedProfiles}, speed of profile doesn't exceed max speed
+ * of router. Time of day is local time of the region of profiles (time zone of departure). Profile of road is found once when
+ * routing tile is loaded and kept in {@link net.osmand.binary.RouteDataObject#speedProfile}, so
+ * speed lookup during search is an array read.
+ * <p>
+ * File format is text, one way per line: osm way id and 96 speeds in km/h (0 - unknown, static speed is used)
+ * separated by commas, lines starting with # are ignored.
+ */
+public class TrafficSpeedProfiles {
+
+	public static final int BUCKETS = 96;
+	public static final int BUCKET_SECONDS = 24 * 60 * 60 / BUCKETS;
+	private static final int DAY_SECONDS = 24 * 60 * 60;
+
+	// speeds in km/h as unsigned bytes
+	private final TLongObjectHashMap<byte[]> profiles = new TLongObjectHashMap<byte[]>();
+
+	public static TrafficSpeedProfiles read(File file) throws IOException {
+		FileInputStream is = new FileInputStream(file);
+		try {
+			return read(is);
+		} finally {
+			is.close();
+		}
+	}
+
+	public static TrafficSpeedProfiles read(InputStream is) throws IOException {
+		TrafficSpeedProfiles p = new TrafficSpeedProfiles();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+		String line;
+		int lineNumber = 0;
+		float[] speeds = new float[BUCKETS];
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if (line.length() == 0 || line.startsWith("#")) {
+				continue;
+			}
+			String[] values = line.split(",");
+			if (values.length != BUCKETS + 1) {
+				throw new IOException("Line " + lineNumber + " should contain way id and " + BUCKETS + " speeds");
+			}
+			try {
+				for (int i = 0; i < BUCKETS; i++) {
+					speeds[i] = Float.parseFloat(values[i + 1].trim());
+				}
+				p.put(Long.parseLong(values[0].trim()), speeds);
+			} catch (NumberFormatException e) {
+				throw new IOException("Line " + lineNumber + " : " + e.getMessage());
+			}
+		}
+		return p;
+	}
+
+	/**
+	 * @param speeds speeds in km/h of every 15 minutes of day starting from midnight
+	 */
+	public void put(long wayId, float[] speeds) {
+		if (speeds.length != BUCKETS) {
+			throw new IllegalArgumentException("Profile should contain " + BUCKETS + " speeds");
+		}
+		byte[] profile = new byte[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			profile[i] = (byte) Math.max(0, Math.min(255, Math.round(speeds[i])));
+		}
+		profiles.put(wayId, profile);
+	}
+
+	public byte[] getProfile(long wayId) {
+		return profiles.get(wayId);
+	}
+
+	public int size() {
+		return profiles.size();
+	}
+
+	/**
+	 * @return speed in m/s or 0 if it is unknown
+	 */
+	public static float getSpeed(byte[] profile, int secondOfDay) {
+		int bucket = (secondOfDay % DAY_SECONDS) / BUCKET_SECONDS;
+		return (profile[bucket] & 0xff) / 3.6f;
+	}
+
+	/**
+	 * @return speed in m/s not greater than max speed of router or 0 if it is unknown
+	 */
+	public static float getSpeed(byte[] profile, int secondOfDay, VehicleRouter router) {
+		return Math.min(getSpeed(profile, secondOfDay), router.getMaxDefaultSpeed());
+	}
+
+	/**
+	 * @param timeZone time zone of region of profiles
+	 */
+	public static int getSecondOfDay(long time, TimeZone timeZone) {
+		Calendar c = Calendar.getInstance(timeZone);
+		c.setTimeInMillis(time);
+		return c.get(Calendar.HOUR_OF_DAY) * 3600 + c.get(Calendar.MINUTE) * 60 + c.get(Calendar.SECOND);
+	}
+}
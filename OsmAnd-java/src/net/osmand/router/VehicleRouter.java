@@ -81,6 +81,13 @@ public interface VehicleRouter {
 	 */
 	public double calculateTurnTime(RouteSegment segment, int segmentEnd, RouteSegment prev, int prevSegmentEnd);
 	
+	/**
+	 * Calculate once attributes of road (speed, priority, oneway, penalty transition and obstacles) 
+	 * and keep them with road, so next visits of road don't evaluate routing rules
+	 * @return size of kept attributes in bytes 
+	 */
+	public int cacheRoutingAttributes(RouteDataObject road);
+	
 		
 	public VehicleRouter build(Map<String, String> params);
 
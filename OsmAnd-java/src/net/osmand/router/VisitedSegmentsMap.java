@@ -0,0 +1,147 @@
+package net.osmand.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+/**
+ * Open addressing map of visited route points (see {@link BinaryRoutePlanner#calculateRoutePointId})
+ * to segments with linear probing. Keys and values are kept in 2 plain arrays without entry objects,
+ * entries are never removed during search.
+ */
+public class VisitedSegmentsMap {
+
+	private static final long FREE = Long.MIN_VALUE;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private long[] keys;
+	private RouteSegment[] values;
+	private int mask;
+	private int size;
+	// key equal to FREE is stored separately
+	private boolean hasFreeKey;
+	private RouteSegment freeKeyValue;
+
+	public VisitedSegmentsMap() {
+		this(256);
+	}
+
+	public VisitedSegmentsMap(int capacity) {
+		int c = Integer.highestOneBit(Math.max(capacity, 8) - 1) << 1;
+		allocate(c);
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		Arrays.fill(keys, FREE);
+		values = new RouteSegment[capacity];
+		mask = capacity - 1;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private int index(long key) {
+		int i = hash(key) & mask;
+		while (keys[i] != FREE && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	public boolean containsKey(long key) {
+		if (key == FREE) {
+			return hasFreeKey;
+		}
+		return keys[index(key)] == key;
+	}
+
+	public RouteSegment get(long key) {
+		if (key == FREE) {
+			return freeKeyValue;
+		}
+		return values[index(key)];
+	}
+
+	/**
+	 * @return previous segment of the key or null
+	 */
+	public RouteSegment put(long key, RouteSegment segment) {
+		if (key == FREE) {
+			RouteSegment prev = freeKeyValue;
+			if (!hasFreeKey) {
+				hasFreeKey = true;
+				size++;
+			}
+			freeKeyValue = segment;
+			return prev;
+		}
+		int i = index(key);
+		RouteSegment prev = values[i];
+		values[i] = segment;
+		if (keys[i] == FREE) {
+			keys[i] = key;
+			size++;
+			if (size > keys.length * LOAD_FACTOR) {
+				rehash();
+			}
+		}
+		return prev;
+	}
+
+	private void rehash() {
+		long[] oldKeys = keys;
+		RouteSegment[] oldValues = values;
+		allocate(keys.length * 2);
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] != FREE) {
+				int i = index(oldKeys[j]);
+				keys[i] = oldKeys[j];
+				values[i] = oldValues[j];
+			}
+		}
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return segments of map in order of slots
+	 */
+	public List<RouteSegment> values() {
+		List<RouteSegment> res = new ArrayList<RouteSegment>(size);
+		if (hasFreeKey) {
+			res.add(freeKeyValue);
+		}
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] != FREE) {
+				res.add(values[i]);
+			}
+		}
+		return res;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public void clear() {
+		Arrays.fill(keys, FREE);
+		Arrays.fill(values, null);
+		hasFreeKey = false;
+		freeKeyValue = null;
+		size = 0;
+	}
+
+	/**
+	 * Bytes occupied by arrays of map (segments themselves belong to route tiles).
+	 */
+	public long getMemoryUsage() {
+		return 2 * RouteSegmentQueue.ARRAY_HEADER + (long) keys.length * (8 + RouteSegmentQueue.REFERENCE_SIZE);
+	}
+}
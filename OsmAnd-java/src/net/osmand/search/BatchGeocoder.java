@@ -0,0 +1,430 @@
+package net.osmand.search;
+
+import gnu.trove.list.array.TLongArrayList;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+
+import net.osmand.PlatformUtil;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapReaderPool;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.GeocodingUtilities;
+import net.osmand.binary.GeocodingUtilities.GeocodingResult;
+import net.osmand.binary.IndexedStringTableCache;
+import net.osmand.binary.ReverseGeocodingCache;
+import net.osmand.data.LatLon;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.router.RoutePlannerFrontEnd;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.RoutingContext;
+import net.osmand.search.core.SearchResult;
+import net.osmand.search.core.SearchSettings;
+
+import org.apache.commons.logging.Log;
+
+/**
+ * Geocodes stream of queries (text search or reverse geocoding of location) by pool of threads without
+ * delays of interactive search. Every thread takes a worker with own search core, readers (from reader pools,
+ * so index metadata and string tables cache are shared) and routing context for reverse geocoding, which are
+ * kept between queries.
+ * <p>
+ * Usage:
+ * <pre>
+ * BatchGeocoder geocoder = new BatchGeocoder(pools, poiTypes, "en", 4);
+ * try {
+ *     Statistics stats = geocoder.geocode(queries, answers);
+ * } finally {
+ *     geocoder.close();
+ * }
+ * </pre>
+ */
+public class BatchGeocoder {
+
+	private static final Log log = PlatformUtil.getLog(BatchGeocoder.class);
+	private static final int QUERIES_IN_PROGRESS_PER_THREAD = 4;
+
+	private final List<BinaryMapReaderPool> pools;
+	private final MapPoiTypes poiTypes;
+	private final String lang;
+	private final int threads;
+	private final ExecutorService executor;
+	private final ConcurrentLinkedQueue<Worker> workers = new ConcurrentLinkedQueue<Worker>();
+	private RoutingConfiguration.Builder routingConfig;
+	private int routingMemoryLimit = 10;
+	private int resultsLimit = 10;
+	private IndexedStringTableCache stringTableCache;
+	private ReverseGeocodingCache reverseGeocodingCache;
+
+	public static class GeocodingQuery {
+		private final String text;
+		private final LatLon location;
+		private final boolean reverse;
+
+		private GeocodingQuery(String text, LatLon location, boolean reverse) {
+			this.text = text;
+			this.location = location;
+			this.reverse = reverse;
+		}
+
+		/**
+		 * @param location location to sort results by distance or null
+		 */
+		public static GeocodingQuery search(String text, LatLon location) {
+			return new GeocodingQuery(text, location, false);
+		}
+
+		public static GeocodingQuery reverse(double lat, double lon) {
+			return new GeocodingQuery(null, new LatLon(lat, lon), true);
+		}
+
+		public String getText() {
+			return text;
+		}
+
+		public LatLon getLocation() {
+			return location;
+		}
+
+		public boolean isReverse() {
+			return reverse;
+		}
+
+		@Override
+		public String toString() {
+			return reverse ? "reverse " + location : "search '" + text + "'";
+		}
+	}
+
+	public static class GeocodingAnswer {
+		private final GeocodingQuery query;
+		private List<SearchResult> searchResults;
+		private List<GeocodingResult> geocodingResults;
+		private Exception error;
+		private long latency;
+
+		GeocodingAnswer(GeocodingQuery query) {
+			this.query = query;
+		}
+
+		public GeocodingQuery getQuery() {
+			return query;
+		}
+
+		/**
+		 * Sorted results of text search (null for reverse geocoding).
+		 */
+		public List<SearchResult> getSearchResults() {
+			return searchResults;
+		}
+
+		/**
+		 * Results of reverse geocoding sorted by distance (null for text search).
+		 */
+		public List<GeocodingResult> getGeocodingResults() {
+			return geocodingResults;
+		}
+
+		public Exception getError() {
+			return error;
+		}
+
+		public long getLatencyNanos() {
+			return latency;
+		}
+
+		public boolean isEmpty() {
+			return query.isReverse() ? geocodingResults == null || geocodingResults.isEmpty()
+					: searchResults == null || searchResults.isEmpty();
+		}
+	}
+
+	public static class Statistics {
+		private final TLongArrayList latencies = new TLongArrayList();
+		private int empty;
+		private int errors;
+		private long time;
+
+		synchronized void add(GeocodingAnswer answer) {
+			latencies.add(answer.latency);
+			if (answer.error != null) {
+				errors++;
+			} else if (answer.isEmpty()) {
+				empty++;
+			}
+		}
+
+		public synchronized int getQueries() {
+			return latencies.size();
+		}
+
+		public synchronized int getEmpty() {
+			return empty;
+		}
+
+		public synchronized int getErrors() {
+			return errors;
+		}
+
+		public synchronized long getTimeNanos() {
+			return time;
+		}
+
+		public synchronized double getQueriesPerSecond() {
+			return time == 0 ? 0 : latencies.size() * 1e9 / time;
+		}
+
+		/**
+		 * @param percentile 50 for median
+		 */
+		public synchronized double getLatencyMillis(double percentile) {
+			if (latencies.isEmpty()) {
+				return 0;
+			}
+			TLongArrayList sorted = new TLongArrayList(latencies);
+			sorted.sort();
+			int i = Math.min(sorted.size() - 1, (int) (sorted.size() * percentile / 100));
+			return sorted.get(i) / 1e6;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d queries in %.1f ms (%.1f queries/s), p50 %.2f ms, p99 %.2f ms, %d without results, %d errors",
+					getQueries(), getTimeNanos() / 1e6, getQueriesPerSecond(), getLatencyMillis(50),
+					getLatencyMillis(99), getEmpty(), getErrors());
+		}
+	}
+
+	private class Worker {
+		private final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+		private final SearchUICore core;
+		private final GeocodingUtilities geocoding = new GeocodingUtilities();
+		private RoutingContext ctx;
+
+		Worker() throws IOException {
+			try {
+				for (BinaryMapReaderPool pool : pools) {
+					readers.add(pool.acquire());
+				}
+				core = new SearchUICore(poiTypes, lang, false);
+				// cache is shared by workers (or disabled)
+				core.setStringTableCache(stringTableCache);
+				core.updateSettings(new SearchSettings(readers).setLang(lang, false));
+				core.init();
+			} catch (IOException e) {
+				discard();
+				throw e;
+			} catch (RuntimeException e) {
+				discard();
+				throw e;
+			}
+		}
+
+		List<SearchResult> search(GeocodingQuery query) throws InterruptedException {
+			List<SearchResult> res = core.immediateSearch(query.getText(), query.getLocation()).getCurrentSearchResults();
+			return new ArrayList<SearchResult>(res.subList(0, Math.min(resultsLimit, res.size())));
+		}
+
+		/**
+		 * Roads near location are justified by streets and buildings of address index of the same file
+		 * (as reverse geocoding of application does).
+		 */
+		List<GeocodingResult> reverse(GeocodingQuery query) throws IOException {
+			if (ctx == null) {
+				RoutingConfiguration.Builder builder = routingConfig != null ? routingConfig : RoutingConfiguration.getDefault();
+				ctx = new RoutePlannerFrontEnd(false).buildRoutingContext(builder.build("geocoding", routingMemoryLimit),
+						null, readers.toArray(new BinaryMapIndexReader[readers.size()]));
+			}
+			LatLon l = query.getLocation();
+			List<GeocodingResult> roads = reverseGeocodingCache != null ?
+					reverseGeocodingCache.reverseGeocodingSearch(ctx, l.getLatitude(), l.getLongitude(), false) :
+					geocoding.reverseGeocodingSearch(ctx, l.getLatitude(), l.getLongitude(), false);
+			List<GeocodingResult> complete = new ArrayList<GeocodingResult>();
+			double minBuildingDistance = 0;
+			for (GeocodingResult r : roads) {
+				BinaryMapIndexReader reader = getReader(r);
+				if (reader == null) {
+					complete.add(r);
+					continue;
+				}
+				List<GeocodingResult> justified = reverseGeocodingCache != null ?
+						reverseGeocodingCache.justifyReverseGeocodingSearch(r, reader, minBuildingDistance) :
+						geocoding.justifyReverseGeocodingSearch(r, reader, minBuildingDistance, null);
+				if (!justified.isEmpty()) {
+					double md = justified.get(0).getDistance();
+					minBuildingDistance = minBuildingDistance == 0 ? md : Math.min(md, minBuildingDistance);
+					complete.addAll(justified);
+				}
+			}
+			Collections.sort(complete, GeocodingUtilities.DISTANCE_COMPARATOR);
+			return complete;
+		}
+
+		private BinaryMapIndexReader getReader(GeocodingResult r) {
+			for (BinaryMapIndexReader reader : readers) {
+				for (RouteRegion rb : reader.getRoutingIndexes()) {
+					if (r.regionFP == rb.getFilePointer() && r.regionLen == rb.getLength()) {
+						return reader;
+					}
+				}
+			}
+			return null;
+		}
+
+		void close() {
+			for (int i = 0; i < readers.size(); i++) {
+				pools.get(i).release(readers.get(i));
+			}
+			readers.clear();
+		}
+
+		/**
+		 * Closes readers of worker which failed, query could be interrupted in the middle of reading.
+		 */
+		void discard() {
+			for (int i = 0; i < readers.size(); i++) {
+				pools.get(i).discard(readers.get(i));
+			}
+			readers.clear();
+		}
+	}
+
+	public BatchGeocoder(List<BinaryMapReaderPool> pools, MapPoiTypes poiTypes, String lang, int threads) {
+		this.pools = pools;
+		this.poiTypes = poiTypes;
+		this.lang = lang;
+		this.threads = threads;
+		this.executor = Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Routing configuration of reverse geocoding ("geocoding" router of default configuration by default).
+	 */
+	public void setRoutingConfiguration(RoutingConfiguration.Builder routingConfig, int memoryLimitMB) {
+		this.routingConfig = routingConfig;
+		this.routingMemoryLimit = memoryLimitMB;
+	}
+
+	/**
+	 * Number of the best results of text search kept in answer (10 by default).
+	 */
+	public void setResultsLimit(int resultsLimit) {
+		this.resultsLimit = resultsLimit;
+	}
+
+	/**
+	 * Cache of string tables shared by readers of all threads, should be set before the first query.
+	 */
+	public void setStringTableCache(IndexedStringTableCache stringTableCache) {
+		this.stringTableCache = stringTableCache;
+	}
+
+	/**
+	 * Cache of roads and streets shared by all threads for reverse geocoding of dense points (tracks).
+	 */
+	public void setReverseGeocodingCache(ReverseGeocodingCache reverseGeocodingCache) {
+		this.reverseGeocodingCache = reverseGeocodingCache;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Answers queries in parallel until iterator is finished or answers matcher is cancelled. Iterator is read
+	 * in the calling thread not further than a few queries per thread ahead, so queries could be generated lazily.
+	 *
+	 * @param answers matcher to receive answers in order of completion (one at a time) or null
+	 */
+	public Statistics geocode(Iterator<GeocodingQuery> queries, final ResultMatcher<GeocodingAnswer> answers)
+			throws InterruptedException {
+		final Statistics stats = new Statistics();
+		int permits = threads * QUERIES_IN_PROGRESS_PER_THREAD;
+		final Semaphore inProgress = new Semaphore(permits);
+		long time = System.nanoTime();
+		while (queries.hasNext() && (answers == null || !answers.isCancelled())) {
+			final GeocodingQuery query = queries.next();
+			inProgress.acquire();
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						GeocodingAnswer answer = answer(query);
+						stats.add(answer);
+						if (answers != null) {
+							synchronized (answers) {
+								answers.publish(answer);
+							}
+						}
+					} finally {
+						inProgress.release();
+					}
+				}
+			});
+		}
+		// wait for queries in progress
+		inProgress.acquire(permits);
+		inProgress.release(permits);
+		synchronized (stats) {
+			stats.time = System.nanoTime() - time;
+		}
+		return stats;
+	}
+
+	/**
+	 * Answers query in the calling thread. Latency of answer doesn't include creation of worker for thread,
+	 * worker which failed is discarded (its readers are closed) and the next query creates a new one.
+	 */
+	public GeocodingAnswer answer(GeocodingQuery query) {
+		GeocodingAnswer answer = new GeocodingAnswer(query);
+		Worker worker = null;
+		try {
+			worker = workers.poll();
+			if (worker == null) {
+				worker = new Worker();
+			}
+			long time = System.nanoTime();
+			try {
+				if (query.isReverse()) {
+					answer.geocodingResults = worker.reverse(query);
+				} else {
+					answer.searchResults = worker.search(query);
+				}
+			} finally {
+				answer.latency = System.nanoTime() - time;
+			}
+			workers.add(worker);
+		} catch (IOException e) {
+			answer.error = e;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			answer.error = e;
+		} catch (RuntimeException e) {
+			log.error("Query " + query + " failed", e);
+			answer.error = e;
+		}
+		if (answer.error != null && worker != null) {
+			worker.discard();
+		}
+		return answer;
+	}
+
+	/**
+	 * Stops threads and releases readers to pools (pools are not closed).
+	 */
+	public void close() {
+		executor.shutdown();
+		Worker worker;
+		while ((worker = workers.poll()) != null) {
+			worker.close();
+		}
+	}
+}
@@ -5,6 +5,7 @@ import net.osmand.OsmAndCollator;
 import net.osmand.PlatformUtil;
 import net.osmand.ResultMatcher;
 import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.IndexedStringTableCache;
 import net.osmand.data.Amenity;
 import net.osmand.data.LatLon;
 import net.osmand.data.Street;
@@ -13,6 +14,7 @@ import net.osmand.search.core.CustomSearchPoiFilter;
 import net.osmand.search.core.ObjectType;
 import net.osmand.search.core.SearchCoreAPI;
 import net.osmand.search.core.SearchCoreFactory;
+import net.osmand.search.core.SearchCoreFactory.SearchAddressByNameAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchAmenityTypesAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchBuildingAndIntersectionsByStreetAPI;
 import net.osmand.search.core.SearchCoreFactory.SearchStreetByCityAPI;
@@ -30,9 +32,15 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -48,6 +56,8 @@ public class SearchUICore {
 	private SearchResultCollection  currentSearchResult;
 
 	private ThreadPoolExecutor singleThreadedExecutor;
+	private ExecutorService searchExecutor;
+	private IndexedStringTableCache stringTableCache;
 	private LinkedBlockingQueue<Runnable> taskQueue;
 	private Runnable onSearchStart = null;
 	private Runnable onResultsComplete = null;
@@ -70,6 +80,31 @@ public class SearchUICore {
 		singleThreadedExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, taskQueue);
 	}
 
+	/**
+	 * Cache of name tables used by search by name of poi and address (disabled by default), it is set to files of
+	 * search settings which don't have own cache. Null disables cache for the next settings.
+	 */
+	public void setStringTableCache(IndexedStringTableCache stringTableCache) {
+		this.stringTableCache = stringTableCache;
+	}
+
+	public IndexedStringTableCache getStringTableCache() {
+		return stringTableCache;
+	}
+
+	/**
+	 * Executor to search APIs (and regions of POI search by name) in parallel or null (default) to search them
+	 * sequentially in search thread. Results are collected in the same order as by sequential search.
+	 * Executor should have bounded number of threads, it is not shut down by search core.
+	 */
+	public void setSearchExecutor(ExecutorService searchExecutor) {
+		this.searchExecutor = searchExecutor;
+	}
+
+	public ExecutorService getSearchExecutor() {
+		return searchExecutor;
+	}
+
 	public static void setDebugMode(boolean debugMode) {
 		SearchUICore.debugMode = debugMode;
 	}
@@ -83,6 +118,14 @@ public class SearchUICore {
 		private SearchPhrase phrase;
 		private static final int DEPTH_TO_CHECK_SAME_SEARCH_RESULTS = 20;
 
+		// valid while results are sorted and without duplicates, allows to add results one by one
+		// by binary search of position (O(log n) comparisons) and to find duplicates by name, street and object
+		private SearchResultComparator comparator;
+		private boolean sorted;
+		private Map<String, List<SearchResult>> resultsByName;
+		private Map<LatLon, List<SearchResult>> streetsByLocation;
+		private Map<Object, List<SearchResult>> resultsByObject;
+
 		public SearchResultCollection(SearchPhrase phrase) {
 			searchResults = new ArrayList<>();
 			this.phrase = phrase;
@@ -99,13 +142,20 @@ public class SearchUICore {
 			if (SearchUICore.isDebugMode()) {
 				LOG.info("Add search results resortAll=" + (resortAll ? "true" : "false") + " removeDuplicates=" + (removeDuplicates ? "true" : "false") + " Results=" + sr.size() + " Current results=" + this.searchResults.size());
 			}
-			if (resortAll) {
+			if (resortAll && removeDuplicates && sorted && resultsByName != null && sr.size() <= searchResults.size()) {
+				// results are already sorted, small part is inserted without resorting all
+				for (SearchResult r : sr) {
+					insertSearchResult(r);
+				}
+			} else if (resortAll) {
 				this.searchResults.addAll(sr);
 				sortSearchResults();
 				if (removeDuplicates) {
 					filterSearchDuplicateResults();
 				}
 			} else {
+				sorted = false;
+				resultsByName = null;
 				if (!removeDuplicates) {
 					this.searchResults.addAll(sr);
 				} else {
@@ -171,7 +221,10 @@ public class SearchUICore {
 			if (debugMode) {
 				LOG.info("Sorting search results <" + phrase + "> Results=" + searchResults.size());
 			}
-			Collections.sort(searchResults, new SearchResultComparator(phrase));
+			resultsByName = null;
+			comparator = new SearchResultComparator(phrase);
+			Collections.sort(searchResults, comparator);
+			sorted = true;
 			if (debugMode) {
 				LOG.info("Search results sorted <" + phrase + ">");
 			}
@@ -181,12 +234,117 @@ public class SearchUICore {
 			if (debugMode) {
 				LOG.info("Filter duplicate results <" + phrase + "> Results=" + searchResults.size());
 			}
-			filterSearchDuplicateResults(searchResults);
+			// first of same results is kept
+			ArrayList<SearchResult> lst = new ArrayList<>(searchResults);
+			searchResults.clear();
+			resultsByName = new HashMap<>();
+			streetsByLocation = new HashMap<>();
+			resultsByObject = new IdentityHashMap<>();
+			for (SearchResult r : lst) {
+				if (findSameSearchResult(r) == null) {
+					searchResults.add(r);
+					indexSearchResult(r, true);
+				}
+			}
 			if (debugMode) {
 				LOG.info("Duplicate results filtered <" + phrase + "> Results=" + searchResults.size());
 			}
 		}
 
+		private void insertSearchResult(SearchResult r) {
+			SearchResult same;
+			while ((same = findSameSearchResult(r)) != null) {
+				if (comparator.compare(same, r) <= 0) {
+					return;
+				}
+				// added result is better than the same existing result
+				searchResults.remove(indexOf(same));
+				indexSearchResult(same, false);
+			}
+			int lo = 0;
+			int hi = searchResults.size();
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (comparator.compare(searchResults.get(mid), r) <= 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			searchResults.add(lo, r);
+			indexSearchResult(r, true);
+		}
+
+		private int indexOf(SearchResult r) {
+			int lo = 0;
+			int hi = searchResults.size();
+			while (lo < hi) {
+				int mid = (lo + hi) >>> 1;
+				if (comparator.compare(searchResults.get(mid), r) < 0) {
+					lo = mid + 1;
+				} else {
+					hi = mid;
+				}
+			}
+			// equal results are in a row
+			for (int i = lo; i < searchResults.size() && comparator.compare(searchResults.get(i), r) == 0; i++) {
+				if (searchResults.get(i) == r) {
+					return i;
+				}
+			}
+			return searchResults.indexOf(r);
+		}
+
+		private SearchResult findSameSearchResult(SearchResult r) {
+			SearchResult same = findSameSearchResult(r, resultsByName.get(r.localeName));
+			if (same == null && r.objectType == ObjectType.STREET && r.location != null) {
+				same = findSameSearchResult(r, streetsByLocation.get(((Street) r.object).getLocation()));
+			}
+			if (same == null && r.object != null) {
+				same = findSameSearchResult(r, resultsByObject.get(r.object));
+			}
+			return same;
+		}
+
+		private SearchResult findSameSearchResult(SearchResult r, List<SearchResult> candidates) {
+			if (candidates != null) {
+				for (SearchResult c : candidates) {
+					if (sameSearchResult(c, r)) {
+						return c;
+					}
+				}
+			}
+			return null;
+		}
+
+		private void indexSearchResult(SearchResult r, boolean add) {
+			if (r.localeName != null) {
+				indexSearchResult(resultsByName, r.localeName, r, add);
+			}
+			if (r.objectType == ObjectType.STREET && r.location != null) {
+				indexSearchResult(streetsByLocation, ((Street) r.object).getLocation(), r, add);
+			}
+			if (r.object != null) {
+				indexSearchResult(resultsByObject, r.object, r, add);
+			}
+		}
+
+		private static <K> void indexSearchResult(Map<K, List<SearchResult>> index, K key, SearchResult r, boolean add) {
+			List<SearchResult> lst = index.get(key);
+			if (add) {
+				if (lst == null) {
+					lst = new ArrayList<>(1);
+					index.put(key, lst);
+				}
+				lst.add(r);
+			} else if (lst != null) {
+				lst.remove(r);
+				if (lst.isEmpty()) {
+					index.remove(key);
+				}
+			}
+		}
+
 		private void filterSearchDuplicateResults(List<SearchResult> lst) {
 			ListIterator<SearchResult> it = lst.listIterator();
 			LinkedList<SearchResult> lstUnique = new LinkedList<SearchResult>();
@@ -307,6 +465,23 @@ public class SearchUICore {
 		return null;
 	}
 
+	/**
+	 * Searches by all APIs in the calling thread without delays. Current phrase and results are not changed,
+	 * so it could be used for batch geocoding (one core per thread).
+	 *
+	 * @param location location to sort results by distance or null to use location of search settings
+	 */
+	public SearchResultCollection immediateSearch(String text, LatLon location) throws InterruptedException {
+		SearchSettings settings = location == null ? searchSettings : searchSettings.setOriginalLocation(location);
+		SearchPhrase sphrase = this.phrase.generateNewPhrase(text, settings);
+		AtomicInteger ai = new AtomicInteger();
+		SearchResultMatcher rm = new SearchResultMatcher(null, sphrase, ai.get(), ai, totalLimit, searchExecutor);
+		searchInBackground(sphrase, rm);
+		SearchResultCollection collection = new SearchResultCollection(sphrase);
+		collection.addSearchResults(rm.getRequestResults(), true, true);
+		return collection;
+	}
+
 	public void init() {
 		apis.add(new SearchCoreFactory.SearchLocationAndUrlAPI());
 		apis.add(new SearchCoreFactory.SearchAmenityTypesAPI(poiTypes));
@@ -363,6 +538,13 @@ public class SearchUICore {
 
 	public void updateSettings(SearchSettings settings) {
 		searchSettings = settings;
+		if (stringTableCache != null && settings.getOfflineIndexes() != null) {
+			for (BinaryMapIndexReader r : settings.getOfflineIndexes()) {
+				if (r.getStringTableCache() == null) {
+					r.setStringTableCache(stringTableCache);
+				}
+			}
+		}
 	}
 
 	private void filterCurrentResults(SearchPhrase phrase, ResultMatcher<SearchResult> matcher) {
@@ -415,7 +597,8 @@ public class SearchUICore {
 					if (onSearchStart != null) {
 						onSearchStart.run();
 					}
-					final SearchResultMatcher rm = new SearchResultMatcher(matcher, phrase, request, requestNumber, totalLimit);
+					final SearchResultMatcher rm = new SearchResultMatcher(matcher, phrase, request, requestNumber, totalLimit,
+								searchExecutor);
 					if (debugMode) {
 						LOG.info("Starting search <" + phrase.toString() + ">");
 					}
@@ -527,7 +710,7 @@ public class SearchUICore {
 		return radius;
 	}
 
-	private void searchInBackground(final SearchPhrase phrase, SearchResultMatcher matcher) {
+	private void searchInBackground(final SearchPhrase phrase, SearchResultMatcher matcher) throws InterruptedException {
 		preparePhrase(phrase);
 		ArrayList<SearchCoreAPI> lst = new ArrayList<>(apis);
 		Collections.sort(lst, new Comparator<SearchCoreAPI>() {
@@ -538,6 +721,10 @@ public class SearchUICore {
 						o2.getSearchPriority(phrase));
 			}
 		});
+		if (matcher.getSearchExecutor() != null) {
+			searchInParallel(phrase, matcher, lst);
+			return;
+		}
 		for (SearchCoreAPI api : lst) {
 			if (matcher.isCancelled()) {
 				break;
@@ -545,23 +732,79 @@ public class SearchUICore {
 			if (!api.isSearchAvailable(phrase) || api.getSearchPriority(phrase) == -1) {
 				continue;
 			}
+			searchApi(api, phrase, matcher);
+		}
+	}
+
+	private void searchInParallel(final SearchPhrase phrase, SearchResultMatcher matcher, List<SearchCoreAPI> lst)
+			throws InterruptedException {
+		final List<SearchCoreAPI> available = new ArrayList<>();
+		final List<SearchResultMatcher> children = new ArrayList<>();
+		for (SearchCoreAPI api : lst) {
+			if (api.isSearchAvailable(phrase) && api.getSearchPriority(phrase) != -1) {
+				available.add(api);
+				children.add(matcher.createChildMatcher());
+			}
+		}
+		// address APIs share street and city search APIs (and cities loaded by them), so they are searched in one task
+		List<Future<?>> futures = new ArrayList<>();
+		final List<Integer> addressApis = new ArrayList<>();
+		for (int i = 0; i < available.size(); i++) {
+			SearchCoreAPI api = available.get(i);
+			if (api instanceof SearchAddressByNameAPI || api instanceof SearchStreetByCityAPI
+					|| api instanceof SearchBuildingAndIntersectionsByStreetAPI) {
+				addressApis.add(i);
+			} else {
+				futures.add(submitApiSearch(matcher.getSearchExecutor(), phrase, available, children, Collections.singletonList(i)));
+			}
+		}
+		if (!addressApis.isEmpty()) {
+			futures.add(submitApiSearch(matcher.getSearchExecutor(), phrase, available, children, addressApis));
+		}
+		for (Future<?> f : futures) {
 			try {
-				if (debugMode) {
-					LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
-				}
-				api.search(phrase, matcher);
-				if (debugMode) {
-					LOG.info("API search finishing <" + phrase + "> API=<" + api + ">");
-				}
-				matcher.apiSearchFinished(api, phrase);
-				if (debugMode) {
-					LOG.info("API search done <" + phrase + "> API=<" + api + ">");
-				}
-			} catch (Throwable e) {
-				e.printStackTrace();
+				f.get();
+			} catch (ExecutionException e) {
 				LOG.error(e.getMessage(), e);
 			}
 		}
+		for (SearchResultMatcher child : children) {
+			matcher.addChildResults(child);
+		}
+	}
+
+	private Future<?> submitApiSearch(ExecutorService executor, final SearchPhrase phrase,
+			final List<SearchCoreAPI> available, final List<SearchResultMatcher> matchers, final List<Integer> indexes) {
+		return executor.submit(new Runnable() {
+			@Override
+			public void run() {
+				for (int i : indexes) {
+					if (matchers.get(i).isCancelled()) {
+						break;
+					}
+					searchApi(available.get(i), phrase, matchers.get(i));
+				}
+			}
+		});
+	}
+
+	private void searchApi(SearchCoreAPI api, SearchPhrase phrase, SearchResultMatcher matcher) {
+		try {
+			if (debugMode) {
+				LOG.info("Run API search <" + phrase + "> API=<" + api + ">");
+			}
+			api.search(phrase, matcher);
+			if (debugMode) {
+				LOG.info("API search finishing <" + phrase + "> API=<" + api + ">");
+			}
+			matcher.apiSearchFinished(api, phrase);
+			if (debugMode) {
+				LOG.info("API search done <" + phrase + "> API=<" + api + ">");
+			}
+		} catch (Throwable e) {
+			e.printStackTrace();
+			LOG.error(e.getMessage(), e);
+		}
 	}
 
 	private void preparePhrase(final SearchPhrase phrase) {
@@ -591,15 +834,78 @@ public class SearchUICore {
 		private final AtomicInteger requestNumber;
 		int count = 0;
 		private SearchPhrase phrase;
+		private final ExecutorService executor;
+		// results of parallel searches are published to matcher one at a time
+		private final Object lock;
+		// results are only kept to be published later
+		private final boolean buffer;
 
 
 		public SearchResultMatcher(ResultMatcher<SearchResult> matcher, SearchPhrase phrase, int request,
 								   AtomicInteger requestNumber, int totalLimit) {
+			this(matcher, phrase, request, requestNumber, totalLimit, null);
+		}
+
+		/**
+		 * @param executor executor to search APIs and regions in parallel or null to search them sequentially
+		 */
+		public SearchResultMatcher(ResultMatcher<SearchResult> matcher, SearchPhrase phrase, int request,
+								   AtomicInteger requestNumber, int totalLimit, ExecutorService executor) {
 			this.matcher = matcher;
 			this.phrase = phrase;
 			this.request = request;
 			this.requestNumber = requestNumber;
 			this.totalLimit = totalLimit;
+			this.executor = executor;
+			this.lock = this;
+			this.buffer = false;
+		}
+
+		private SearchResultMatcher(SearchResultMatcher parent, boolean buffer) {
+			this.buffer = buffer;
+			this.matcher = parent.matcher;
+			this.phrase = parent.phrase;
+			this.request = parent.request;
+			this.requestNumber = parent.requestNumber;
+			this.totalLimit = parent.totalLimit;
+			this.executor = parent.executor;
+			this.lock = parent.lock;
+			this.parentSearchResult = parent.parentSearchResult;
+		}
+
+		/**
+		 * Matcher to search in another thread : results are published to the same matcher and kept
+		 * separately until they are added by {@link #addChildResults}.
+		 */
+		public SearchResultMatcher createChildMatcher() {
+			return new SearchResultMatcher(this, false);
+		}
+
+		/**
+		 * Matcher which keeps results as they are, results are published to matcher of search only when they
+		 * are published again (for example in order of searched regions).
+		 */
+		public SearchResultMatcher createBufferMatcher() {
+			return new SearchResultMatcher(this, true);
+		}
+
+		public void addChildResults(SearchResultMatcher child) {
+			for (SearchResult object : child.requestResults) {
+				count++;
+				if (totalLimit == -1 || count < totalLimit) {
+					requestResults.add(object);
+				}
+			}
+		}
+
+		public ExecutorService getSearchExecutor() {
+			return executor;
+		}
+
+		private boolean publishToMatcher(SearchResult object) {
+			synchronized (lock) {
+				return matcher.publish(object);
+			}
 		}
 
 		public SearchResult setParentSearchResult(SearchResult parentSearchResult) {
@@ -620,7 +926,7 @@ public class SearchUICore {
 			if (matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
 				sr.objectType = ObjectType.SEARCH_STARTED;
-				matcher.publish(sr);
+				publishToMatcher(sr);
 			}
 		}
 
@@ -628,7 +934,7 @@ public class SearchUICore {
 			if (matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
 				sr.objectType = ObjectType.FILTER_FINISHED;
-				matcher.publish(sr);
+				publishToMatcher(sr);
 			}
 		}
 
@@ -636,7 +942,7 @@ public class SearchUICore {
 			if (matcher != null) {
 				SearchResult sr = new SearchResult(phrase);
 				sr.objectType = ObjectType.SEARCH_FINISHED;
-				matcher.publish(sr);
+				publishToMatcher(sr);
 			}
 		}
 
@@ -646,7 +952,7 @@ public class SearchUICore {
 				sr.objectType = ObjectType.SEARCH_API_FINISHED;
 				sr.object = api;
 				sr.parentSearchResult = parentSearchResult;
-				matcher.publish(sr);
+				publishToMatcher(sr);
 			}
 		}
 
@@ -657,7 +963,7 @@ public class SearchUICore {
 				sr.object = api;
 				sr.parentSearchResult = parentSearchResult;
 				sr.file = region;
-				matcher.publish(sr);
+				publishToMatcher(sr);
 				if (debugMode) {
 					LOG.info("API region search done <" + phrase + "> API=<" + api + "> Region=<" + region.getFile().getName() + ">");
 				}
@@ -666,6 +972,10 @@ public class SearchUICore {
 
 		@Override
 		public boolean publish(SearchResult object) {
+			if (buffer) {
+				requestResults.add(object);
+				return true;
+			}
 			if (phrase != null && object.otherNames != null && !phrase.getNameStringMatcher().matches(object.localeName)) {
 				for (String s : object.otherNames) {
 					if (phrase.getNameStringMatcher().matches(s)) {
@@ -678,7 +988,7 @@ public class SearchUICore {
 				object.localeName = object.alternateName;
 				object.alternateName = null;
 			}
-			if (matcher == null || matcher.publish(object)) {
+			if (matcher == null || publishToMatcher(object)) {
 				count++;
 				object.parentSearchResult = parentSearchResult;
 				if (totalLimit == -1 || count < totalLimit) {
@@ -700,6 +1010,15 @@ public class SearchUICore {
 		private Collator collator;
 		private LatLon loc;
 		private boolean sortByName;
+		// sort keys are calculated once per result (distances and numbers are used in every comparison)
+		private Map<SearchResult, SortKey> sortKeys = new HashMap<>();
+
+		private static class SortKey {
+			int foundWordCount;
+			double searchDistance;
+			double searchDistanceOne;
+			int firstNumber;
+		}
 
 		public SearchResultComparator(SearchPhrase sp) {
 			this.sp = sp;
@@ -708,23 +1027,34 @@ public class SearchUICore {
 			sortByName = sp.isSortByName();
 		}
 
+		private SortKey getSortKey(SearchResult r) {
+			SortKey key = sortKeys.get(r);
+			if (key == null) {
+				key = new SortKey();
+				key.foundWordCount = r.getFoundWordCount();
+				key.searchDistance = r.getSearchDistance(loc);
+				key.searchDistanceOne = r.getSearchDistance(loc, 1);
+				key.firstNumber = Algorithms.extractFirstIntegerNumber(r.localeName);
+				sortKeys.put(r, key);
+			}
+			return key;
+		}
+
 		@Override
 		public int compare(SearchResult o1, SearchResult o2) {
-			if (o1.getFoundWordCount() != o2.getFoundWordCount()) {
-				return -Algorithms.compare(o1.getFoundWordCount(), o2.getFoundWordCount());
+			SortKey k1 = getSortKey(o1);
+			SortKey k2 = getSortKey(o2);
+			if (k1.foundWordCount != k2.foundWordCount) {
+				return -Algorithms.compare(k1.foundWordCount, k2.foundWordCount);
 			}
 			if (!sortByName) {
-				double s1 = o1.getSearchDistance(loc);
-				double s2 = o2.getSearchDistance(loc);
-				int cmp = Double.compare(s1, s2);
+				int cmp = Double.compare(k1.searchDistance, k2.searchDistance);
 				if (cmp != 0) {
 					return cmp;
 				}
 			}
-			int st1 = Algorithms.extractFirstIntegerNumber(o1.localeName);
-			int st2 = Algorithms.extractFirstIntegerNumber(o2.localeName);
-			if (st1 != st2) {
-				return Algorithms.compare(st1, st2);
+			if (k1.firstNumber != k2.firstNumber) {
+				return Algorithms.compare(k1.firstNumber, k2.firstNumber);
 			}
 			int cmp = collator.compare(o1.localeName, o2.localeName);
 			if (cmp != 0) {
@@ -748,9 +1078,7 @@ public class SearchUICore {
 				}
 			}
 
-			double s1 = o1.getSearchDistance(loc, 1);
-			double s2 = o2.getSearchDistance(loc, 1);
-			return Double.compare(s1, s2);
+			return Double.compare(k1.searchDistanceOne, k2.searchDistanceOne);
 		}
 
 	}
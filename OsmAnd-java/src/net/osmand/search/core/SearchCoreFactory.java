@@ -34,6 +34,7 @@ import net.osmand.util.LocationParser;
 import net.osmand.util.MapUtils;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -47,6 +48,10 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import gnu.trove.list.array.TIntArrayList;
 
@@ -83,6 +88,26 @@ public class SearchCoreFactory {
 	protected static final double SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE = 0.001;
 	protected static final double SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE = 0.005;
 
+	/**
+	 * Search in one region, results are published to the given result matcher.
+	 */
+	public interface RegionSearch {
+
+		void search(BinaryMapIndexReader region, SearchResultMatcher resultMatcher) throws IOException;
+	}
+
+	/**
+	 * Search in one region which results are filtered in order of regions when region is finished, so results
+	 * of parallel search are the same as of sequential one (objects found in previous regions, limit of results).
+	 */
+	public interface OrderedRegionSearch extends RegionSearch {
+
+		/**
+		 * @return false if result shouldn't be published
+		 */
+		boolean accept(SearchResult result);
+	}
+
 	public static abstract class SearchBaseAPI implements SearchCoreAPI {
 
 		private ObjectType[] searchTypes;
@@ -158,6 +183,102 @@ public class SearchCoreFactory {
 //			}
 		}
 
+		/**
+		 * Searches regions one by one or in parallel by executor of result matcher. In both cases results are
+		 * added to result matcher in order of regions, results of {@link OrderedRegionSearch} are also published
+		 * in order of regions.
+		 */
+		protected void searchRegions(Iterator<BinaryMapIndexReader> regions, final SearchPhrase phrase,
+				final SearchResultMatcher resultMatcher, final RegionSearch regionSearch) throws IOException {
+			ExecutorService executor = resultMatcher.getSearchExecutor();
+			final OrderedRegionSearch ordered = regionSearch instanceof OrderedRegionSearch ?
+					(OrderedRegionSearch) regionSearch : null;
+			if (executor == null) {
+				while (regions.hasNext()) {
+					BinaryMapIndexReader r = regions.next();
+					if (ordered != null) {
+						SearchResultMatcher buffer = resultMatcher.createBufferMatcher();
+						regionSearch.search(r, buffer);
+						publishAccepted(ordered, buffer, resultMatcher);
+					} else {
+						regionSearch.search(r, resultMatcher);
+					}
+					resultMatcher.apiSearchRegionFinished(this, r, phrase);
+				}
+				return;
+			}
+			final List<BinaryMapIndexReader> list = new ArrayList<>();
+			final List<SearchResultMatcher> matchers = new ArrayList<>();
+			while (regions.hasNext()) {
+				list.add(regions.next());
+				matchers.add(ordered != null ? resultMatcher.createBufferMatcher() : resultMatcher.createChildMatcher());
+			}
+			final AtomicInteger next = new AtomicInteger();
+			final CountDownLatch finished = new CountDownLatch(list.size());
+			final Exception[] error = new Exception[1];
+			Runnable worker = new Runnable() {
+				@Override
+				public void run() {
+					int i;
+					while ((i = next.getAndIncrement()) < list.size()) {
+						try {
+							if (!resultMatcher.isCancelled()) {
+								regionSearch.search(list.get(i), matchers.get(i));
+								if (ordered == null) {
+									matchers.get(i).apiSearchRegionFinished(SearchBaseAPI.this, list.get(i), phrase);
+								}
+							}
+						} catch (IOException | RuntimeException e) {
+							synchronized (error) {
+								if (error[0] == null) {
+									error[0] = e;
+								}
+							}
+						} finally {
+							finished.countDown();
+						}
+					}
+				}
+			};
+			int helpers = list.size() - 1;
+			if (executor instanceof ThreadPoolExecutor) {
+				helpers = Math.min(helpers, ((ThreadPoolExecutor) executor).getMaximumPoolSize());
+			}
+			for (int i = 0; i < helpers; i++) {
+				executor.execute(worker);
+			}
+			// calling thread searches as well, so regions are searched even if all threads of executor are busy
+			worker.run();
+			try {
+				finished.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException();
+			}
+			for (int i = 0; i < matchers.size(); i++) {
+				if (ordered == null) {
+					resultMatcher.addChildResults(matchers.get(i));
+				} else if (error[0] == null && !resultMatcher.isCancelled()) {
+					publishAccepted(ordered, matchers.get(i), resultMatcher);
+					resultMatcher.apiSearchRegionFinished(this, list.get(i), phrase);
+				}
+			}
+			if (error[0] instanceof IOException) {
+				throw (IOException) error[0];
+			} else if (error[0] != null) {
+				throw (RuntimeException) error[0];
+			}
+		}
+
+		private void publishAccepted(OrderedRegionSearch ordered, SearchResultMatcher buffer,
+				SearchResultMatcher resultMatcher) {
+			for (SearchResult sr : buffer.getRequestResults()) {
+				if (ordered.accept(sr)) {
+					resultMatcher.publish(sr);
+				}
+			}
+		}
+
 		@Override
 		public String toString() {
 			return getClass().getSimpleName();
@@ -500,74 +621,83 @@ public class SearchCoreFactory {
 			if(!phrase.isUnknownSearchWordPresent()) {
 				return false;
 			}
-			final BinaryMapIndexReader[] currentFile = new BinaryMapIndexReader[1];
 			Iterator<BinaryMapIndexReader> offlineIterator = phrase.getRadiusOfflineIndexes(BBOX_RADIUS,
 					SearchPhraseDataType.POI);
 			final NameStringMatcher nm = phrase.getNameStringMatcher();
-			QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
+			final QuadRect bbox = phrase.getRadiusBBoxToSearch(BBOX_RADIUS_INSIDE);
+			// pois found in previous regions and limit of results are checked in order of regions
 			final Set<String> ids = new HashSet<String>();
-			SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(
-					(int)bbox.centerX(), (int)bbox.centerY(),
-					phrase.getUnknownSearchWord(),
-					(int)bbox.left, (int)bbox.right,
-					(int)bbox.top, (int)bbox.bottom,
-					new ResultMatcher<Amenity>() {
-						int limit = 0;
-						@Override
-						public boolean publish(Amenity object) {
-							if (limit ++ > LIMIT) {
-								return false;
-							}
-							String poiID = object.getType().getKeyName() + "_" + object.getId();
-							if (ids.contains(poiID)) {
-								return false;
-							}
-							SearchResult sr = new SearchResult(phrase);
-							sr.otherNames = object.getAllNames(true);
-							sr.localeName = object.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
-							if (phrase.isUnknownSearchWordComplete()) {
-								if(!nm.matches(sr.localeName) && !nm.matches(sr.otherNames) &&
-										!nm.matches(object.getAdditionalInfo().values())) {
+			searchRegions(offlineIterator, phrase, resultMatcher, new OrderedRegionSearch() {
+				@Override
+				public void search(final BinaryMapIndexReader region, final SearchResultMatcher regionMatcher)
+						throws IOException {
+					final Set<String> regionIds = new HashSet<String>();
+					final AtomicInteger limit = new AtomicInteger();
+					SearchRequest<Amenity> req = BinaryMapIndexReader.buildSearchPoiRequest(
+							(int)bbox.centerX(), (int)bbox.centerY(),
+							phrase.getUnknownSearchWord(),
+							(int)bbox.left, (int)bbox.right,
+							(int)bbox.top, (int)bbox.bottom,
+							new ResultMatcher<Amenity>() {
+								@Override
+								public boolean publish(Amenity object) {
+									if (limit.getAndIncrement() > LIMIT) {
+										return false;
+									}
+									String poiID = getPoiId(object);
+									if (regionIds.contains(poiID)) {
+										return false;
+									}
+									SearchResult sr = new SearchResult(phrase);
+									sr.otherNames = object.getAllNames(true);
+									sr.localeName = object.getName(phrase.getSettings().getLang(), phrase.getSettings().isTransliterate());
+									if (phrase.isUnknownSearchWordComplete()) {
+										if(!nm.matches(sr.localeName) && !nm.matches(sr.otherNames) &&
+												!nm.matches(object.getAdditionalInfo().values())) {
+											return false;
+										}
+									}
+									regionIds.add(poiID);
+									sr.object = object;
+									sr.preferredZoom = 17;
+									sr.file = region;
+									sr.location = object.getLocation();
+									if (object.getSubType().equals("city") ||
+											object.getSubType().equals("country")) {
+										sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
+										sr.preferredZoom = object.getSubType().equals("country") ? 7 : 13;
+									} else if (object.getSubType().equals("town")) {
+										sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
+									} else {
+										sr.priorityDistance = 1;
+									}
+									sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
+									phrase.countUnknownWordsMatch(sr);
+									sr.objectType = ObjectType.POI;
+									regionMatcher.publish(sr);
 									return false;
 								}
-							}
-							sr.object = object;
-							sr.preferredZoom = 17;
-							sr.file = currentFile[0];
-							sr.location = object.getLocation();
-							if (object.getSubType().equals("city") ||
-									object.getSubType().equals("country")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_CITY_PRIORITY_DISTANCE;
-								sr.preferredZoom = object.getSubType().equals("country") ? 7 : 13;
-							} else if (object.getSubType().equals("town")) {
-								sr.priorityDistance = SEARCH_AMENITY_BY_NAME_TOWN_PRIORITY_DISTANCE;
-							} else {
-								sr.priorityDistance = 1;
-							}
-							sr.priority = SEARCH_AMENITY_BY_NAME_PRIORITY;
-							phrase.countUnknownWordsMatch(sr);
-							sr.objectType = ObjectType.POI;
-							resultMatcher.publish(sr);
-							ids.add(poiID);
-							return false;
-						}
-
-						@Override
-						public boolean isCancelled() {
-							return resultMatcher.isCancelled() && (limit < LIMIT) ;
-						}
-					});
 
-			while (offlineIterator.hasNext()) {
-				BinaryMapIndexReader r = offlineIterator.next();
-				currentFile[0] = r;
-				r.searchPoiByName(req);
+								@Override
+								public boolean isCancelled() {
+									return regionMatcher.isCancelled() && (limit.get() < LIMIT) ;
+								}
+							});
+					region.searchPoiByName(req);
+				}
 
-				resultMatcher.apiSearchRegionFinished(this, r, phrase);
-			}
+				@Override
+				public boolean accept(SearchResult result) {
+					return ids.size() < LIMIT && ids.add(getPoiId((Amenity) result.object));
+				}
+			});
 			return true;
 		}
 
+		private String getPoiId(Amenity object) {
+			return object.getType().getKeyName() + "_" + object.getId();
+		}
+
 		@Override
 		public int getSearchPriority(SearchPhrase p) {
 			if (p.hasObjectType(ObjectType.POI) ||
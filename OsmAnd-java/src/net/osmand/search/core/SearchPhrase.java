@@ -419,7 +419,7 @@ public class SearchPhrase {
 		return null;
 	}
 
-	public NameStringMatcher getNameStringMatcher() {
+	public synchronized NameStringMatcher getNameStringMatcher() {
 		if(sm != null) {
 			return sm;
 		}
@@ -638,12 +638,16 @@ public class SearchPhrase {
 	public void countUnknownWordsMatch(SearchResult sr, String localeName, Collection<String> otherNames) {
 		if(unknownWords.size() > 0) {
 			for(int i = 0; i < unknownWords.size(); i++) {
-				if(unknownWordsMatcher.size() == i) {
-					unknownWordsMatcher.add(new NameStringMatcher(unknownWords.get(i), 
-							i < unknownWords.size() - 1 ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE :
-								StringMatcherMode.CHECK_STARTS_FROM_SPACE));
+				NameStringMatcher ms;
+				// phrase is shared by APIs searching in parallel
+				synchronized (unknownWordsMatcher) {
+					if(unknownWordsMatcher.size() == i) {
+						unknownWordsMatcher.add(new NameStringMatcher(unknownWords.get(i), 
+								i < unknownWords.size() - 1 ? StringMatcherMode.CHECK_EQUALS_FROM_SPACE :
+									StringMatcherMode.CHECK_STARTS_FROM_SPACE));
+					}
+					ms = unknownWordsMatcher.get(i);
 				}
-				NameStringMatcher ms = unknownWordsMatcher.get(i);
 				if(ms.matches(localeName) || ms.matches(otherNames)) {
 					if(sr.otherWordsMatch == null) {
 						sr.otherWordsMatch = new TreeSet<>();
@@ -0,0 +1,93 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapReaderStats.Section;
+import net.osmand.binary.BinaryMapReaderStats.SectionStats;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.router.TestRoadNetwork;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BinaryMapReaderStatsTest {
+
+	private static final int ROADS = 20;
+
+	private static BinaryMapIndexReader writeNetwork(File file) throws IOException {
+		// roads with many points, so data doesn't fit into buffer of stream
+		TestRoadNetwork network = new TestRoadNetwork();
+		for (int r = 0; r < ROADS; r++) {
+			double[] points = new double[2 * 200];
+			for (int i = 0; i < points.length / 2; i++) {
+				points[2 * i] = 52.0 + r * 0.001;
+				points[2 * i + 1] = 4.0 + i * 0.0001;
+			}
+			network.addRoad(64 * (r + 1), new String[] { "highway", "primary" }, points);
+		}
+		return network.write(file);
+	}
+
+	@Test
+	public void testRouteStats() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		final BinaryMapIndexReader reader = writeNetwork(file);
+		BinaryMapIndexReader clone = null;
+		try {
+			BinaryMapReaderStats shared = new BinaryMapReaderStats();
+			reader.setReadListener(shared);
+			SearchRequest<RouteDataObject> req = BinaryMapIndexReader.buildSearchRouteRequest(0, Integer.MAX_VALUE,
+					0, Integer.MAX_VALUE, null);
+			final List<RouteSubregion> subregions = reader.searchRouteIndexTree(req,
+					reader.getRoutingIndexes().get(0).getSubregions());
+			Assert.assertFalse(subregions.isEmpty());
+			final int[] nested = new int[1];
+			reader.loadRouteIndexData(subregions, new ResultMatcher<RouteDataObject>() {
+				@Override
+				public boolean publish(RouteDataObject object) {
+					if (nested[0]++ == 0) {
+						// public read method called inside of other one is accounted by the outer call
+						try {
+							Assert.assertEquals(ROADS, reader.loadRouteIndexData(subregions.get(0)).size());
+						} catch (IOException e) {
+							throw new IllegalStateException(e);
+						}
+					}
+					return true;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return false;
+				}
+			});
+			Assert.assertEquals(ROADS, nested[0]);
+			SectionStats route = reader.getStats().getSectionStats(Section.ROUTE);
+			Assert.assertEquals(2, route.getCalls());
+			Assert.assertTrue(route.getBytesRead() > 0);
+			Assert.assertTrue(route.getSeeks() > 0);
+			Assert.assertEquals(ROADS, route.getObjects());
+			Assert.assertEquals(0, reader.getStats().getSectionStats(Section.MAP).getCalls());
+			Assert.assertEquals(2, shared.getSectionStats(Section.ROUTE).getCalls());
+
+			// reader of the same file notifies the same listener and keeps own statistics
+			clone = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), reader);
+			Assert.assertSame(shared, clone.getReadListener());
+			Assert.assertEquals(ROADS, clone.loadRouteIndexData(subregions.get(0)).size());
+			Assert.assertEquals(1, clone.getStats().getSectionStats(Section.ROUTE).getCalls());
+			Assert.assertEquals(3, shared.getSectionStats(Section.ROUTE).getCalls());
+			Assert.assertEquals(2 * ROADS, shared.getSectionStats(Section.ROUTE).getObjects());
+		} finally {
+			if (clone != null) {
+				clone.close();
+			}
+			reader.close();
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+
+import net.osmand.router.TestRoadNetwork;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CachedOsmandIndexesTest {
+
+	private static TestRoadNetwork network() {
+		return new TestRoadNetwork().addRoad(1, new String[] { "highway", "residential" }, 50, 30, 50.001, 30.001);
+	}
+
+	private static CachedOsmandIndexes readCache(File cacheFile) throws IOException {
+		CachedOsmandIndexes cache = new CachedOsmandIndexes();
+		cache.readFromFile(cacheFile, CachedOsmandIndexes.VERSION);
+		return cache;
+	}
+
+	private static void openReader(CachedOsmandIndexes cache, File file) throws IOException {
+		BinaryMapIndexReader reader = cache.getReader(file);
+		try {
+			Assert.assertEquals(1, reader.getRoutingIndexes().size());
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void assertRebuilt(TestRoadNetwork changed) throws IOException {
+		File file = File.createTempFile("osmand", ".obf");
+		File cacheFile = File.createTempFile("osmand", ".cache");
+		try {
+			network().setDateCreated(1000).write(file).close();
+			CachedOsmandIndexes cache = new CachedOsmandIndexes();
+			openReader(cache, file);
+			Assert.assertEquals(1, cache.getReadersFromFiles());
+			cache.writeToFile(cacheFile);
+
+			cache = readCache(cacheFile);
+			openReader(cache, file);
+			Assert.assertEquals(1, cache.getReadersFromCache());
+			Assert.assertEquals(0, cache.getInvalidatedEntries());
+
+			// file of the same name and size is replaced
+			long length = file.length();
+			changed.write(file).close();
+			Assert.assertEquals(length, file.length());
+			cache = readCache(cacheFile);
+			openReader(cache, file);
+			Assert.assertEquals(0, cache.getReadersFromCache());
+			Assert.assertEquals(1, cache.getReadersFromFiles());
+			Assert.assertEquals(1, cache.getInvalidatedEntries());
+			cache.writeToFile(cacheFile);
+
+			// rebuilt entry is used
+			cache = readCache(cacheFile);
+			openReader(cache, file);
+			Assert.assertEquals(1, cache.getReadersFromCache());
+			Assert.assertEquals(0, cache.getInvalidatedEntries());
+		} finally {
+			file.delete();
+			cacheFile.delete();
+		}
+	}
+
+	@Test
+	public void testChangedDate() throws IOException {
+		assertRebuilt(network().setDateCreated(2000));
+	}
+
+	@Test
+	public void testChangedVersion() throws IOException {
+		assertRebuilt(network().setDateCreated(1000).setVersion(3));
+	}
+}
@@ -0,0 +1,149 @@
+package net.osmand.binary;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import net.osmand.Collator;
+import net.osmand.OsmAndCollator;
+import net.osmand.binary.IndexedStringTableCache.StringTable;
+import net.osmand.osm.MapPoiTypes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+public class IndexedStringTableCacheTest {
+
+	private static void key(CodedOutputStream out, String key) throws IOException {
+		out.writeTag(OsmandOdb.IndexedStringTable.KEY_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeStringNoTag(key);
+	}
+
+	private static void val(CodedOutputStream out, int val) throws IOException {
+		out.writeTag(OsmandOdb.IndexedStringTable.VAL_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+		out.writeRawBytes(new byte[] { (byte) (val >>> 24), (byte) (val >>> 16), (byte) (val >>> 8), (byte) val });
+	}
+
+	private static void subtable(CodedOutputStream out, byte[] table) throws IOException {
+		out.writeTag(OsmandOdb.IndexedStringTable.SUBTABLES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeRawVarint32(table.length);
+		out.writeRawBytes(table);
+	}
+
+	private static byte[] table(String[] keys, int[] vals, byte[][] subtables) throws IOException {
+		ByteArrayOutputStream bs = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bs);
+		for (int i = 0; i < keys.length; i++) {
+			key(out, keys[i]);
+			val(out, vals[i]);
+			if (subtables != null && subtables[i] != null) {
+				subtable(out, subtables[i]);
+			}
+		}
+		out.flush();
+		return bs.toByteArray();
+	}
+
+	private static TIntArrayList readFile(BinaryMapIndexReader reader, int length, Collator collator, String query)
+			throws IOException {
+		TIntArrayList list = new TIntArrayList();
+		reader.codedIS.seek(0);
+		int oldLimit = reader.codedIS.pushLimit(length);
+		reader.searchIndexedStringTable(collator, query, list);
+		reader.codedIS.popLimit(oldLimit);
+		list.sort();
+		return list;
+	}
+
+	@Test
+	public void testSearchInMemory() throws IOException {
+		byte[] ber = table(new String[] { "lin", "nau" }, new int[] { 11, 12 }, null);
+		byte[] be = table(new String[] { "r" }, new int[] { 10 }, new byte[][] { ber });
+		byte[] root = table(new String[] { "a", "be", "c" }, new int[] { 1, 2, 3 }, new byte[][] { null, be, null });
+		File file = File.createTempFile("string_table", ".obf");
+		file.deleteOnExit();
+		FileOutputStream fous = new FileOutputStream(file);
+		fous.write(root);
+		fous.close();
+
+		// poi types are not needed to read string table
+		MapPoiTypes.getDefaultNoInit();
+		Collator collator = OsmAndCollator.primaryCollator();
+		IndexedStringTableCache cache = new IndexedStringTableCache(1 << 20, null);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, file, false);
+			String[] queries = new String[] { "b", "Ber", "berli", "Berlin Mitte", "c", "x", "bern" };
+			TIntArrayList[] fromFile = new TIntArrayList[queries.length];
+			for (int i = 0; i < queries.length; i++) {
+				fromFile[i] = readFile(reader, root.length, collator, queries[i]);
+			}
+			reader.setStringTableCache(cache);
+			for (int i = 0; i < queries.length; i++) {
+				Assert.assertEquals(queries[i], fromFile[i], readFile(reader, root.length, collator, queries[i]));
+			}
+			Assert.assertEquals(1, cache.size());
+			Assert.assertEquals(queries.length - 1, cache.getHits());
+			Assert.assertEquals(new TIntArrayList(new int[] { 11 }), fromFile[3]);
+			Assert.assertEquals(new TIntArrayList(new int[] { 10, 11, 12 }), fromFile[1]);
+
+			StringTable table = cache.get(file, 0);
+			Assert.assertEquals(6, table.getKeysCount());
+			// the only table doesn't fit smaller limit
+			IndexedStringTableCache small = new IndexedStringTableCache(table.getMemoryUsage() - 1, null);
+			small.put(file, 0, table);
+			Assert.assertEquals(0, small.size());
+		} finally {
+			raf.close();
+		}
+	}
+
+	@Test
+	public void testReplacedFile() throws IOException {
+		byte[] first = table(new String[] { "a", "b" }, new int[] { 1, 2 }, null);
+		byte[] second = table(new String[] { "a", "bb", "c" }, new int[] { 3, 4, 5 }, null);
+		File file = File.createTempFile("string_table", ".obf");
+		file.deleteOnExit();
+		FileOutputStream fous = new FileOutputStream(file);
+		fous.write(first);
+		fous.close();
+
+		MapPoiTypes.getDefaultNoInit();
+		Collator collator = OsmAndCollator.primaryCollator();
+		IndexedStringTableCache cache = new IndexedStringTableCache(1 << 20, null);
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, file, false);
+			reader.setStringTableCache(cache);
+			Assert.assertEquals(new TIntArrayList(new int[] { 2 }), readFile(reader, first.length, collator, "b"));
+			Assert.assertNotNull(cache.get(file, 0));
+		} finally {
+			raf.close();
+		}
+
+		// map is updated with the same name
+		fous = new FileOutputStream(file);
+		fous.write(second);
+		fous.close();
+		Assert.assertNull(cache.get(file, 0));
+		raf = new RandomAccessFile(file, "r");
+		try {
+			BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, file, false);
+			reader.setStringTableCache(cache);
+			Assert.assertEquals(new TIntArrayList(new int[] { 4 }), readFile(reader, second.length, collator, "b"));
+			Assert.assertEquals(2, cache.size());
+			cache.clear(file);
+			Assert.assertEquals(0, cache.size());
+			Assert.assertEquals(0, cache.getMemoryUsage());
+		} finally {
+			raf.close();
+		}
+	}
+}
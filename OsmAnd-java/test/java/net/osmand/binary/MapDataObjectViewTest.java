@@ -0,0 +1,329 @@
+package net.osmand.binary;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader.MapDataObjectVisitor;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.OsmandOdb.MapDataBlock;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapDataBox;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapEncodingRule;
+import net.osmand.binary.OsmandOdb.OsmAndMapIndex.MapRootLevel;
+import net.osmand.osm.MapPoiTypes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+public class MapDataObjectViewTest {
+
+	private static final int LEFT = 1 << 30;
+	private static final int TOP = 1 << 29;
+	private static final int SIZE = 1 << 16;
+	private static final long BASE_ID = 1000;
+
+	static {
+		// poi types are not used by map objects (poi_types.xml is not part of test resources)
+		MapPoiTypes.getDefaultNoInit();
+	}
+
+	private interface Writer {
+		void write(CodedOutputStream out) throws IOException;
+	}
+
+	private static byte[] bytes(Writer w) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		w.write(out);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private static void writeBytes(CodedOutputStream out, int field, byte[] bytes) throws IOException {
+		out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeRawVarint32(bytes.length);
+		out.writeRawBytes(bytes);
+	}
+
+	private static void writeFixedBytes(CodedOutputStream out, int field, byte[] bytes) throws IOException {
+		out.writeTag(field, WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED);
+		writeFixed(out, bytes.length);
+		out.writeRawBytes(bytes);
+	}
+
+	private static void writeFixed(CodedOutputStream out, int value) throws IOException {
+		out.writeRawByte((value >>> 24) & 0xff);
+		out.writeRawByte((value >>> 16) & 0xff);
+		out.writeRawByte((value >>> 8) & 0xff);
+		out.writeRawByte(value & 0xff);
+	}
+
+	private static byte[] coordinates(final int... coordinates) throws IOException {
+		return bytes(new Writer() {
+			@Override
+			public void write(CodedOutputStream out) throws IOException {
+				int px = LEFT;
+				int py = TOP;
+				for (int i = 0; i < coordinates.length; i += 2) {
+					out.writeSInt32NoTag((coordinates[i] - px) >> BinaryMapIndexReader.SHIFT_COORDINATES);
+					out.writeSInt32NoTag((coordinates[i + 1] - py) >> BinaryMapIndexReader.SHIFT_COORDINATES);
+					px = coordinates[i];
+					py = coordinates[i + 1];
+				}
+			}
+		});
+	}
+
+	private static byte[] varints(final int... values) throws IOException {
+		return bytes(new Writer() {
+			@Override
+			public void write(CodedOutputStream out) throws IOException {
+				for (int v : values) {
+					out.writeRawVarint32(v);
+				}
+			}
+		});
+	}
+
+	/**
+	 * @param names pairs of name type and index in string table, field is not written if null
+	 */
+	private static byte[] mapObject(final long id, final boolean area, final int[] coordinates, final int[] inner,
+			final int[] types, final int[] additionalTypes, final int[] names) throws IOException {
+		return bytes(new Writer() {
+			@Override
+			public void write(CodedOutputStream out) throws IOException {
+				writeBytes(out, area ? OsmandOdb.MapData.AREACOORDINATES_FIELD_NUMBER
+						: OsmandOdb.MapData.COORDINATES_FIELD_NUMBER, coordinates(coordinates));
+				if (inner != null) {
+					writeBytes(out, OsmandOdb.MapData.POLYGONINNERCOORDINATES_FIELD_NUMBER, coordinates(inner));
+				}
+				if (additionalTypes != null) {
+					writeBytes(out, OsmandOdb.MapData.ADDITIONALTYPES_FIELD_NUMBER, varints(additionalTypes));
+				}
+				writeBytes(out, OsmandOdb.MapData.TYPES_FIELD_NUMBER, varints(types));
+				out.writeSInt64(OsmandOdb.MapData.ID_FIELD_NUMBER, id - BASE_ID);
+				if (names != null) {
+					writeBytes(out, OsmandOdb.MapData.STRINGNAMES_FIELD_NUMBER, varints(names));
+				}
+			}
+		});
+	}
+
+	private static void writeMapFile(File file) throws IOException {
+		final int c = SIZE / 8;
+		final byte[] block = bytes(new Writer() {
+			@Override
+			public void write(CodedOutputStream out) throws IOException {
+				out.writeUInt64(MapDataBlock.BASEID_FIELD_NUMBER, BASE_ID);
+				writeBytes(out, MapDataBlock.DATAOBJECTS_FIELD_NUMBER, mapObject(BASE_ID + 1, false,
+						new int[] { LEFT + c, TOP + c, LEFT + 2 * c, TOP + c, LEFT + 2 * c, TOP + 3 * c }, null,
+						new int[] { 1 }, new int[] { 4 }, new int[] { 2, 0 }));
+				writeBytes(out, MapDataBlock.DATAOBJECTS_FIELD_NUMBER, mapObject(BASE_ID + 2, true,
+						new int[] { LEFT + c, TOP + c, LEFT + 3 * c, TOP + c, LEFT + 3 * c, TOP + 3 * c, LEFT + c, TOP + c },
+						new int[] { LEFT + 2 * c, TOP + 2 * c, LEFT + 2 * c + 32, TOP + 2 * c, LEFT + 2 * c, TOP + 2 * c + 32 },
+						new int[] { 3 }, null, new int[] {}));
+				writeBytes(out, MapDataBlock.DATAOBJECTS_FIELD_NUMBER, mapObject(BASE_ID + 3, false,
+						new int[] { LEFT + 3 * c, TOP + 3 * c, LEFT + 5 * c, TOP + 5 * c }, null,
+						new int[] { 1 }, null, new int[] { 2, 1 }));
+				writeBytes(out, MapDataBlock.DATAOBJECTS_FIELD_NUMBER, mapObject(BASE_ID + 4, false,
+						new int[] { LEFT + 3 * c, TOP + 3 * c, LEFT + 4 * c, TOP + 3 * c }, null,
+						new int[] { 1 }, null, null));
+				// outside of requested bbox
+				writeBytes(out, MapDataBlock.DATAOBJECTS_FIELD_NUMBER, mapObject(BASE_ID + 5, false,
+						new int[] { LEFT + 6 * c, TOP + 6 * c, LEFT + 7 * c, TOP + 7 * c }, null,
+						new int[] { 1 }, null, new int[] { 2, 2 }));
+				writeBytes(out, MapDataBlock.STRINGTABLE_FIELD_NUMBER, bytes(new Writer() {
+					@Override
+					public void write(CodedOutputStream out) throws IOException {
+						out.writeString(OsmandOdb.StringTable.S_FIELD_NUMBER, "First");
+						out.writeString(OsmandOdb.StringTable.S_FIELD_NUMBER, "Third");
+						out.writeString(OsmandOdb.StringTable.S_FIELD_NUMBER, "Fifth");
+					}
+				}));
+			}
+		});
+		final byte[] boxBounds = bytes(new Writer() {
+			@Override
+			public void write(CodedOutputStream out) throws IOException {
+				out.writeSInt32(MapDataBox.LEFT_FIELD_NUMBER, 0);
+				out.writeSInt32(MapDataBox.RIGHT_FIELD_NUMBER, 0);
+				out.writeSInt32(MapDataBox.TOP_FIELD_NUMBER, 0);
+				out.writeSInt32(MapDataBox.BOTTOM_FIELD_NUMBER, 0);
+			}
+		});
+		final byte[] box = bytes(new Writer() {
+			@Override
+			public void write(CodedOutputStream out) throws IOException {
+				out.writeRawBytes(boxBounds);
+				out.writeTag(MapDataBox.SHIFTTOMAPDATA_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+				// block follows the box
+				writeFixed(out, boxBounds.length + CodedOutputStream.computeTagSize(MapDataBox.SHIFTTOMAPDATA_FIELD_NUMBER)
+						+ 4 + CodedOutputStream.computeTagSize(MapRootLevel.BLOCKS_FIELD_NUMBER));
+			}
+		});
+		final byte[] level = bytes(new Writer() {
+			@Override
+			public void write(CodedOutputStream out) throws IOException {
+				out.writeInt32(MapRootLevel.MAXZOOM_FIELD_NUMBER, 20);
+				out.writeInt32(MapRootLevel.MINZOOM_FIELD_NUMBER, 0);
+				out.writeInt32(MapRootLevel.LEFT_FIELD_NUMBER, LEFT);
+				out.writeInt32(MapRootLevel.RIGHT_FIELD_NUMBER, LEFT + SIZE);
+				out.writeInt32(MapRootLevel.TOP_FIELD_NUMBER, TOP);
+				out.writeInt32(MapRootLevel.BOTTOM_FIELD_NUMBER, TOP + SIZE);
+				writeFixedBytes(out, MapRootLevel.BOXES_FIELD_NUMBER, box);
+				writeBytes(out, MapRootLevel.BLOCKS_FIELD_NUMBER, block);
+			}
+		});
+		byte[] index = bytes(new Writer() {
+			@Override
+			public void write(CodedOutputStream out) throws IOException {
+				out.writeString(OsmandOdb.OsmAndMapIndex.NAME_FIELD_NUMBER, "test");
+				String[] rules = { "highway", "primary", "name", "", "building", "yes", "oneway", "yes" };
+				for (int i = 0; i < rules.length; i += 2) {
+					ByteArrayOutputStream ruleBytes = new ByteArrayOutputStream();
+					CodedOutputStream rule = CodedOutputStream.newInstance(ruleBytes);
+					rule.writeString(MapEncodingRule.TAG_FIELD_NUMBER, rules[i]);
+					rule.writeString(MapEncodingRule.VALUE_FIELD_NUMBER, rules[i + 1]);
+					rule.flush();
+					writeBytes(out, OsmandOdb.OsmAndMapIndex.RULES_FIELD_NUMBER, ruleBytes.toByteArray());
+				}
+				writeFixedBytes(out, OsmandOdb.OsmAndMapIndex.LEVELS_FIELD_NUMBER, level);
+			}
+		});
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		out.writeUInt32(OsmandOdb.OsmAndStructure.VERSION_FIELD_NUMBER, 2);
+		out.writeInt64(OsmandOdb.OsmAndStructure.DATECREATED_FIELD_NUMBER, 1000);
+		writeFixedBytes(out, OsmandOdb.OsmAndStructure.MAPINDEX_FIELD_NUMBER, index);
+		out.writeUInt32(OsmandOdb.OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, 2);
+		out.flush();
+		FileOutputStream fout = new FileOutputStream(file);
+		try {
+			fout.write(bytes.toByteArray());
+		} finally {
+			fout.close();
+		}
+	}
+
+	private static String describe(MapDataObjectView v) {
+		StringBuilder s = new StringBuilder();
+		s.append(v.getId()).append(v.isArea() ? " area" : " line").append(" types");
+		for (int i = 0; i < v.getTypesLength(); i++) {
+			s.append(' ').append(v.getType(i));
+		}
+		s.append(" additional");
+		for (int i = 0; i < v.getAdditionalTypesLength(); i++) {
+			s.append(' ').append(v.getAdditionalType(i));
+		}
+		s.append(" points");
+		for (int i = 0; i < v.getPointsLength(); i++) {
+			s.append(' ').append(v.getPoint31XTile(i)).append(',').append(v.getPoint31YTile(i));
+		}
+		for (int p = 0; p < v.getInnerPolygonsCount(); p++) {
+			s.append(" inner");
+			for (int i = 0; i < v.getInnerPolygonPointsLength(p); i++) {
+				s.append(' ').append(v.getInnerPolygonPoint31XTile(p, i)).append(',')
+						.append(v.getInnerPolygonPoint31YTile(p, i));
+			}
+		}
+		s.append(" names");
+		for (int i = 0; i < v.getNamesLength(); i++) {
+			s.append(' ').append(v.getNameType(i));
+		}
+		return s.toString();
+	}
+
+	private static String describe(BinaryMapDataObject o) {
+		StringBuilder s = new StringBuilder();
+		s.append(o.getId()).append(o.isArea() ? " area" : " line").append(" types");
+		for (int t : o.getTypes()) {
+			s.append(' ').append(t);
+		}
+		s.append(" additional");
+		for (int t : o.getAdditionalTypes()) {
+			s.append(' ').append(t);
+		}
+		s.append(" points");
+		for (int i = 0; i < o.getPointsLength(); i++) {
+			s.append(' ').append(o.getPoint31XTile(i)).append(',').append(o.getPoint31YTile(i));
+		}
+		for (int[] inner : o.getPolygonInnerCoordinates()) {
+			s.append(" inner");
+			for (int i = 0; i < inner.length; i += 2) {
+				s.append(' ').append(inner[i]).append(',').append(inner[i + 1]);
+			}
+		}
+		s.append(" names");
+		if (o.getNamesOrder() != null) {
+			for (int i = 0; i < o.getNamesOrder().size(); i++) {
+				s.append(' ').append(o.getNamesOrder().get(i));
+			}
+		}
+		return s.toString();
+	}
+
+	private static SearchRequest<BinaryMapDataObject> request() {
+		return BinaryMapIndexReader.buildSearchRequest(LEFT, LEFT + SIZE / 2, TOP, TOP + SIZE / 2, 15, null);
+	}
+
+	@Test
+	public void testVisitorMatchesSearch() throws IOException {
+		File file = File.createTempFile("osmand", ".obf");
+		BinaryMapIndexReader reader = null;
+		try {
+			writeMapFile(file);
+			reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+			List<BinaryMapDataObject> all = new ArrayList<BinaryMapDataObject>(reader.searchMapIndex(request()));
+			Assert.assertEquals(4, all.size());
+			Assert.assertEquals("First", all.get(0).getName());
+			Assert.assertEquals("Third", all.get(2).getName());
+			// empty names field gives empty names, missing field gives no names
+			Assert.assertNotNull(all.get(1).getObjectNames());
+			Assert.assertTrue(all.get(1).getObjectNames().isEmpty());
+			Assert.assertNull(all.get(3).getObjectNames());
+
+			final List<String> visited = new ArrayList<String>();
+			SearchRequest<BinaryMapDataObject> req = request();
+			req.setMapObjectVisitor(new MapDataObjectVisitor() {
+				@Override
+				public boolean visit(MapDataObjectView view) {
+					visited.add(describe(view));
+					return view.getId() != BASE_ID + 2;
+				}
+			});
+			List<BinaryMapDataObject> accepted = reader.searchMapIndex(req);
+
+			List<String> expected = new ArrayList<String>();
+			for (BinaryMapDataObject o : all) {
+				expected.add(describe(o));
+			}
+			Assert.assertEquals(expected, visited);
+			Assert.assertEquals(3, accepted.size());
+			int j = 0;
+			for (BinaryMapDataObject o : all) {
+				if (o.getId() == BASE_ID + 2) {
+					continue;
+				}
+				BinaryMapDataObject a = accepted.get(j++);
+				Assert.assertEquals(describe(o), describe(a));
+				Assert.assertEquals(o.getObjectNames(), a.getObjectNames());
+				Assert.assertTrue(Arrays.equals(o.getCoordinates(), a.getCoordinates()));
+				Assert.assertSame(o.getMapIndex(), a.getMapIndex());
+			}
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+			file.delete();
+		}
+	}
+}
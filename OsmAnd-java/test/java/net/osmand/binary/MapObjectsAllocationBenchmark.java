@@ -0,0 +1,112 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+
+import net.osmand.binary.BinaryMapIndexReader.MapDataObjectVisitor;
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.MapRoot;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+
+/**
+ * Measures allocation per decoded map object when all objects are created
+ * and when {@link MapDataObjectVisitor} keeps only named objects.
+ * Usage: MapObjectsAllocationBenchmark &lt;file.obf&gt; [zoom] [iterations]
+ * The same block in the center of the map is read many times, allocated bytes are taken from
+ * HotSpot thread allocation counter (or approximated by used heap if counter is not available, run with big -Xmn).
+ */
+public class MapObjectsAllocationBenchmark {
+
+	private static final int WINDOW_31 = 1 << 18;
+
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println("Usage: MapObjectsAllocationBenchmark <file.obf> [zoom] [iterations]");
+			return;
+		}
+		File file = new File(args[0]);
+		int zoom = args.length > 1 ? Integer.parseInt(args[1]) : 15;
+		int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+		MapRoot bounds = null;
+		for (MapIndex mi : reader.getMapIndexes()) {
+			for (MapRoot root : mi.getRoots()) {
+				if (root.getMinZoom() <= zoom && root.getMaxZoom() >= zoom) {
+					bounds = root;
+				}
+			}
+		}
+		if (bounds == null) {
+			System.out.println("No map data for zoom " + zoom);
+			reader.close();
+			return;
+		}
+		int cx = bounds.getLeft() / 2 + bounds.getRight() / 2;
+		int cy = bounds.getTop() / 2 + bounds.getBottom() / 2;
+		final SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(cx - WINDOW_31,
+				cx + WINDOW_31, cy - WINDOW_31, cy + WINDOW_31, zoom, null);
+		req.log = false;
+		MapDataObjectVisitor namedOnly = new MapDataObjectVisitor() {
+			@Override
+			public boolean visit(MapDataObjectView view) {
+				return view.getNamesLength() > 0;
+			}
+		};
+		// warm up
+		run(reader, req, null, iterations);
+		run(reader, req, namedOnly, iterations);
+		run(reader, req, null, iterations, "All objects created");
+		run(reader, req, namedOnly, iterations, "Only named objects created");
+		reader.close();
+	}
+
+	private static void run(BinaryMapIndexReader reader, SearchRequest<BinaryMapDataObject> req,
+			MapDataObjectVisitor visitor, int iterations) throws IOException {
+		req.setMapObjectVisitor(visitor);
+		for (int i = 0; i < iterations; i++) {
+			req.clearSearchResults();
+			reader.searchMapIndex(req);
+		}
+	}
+
+	private static void run(BinaryMapIndexReader reader, SearchRequest<BinaryMapDataObject> req,
+			MapDataObjectVisitor visitor, int iterations, String name) throws IOException {
+		req.setMapObjectVisitor(visitor);
+		long visited = 0;
+		long created = 0;
+		long allocated = 0;
+		long time = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			req.clearSearchResults();
+			long before = allocatedBytes();
+			reader.searchMapIndex(req);
+			allocated += allocatedBytes() - before;
+			visited += req.numberOfVisitedObjects;
+			created += req.getSearchResults().size();
+		}
+		time = System.nanoTime() - time;
+		System.out.println(String.format("%s: %d objects visited, %d created, %.1f bytes allocated per visited object, %.2f ms per search",
+				name, visited / iterations, created / iterations, allocated / (double) Math.max(1, visited),
+				time / 1e6 / iterations));
+	}
+
+	private static Object threadBean;
+	private static Method allocatedBytesMethod;
+
+	private static long allocatedBytes() {
+		try {
+			if (allocatedBytesMethod == null) {
+				// java.lang.management is not available on Android, so it is accessed by reflection
+				threadBean = Class.forName("java.lang.management.ManagementFactory").getMethod("getThreadMXBean").invoke(null);
+				allocatedBytesMethod = Class.forName("com.sun.management.ThreadMXBean")
+						.getMethod("getThreadAllocatedBytes", long.class);
+			}
+			return (Long) allocatedBytesMethod.invoke(threadBean, Thread.currentThread().getId());
+		} catch (Exception e) {
+			Runtime runtime = Runtime.getRuntime();
+			return runtime.totalMemory() - runtime.freeMemory();
+		}
+	}
+}
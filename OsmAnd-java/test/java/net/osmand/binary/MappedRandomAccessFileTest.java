@@ -0,0 +1,102 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+public class MappedRandomAccessFileTest {
+
+	private static final int VALUES = 20000;
+	private File file;
+
+	@Before
+	public void setUp() throws IOException {
+		file = File.createTempFile("mapped", ".obf");
+		FileOutputStream fous = new FileOutputStream(file);
+		CodedOutputStream ous = CodedOutputStream.newInstance(fous);
+		Random r = new Random(1);
+		for (int i = 0; i < VALUES; i++) {
+			ous.writeSInt32NoTag(r.nextInt());
+		}
+		ous.flush();
+		fous.close();
+	}
+
+	@After
+	public void tearDown() {
+		file.delete();
+	}
+
+	@Test
+	public void testReadAcrossRegions() throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		// small regions to check reads crossing region boundaries
+		MappedRandomAccessFile mapped = new MappedRandomAccessFile(file, 1000);
+		Assert.assertEquals(raf.length(), mapped.length());
+		Assert.assertTrue(mapped.getRegionsCount() > 1);
+		byte[] expected = new byte[3000];
+		byte[] actual = new byte[3000];
+		long[] positions = { 0, 999, 1000, 2500, raf.length() - 3000 };
+		for (long pos : positions) {
+			raf.seek(pos);
+			mapped.seek(pos);
+			raf.readFully(expected);
+			mapped.readFully(actual);
+			Assert.assertArrayEquals(expected, actual);
+			Assert.assertEquals(raf.getFilePointer(), mapped.getFilePointer());
+		}
+		mapped.seek(mapped.length());
+		Assert.assertEquals(-1, mapped.read());
+		Assert.assertEquals(-1, mapped.read(actual, 0, 10));
+		raf.close();
+		mapped.close();
+	}
+
+	@Test
+	public void testCodedInputStream() throws IOException {
+		MappedRandomAccessFile mapped = new MappedRandomAccessFile(file, 4096);
+		CodedInputStream cis = CodedInputStream.newInstance(mapped);
+		Random r = new Random(1);
+		for (int i = 0; i < VALUES; i++) {
+			Assert.assertEquals(r.nextInt(), cis.readSInt32());
+		}
+		Assert.assertTrue(cis.isAtEnd());
+		mapped.close();
+	}
+
+	@Test
+	public void testSharedRegions() throws IOException {
+		MappedRandomAccessFile mapped = new MappedRandomAccessFile(file, 1000);
+		MappedRandomAccessFile shared = new MappedRandomAccessFile(mapped);
+		Assert.assertEquals(mapped.length(), shared.length());
+		Assert.assertEquals(mapped.getRegionsCount(), shared.getRegionsCount());
+		byte[] expected = new byte[1500];
+		byte[] actual = new byte[1500];
+		mapped.seek(500);
+		shared.seek(2500);
+		mapped.read(expected, 0, 10);
+		// positions of files are independent
+		Assert.assertEquals(510, mapped.getFilePointer());
+		Assert.assertEquals(2500, shared.getFilePointer());
+		mapped.seek(2500);
+		mapped.readFully(expected);
+		shared.readFully(actual);
+		Assert.assertArrayEquals(expected, actual);
+		mapped.close();
+		// regions are still readable when file which mapped them is closed
+		shared.seek(2500);
+		shared.readFully(actual);
+		Assert.assertArrayEquals(expected, actual);
+		shared.close();
+	}
+}
@@ -0,0 +1,207 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.osm.MapPoiTypes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MultiFileMapSearchTest {
+
+	private static final int LIMIT = 100;
+	private static final int THREADS = 4;
+
+	static {
+		// readers don't need poi types (poi_types.xml is not part of test resources)
+		MapPoiTypes.getDefaultNoInit();
+	}
+
+	@Test
+	public void testLimitFromSeveralThreads() throws InterruptedException {
+		final SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(0, 0, 0, 0, 15, null);
+		req.limit = LIMIT;
+		Set<Long> publishedIds = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		AtomicBoolean limitExceeded = new AtomicBoolean();
+		final List<SearchRequest<BinaryMapDataObject>> fileRequests = new ArrayList<SearchRequest<BinaryMapDataObject>>();
+		List<Thread> threads = new ArrayList<Thread>();
+		for (int t = 0; t < THREADS; t++) {
+			final SearchRequest<BinaryMapDataObject> fileReq = MultiFileMapSearch.buildFileRequest(req, publishedIds,
+					limitExceeded);
+			fileRequests.add(fileReq);
+			final int file = t;
+			threads.add(new Thread(new Runnable() {
+				@Override
+				public void run() {
+					// files overlap by half of objects, reader stops when request is cancelled
+					for (int i = 0; i < LIMIT * 10 && !fileReq.isCancelled(); i++) {
+						long id = file * LIMIT * 5 + i;
+						fileReq.publish(new BinaryMapDataObject(id, new int[0], null, 0, false, null, null));
+					}
+				}
+			}));
+		}
+		for (Thread t : threads) {
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		Assert.assertTrue(req.limitExceeded());
+		Assert.assertEquals(LIMIT + 1, req.getSearchResults().size());
+		for (SearchRequest<BinaryMapDataObject> fileReq : fileRequests) {
+			Assert.assertTrue(fileReq.isCancelled());
+			// results are collected only by original request
+			Assert.assertTrue(fileReq.getSearchResults().isEmpty());
+		}
+		Set<Long> ids = new HashSet<Long>();
+		for (BinaryMapDataObject o : req.getSearchResults()) {
+			Assert.assertTrue(ids.add(o.getId()));
+		}
+	}
+
+	@Test
+	public void testInterruptedRequest() {
+		SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(0, 0, 0, 0, 15, null);
+		SearchRequest<BinaryMapDataObject> fileReq = MultiFileMapSearch.buildFileRequest(req,
+				Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>()), new AtomicBoolean());
+		Assert.assertFalse(fileReq.isCancelled());
+		req.setInterrupted(true);
+		Assert.assertTrue(fileReq.isCancelled());
+	}
+
+	// reader without index which publishes objects of its own ids
+	private static class TestReader extends BinaryMapIndexReader {
+		private final long firstId;
+		private final AtomicInteger active;
+		private final boolean fail;
+
+		TestReader(File file, long firstId, AtomicInteger active, boolean fail) throws IOException {
+			super(new RandomAccessFile(file, "r"), file, false);
+			this.firstId = firstId;
+			this.active = active;
+			this.fail = fail;
+		}
+
+		@Override
+		public List<BinaryMapDataObject> searchMapIndex(SearchRequest<BinaryMapDataObject> req) throws IOException {
+			active.incrementAndGet();
+			try {
+				if (fail) {
+					throw new IOException("Broken file");
+				}
+				req.numberOfReadSubtrees = 1;
+				for (int i = 0; i < 10; i++) {
+					req.numberOfVisitedObjects++;
+					req.publish(new BinaryMapDataObject(firstId + i, new int[0], null, 0, false, null, null));
+				}
+				// the slow file is searched until search is stopped
+				while (firstId < 0 && !req.isCancelled()) {
+					Thread.sleep(10);
+				}
+				return req.getSearchResults();
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+	}
+
+	@Test
+	public void testStatisticsOfFiles() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		MultiFileMapSearch search = new MultiFileMapSearch(THREADS);
+		AtomicInteger active = new AtomicInteger();
+		try {
+			SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(0, 0, 0, 0, 15, null);
+			// files overlap by half of objects
+			List<BinaryMapIndexReader> readers = Arrays.<BinaryMapIndexReader> asList(
+					new TestReader(file, 0, active, false), new TestReader(file, 5, active, false));
+			Assert.assertEquals(15, search.searchMapIndex(readers, req).size());
+			Assert.assertEquals(20, req.numberOfVisitedObjects);
+			Assert.assertEquals(2, req.numberOfReadSubtrees);
+		} finally {
+			search.shutdown();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFailureStopsOtherFiles() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		MultiFileMapSearch search = new MultiFileMapSearch(2);
+		AtomicInteger active = new AtomicInteger();
+		try {
+			SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(0, 0, 0, 0, 15, null);
+			List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+			readers.add(new TestReader(file, 0, active, true));
+			readers.add(new TestReader(file, -100, active, false));
+			for (int i = 1; i < 10; i++) {
+				readers.add(new TestReader(file, i * 100, active, false));
+			}
+			try {
+				search.searchMapIndex(readers, req);
+				Assert.fail();
+			} catch (IOException e) {
+				Assert.assertEquals("Broken file", e.getMessage());
+			}
+			// slow search is stopped and waited for, readers aren't used after return
+			Assert.assertEquals(0, active.get());
+			Assert.assertTrue(req.isCancelled());
+		} finally {
+			search.shutdown();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testInterruptStopsFiles() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		final MultiFileMapSearch search = new MultiFileMapSearch(2);
+		final AtomicInteger active = new AtomicInteger();
+		try {
+			final SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(0, 0, 0, 0, 15, null);
+			final List<BinaryMapIndexReader> readers = new ArrayList<BinaryMapIndexReader>();
+			readers.add(new TestReader(file, -100, active, false));
+			readers.add(new TestReader(file, -200, active, false));
+			final AtomicBoolean interrupted = new AtomicBoolean();
+			Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						search.searchMapIndex(readers, req);
+						interrupted.set(Thread.currentThread().isInterrupted());
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+			});
+			t.start();
+			while (active.get() < 2) {
+				Thread.sleep(1);
+			}
+			t.interrupt();
+			t.join();
+			// caller keeps interrupted status, searches are stopped before return
+			Assert.assertTrue(interrupted.get());
+			Assert.assertEquals(0, active.get());
+			Assert.assertEquals(20, req.getSearchResults().size());
+		} finally {
+			search.shutdown();
+			file.delete();
+		}
+	}
+}
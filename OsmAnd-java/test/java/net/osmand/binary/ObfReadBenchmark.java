@@ -0,0 +1,143 @@
+package net.osmand.binary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import net.osmand.binary.BinaryMapIndexReader.MapIndex;
+import net.osmand.binary.BinaryMapIndexReader.MapRoot;
+import net.osmand.binary.BinaryMapIndexReader.SearchRequest;
+import net.osmand.binary.BinaryMapPoiReaderAdapter.PoiRegion;
+import net.osmand.data.Amenity;
+
+/**
+ * Compares plain {@link RandomAccessFile} and {@link MappedRandomAccessFile} backends of {@link BinaryMapIndexReader}.
+ * Usage: ObfReadBenchmark &lt;file.obf&gt; [queries] [zoom]
+ * Same random (fixed seed) viewport map and poi queries are executed with both backends,
+ * number of read system calls (plain file) / buffer refills (mapped file) and latency are printed.
+ */
+public class ObfReadBenchmark {
+
+	private static final int SEED = 17;
+	private static final int WINDOW_31 = 1 << 19;
+
+	private static class CountingRandomAccessFile extends RandomAccessFile {
+		int reads;
+		int seeks;
+
+		public CountingRandomAccessFile(File file) throws IOException {
+			super(file, "r");
+		}
+
+		@Override
+		public int read() throws IOException {
+			reads++;
+			return super.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			reads++;
+			return super.read(b, off, len);
+		}
+
+		@Override
+		public void seek(long pos) throws IOException {
+			seeks++;
+			super.seek(pos);
+		}
+
+		@Override
+		public int skipBytes(int n) throws IOException {
+			seeks++;
+			return super.skipBytes(n);
+		}
+	}
+
+	private static class CountingMappedFile extends MappedRandomAccessFile {
+		int reads;
+		int seeks;
+
+		public CountingMappedFile(File file) throws IOException {
+			super(file);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			reads++;
+			return super.read(b, off, len);
+		}
+
+		@Override
+		public void seek(long pos) throws IOException {
+			seeks++;
+			super.seek(pos);
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length == 0) {
+			System.out.println("Usage: ObfReadBenchmark <file.obf> [queries] [zoom]");
+			return;
+		}
+		File file = new File(args[0]);
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+		int zoom = args.length > 2 ? Integer.parseInt(args[2]) : 15;
+		// warm up file cache of OS so both backends read from memory
+		run(new CountingRandomAccessFile(file), file, queries, zoom, "warm up");
+
+		CountingRandomAccessFile raf = new CountingRandomAccessFile(file);
+		run(raf, file, queries, zoom, "RandomAccessFile");
+		System.out.println(String.format("   read() system calls %d, seek() calls %d", raf.reads, raf.seeks));
+
+		CountingMappedFile mapped = new CountingMappedFile(file);
+		run(mapped, file, queries, zoom, "MappedRandomAccessFile");
+		System.out.println(String.format("   read() system calls 0 (%d copies from %d mapped regions), seek() calls %d",
+				mapped.reads, mapped.getRegionsCount(), mapped.seeks));
+	}
+
+	private static void run(RandomAccessFile raf, File file, int queries, int zoom, String name) throws IOException {
+		long time = System.nanoTime();
+		BinaryMapIndexReader reader = new BinaryMapIndexReader(raf, file);
+		long initTime = System.nanoTime() - time;
+		MapRoot bounds = null;
+		for (MapIndex mi : reader.getMapIndexes()) {
+			for (MapRoot root : mi.getRoots()) {
+				if (root.getMinZoom() <= zoom && root.getMaxZoom() >= zoom) {
+					bounds = root;
+				}
+			}
+		}
+		if (bounds == null) {
+			System.out.println(name + ": no map data for zoom " + zoom);
+			reader.close();
+			return;
+		}
+		Random random = new Random(SEED);
+		long[] latency = new long[queries];
+		int objects = 0;
+		for (int i = 0; i < queries; i++) {
+			int left = bounds.getLeft() + random.nextInt(Math.max(1, bounds.getRight() - bounds.getLeft() - WINDOW_31));
+			int top = bounds.getTop() + random.nextInt(Math.max(1, bounds.getBottom() - bounds.getTop() - WINDOW_31));
+			long ts = System.nanoTime();
+			SearchRequest<BinaryMapDataObject> req = BinaryMapIndexReader.buildSearchRequest(left, left + WINDOW_31,
+					top, top + WINDOW_31, zoom, null);
+			req.log = false;
+			objects += reader.searchMapIndex(req).size();
+			for (PoiRegion poi : reader.getPoiIndexes()) {
+				SearchRequest<Amenity> preq = BinaryMapIndexReader.buildSearchPoiRequest(left, left + WINDOW_31,
+						top, top + WINDOW_31, zoom, BinaryMapIndexReader.ACCEPT_ALL_POI_TYPE_FILTER, null);
+				objects += reader.searchPoi(poi, preq).size();
+			}
+			latency[i] = System.nanoTime() - ts;
+		}
+		long total = System.nanoTime() - time;
+		reader.close();
+		Arrays.sort(latency);
+		System.out.println(String.format("%s: init %.1f ms, %d queries (%d objects) in %.1f ms, p50 %.2f ms, p99 %.2f ms",
+				name, initTime / 1e6, queries, objects, total / 1e6, latency[queries / 2] / 1e6,
+				latency[Math.min(queries - 1, queries * 99 / 100)] / 1e6));
+	}
+}
@@ -0,0 +1,120 @@
+package net.osmand.binary;
+
+import gnu.trove.map.hash.TLongObjectHashMap;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.ReverseGeocodingCache.RoadsTile;
+import net.osmand.data.QuadPoint;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.RoutingContext;
+import net.osmand.router.TestRoadNetwork;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReverseGeocodingCacheTest {
+
+	private static final int TILE_X = MapUtils.get31TileNumberX(30) >> (31 - ReverseGeocodingCache.ROADS_ZOOM);
+	private static final int TILE_Y = MapUtils.get31TileNumberY(50) >> (31 - ReverseGeocodingCache.ROADS_ZOOM);
+	private static final int SIZE = 1 << (31 - ReverseGeocodingCache.ROADS_ZOOM);
+
+	private static RouteDataObject road(long id, Random random, int points) {
+		RouteDataObject o = new RouteDataObject(new RouteRegion());
+		o.id = id;
+		o.pointsX = new int[points];
+		o.pointsY = new int[points];
+		// roads go out of tile
+		for (int i = 0; i < points; i++) {
+			o.pointsX[i] = TILE_X * SIZE - SIZE / 4 + random.nextInt(SIZE + SIZE / 2);
+			o.pointsY[i] = TILE_Y * SIZE - SIZE / 4 + random.nextInt(SIZE + SIZE / 2);
+		}
+		return o;
+	}
+
+	@Test
+	public void testNearestSegments() {
+		Random random = new Random(7);
+		List<RouteDataObject> roads = new ArrayList<RouteDataObject>();
+		for (int i = 0; i < 50; i++) {
+			roads.add(road(i, random, 2 + random.nextInt(5)));
+		}
+		RoadsTile tile = new RoadsTile(TILE_X, TILE_Y, roads);
+		Assert.assertTrue(tile.getRoadsCount() > 0);
+		for (int q = 0; q < 100; q++) {
+			int px = TILE_X * SIZE + random.nextInt(SIZE);
+			int py = TILE_Y * SIZE + random.nextInt(SIZE);
+			int r = SIZE / 8;
+			TLongObjectHashMap<RouteSegmentPoint> nearest = new TLongObjectHashMap<RouteSegmentPoint>();
+			tile.search(px, py, px - r, py - r, px + r, py + r, nearest);
+			for (RouteDataObject o : roads) {
+				// nearest segment by scan of all segments inside tile
+				double best = -1;
+				int bestX = 0, bestY = 0;
+				for (int j = 1; j < o.getPointsLength(); j++) {
+					QuadPoint pr = MapUtils.getProjectionPoint31(px, py, o.getPoint31XTile(j - 1), o.getPoint31YTile(j - 1),
+							o.getPoint31XTile(j), o.getPoint31YTile(j));
+					double d = MapUtils.squareDist31TileMetric((int) pr.x, (int) pr.y, px, py);
+					if (best < 0 || d < best) {
+						best = d;
+						bestX = (int) pr.x;
+						bestY = (int) pr.y;
+					}
+				}
+				RouteSegmentPoint p = nearest.get(o.getId());
+				if (Math.abs(bestX - px) < r && Math.abs(bestY - py) < r && bestX / SIZE == TILE_X && bestY / SIZE == TILE_Y) {
+					// nearest point is inside bbox and tile
+					Assert.assertNotNull(p);
+					Assert.assertEquals(best, p.distSquare, 1e-6);
+					Assert.assertEquals(bestX, p.preciseX);
+					Assert.assertEquals(bestY, p.preciseY);
+				} else if (p != null) {
+					Assert.assertTrue(p.distSquare >= best - 1e-6);
+				}
+			}
+		}
+	}
+
+	private static RoutingContext context(BinaryMapIndexReader reader) throws Exception {
+		RoutingConfiguration config = TestRoadNetwork.parseRoutingConfig().build("car",
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+		return new RoutePlannerFrontEnd(false).buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RouteCalculationMode.NORMAL);
+	}
+
+	@Test
+	public void testRoadsOfDifferentFiles() throws Exception {
+		File first = File.createTempFile("osmand", ".obf");
+		File second = File.createTempFile("osmand", ".obf");
+		String[] primary = new String[] { "highway", "primary" };
+		// roads of the same place have different ids in files
+		BinaryMapIndexReader firstReader = new TestRoadNetwork().addRoad(64, primary, 52.0, 4.0, 52.0, 4.01).write(first);
+		BinaryMapIndexReader secondReader = new TestRoadNetwork().addRoad(128, primary, 52.0, 4.0, 52.0, 4.01)
+				.write(second);
+		try {
+			ReverseGeocodingCache cache = new ReverseGeocodingCache(1 << 20);
+			List<RouteSegmentPoint> res = cache.findRouteSegments(context(firstReader), 52.0001, 4.005);
+			Assert.assertEquals(1, res.size());
+			Assert.assertEquals(64, res.get(0).getRoad().getId());
+			// tiles loaded from other file are not taken
+			res = cache.findRouteSegments(context(secondReader), 52.0001, 4.005);
+			Assert.assertEquals(1, res.size());
+			Assert.assertEquals(128, res.get(0).getRoad().getId());
+			res = cache.findRouteSegments(context(firstReader), 52.0001, 4.005);
+			Assert.assertEquals(64, res.get(0).getRoad().getId());
+		} finally {
+			firstReader.close();
+			secondReader.close();
+			first.delete();
+			second.delete();
+		}
+	}
+}
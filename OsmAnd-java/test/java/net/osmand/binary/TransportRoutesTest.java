@@ -0,0 +1,149 @@
+package net.osmand.binary;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import net.osmand.binary.BinaryMapTransportReaderAdapter.TransportIndex;
+import net.osmand.data.TransportRoute;
+import net.osmand.osm.MapPoiTypes;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+public class TransportRoutesTest {
+
+	private static final int ROUTES = 5;
+
+	static {
+		// poi types are not used by transport (poi_types.xml is not part of test resources)
+		MapPoiTypes.getDefaultNoInit();
+	}
+
+	/**
+	 * Writes file with transport index of bus routes named "Route i" (names are in string table)
+	 * @return offsets of routes from start of transport index
+	 */
+	private static int[] writeTransportFile(File file) throws IOException {
+		int[] offsets = new int[ROUTES];
+		ByteArrayOutputStream routesBytes = new ByteArrayOutputStream();
+		CodedOutputStream routes = CodedOutputStream.newInstance(routesBytes);
+		for (int i = 0; i < ROUTES; i++) {
+			ByteArrayOutputStream routeBytes = new ByteArrayOutputStream();
+			CodedOutputStream route = CodedOutputStream.newInstance(routeBytes);
+			route.writeUInt64(OsmandOdb.TransportRoute.ID_FIELD_NUMBER, 100 + i);
+			route.writeString(OsmandOdb.TransportRoute.REF_FIELD_NUMBER, String.valueOf(i));
+			route.writeUInt32(OsmandOdb.TransportRoute.NAME_FIELD_NUMBER, i);
+			route.writeUInt32(OsmandOdb.TransportRoute.OPERATOR_FIELD_NUMBER, ROUTES);
+			route.writeUInt32(OsmandOdb.TransportRoute.TYPE_FIELD_NUMBER, ROUTES + 1);
+			route.flush();
+			routes.writeTag(OsmandOdb.TransportRoutes.ROUTES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			routes.flush();
+			// route pointer refers to length of route message
+			offsets[i] = routesBytes.size();
+			routes.writeRawVarint32(routeBytes.size());
+			routes.writeRawBytes(routeBytes.toByteArray());
+		}
+		routes.flush();
+
+		ByteArrayOutputStream stringsBytes = new ByteArrayOutputStream();
+		CodedOutputStream strings = CodedOutputStream.newInstance(stringsBytes);
+		for (int i = 0; i < ROUTES; i++) {
+			strings.writeString(OsmandOdb.StringTable.S_FIELD_NUMBER, "Route " + i);
+		}
+		strings.writeString(OsmandOdb.StringTable.S_FIELD_NUMBER, "Operator");
+		strings.writeString(OsmandOdb.StringTable.S_FIELD_NUMBER, "bus");
+		strings.flush();
+
+		ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+		CodedOutputStream index = CodedOutputStream.newInstance(indexBytes);
+		index.writeString(OsmandOdb.OsmAndTransportIndex.NAME_FIELD_NUMBER, "test");
+		index.writeTag(OsmandOdb.OsmAndTransportIndex.ROUTES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		index.writeRawVarint32(routesBytes.size());
+		index.flush();
+		int routesStart = indexBytes.size();
+		index.writeRawBytes(routesBytes.toByteArray());
+		index.writeTag(OsmandOdb.OsmAndTransportIndex.STRINGTABLE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		index.writeRawVarint32(stringsBytes.size());
+		index.writeRawBytes(stringsBytes.toByteArray());
+		index.flush();
+		for (int i = 0; i < ROUTES; i++) {
+			offsets[i] += routesStart;
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		out.writeUInt32(OsmandOdb.OsmAndStructure.VERSION_FIELD_NUMBER, 2);
+		out.writeInt64(OsmandOdb.OsmAndStructure.DATECREATED_FIELD_NUMBER, 1000);
+		out.writeTag(OsmandOdb.OsmAndStructure.TRANSPORTINDEX_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED);
+		int length = indexBytes.size();
+		out.writeRawByte((length >>> 24) & 0xff);
+		out.writeRawByte((length >>> 16) & 0xff);
+		out.writeRawByte((length >>> 8) & 0xff);
+		out.writeRawByte(length & 0xff);
+		out.writeRawBytes(indexBytes.toByteArray());
+		out.writeUInt32(OsmandOdb.OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, 2);
+		out.flush();
+		FileOutputStream fout = new FileOutputStream(file);
+		try {
+			fout.write(bytes.toByteArray());
+		} finally {
+			fout.close();
+		}
+		return offsets;
+	}
+
+	@Test
+	public void testLoadTransportRoutes() throws IOException {
+		File file = File.createTempFile("osmand", ".obf");
+		BinaryMapIndexReader reader = null;
+		try {
+			int[] offsets = writeTransportFile(file);
+			reader = new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+			Assert.assertEquals(1, reader.getTransportIndexes().size());
+			TransportIndex ind = reader.getTransportIndexes().get(0);
+			int[] pointers = new int[ROUTES];
+			for (int i = 0; i < ROUTES; i++) {
+				pointers[i] = ind.getFilePointer() + offsets[i];
+			}
+
+			TIntObjectHashMap<TransportRoute> result = new TIntObjectHashMap<TransportRoute>();
+			TransportRoute loaded = new TransportRoute();
+			result.put(pointers[1], loaded);
+			// duplicates, unsorted pointers and route which is already loaded
+			int read = reader.loadTransportRoutes(new int[] { pointers[3], pointers[0], pointers[3], pointers[1],
+					pointers[0], pointers[4], pointers[1] }, result);
+			Assert.assertEquals(3, read);
+			Assert.assertEquals(4, result.size());
+			Assert.assertSame(loaded, result.get(pointers[1]));
+			Assert.assertFalse(result.containsKey(pointers[2]));
+			for (int i : new int[] { 0, 3, 4 }) {
+				TransportRoute r = result.get(pointers[i]);
+				Assert.assertEquals(100 + i, r.getId().longValue());
+				Assert.assertEquals(String.valueOf(i), r.getRef());
+				Assert.assertEquals("Route " + i, r.getName());
+				Assert.assertEquals("Operator", r.getOperator());
+				Assert.assertEquals("bus", r.getType());
+			}
+
+			// routes of all pointers are read again into new result
+			TIntObjectHashMap<TransportRoute> all = reader.getTransportRoutes(pointers);
+			Assert.assertEquals(ROUTES, all.size());
+			for (int i = 0; i < ROUTES; i++) {
+				Assert.assertEquals("Route " + i, all.get(pointers[i]).getName());
+			}
+		} finally {
+			if (reader != null) {
+				reader.close();
+			}
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,116 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.AlternativeRoutesCalculator.Candidate;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class AlternativeRoutesCalculatorTest {
+
+	private static final int X = MapUtils.get31TileNumberX(30);
+	private static final int Y = MapUtils.get31TileNumberY(50);
+	private static final int STEP = 10000;
+
+	private static RouteSegmentResult road(long id, int... xy) {
+		RouteDataObject o = new RouteDataObject(new RouteRegion());
+		o.id = id;
+		o.pointsX = new int[xy.length / 2];
+		o.pointsY = new int[xy.length / 2];
+		for (int i = 0; i < xy.length / 2; i++) {
+			o.pointsX[i] = X + xy[2 * i] * STEP;
+			o.pointsY[i] = Y + xy[2 * i + 1] * STEP;
+		}
+		return new RouteSegmentResult(o, 0, o.pointsX.length - 1);
+	}
+
+	private static List<RouteSegmentResult> route(RouteSegmentResult... segments) {
+		List<RouteSegmentResult> l = new ArrayList<RouteSegmentResult>();
+		for (RouteSegmentResult s : segments) {
+			l.add(s);
+		}
+		return l;
+	}
+
+	@Test
+	public void testSimilarity() {
+		// 2 routes from (0, 0) to (4, 0) share the first half
+		Candidate main = AlternativeRoutesCalculator.createCandidate(route(road(1, 0, 0, 1, 0, 2, 0), road(2, 2, 0, 3, 0, 4, 0)));
+		Candidate alt = AlternativeRoutesCalculator.createCandidate(route(road(1, 0, 0, 1, 0, 2, 0), road(3, 2, 0, 2, 1, 4, 1, 4, 0)));
+		Assert.assertNotNull(main);
+		Assert.assertNotNull(alt);
+		Assert.assertEquals(1.5, alt.length / main.length, 1e-2);
+		Assert.assertEquals(0.5, AlternativeRoutesCalculator.getSimilarity(main, alt), 1e-6);
+		Assert.assertEquals(1. / 3, AlternativeRoutesCalculator.getSimilarity(alt, main), 1e-2);
+		Assert.assertEquals(1, AlternativeRoutesCalculator.getSimilarity(main, main), 1e-6);
+	}
+
+	@Test
+	public void testEdgesOfDifferentPoints() {
+		// edges (0, 0) - (1, 961) and (0, 31) - (1, 0) had the same key nodeKey(start) * 31 + nodeKey(end)
+		Candidate main = AlternativeRoutesCalculator.createCandidate(route(road(1, 0, 0, 1, 961)));
+		Candidate other = AlternativeRoutesCalculator.createCandidate(route(road(2, 0, 31, 1, 0)));
+		Assert.assertEquals(0, AlternativeRoutesCalculator.getSimilarity(other, main), 1e-6);
+		Assert.assertEquals(0, AlternativeRoutesCalculator.getSimilarity(main, other), 1e-6);
+		// the same points in opposite direction
+		Candidate reverse = AlternativeRoutesCalculator.createCandidate(route(road(3, 1, 961, 0, 0)));
+		Assert.assertEquals(0, AlternativeRoutesCalculator.getSimilarity(reverse, main), 1e-6);
+	}
+
+	@Test
+	public void testLoopIsRejected() {
+		// route goes to (2, 0) and back to (1, 0)
+		Assert.assertNull(AlternativeRoutesCalculator.createCandidate(route(road(1, 0, 0, 1, 0, 2, 0), road(2, 2, 0, 1, 0, 1, 1))));
+		Assert.assertNull(AlternativeRoutesCalculator.createCandidate(new ArrayList<RouteSegmentResult>()));
+	}
+
+	@Test
+	public void testParallelRoads() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		String[] primary = new String[] { "highway", "primary" };
+		// route goes north and east by one of 2 parallel roads, the road to the east turns south to dead end
+		TestRoadNetwork network = new TestRoadNetwork();
+		network.addRoad(64, primary, 52.0, 4.0, 52.003, 4.0);
+		network.addRoad(128, primary, 52.0, 4.005, 52.0, 4.01);
+		network.addRoad(192, primary, 52.0, 4.01, 52.003, 4.01);
+		network.addRoad(256, primary, 52.003, 4.0, 52.003, 4.005);
+		network.addRoad(320, primary, 52.003, 4.005, 52.003, 4.01);
+		network.addRoad(384, primary, 52.003, 4.0, 52.0015, 4.0025, 52.003, 4.005);
+		BinaryMapIndexReader reader = network.write(file);
+		try {
+			RoutingConfiguration config = TestRoadNetwork.parseRoutingConfig().build("car",
+					RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+			RoutingContext ctx = new RoutePlannerFrontEnd(false).buildRoutingContext(config, null,
+					new BinaryMapIndexReader[] { reader }, RouteCalculationMode.NORMAL);
+			// queue of search runs dry after the best route is found
+			List<List<RouteSegmentResult>> routes = new AlternativeRoutesCalculator(ctx).calculate(
+					new LatLon(52.0, 4.001), new LatLon(52.003, 4.009));
+			Assert.assertEquals(2, routes.size());
+			Assert.assertTrue(containsRoad(routes.get(0), 256));
+			Assert.assertFalse(containsRoad(routes.get(0), 384));
+			Assert.assertTrue(containsRoad(routes.get(1), 384));
+			Assert.assertFalse(containsRoad(routes.get(1), 256));
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+
+	private static boolean containsRoad(List<RouteSegmentResult> route, long id) {
+		for (RouteSegmentResult s : route) {
+			if (s.getObject().getId() == id) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,255 @@
+package net.osmand.router;
+
+import gnu.trove.list.array.TIntArrayList;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.osm.MapRenderingTypes;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ContractionHierarchyTest {
+
+	private static final int SIZE = 12;
+
+	private int[] from = new int[0];
+	private int[] to = new int[0];
+	private float[] cost = new float[0];
+
+	private ContractionHierarchy buildGrid(long seed) {
+		Random rnd = new Random(seed);
+		ContractionHierarchyBuilder builder = new ContractionHierarchyBuilder();
+		int nodes = SIZE * SIZE;
+		long[] keys = new long[nodes];
+		for (int i = 0; i < nodes; i++) {
+			keys[i] = ContractionHierarchy.nodeKey(i % SIZE, i / SIZE);
+		}
+		// keys of grid are sorted by x, so node ids are reordered to match
+		long[] sorted = keys.clone();
+		Arrays.sort(sorted);
+		int[] id = new int[nodes];
+		for (int i = 0; i < nodes; i++) {
+			id[i] = Arrays.binarySearch(sorted, keys[i]);
+		}
+		from = new int[0];
+		to = new int[0];
+		cost = new float[0];
+		long road = 1;
+		for (int y = 0; y < SIZE; y++) {
+			for (int x = 0; x < SIZE; x++) {
+				int v = id[y * SIZE + x];
+				if (x + 1 < SIZE) {
+					addRoad(builder, rnd, v, id[y * SIZE + x + 1], road++);
+				}
+				if (y + 1 < SIZE) {
+					addRoad(builder, rnd, v, id[(y + 1) * SIZE + x], road++);
+				}
+			}
+		}
+		return builder.contract("test", "test", new String[] { "test.obf" }, new long[] { 1 }, sorted);
+	}
+
+	private void addRoad(ContractionHierarchyBuilder builder, Random rnd, int a, int b, long road) {
+		int oneway = rnd.nextInt(5) - 2;
+		if (oneway >= 0) {
+			addEdge(builder, a, b, 1 + rnd.nextInt(100), road, 0, 1);
+		}
+		if (oneway <= 0) {
+			addEdge(builder, b, a, 1 + rnd.nextInt(100), road, 1, 0);
+		}
+	}
+
+	private void addEdge(ContractionHierarchyBuilder builder, int a, int b, float c, long road, int p1, int p2) {
+		builder.addEdge(a, b, c, road, p1, p2);
+		from = Arrays.copyOf(from, from.length + 1);
+		to = Arrays.copyOf(to, to.length + 1);
+		cost = Arrays.copyOf(cost, cost.length + 1);
+		from[from.length - 1] = a;
+		to[to.length - 1] = b;
+		cost[cost.length - 1] = c;
+	}
+
+	private float[] dijkstra(int nodes, int source) {
+		float[] dist = new float[nodes];
+		boolean[] done = new boolean[nodes];
+		Arrays.fill(dist, Float.POSITIVE_INFINITY);
+		dist[source] = 0;
+		for (int k = 0; k < nodes; k++) {
+			int u = -1;
+			for (int i = 0; i < nodes; i++) {
+				if (!done[i] && (u == -1 || dist[i] < dist[u])) {
+					u = i;
+				}
+			}
+			if (dist[u] == Float.POSITIVE_INFINITY) {
+				break;
+			}
+			done[u] = true;
+			for (int e = 0; e < from.length; e++) {
+				if (from[e] == u && dist[u] + cost[e] < dist[to[e]]) {
+					dist[to[e]] = dist[u] + cost[e];
+				}
+			}
+		}
+		return dist;
+	}
+
+	private void checkQueries(ContractionHierarchy ch) {
+		int nodes = ch.getNodesCount();
+		Random rnd = new Random(7);
+		for (int q = 0; q < 30; q++) {
+			int s = rnd.nextInt(nodes);
+			float[] expected = dijkstra(nodes, s);
+			for (int t = 0; t < nodes; t++) {
+				if (t == s) {
+					continue;
+				}
+				ContractionHierarchy.Query query = ch.new Query();
+				float res = query.run(new int[] { s }, new float[] { 0 }, new int[] { t }, new float[] { 0 },
+						Float.POSITIVE_INFINITY);
+				if (expected[t] == Float.POSITIVE_INFINITY) {
+					Assert.assertEquals(-1, res, 0);
+					continue;
+				}
+				Assert.assertEquals(expected[t], res, 1e-3);
+				TIntArrayList path = query.unpackPath();
+				int node = s;
+				float sum = 0;
+				for (int i = 0; i < path.size(); i++) {
+					int e = path.get(i);
+					Assert.assertNotEquals(ContractionHierarchy.SHORTCUT, ch.edgeRoad[e]);
+					Assert.assertEquals(node, ch.edgeFrom[e]);
+					node = ch.edgeTo[e];
+					sum += ch.edgeCost[e];
+				}
+				Assert.assertEquals(t, node);
+				Assert.assertEquals(expected[t], sum, 1e-3);
+			}
+		}
+	}
+
+	@Test
+	public void testShortestPaths() {
+		ContractionHierarchy ch = buildGrid(1);
+		Assert.assertTrue(ch.getEdgesCount() >= from.length);
+		checkQueries(ch);
+	}
+
+	@Test
+	public void testReadWrite() throws Exception {
+		ContractionHierarchy ch = buildGrid(2);
+		File file = File.createTempFile("osmand", ContractionHierarchy.FILE_EXT);
+		try {
+			ch.writeToFile(file);
+			ContractionHierarchy read = ContractionHierarchy.readFromFile(file);
+			Assert.assertEquals(ch.getRouterName(), read.getRouterName());
+			Assert.assertEquals(ch.profileKey, read.profileKey);
+			Assert.assertEquals(ch.getNodesCount(), read.getNodesCount());
+			Assert.assertEquals(ch.getEdgesCount(), read.getEdgesCount());
+			Assert.assertArrayEquals(ch.rank, read.rank);
+			Assert.assertArrayEquals(ch.edgeRoad, read.edgeRoad);
+			checkQueries(read);
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static final String[] PRIMARY = { "highway", "primary" };
+
+	/**
+	 * Straight road a-b-c-d with detour b-e-f-c, turn from first road to second is restricted if needed.
+	 */
+	private BinaryMapIndexReader writeNetwork(File file, boolean restriction) throws Exception {
+		TestRoadNetwork network = new TestRoadNetwork()
+				.addRoad(64, PRIMARY, 52.0, 4.0, 52.0, 4.002)
+				.addRoad(128, PRIMARY, 52.0, 4.002, 52.0, 4.004)
+				.addRoad(192, PRIMARY, 52.0, 4.004, 52.0, 4.006)
+				.addRoad(256, PRIMARY, 52.0, 4.002, 51.999, 4.002)
+				.addRoad(320, PRIMARY, 51.999, 4.002, 51.999, 4.004)
+				.addRoad(384, PRIMARY, 51.999, 4.004, 52.0, 4.004);
+		if (restriction) {
+			network.addRestriction(64, 128, MapRenderingTypes.RESTRICTION_NO_STRAIGHT_ON);
+		}
+		return network.write(file);
+	}
+
+	private List<Long> route(RoutingConfiguration config, BinaryMapIndexReader reader, RouteCalculationMode mode)
+			throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RoutingContext ctx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader }, mode);
+		List<RouteSegmentResult> res = fe.searchRoute(ctx, new LatLon(52.0, 4.001), new LatLon(52.0, 4.005), null);
+		List<Long> roads = new ArrayList<Long>();
+		for (RouteSegmentResult r : res) {
+			if (roads.isEmpty() || roads.get(roads.size() - 1) != r.getObject().getId()) {
+				roads.add(r.getObject().getId());
+			}
+		}
+		return roads;
+	}
+
+	private void checkNetwork(boolean restriction, List<Long> expected) throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		BinaryMapIndexReader reader = writeNetwork(file, restriction);
+		try {
+			RoutingConfiguration.Builder builder = TestRoadNetwork.parseRoutingConfig();
+			RoutingConfiguration config = builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+			ContractionHierarchy ch = new ContractionHierarchyBuilder(config).build(new BinaryMapIndexReader[] { reader });
+			builder.setContractionHierarchy(ch);
+			config = builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+			Assert.assertSame(ch, config.contractionHierarchy);
+			List<Long> astar = route(config, reader, RouteCalculationMode.NORMAL);
+			Assert.assertEquals(expected, astar);
+			Assert.assertEquals(astar, route(config, reader, RouteCalculationMode.HIERARCHY));
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testSameRouteAsAStar() throws Exception {
+		checkNetwork(false, Arrays.asList(64l, 128l, 192l));
+	}
+
+	@Test
+	public void testRestrictedTurnSameRouteAsAStar() throws Exception {
+		checkNetwork(true, Arrays.asList(64l, 256l, 320l, 384l, 192l));
+	}
+
+	@Test
+	public void testHierarchyOfOtherProfile() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		BinaryMapIndexReader reader = writeNetwork(file, false);
+		try {
+			RoutingConfiguration.Builder builder = TestRoadNetwork.parseRoutingConfig();
+			RoutingConfiguration config = builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+			BinaryMapIndexReader[] readers = new BinaryMapIndexReader[] { reader };
+			builder.setContractionHierarchy(new ContractionHierarchyBuilder(config).build(readers));
+			config = builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+			Assert.assertTrue(config.contractionHierarchy.isValidFor(readers, config));
+			Assert.assertFalse(config.contractionHierarchy.isValidFor(new BinaryMapIndexReader[0], config));
+			// other parameters of profile
+			RoutingConfiguration avoid = builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+					Collections.singletonMap("avoid_residential", "true"));
+			Assert.assertNull(avoid.contractionHierarchy);
+			// impassable road added after hierarchy is built
+			RouteDataObject road = new RouteDataObject(reader.getRoutingIndexes().get(0));
+			road.id = 128;
+			builder.addImpassableRoad(road, null);
+			Assert.assertNull(builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT).contractionHierarchy);
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+}
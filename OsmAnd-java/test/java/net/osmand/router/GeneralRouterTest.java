@@ -0,0 +1,165 @@
+package net.osmand.router;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.GeneralRouter.RouteAttributeContext;
+import net.osmand.router.GeneralRouter.RouteDataObjectAttribute;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class GeneralRouterTest {
+
+	private static final String CONFIG = "<osmand_routing_config defaultProfile=\"car\">"
+			+ "<routingProfile name=\"car\" baseProfile=\"car\" minDefaultSpeed=\"10\" maxDefaultSpeed=\"130\">"
+			+ "<way attribute=\"access\">"
+			+ "<select value=\"-1\" t=\"access\" v=\"no\"/>"
+			+ "<select value=\"1\" t=\"highway\"/>"
+			+ "</way>"
+			+ "<way attribute=\"oneway\">"
+			+ "<select value=\"1\" t=\"oneway\" v=\"yes\"/>"
+			+ "</way>"
+			+ "<way attribute=\"speed\" type=\"speed\">"
+			+ "<select value=\"$maxspeed\" t=\"maxspeed\"/>"
+			+ "<select value=\"110\" t=\"highway\" v=\"motorway\"/>"
+			+ "<select value=\"40\" t=\"highway\" v=\"residential\"/>"
+			+ "</way>"
+			+ "<way attribute=\"priority\">"
+			+ "<select value=\"0.5\" param=\"avoid_residential\" t=\"highway\" v=\"residential\"/>"
+			+ "<select value=\"1.2\" t=\"highway\" v=\"motorway\"/>"
+			+ "</way>"
+			+ "<way attribute=\"obstacle_srtm_alt_speed\">"
+			+ "<select value=\"10\" t=\"highway\" v=\"residential\"><gt value1=\":incline\" value2=\"5\"/></select>"
+			+ "<select value=\"5\"><gt value1=\":incline\" value2=\"3\"/></select>"
+			+ "<select value=\"-2\"><le value1=\":incline\" value2=\"-4\"/></select>"
+			+ "</way>"
+			+ "<point attribute=\"obstacle_time\">"
+			+ "<select value=\"25\" t=\"highway\" v=\"traffic_signals\"/>"
+			+ "</point>"
+			+ "</routingProfile>"
+			+ "</osmand_routing_config>";
+
+	private static final int[][] TYPES = { { 0 }, { 1 }, { 1, 2 }, { 2, 1 }, { 1, 3 }, { 0, 3 }, { 1, 5 }, { 1, 2, 3 } };
+
+	private final RouteRegion region = new RouteRegion();
+
+	public GeneralRouterTest() {
+		region.initRouteEncodingRule(0, "highway", "motorway");
+		region.initRouteEncodingRule(1, "highway", "residential");
+		region.initRouteEncodingRule(2, "maxspeed", "30");
+		region.initRouteEncodingRule(3, "oneway", "yes");
+		region.initRouteEncodingRule(4, "highway", "traffic_signals");
+		region.initRouteEncodingRule(5, "access", "no");
+	}
+
+	private VehicleRouter router(Map<String, String> params) throws Exception {
+		RoutingConfiguration.Builder builder = RoutingConfiguration.parseFromInputStream(new ByteArrayInputStream(
+				CONFIG.getBytes("UTF-8")));
+		return builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT, params).router;
+	}
+
+	private RouteDataObject road(int[] types) {
+		RouteDataObject o = new RouteDataObject(region);
+		o.types = types.clone();
+		o.pointsX = new int[] { 0 };
+		o.pointsY = new int[] { 0 };
+		o.pointTypes = new int[][] { { 4 } };
+		return o;
+	}
+
+	private float[] evaluate(VehicleRouter router, RouteDataObject road) {
+		return new float[] { router.defineRoutingSpeed(road), router.defineSpeedPriority(road), router.isOneWay(road),
+				router.acceptLine(road) ? 1 : 0, router.defineObstacle(road, 0) };
+	}
+
+	@Test
+	public void testCompiledRules() throws Exception {
+		Map<String, String> params = Collections.singletonMap("avoid_residential", "true");
+		VehicleRouter router = router(params);
+		float[][] values = new float[TYPES.length][];
+		for (int i = 0; i < TYPES.length; i++) {
+			values[i] = evaluate(router, road(TYPES[i]));
+			// rules evaluated for the first time by new router
+			Assert.assertArrayEquals(evaluate(router(params), road(TYPES[i])), values[i], 0);
+		}
+		for (int i = 0; i < TYPES.length; i++) {
+			Assert.assertArrayEquals(values[i], evaluate(router, road(TYPES[i])), 0);
+		}
+		Assert.assertEquals(30 / 3.6f, values[2][0], 1e-3);
+		Assert.assertEquals(0.5f, values[1][1], 0);
+		Assert.assertEquals(1, values[4][2], 0);
+		Assert.assertEquals(0, values[6][3], 0);
+		Assert.assertEquals(25, values[0][4], 0);
+	}
+
+	@Test
+	public void testCompiledRulesMatchInterpreted() throws Exception {
+		int[][] types = Arrays.copyOf(TYPES, TYPES.length + 1);
+		// types of point
+		types[TYPES.length] = new int[] { 4 };
+		int[] inclines = { 0, 1, 4, 7, -1, -4, -7 };
+		List<Map<String, String>> params = Arrays.asList(null, Collections.singletonMap("avoid_residential", "true"));
+		for (Map<String, String> p : params) {
+			GeneralRouter router = (GeneralRouter) router(p);
+			for (RouteDataObjectAttribute a : RouteDataObjectAttribute.values()) {
+				RouteAttributeContext ctx = router.getObjContext(a);
+				for (int[] t : types) {
+					for (int incline : inclines) {
+						String msg = a + " " + Arrays.toString(t) + " " + incline + " " + p;
+						Object interpreted = ctx.evaluate(ctx.convert(region, t), incline);
+						// first evaluation compiles result, the second one reads it
+						Assert.assertEquals(msg, interpreted, ctx.evaluate(region, t, incline));
+						Assert.assertEquals(msg, interpreted, ctx.evaluate(region, t, incline));
+					}
+				}
+			}
+		}
+		RouteAttributeContext ctx = ((GeneralRouter) router(null)).getObjContext(
+				RouteDataObjectAttribute.OBSTACLE_SRTM_ALT_SPEED);
+		RouteDataObject residential = road(TYPES[1]);
+		Assert.assertEquals(10, ctx.evaluateFloat(residential, 7, 0), 0);
+		Assert.assertEquals(5, ctx.evaluateFloat(residential, 4, 0), 0);
+		Assert.assertEquals(0, ctx.evaluateFloat(residential, 1, 0), 0);
+		Assert.assertEquals(-2, ctx.evaluateFloat(residential, -4, 0), 0);
+		Assert.assertEquals(5, ctx.evaluateFloat(road(TYPES[0]), 7, 0), 0);
+	}
+
+	@Test
+	public void testParametersAreNotShared() throws Exception {
+		RoutingConfiguration.Builder builder = RoutingConfiguration.parseFromInputStream(new ByteArrayInputStream(
+				CONFIG.getBytes("UTF-8")));
+		Map<String, String> params = Collections.singletonMap("avoid_residential", "true");
+		VehicleRouter avoid = builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT, params).router;
+		VehicleRouter prefer = builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT,
+				Collections.<String, String>emptyMap()).router;
+		RouteDataObject residential = road(TYPES[1]);
+		Assert.assertEquals(0.5f, avoid.defineSpeedPriority(residential), 0);
+		Assert.assertEquals(1f, prefer.defineSpeedPriority(residential), 0);
+		Assert.assertEquals(0.5f, avoid.defineSpeedPriority(residential), 0);
+	}
+
+	@Test
+	public void testCachedAttributes() throws Exception {
+		VehicleRouter router = router(Collections.singletonMap("avoid_residential", "true"));
+		for (int[] types : TYPES) {
+			RouteDataObject road = road(types);
+			float[] values = evaluate(router, road);
+			Assert.assertTrue(router.cacheRoutingAttributes(road) > 0);
+			Assert.assertSame(router, road.routingAttributes.owner);
+			Assert.assertArrayEquals(values, evaluate(router, road), 0);
+			// attributes of other router are not used
+			VehicleRouter other = router(Collections.<String, String>emptyMap());
+			Assert.assertArrayEquals(evaluate(other, road(types)), evaluate(other, road), 0);
+			// inserted point shifts obstacles
+			road.insert(0, 1, 1);
+			Assert.assertEquals(0, router.defineRoutingObstacle(road, 0), 0);
+			Assert.assertEquals(values[4], router.defineObstacle(road, 1), 0);
+		}
+	}
+}
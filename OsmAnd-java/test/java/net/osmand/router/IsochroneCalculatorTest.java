@@ -0,0 +1,131 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.util.List;
+
+import gnu.trove.set.hash.TLongHashSet;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.IsochroneCalculator.ReachedSegment;
+import net.osmand.router.IsochroneCalculator.Result;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IsochroneCalculatorTest {
+
+	private static final int X = MapUtils.get31TileNumberX(30);
+	private static final int Y = MapUtils.get31TileNumberY(50);
+	private static final int STEP = 10000;
+
+	private RouteDataObject road(int dx, int dy) {
+		RouteDataObject o = new RouteDataObject(new RouteRegion());
+		o.pointsX = new int[] { X, X + dx };
+		o.pointsY = new int[] { Y, Y + dy };
+		return o;
+	}
+
+	@Test
+	public void testPolygon() {
+		Result result = new Result(X, Y, 100);
+		// 4 roads from start, the east one is reached partially
+		result.segments.add(new ReachedSegment(road(STEP, 0), 0, 1, 0, 200));
+		result.segments.add(new ReachedSegment(road(-STEP, 0), 0, 1, 0, 50));
+		result.segments.add(new ReachedSegment(road(0, STEP), 0, 1, 0, 80));
+		result.segments.add(new ReachedSegment(road(0, -STEP), 0, 1, 0, 100));
+		IsochroneCalculator calculator = new IsochroneCalculator(null);
+		calculator.setSectors(8);
+		List<LatLon> polygon = calculator.calculatePolygon(result, 100);
+		Assert.assertEquals(4, polygon.size());
+		boolean east = false;
+		for (LatLon l : polygon) {
+			if (MapUtils.get31TileNumberX(l.getLongitude()) > X) {
+				east = true;
+				// half of the segment is reachable
+				Assert.assertEquals(X + STEP / 2, MapUtils.get31TileNumberX(l.getLongitude()), 2);
+			}
+		}
+		Assert.assertTrue(east);
+		List<List<LatLon>> bands = calculator.calculatePolygons(result, new float[] { 10, 60 });
+		Assert.assertEquals(4, bands.get(0).size());
+		Assert.assertEquals(4, bands.get(1).size());
+	}
+
+	private static BinaryMapIndexReader writeNetwork(File file) throws Exception {
+		// long primary road to the east (points every 0.001 degree, about 69 m) and the shorter residential
+		// road which joins it again, so points of the second road are reached by two roads
+		double[] points = new double[2 * 1501];
+		for (int i = 0; i < points.length / 2; i++) {
+			points[2 * i] = 52.0;
+			points[2 * i + 1] = 4.0 + i * 0.001;
+		}
+		return new TestRoadNetwork().addRoad(64, new String[] { "highway", "primary" }, points)
+				.addRoad(128, new String[] { "highway", "residential" }, 52.0, 4.002, 52.001, 4.003, 52.0, 4.004)
+				.write(file);
+	}
+
+	private static RoutingContext context(BinaryMapIndexReader reader) throws Exception {
+		RoutingConfiguration config = TestRoadNetwork.parseRoutingConfig().build("car",
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+		return new RoutePlannerFrontEnd(false).buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RouteCalculationMode.NORMAL);
+	}
+
+	@Test
+	public void testSearch() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		BinaryMapIndexReader reader = writeNetwork(file);
+		try {
+			float maxTime = 60;
+			LatLon start = new LatLon(52.0, 4.0005);
+			Result result = new IsochroneCalculator(context(reader)).calculate(start, maxTime);
+			TLongHashSet keys = new TLongHashSet();
+			int residential = 0;
+			double farthest = 0;
+			for (ReachedSegment s : result.getSegments()) {
+				// every segment is kept once in every direction
+				Assert.assertTrue(keys.add((s.getRoad().getId() << 20) + (s.getStartPoint() << 10) + s.getEndPoint()));
+				Assert.assertTrue(s.getStartTime() <= maxTime);
+				Assert.assertTrue(s.getStartTime() < s.getEndTime());
+				if (s.getRoad().getId() == 128) {
+					residential++;
+				}
+				if (s.getEndTime() <= maxTime) {
+					farthest = Math.max(farthest, MapUtils.getDistance(start.getLatitude(), start.getLongitude(),
+							MapUtils.get31LatitudeY(s.getRoad().getPoint31YTile(s.getEndPoint())),
+							MapUtils.get31LongitudeX(s.getRoad().getPoint31XTile(s.getEndPoint()))));
+				}
+			}
+			// both segments of residential road are passed from both ends, though its ends are reached faster
+			// by primary road
+			Assert.assertEquals(4, residential);
+			// 90 km/h on primary road, search is stopped by max time
+			Assert.assertEquals(maxTime * 90 / 3.6, farthest, 70);
+			Assert.assertTrue(result.getVisitedPoints() < 30);
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+
+	@Test(expected = InterruptedException.class)
+	public void testCancel() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		BinaryMapIndexReader reader = writeNetwork(file);
+		try {
+			RoutingContext ctx = context(reader);
+			ctx.calculationProgress = new RouteCalculationProgress();
+			ctx.calculationProgress.isCancelled = true;
+			// more than 1000 points are reached
+			new IsochroneCalculator(ctx).calculate(new LatLon(52.0, 4.0005), 3600);
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,100 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ReverseSearchTreeTest {
+
+	@Test
+	public void testRestorePoints() throws Exception {
+		RouteDataObject road = new RouteDataObject(new RouteRegion());
+		road.pointsX = new int[] { 10, 20, 30 };
+		road.pointsY = new int[] { 10, 20, 30 };
+		road.pointTypes = new int[][] { null, { 1 }, null };
+		int[] pointsX = road.pointsX;
+		int[][] pointTypes = road.pointTypes;
+		RoutingConfiguration config = TestRoadNetwork.parseRoutingConfig().build("car",
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+		RoutingContext ctx = new RoutingContext(config, null, new BinaryMapIndexReader[0], RouteCalculationMode.NORMAL);
+		RouteSegmentPoint end = new RouteSegmentPoint(road, 1, 0);
+		ReverseSearchTree tree = new ReverseSearchTree(ctx, end, new VisitedSegmentsMap());
+		tree.keepPoints(road);
+		road.insert(1, 15, 15);
+		tree.keepPoints(road);
+		road.insert(1, 12, 12);
+		Assert.assertEquals(5, road.getPointsLength());
+		tree.restorePoints();
+		Assert.assertSame(pointsX, road.pointsX);
+		Assert.assertSame(pointTypes, road.pointTypes);
+		Assert.assertEquals(20, road.getPoint31XTile(1));
+		// tree without visited segments is not used
+		Assert.assertFalse(tree.isValidFor(ctx, end));
+	}
+
+	@Test
+	public void testRecalculation() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		String[] primary = new String[] { "highway", "primary" };
+		TestRoadNetwork network = new TestRoadNetwork();
+		for (int i = 0; i < 10; i++) {
+			network.addRoad(64 * (i + 1), primary, 52.0, 4.0 + i * 0.01, 52.0, 4.01 + i * 0.01);
+		}
+		// road which isn't connected to the chain
+		network.addRoad(64 * 11, primary, 52.002, 4.005, 52.002, 4.006);
+		BinaryMapIndexReader reader = network.write(file);
+		try {
+			RoutingConfiguration.Builder builder = TestRoadNetwork.parseRoutingConfig();
+			Assert.assertTrue(builder.isIncrementalRecalculation());
+			RoutingConfiguration config = builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+			RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+			LatLon end = new LatLon(52.0, 4.095);
+			RoutingContext ctx = route(fe, config, reader, new LatLon(52.0, 4.001), end);
+			ReverseSearchTree tree = ctx.reverseSearchTree;
+			Assert.assertNotNull(tree);
+			// segments and their roads are counted
+			Assert.assertTrue(tree.getMemoryUsage() > tree.visited.getMemoryUsage()
+					+ tree.visited.size() * RouteTileCompactor.ROUTE_SEGMENT);
+
+			// front end passes tree to the new context of recalculation
+			ctx = route(fe, config, reader, new LatLon(52.0, 4.05), end);
+			Assert.assertSame(tree, ctx.reverseSearchTree);
+			Assert.assertEquals(1, tree.reused);
+
+			// impassable roads are added to the same router
+			config.router.addImpassableRoads(Collections.singleton(64l * 11));
+			ctx = route(fe, config, reader, new LatLon(52.0, 4.06), end);
+			Assert.assertNotSame(tree, ctx.reverseSearchTree);
+			Assert.assertEquals(1, tree.reused);
+
+			// tree isn't used by front end without smart recalculation
+			tree = ctx.reverseSearchTree;
+			fe.setUseFastRecalculation(false);
+			ctx = route(fe, config, reader, new LatLon(52.0, 4.07), end);
+			Assert.assertEquals(0, tree.reused);
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+
+	private static RoutingContext route(RoutePlannerFrontEnd fe, RoutingConfiguration config,
+			BinaryMapIndexReader reader, LatLon start, LatLon end) throws Exception {
+		RoutingContext ctx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RouteCalculationMode.NORMAL);
+		List<RouteSegmentResult> res = fe.searchRoute(ctx, start, end, null);
+		Assert.assertNotNull(res);
+		Assert.assertFalse(res.isEmpty());
+		return ctx;
+	}
+}
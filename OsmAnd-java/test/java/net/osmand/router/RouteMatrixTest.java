@@ -0,0 +1,99 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.osmand.binary.BinaryMapReaderPool;
+import net.osmand.data.LatLon;
+import net.osmand.util.MapUtils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteMatrixTest {
+
+	private static final int CHAIN = 80;
+
+	private static BinaryMapReaderPool writeNetwork(File file) throws Exception {
+		// straight chain of primary roads to the east and a road which isn't connected to it
+		String[] primary = new String[] { "highway", "primary" };
+		TestRoadNetwork network = new TestRoadNetwork();
+		for (int i = 0; i < CHAIN; i++) {
+			network.addRoad(64 * (i + 1), primary, 52.0, 4.0 + i * 0.01, 52.0, 4.01 + i * 0.01);
+		}
+		network.addRoad(64 * (CHAIN + 1), primary, 52.002, 4.005, 52.002, 4.006);
+		return new BinaryMapReaderPool(network.write(file));
+	}
+
+	private static float dist(LatLon a, LatLon b) {
+		return (float) BinaryRoutePlanner.squareRootDist(TestRoadNetwork.x31(a.getLongitude()),
+				TestRoadNetwork.y31(a.getLatitude()), TestRoadNetwork.x31(b.getLongitude()),
+				TestRoadNetwork.y31(b.getLatitude()));
+	}
+
+	@Test
+	public void testSmallMatrix() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		BinaryMapReaderPool pool = writeNetwork(file);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			RoutingConfiguration config = TestRoadNetwork.parseRoutingConfig().build("car",
+					RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+			List<LatLon> sources = Arrays.asList(new LatLon(52.0, 4.002), new LatLon(52.0, 4.018));
+			List<LatLon> targets = Arrays.asList(new LatLon(52.0, 4.005), new LatLon(52.0, 4.025),
+					new LatLon(52.0, 4.0155));
+			RouteMatrix matrix = new RouteMatrix(config, new BinaryMapReaderPool[] { pool });
+			RouteMatrix.Result res = matrix.calculate(sources, targets);
+			// primary road 90 km/h
+			float speed = 90 / 3.6f;
+			for (int i = 0; i < sources.size(); i++) {
+				for (int j = 0; j < targets.size(); j++) {
+					float d = dist(sources.get(i), targets.get(j));
+					Assert.assertEquals(i + " " + j, d, res.getDistance(i, j), d * 0.005);
+					Assert.assertEquals(i + " " + j, d / speed, res.getTime(i, j), d / speed * 0.005);
+				}
+			}
+			Assert.assertTrue(MapUtils.getDistance(sources.get(0), targets.get(1)) > 1500);
+
+			matrix.setExecutor(executor, 2);
+			RouteMatrix.Result parallel = matrix.calculate(sources, targets);
+			for (int i = 0; i < sources.size(); i++) {
+				Assert.assertArrayEquals(res.getTimes()[i], parallel.getTimes()[i], 1e-3f);
+			}
+		} finally {
+			executor.shutdown();
+			pool.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testUnreachableTargetStopsSearch() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		BinaryMapReaderPool pool = writeNetwork(file);
+		try {
+			RoutingConfiguration config = TestRoadNetwork.parseRoutingConfig().build("car",
+					RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+			List<LatLon> sources = Arrays.asList(new LatLon(52.0, 4.002));
+			// the second target is on the road which isn't connected
+			List<LatLon> targets = Arrays.asList(new LatLon(52.0, 4.015), new LatLon(52.002, 4.0055));
+			RouteMatrix matrix = new RouteMatrix(config, new BinaryMapReaderPool[] { pool });
+			RouteMatrix.Result res = matrix.calculate(sources, targets);
+			Assert.assertTrue(res.getTime(0, 0) > 0);
+			Assert.assertEquals(RouteMatrix.UNREACHABLE, res.getTime(0, 1), 0);
+			Assert.assertEquals(RouteMatrix.UNREACHABLE, res.getDistance(0, 1), 0);
+			// search is limited by time to the farthest target, not the whole chain is visited
+			Assert.assertTrue(res.getVisitedPoints() + "", res.getVisitedPoints() < CHAIN);
+
+			matrix.setMaxTime(30);
+			res = matrix.calculate(sources, targets);
+			Assert.assertEquals(RouteMatrix.UNREACHABLE, res.getTime(0, 0), 0);
+		} finally {
+			pool.close();
+			file.delete();
+		}
+	}
+}
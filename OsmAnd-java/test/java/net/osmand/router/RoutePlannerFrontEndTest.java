@@ -0,0 +1,161 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.data.LatLon;
+import net.osmand.router.BinaryRoutePlanner.FinalRouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+import net.osmand.router.BinaryRoutePlanner.RouteSegmentPoint;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RoutePlannerFrontEndTest {
+
+	private static List<RouteSegmentResult> route(RoutingConfiguration config, BinaryMapIndexReader reader,
+			RouteCalculationProgress progress) throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RoutingContext ctx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RouteCalculationMode.NORMAL);
+		ctx.calculationProgress = progress;
+		List<LatLon> intermediates = Arrays.asList(new LatLon(52.0, 4.025), new LatLon(52.0, 4.045));
+		List<RouteSegmentResult> res = fe.searchRoute(ctx, new LatLon(52.0, 4.001), new LatLon(52.0, 4.069),
+				intermediates);
+		Assert.assertNotNull(res);
+		return res;
+	}
+
+	@Test
+	public void testLegsInParallel() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		String[] primary = new String[] { "highway", "primary" };
+		TestRoadNetwork network = new TestRoadNetwork();
+		for (int i = 0; i < 7; i++) {
+			network.addRoad(64 * (i + 1), primary, 52.0, 4.0 + i * 0.01, 52.0, 4.01 + i * 0.01);
+		}
+		BinaryMapIndexReader reader = network.write(file);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			RoutingConfiguration.Builder builder = TestRoadNetwork.parseRoutingConfig();
+			List<RouteSegmentResult> sequential = route(builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT),
+					reader, new RouteCalculationProgress());
+
+			builder.setIntermediateLegsExecutor(executor);
+			RoutingConfiguration config = builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+			RouteCalculationProgress progress = new RouteCalculationProgress();
+			List<RouteSegmentResult> parallel = route(config, reader, progress);
+
+			Assert.assertEquals(describe(sequential), describe(parallel));
+			Assert.assertEquals(sequential.get(sequential.size() - 1).getSegmentTime(),
+					parallel.get(parallel.size() - 1).getSegmentTime(), 1e-3);
+			// progress of 3 legs is summed
+			Assert.assertTrue(progress.totalEstimatedDistance > 0);
+			// leg searches don't change shared configuration and don't close reader of calculation
+			Assert.assertEquals(RoutingConfiguration.DEFAULT_MEMORY_LIMIT * (1 << 20), config.memoryLimitation);
+			Assert.assertEquals(describe(parallel), describe(route(config, reader, new RouteCalculationProgress())));
+		} finally {
+			executor.shutdown();
+			reader.close();
+			file.delete();
+		}
+	}
+
+	@Test(expected = InterruptedException.class)
+	public void testCancelLegsInParallel() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		String[] primary = new String[] { "highway", "primary" };
+		TestRoadNetwork network = new TestRoadNetwork();
+		for (int i = 0; i < 7; i++) {
+			network.addRoad(64 * (i + 1), primary, 52.0, 4.0 + i * 0.01, 52.0, 4.01 + i * 0.01);
+		}
+		BinaryMapIndexReader reader = network.write(file);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			RoutingConfiguration.Builder builder = TestRoadNetwork.parseRoutingConfig();
+			builder.setIntermediateLegsExecutor(executor);
+			RouteCalculationProgress progress = new RouteCalculationProgress();
+			progress.isCancelled = true;
+			route(builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT), reader, progress);
+		} finally {
+			executor.shutdown();
+			reader.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testPrefetchTiles() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		String[] primary = new String[] { "highway", "primary" };
+		TestRoadNetwork network = new TestRoadNetwork();
+		for (int i = 0; i < 10; i++) {
+			network.addRoad(64 * (i + 1), primary, 52.0, 4.0 + i * 0.01, 52.0, 4.01 + i * 0.01);
+		}
+		BinaryMapIndexReader reader = network.write(file);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			RoutingConfiguration.Builder builder = TestRoadNetwork.parseRoutingConfig();
+			RoutingContext withoutPrefetch = buildContext(builder, reader);
+			List<RouteSegmentResult> expected = searchRoute(withoutPrefetch, false);
+
+			builder.setTilePrefetchExecutor(executor);
+			RoutingContext ctx = buildContext(builder, reader);
+			List<RouteSegmentResult> res = searchRoute(ctx, true);
+			Assert.assertEquals(describe(expected), describe(res));
+			Assert.assertEquals(withoutPrefetch.visitedSegments, ctx.visitedSegments);
+			Assert.assertTrue(ctx.prefetcher.getScheduledTiles() > 1);
+			// prefetched data which is not used yet is counted as overhead of search
+			int prefetched = ctx.getPrefetchedMemoryUsage();
+			Assert.assertTrue(prefetched > 0);
+			Assert.assertTrue(ctx.memoryOverhead - withoutPrefetch.memoryOverhead >= prefetched);
+		} finally {
+			executor.shutdown();
+			reader.close();
+			file.delete();
+		}
+	}
+
+	private static RoutingContext buildContext(RoutingConfiguration.Builder builder, BinaryMapIndexReader reader) {
+		return new RoutePlannerFrontEnd(false).buildRoutingContext(builder.build("car",
+				RoutingConfiguration.DEFAULT_MEMORY_LIMIT), null, new BinaryMapIndexReader[] { reader },
+				RouteCalculationMode.NORMAL);
+	}
+
+	// planner is called directly, front end unloads context (and prefetched data) before search
+	private static List<RouteSegmentResult> searchRoute(RoutingContext ctx, boolean prefetch) throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RouteSegmentPoint start = fe.findRouteSegment(52.0, 4.001, ctx, null);
+		RouteSegmentPoint end = fe.findRouteSegment(52.0, 4.095, ctx, null);
+		ctx.initStartAndTargetPoints(start, end);
+		if (prefetch) {
+			// subregion of the whole network is already loaded by context, so its prefetched copy is never used
+			RouteDataObject road = new RouteDataObject(new RouteRegion());
+			road.pointsX = new int[] { TestRoadNetwork.x31(4.05) };
+			road.pointsY = new int[] { TestRoadNetwork.y31(52.0) };
+			ctx.prefetchTiles(new RouteSegment(road, 0), null);
+			while (ctx.prefetcher.getPendingTasks() > 0) {
+				Thread.sleep(10);
+			}
+		}
+		FinalRouteSegment finalSegment = new BinaryRoutePlanner().searchRouteInternal(ctx, start, end, null);
+		Assert.assertNotNull(finalSegment);
+		return new RouteResultPreparation().prepareResult(ctx, finalSegment);
+	}
+
+	private static List<String> describe(List<RouteSegmentResult> res) {
+		List<String> l = new ArrayList<String>();
+		for (RouteSegmentResult r : res) {
+			l.add(r.getObject().getId() + ":" + r.getStartPointIndex() + "-" + r.getEndPointIndex());
+		}
+		return l;
+	}
+}
@@ -0,0 +1,89 @@
+package net.osmand.router;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+import net.osmand.router.BinaryRoutePlanner.RouteSegment;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteSegmentQueueTest {
+
+	private final RouteDataObject road = new RouteDataObject(new RouteRegion());
+
+	private RouteSegment segment(float distanceFromStart, float distanceToEnd) {
+		RouteSegment s = new RouteSegment(road, 0);
+		s.distanceFromStart = distanceFromStart;
+		s.distanceToEnd = distanceToEnd;
+		return s;
+	}
+
+	@Test
+	public void testPollOrder() {
+		Random rnd = new Random(1);
+		RouteSegmentQueue queue = new RouteSegmentQueue(1.5f, 2);
+		for (int i = 0; i < 1000; i++) {
+			queue.add(segment(rnd.nextInt(10000), rnd.nextInt(10000)));
+			if (i % 3 == 0) {
+				queue.poll();
+			}
+		}
+		Assert.assertEquals(666, queue.size());
+		float prev = -1;
+		while (!queue.isEmpty()) {
+			float key = queue.peekKey();
+			RouteSegment s = queue.poll();
+			Assert.assertEquals(s.distanceFromStart + 1.5f * s.distanceToEnd, key, 0);
+			Assert.assertTrue(prev <= key);
+			prev = key;
+		}
+		Assert.assertNull(queue.poll());
+		Assert.assertNull(queue.peek());
+	}
+
+	@Test
+	public void testVisitedMap() {
+		Random rnd = new Random(2);
+		VisitedSegmentsMap map = new VisitedSegmentsMap(4);
+		Map<Long, RouteSegment> expected = new HashMap<Long, RouteSegment>();
+		for (int i = 0; i < 5000; i++) {
+			long key = i % 10 == 0 ? Long.MIN_VALUE + rnd.nextInt(3) : rnd.nextInt(20000) - 10000l;
+			RouteSegment s = segment(i, 0);
+			Assert.assertSame(expected.put(key, s), map.put(key, s));
+		}
+		Assert.assertEquals(expected.size(), map.size());
+		for (long key = -10000; key < 10000; key++) {
+			Assert.assertEquals(expected.containsKey(key), map.containsKey(key));
+			Assert.assertSame(expected.get(key), map.get(key));
+		}
+		Assert.assertSame(expected.get(Long.MIN_VALUE), map.get(Long.MIN_VALUE));
+		long memory = map.getMemoryUsage();
+		map.clear();
+		Assert.assertEquals(0, map.size());
+		Assert.assertFalse(map.containsKey(Long.MIN_VALUE));
+		Assert.assertEquals(memory, map.getMemoryUsage());
+	}
+
+	@Test
+	public void testSearchMemoryUsage() {
+		RouteSegmentQueue queue = new RouteSegmentQueue(1, 2);
+		VisitedSegmentsMap visited = new VisitedSegmentsMap(4);
+		long empty = BinaryRoutePlanner.getMemoryUsage(queue, visited);
+		Assert.assertEquals(queue.getMemoryUsage() + visited.getMemoryUsage(), empty);
+		queue.add(segment(1, 1));
+		visited.put(1, segment(2, 2));
+		// segments are counted, arrays aren't grown yet
+		Assert.assertEquals(empty + 2 * RouteTileCompactor.ROUTE_SEGMENT, BinaryRoutePlanner.getMemoryUsage(queue, visited));
+		for (int i = 0; i < 100; i++) {
+			queue.add(segment(i, i));
+		}
+		// arrays of queue are grown
+		Assert.assertEquals(queue.getMemoryUsage() + visited.getMemoryUsage() + 102 * RouteTileCompactor.ROUTE_SEGMENT,
+				BinaryRoutePlanner.getMemoryUsage(queue, visited));
+		Assert.assertTrue(queue.getMemoryUsage() > 100 * 4);
+	}
+}
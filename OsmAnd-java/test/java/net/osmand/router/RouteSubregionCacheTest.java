@@ -0,0 +1,110 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteSubregion;
+import net.osmand.binary.RouteDataObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteSubregionCacheTest {
+
+	private final RouteRegion region = new RouteRegion();
+	private final File file = new File("test.obf");
+
+	private RouteSubregion subregion(int filePointer) {
+		RouteSubregion s = new RouteSubregion(region);
+		s.filePointer = filePointer;
+		return s;
+	}
+
+	private List<RouteDataObject> objects(int count) {
+		List<RouteDataObject> res = new ArrayList<RouteDataObject>();
+		for (int i = 0; i < count; i++) {
+			RouteDataObject o = new RouteDataObject(region);
+			o.id = i;
+			o.pointsX = new int[] { i, i + 1 };
+			o.pointsY = new int[] { i, i + 1 };
+			o.types = new int[0];
+			res.add(o);
+		}
+		return res;
+	}
+
+	private int size(List<RouteDataObject> objects) {
+		int sz = 0;
+		for (RouteDataObject o : objects) {
+			sz += RoutingContext.getEstimatedSize(o);
+		}
+		return sz;
+	}
+
+	@Test
+	public void testHitsAndCopies() {
+		RouteSubregionCache cache = new RouteSubregionCache(RouteSubregionCache.DEFAULT_MAX_SIZE);
+		Assert.assertNull(cache.get(file, subregion(100)));
+		List<RouteDataObject> objs = objects(10);
+		cache.put(file, subregion(100), objs);
+		List<RouteDataObject> cached = cache.get(file, subregion(100));
+		Assert.assertNotNull(cached);
+		Assert.assertEquals(10, cached.size());
+		Assert.assertNotSame(objs.get(0), cached.get(0));
+		Assert.assertTrue(objs.get(0).compareRoute(cached.get(0)));
+		// modification of returned object doesn't affect cache
+		cached.get(0).insert(1, 5, 5);
+		Assert.assertEquals(2, cache.get(file, subregion(100)).get(0).getPointsLength());
+		Assert.assertNull(cache.get(new File("other.obf"), subregion(100)));
+		Assert.assertEquals(2, cache.getHits());
+		Assert.assertEquals(2, cache.getMisses());
+		Assert.assertEquals(size(objs), cache.getSize());
+	}
+
+	@Test
+	public void testLruEviction() {
+		List<RouteDataObject> objs = objects(10);
+		RouteSubregionCache cache = new RouteSubregionCache(size(objs) * 2);
+		cache.put(file, subregion(1), objs);
+		cache.put(file, subregion(2), objs);
+		// 1 is used recently, so 2 is evicted
+		Assert.assertNotNull(cache.get(file, subregion(1)));
+		cache.put(file, subregion(3), objs);
+		Assert.assertEquals(1, cache.getEvictions());
+		Assert.assertEquals(2, cache.getBlocksCount());
+		Assert.assertNull(cache.get(file, subregion(2)));
+		Assert.assertNotNull(cache.get(file, subregion(1)));
+		Assert.assertNotNull(cache.get(file, subregion(3)));
+
+		cache.setMaxSize(size(objs));
+		Assert.assertEquals(1, cache.getBlocksCount());
+		Assert.assertEquals(2, cache.getEvictions());
+		cache.clear(file);
+		Assert.assertEquals(0, cache.getBlocksCount());
+		Assert.assertEquals(0, cache.getSize());
+	}
+
+	@Test
+	public void testCompactedCopies() {
+		RouteSubregionCache cache = new RouteSubregionCache(RouteSubregionCache.DEFAULT_MAX_SIZE);
+		List<RouteDataObject> objs = objects(2);
+		int[] obstacle = new int[] { 7 };
+		objs.get(0).pointTypes = new int[][] { null, obstacle };
+		cache.put(file, subregion(100), objs);
+		List<RouteDataObject> first = cache.get(file, subregion(100));
+		List<RouteDataObject> second = cache.get(file, subregion(100));
+		Assert.assertNotSame(first.get(0).pointTypes, second.get(0).pointTypes);
+		// compactor of one context replaces types of points of its copy by equal arrays it has seen before
+		RouteTileCompactor compactor = new RouteTileCompactor();
+		int[] interned = new int[] { 7 };
+		RouteDataObject seen = new RouteDataObject(objs.get(1));
+		seen.pointTypes = new int[][] { interned };
+		compactor.compact(seen);
+		compactor.compact(first.get(0));
+		Assert.assertSame(interned, first.get(0).pointTypes[1]);
+		Assert.assertSame(obstacle, second.get(0).pointTypes[1]);
+		Assert.assertSame(obstacle, cache.get(file, subregion(100)).get(0).pointTypes[1]);
+	}
+}
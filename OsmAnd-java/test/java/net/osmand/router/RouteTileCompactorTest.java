@@ -0,0 +1,56 @@
+package net.osmand.router;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import net.osmand.binary.BinaryMapRouteReaderAdapter.RouteRegion;
+import net.osmand.binary.RouteDataObject;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class RouteTileCompactorTest {
+
+	private final RouteRegion region = new RouteRegion();
+
+	private RouteDataObject road(long id, String name) {
+		RouteDataObject o = new RouteDataObject(region);
+		o.id = id;
+		o.pointsX = new int[] { 1, 2, 3 };
+		o.pointsY = new int[] { 1, 2, 3 };
+		o.types = new int[] { 1, 5, 7 };
+		o.pointTypes = new int[][] { null, { 3 }, null };
+		o.restrictions = new long[0];
+		o.names = new TIntObjectHashMap<String>();
+		o.names.put(1, name);
+		return o;
+	}
+
+	@Test
+	public void testSharedArrays() {
+		RouteTileCompactor compactor = new RouteTileCompactor();
+		RouteDataObject r1 = road(1, "Main street");
+		RouteDataObject r2 = road(2, "Main street");
+		RouteDataObject r3 = road(3, "Second street");
+		int sz1 = compactor.compact(r1);
+		int sz2 = compactor.compact(r2);
+		int sz3 = compactor.compact(r3);
+		Assert.assertSame(r1.types, r2.types);
+		Assert.assertSame(r1.pointTypes[1], r2.pointTypes[1]);
+		Assert.assertSame(r1.names, r2.names);
+		Assert.assertNotSame(r1.names, r3.names);
+		Assert.assertNull(r1.restrictions);
+		Assert.assertTrue(sz2 < sz1);
+		Assert.assertTrue(sz3 > sz2);
+		Assert.assertTrue(compactor.getSharedSize() > 0);
+		Assert.assertEquals("Main street", r2.names.get(1));
+	}
+
+	@Test
+	public void testEmptyPointTypes() {
+		RouteTileCompactor compactor = new RouteTileCompactor();
+		RouteDataObject r = road(1, "Main street");
+		r.pointTypes = new int[3][];
+		compactor.compact(r);
+		Assert.assertNull(r.pointTypes);
+		Assert.assertNull(r.getPointTypes(1));
+	}
+}
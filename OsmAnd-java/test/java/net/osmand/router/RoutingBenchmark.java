@@ -0,0 +1,206 @@
+package net.osmand.router;
+
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.lang.reflect.Array;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+
+import com.google.gson.Gson;
+
+/**
+ * Runs routing of test_routing.json cases many times and prints average time, visited segments and
+ * estimated memory of search. Planner of baseline build (PriorityQueue and hash maps of segments) is measured
+ * for comparison when its classes are given : they're loaded by separate class loader, so both versions
+ * run in the same JVM with the same map file. Recalculation from a point of the route (a quarter of it)
+ * is measured with the same context (incremental recalculation) and from scratch.
+ * Usage: RoutingBenchmark [file.obf] [iterations] [baseline classpath (classes and libs separated by path separator)]
+ */
+public class RoutingBenchmark {
+
+	public static void main(String[] args) throws Exception {
+		String fl = args.length > 0 ? args[0] : "../../resources/test-resources/Routing_test.obf";
+		int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+		Reader reader = new InputStreamReader(RoutingBenchmark.class.getResourceAsStream("/test_routing.json"));
+		TestEntry[] testEntries = new Gson().fromJson(reader, TestEntry[].class);
+		reader.close();
+		BinaryMapIndexReader[] readers = { new BinaryMapIndexReader(new RandomAccessFile(fl, "r"), new File(fl)) };
+		BaselinePlanner baseline = args.length > 2 ? new BaselinePlanner(args[2], new File(fl)) : null;
+		for (TestEntry te : testEntries) {
+			if (te.isIgnore()) {
+				continue;
+			}
+			System.out.println(te.getTestName());
+			// warm up
+			run(te, readers, iterations, false);
+			if (baseline != null) {
+				baseline.run(te, iterations, false);
+			}
+			run(te, readers, iterations, true);
+			if (baseline != null) {
+				baseline.run(te, iterations, true);
+			}
+			if (te.getTransitPoint().isEmpty()) {
+				runRecalculation(te, readers, iterations);
+			}
+		}
+		readers[0].close();
+		if (baseline != null) {
+			baseline.close();
+		}
+	}
+
+	private static RoutingConfiguration buildConfig(TestEntry te) {
+		Map<String, String> params = te.getParams();
+		return RoutingConfiguration.getDefault().build(
+				params.containsKey("vehicle") ? params.get("vehicle") : "car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3,
+				params);
+	}
+
+	private static void runRecalculation(TestEntry te, BinaryMapIndexReader[] readers, int iterations) throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RoutingConfiguration config = buildConfig(te);
+		config.incrementalRecalculation = true;
+		long time = 0;
+		long visited = 0;
+		long scratchTime = 0;
+		long scratchVisited = 0;
+		for (int i = 0; i < iterations; i++) {
+			RoutingContext ctx = fe.buildRoutingContext(config, null, readers, RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+			ctx.leftSideNavigation = false;
+			List<RouteSegmentResult> res = fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(), null);
+			if (res == null || res.size() < 4) {
+				return;
+			}
+			LatLon start = res.get(res.size() / 4).getStartPoint();
+			long t = System.nanoTime();
+			fe.searchRoute(ctx, start, te.getEndPoint(), null);
+			time += System.nanoTime() - t;
+			visited += ctx.visitedSegments;
+
+			RoutingContext scratch = fe.buildRoutingContext(config, null, readers,
+					RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+			scratch.leftSideNavigation = false;
+			t = System.nanoTime();
+			fe.searchRoute(scratch, start, te.getEndPoint(), null);
+			scratchTime += System.nanoTime() - t;
+			scratchVisited += scratch.visitedSegments;
+		}
+		System.out.println(String.format("  Recalculation: %.2f ms, %d visited segments (from scratch %.2f ms, %d visited segments)",
+				time / 1e6 / iterations, visited / iterations, scratchTime / 1e6 / iterations, scratchVisited / iterations));
+	}
+
+	private static void run(TestEntry te, BinaryMapIndexReader[] readers, int iterations, boolean print)
+			throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RoutingConfiguration config = buildConfig(te);
+		long time = 0;
+		long visited = 0;
+		long memory = 0;
+		for (int i = 0; i < iterations; i++) {
+			RoutingContext ctx = fe.buildRoutingContext(config, null, readers,
+					RoutePlannerFrontEnd.RouteCalculationMode.NORMAL);
+			ctx.leftSideNavigation = false;
+			long start = System.nanoTime();
+			List<RouteSegmentResult> res = fe.searchRoute(ctx, te.getStartPoint(), te.getEndPoint(),
+					te.getTransitPoint());
+			time += System.nanoTime() - start;
+			visited += ctx.visitedSegments;
+			memory = Math.max(memory, ctx.memoryOverhead);
+			if (res == null) {
+				break;
+			}
+		}
+		if (print) {
+			print("New", time, visited, memory, iterations);
+		}
+	}
+
+	private static void print(String planner, long time, long visited, long memory, int iterations) {
+		System.out.println(String.format("  %s planner: %.2f ms, %d visited segments, %d KB estimated memory",
+				planner, time / 1e6 / iterations, visited / iterations, memory / 1024));
+	}
+
+	/**
+	 * Public API of baseline planner called by reflection : classes of both versions have the same names.
+	 */
+	private static class BaselinePlanner {
+		private final URLClassLoader loader;
+		private final Object readers;
+
+		BaselinePlanner(String classpath, File file) throws Exception {
+			List<URL> urls = new ArrayList<URL>();
+			for (String p : classpath.split(File.pathSeparator)) {
+				urls.add(new File(p).toURI().toURL());
+			}
+			// parent is not the application class loader, so classes of current version are not visible
+			loader = new URLClassLoader(urls.toArray(new URL[urls.size()]), ClassLoader.getSystemClassLoader().getParent());
+			Class<?> readerClass = load("net.osmand.binary.BinaryMapIndexReader");
+			readers = Array.newInstance(readerClass, 1);
+			Array.set(readers, 0, readerClass.getConstructor(RandomAccessFile.class, File.class).newInstance(
+					new RandomAccessFile(file, "r"), file));
+		}
+
+		private Class<?> load(String name) throws ClassNotFoundException {
+			return Class.forName(name, true, loader);
+		}
+
+		private Object latLon(LatLon l) throws Exception {
+			return load("net.osmand.data.LatLon").getConstructor(double.class, double.class).newInstance(l.getLatitude(),
+					l.getLongitude());
+		}
+
+		void run(TestEntry te, int iterations, boolean print) throws Exception {
+			Class<?> configClass = load("net.osmand.router.RoutingConfiguration");
+			Class<?> feClass = load("net.osmand.router.RoutePlannerFrontEnd");
+			Class<?> ctxClass = load("net.osmand.router.RoutingContext");
+			Class<?> modeClass = load("net.osmand.router.RoutePlannerFrontEnd$RouteCalculationMode");
+			Class<?> latLonClass = load("net.osmand.data.LatLon");
+			Object builder = configClass.getMethod("getDefault").invoke(null);
+			Map<String, String> params = te.getParams();
+			Object config = builder.getClass().getMethod("build", String.class, int.class, Map.class).invoke(builder,
+					params.containsKey("vehicle") ? params.get("vehicle") : "car",
+					RoutingConfiguration.DEFAULT_MEMORY_LIMIT * 3, params);
+			Object fe = feClass.getConstructor(boolean.class).newInstance(false);
+			List<Object> transit = new ArrayList<Object>();
+			for (LatLon l : te.getTransitPoint()) {
+				transit.add(latLon(l));
+			}
+			long time = 0;
+			long visited = 0;
+			long memory = 0;
+			for (int i = 0; i < iterations; i++) {
+				Object ctx = feClass.getMethod("buildRoutingContext", configClass, load("net.osmand.NativeLibrary"),
+						readers.getClass(), modeClass).invoke(fe, config, null, readers,
+						modeClass.getField("NORMAL").get(null));
+				ctxClass.getField("leftSideNavigation").setBoolean(ctx, false);
+				long start = System.nanoTime();
+				Object res = feClass.getMethod("searchRoute", ctxClass, latLonClass, latLonClass, List.class).invoke(fe,
+						ctx, latLon(te.getStartPoint()), latLon(te.getEndPoint()), transit);
+				time += System.nanoTime() - start;
+				visited += ctxClass.getField("visitedSegments").getInt(ctx);
+				memory = Math.max(memory, ctxClass.getField("memoryOverhead").getInt(ctx));
+				if (res == null) {
+					break;
+				}
+			}
+			if (print) {
+				print("Baseline", time, visited, memory, iterations);
+			}
+		}
+
+		void close() throws Exception {
+			Object reader = Array.get(readers, 0);
+			reader.getClass().getMethod("close").invoke(reader);
+			loader.close();
+		}
+	}
+}
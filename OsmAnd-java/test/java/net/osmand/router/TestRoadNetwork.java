@@ -0,0 +1,326 @@
+package net.osmand.router;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.OsmandOdb;
+import net.osmand.binary.OsmandOdb.IdTable;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteDataBlock;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteDataBox;
+import net.osmand.binary.OsmandOdb.OsmAndRoutingIndex.RouteEncodingRule;
+import net.osmand.binary.OsmandOdb.RestrictionData;
+import net.osmand.binary.OsmandOdb.RouteData;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.util.MapUtils;
+
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.WireFormat;
+
+/**
+ * Small road network for tests of route planning : roads are written to map file with routing section only
+ * (one root box with one data block), so they're read by the same code as roads of real maps.
+ */
+public class TestRoadNetwork {
+
+	public static final String ROUTING_CONFIG = "<osmand_routing_config defaultProfile=\"car\">"
+			+ "<routingProfile name=\"car\" baseProfile=\"car\" restrictionsAware=\"true\" minDefaultSpeed=\"10\" "
+			+ "maxDefaultSpeed=\"130\">"
+			+ "<way attribute=\"access\">"
+			+ "<select value=\"-1\" t=\"access\" v=\"no\"/>"
+			+ "<select value=\"1\" t=\"highway\"/>"
+			+ "</way>"
+			+ "<way attribute=\"oneway\">"
+			+ "<select value=\"1\" t=\"oneway\" v=\"yes\"/>"
+			+ "</way>"
+			+ "<way attribute=\"speed\" type=\"speed\">"
+			+ "<select value=\"$maxspeed\" t=\"maxspeed\"/>"
+			+ "<select value=\"110\" t=\"highway\" v=\"motorway\"/>"
+			+ "<select value=\"90\" t=\"highway\" v=\"primary\"/>"
+			+ "<select value=\"40\" t=\"highway\" v=\"residential\"/>"
+			+ "</way>"
+			+ "<way attribute=\"priority\">"
+			+ "<select value=\"0.5\" param=\"avoid_residential\" t=\"highway\" v=\"residential\"/>"
+			+ "</way>"
+			+ "</routingProfile>"
+			+ "</osmand_routing_config>";
+
+	private static final int SHIFT_COORDINATES = 4;
+	private static final int VERSION = 2;
+
+	static {
+		// readers don't need poi types for routing (poi_types.xml is not part of test resources)
+		MapPoiTypes.getDefaultNoInit();
+	}
+
+	private final Map<String, Integer> rules = new LinkedHashMap<String, Integer>();
+	private final List<Road> roads = new ArrayList<Road>();
+	private final List<long[]> restrictions = new ArrayList<long[]>();
+	private int version = VERSION;
+	private long dateCreated;
+
+	private static class Road {
+		long id;
+		int[] types;
+		int nameRule;
+		String name;
+		int[] x;
+		int[] y;
+	}
+
+	public static RoutingConfiguration.Builder parseRoutingConfig() throws Exception {
+		return RoutingConfiguration.parseFromInputStream(new ByteArrayInputStream(ROUTING_CONFIG.getBytes("UTF-8")));
+	}
+
+	public static int x31(double lon) {
+		// coordinates are stored with lower bits cut
+		return (MapUtils.get31TileNumberX(lon) >> SHIFT_COORDINATES) << SHIFT_COORDINATES;
+	}
+
+	public static int y31(double lat) {
+		return (MapUtils.get31TileNumberY(lat) >> SHIFT_COORDINATES) << SHIFT_COORDINATES;
+	}
+
+	/**
+	 * @param tags pairs of tag and value ("name" tag is written to string table of block)
+	 * @param latLons pairs of latitude and longitude of points
+	 */
+	public TestRoadNetwork addRoad(long id, String[] tags, double... latLons) {
+		Road r = new Road();
+		r.id = id;
+		List<Integer> types = new ArrayList<Integer>();
+		for (int i = 0; i < tags.length / 2; i++) {
+			boolean name = tags[2 * i].equals("name");
+			String key = tags[2 * i] + "=" + (name ? "" : tags[2 * i + 1]);
+			Integer type = rules.get(key);
+			if (type == null) {
+				// ids of rules are assigned by order in file starting from 1
+				type = rules.size() + 1;
+				rules.put(key, type);
+			}
+			if (name) {
+				r.nameRule = type;
+				r.name = tags[2 * i + 1];
+			} else {
+				types.add(type);
+			}
+		}
+		r.types = new int[types.size()];
+		for (int i = 0; i < r.types.length; i++) {
+			r.types[i] = types.get(i);
+		}
+		r.x = new int[latLons.length / 2];
+		r.y = new int[latLons.length / 2];
+		for (int i = 0; i < r.x.length; i++) {
+			r.y[i] = y31(latLons[2 * i]);
+			r.x[i] = x31(latLons[2 * i + 1]);
+		}
+		roads.add(r);
+		return this;
+	}
+
+	/**
+	 * @param type one of MapRenderingTypes.RESTRICTION_* constants
+	 */
+	public TestRoadNetwork addRestriction(long from, long to, int type) {
+		restrictions.add(new long[] { from, to, type });
+		return this;
+	}
+
+	public TestRoadNetwork setVersion(int version) {
+		this.version = version;
+		return this;
+	}
+
+	/**
+	 * @param dateCreated date of file header, hash of file name is written if it is 0
+	 */
+	public TestRoadNetwork setDateCreated(long dateCreated) {
+		this.dateCreated = dateCreated;
+		return this;
+	}
+
+	public BinaryMapIndexReader write(File file) throws IOException {
+		byte[] routing = writeRoutingIndex();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		out.writeUInt32(OsmandOdb.OsmAndStructure.VERSION_FIELD_NUMBER, version);
+		out.writeInt64(OsmandOdb.OsmAndStructure.DATECREATED_FIELD_NUMBER,
+				dateCreated != 0 ? dateCreated : file.getName().hashCode());
+		out.writeTag(OsmandOdb.OsmAndStructure.ROUTINGINDEX_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED);
+		writeFixedLength(out, routing.length);
+		out.writeRawBytes(routing);
+		out.writeUInt32(OsmandOdb.OsmAndStructure.VERSIONCONFIRM_FIELD_NUMBER, version);
+		out.flush();
+		FileOutputStream fout = new FileOutputStream(file);
+		try {
+			fout.write(bytes.toByteArray());
+		} finally {
+			fout.close();
+		}
+		return new BinaryMapIndexReader(new RandomAccessFile(file, "r"), file);
+	}
+
+	private byte[] writeRoutingIndex() throws IOException {
+		int left = Integer.MAX_VALUE;
+		int right = 0;
+		int top = Integer.MAX_VALUE;
+		int bottom = 0;
+		for (Road r : roads) {
+			for (int i = 0; i < r.x.length; i++) {
+				left = Math.min(left, r.x[i]);
+				right = Math.max(right, r.x[i]);
+				top = Math.min(top, r.y[i]);
+				bottom = Math.max(bottom, r.y[i]);
+			}
+		}
+		byte[] block = writeDataBlock(left, top);
+
+		ByteArrayOutputStream boxBytes = new ByteArrayOutputStream();
+		CodedOutputStream box = CodedOutputStream.newInstance(boxBytes);
+		box.writeSInt32(RouteDataBox.LEFT_FIELD_NUMBER, left);
+		box.writeSInt32(RouteDataBox.RIGHT_FIELD_NUMBER, right);
+		box.writeSInt32(RouteDataBox.TOP_FIELD_NUMBER, top);
+		box.writeSInt32(RouteDataBox.BOTTOM_FIELD_NUMBER, bottom);
+		box.writeTag(RouteDataBox.SHIFTTODATA_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32);
+		box.flush();
+		int boxLength = boxBytes.size() + 4;
+		int blocksTag = CodedOutputStream.computeTagSize(OsmAndRoutingIndex.BLOCKS_FIELD_NUMBER);
+		// data block follows the box, shift is counted from start of the box
+		writeFixedLength(box, boxLength + blocksTag);
+		box.flush();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+		out.writeString(OsmAndRoutingIndex.NAME_FIELD_NUMBER, "test");
+		for (String rule : rules.keySet()) {
+			int eq = rule.indexOf('=');
+			ByteArrayOutputStream ruleBytes = new ByteArrayOutputStream();
+			CodedOutputStream r = CodedOutputStream.newInstance(ruleBytes);
+			r.writeString(RouteEncodingRule.TAG_FIELD_NUMBER, rule.substring(0, eq));
+			r.writeString(RouteEncodingRule.VALUE_FIELD_NUMBER, rule.substring(eq + 1));
+			r.flush();
+			out.writeTag(OsmAndRoutingIndex.RULES_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+			out.writeRawVarint32(ruleBytes.size());
+			out.writeRawBytes(ruleBytes.toByteArray());
+		}
+		out.writeTag(OsmAndRoutingIndex.ROOTBOXES_FIELD_NUMBER, WireFormat.WIRETYPE_FIXED32_LENGTH_DELIMITED);
+		writeFixedLength(out, boxBytes.size());
+		out.writeRawBytes(boxBytes.toByteArray());
+		out.writeTag(OsmAndRoutingIndex.BLOCKS_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeRawVarint32(block.length);
+		out.writeRawBytes(block);
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private byte[] writeDataBlock(int left, int top) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+
+		ByteArrayOutputStream idBytes = new ByteArrayOutputStream();
+		CodedOutputStream ids = CodedOutputStream.newInstance(idBytes);
+		long prev = 0;
+		for (Road r : roads) {
+			ids.writeSInt64(IdTable.ROUTEID_FIELD_NUMBER, r.id - prev);
+			prev = r.id;
+		}
+		ids.flush();
+		writeMessage(out, RouteDataBlock.IDTABLE_FIELD_NUMBER, idBytes);
+
+		List<String> names = new ArrayList<String>();
+
+		for (int k = 0; k < roads.size(); k++) {
+			Road r = roads.get(k);
+			ByteArrayOutputStream objBytes = new ByteArrayOutputStream();
+			CodedOutputStream obj = CodedOutputStream.newInstance(objBytes);
+			ByteArrayOutputStream packed = new ByteArrayOutputStream();
+			CodedOutputStream p = CodedOutputStream.newInstance(packed);
+			for (int t : r.types) {
+				p.writeRawVarint32(t);
+			}
+			p.flush();
+			writeMessage(obj, RouteData.TYPES_FIELD_NUMBER, packed);
+			packed = new ByteArrayOutputStream();
+			p = CodedOutputStream.newInstance(packed);
+			int px = left >> SHIFT_COORDINATES;
+			int py = top >> SHIFT_COORDINATES;
+			for (int i = 0; i < r.x.length; i++) {
+				int x = r.x[i] >> SHIFT_COORDINATES;
+				int y = r.y[i] >> SHIFT_COORDINATES;
+				p.writeSInt32NoTag(x - px);
+				p.writeSInt32NoTag(y - py);
+				px = x;
+				py = y;
+			}
+			p.flush();
+			writeMessage(obj, RouteData.POINTS_FIELD_NUMBER, packed);
+			if (r.name != null) {
+				packed = new ByteArrayOutputStream();
+				p = CodedOutputStream.newInstance(packed);
+				p.writeRawVarint32(r.nameRule);
+				p.writeRawVarint32(names.size());
+				names.add(r.name);
+				p.flush();
+				writeMessage(obj, RouteData.STRINGNAMES_FIELD_NUMBER, packed);
+			}
+			obj.writeInt32(RouteData.ROUTEID_FIELD_NUMBER, k);
+			obj.flush();
+			writeMessage(out, RouteDataBlock.DATAOBJECTS_FIELD_NUMBER, objBytes);
+		}
+
+		if (!names.isEmpty()) {
+			ByteArrayOutputStream tableBytes = new ByteArrayOutputStream();
+			CodedOutputStream table = CodedOutputStream.newInstance(tableBytes);
+			for (String name : names) {
+				table.writeString(OsmandOdb.StringTable.S_FIELD_NUMBER, name);
+			}
+			table.flush();
+			writeMessage(out, RouteDataBlock.STRINGTABLE_FIELD_NUMBER, tableBytes);
+		}
+
+		for (long[] restriction : restrictions) {
+			ByteArrayOutputStream resBytes = new ByteArrayOutputStream();
+			CodedOutputStream res = CodedOutputStream.newInstance(resBytes);
+			res.writeInt32(RestrictionData.FROM_FIELD_NUMBER, indexOf(restriction[0]));
+			res.writeInt32(RestrictionData.TO_FIELD_NUMBER, indexOf(restriction[1]));
+			res.writeInt32(RestrictionData.TYPE_FIELD_NUMBER, (int) restriction[2]);
+			res.flush();
+			writeMessage(out, RouteDataBlock.RESTRICTIONS_FIELD_NUMBER, resBytes);
+		}
+		out.flush();
+		return bytes.toByteArray();
+	}
+
+	private int indexOf(long roadId) {
+		for (int k = 0; k < roads.size(); k++) {
+			if (roads.get(k).id == roadId) {
+				return k;
+			}
+		}
+		throw new IllegalArgumentException("Unknown road " + roadId);
+	}
+
+	private static void writeMessage(CodedOutputStream out, int field, ByteArrayOutputStream message)
+			throws IOException {
+		out.writeTag(field, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+		out.writeRawVarint32(message.size());
+		out.writeRawBytes(message.toByteArray());
+	}
+
+	private static void writeFixedLength(CodedOutputStream out, int length) throws IOException {
+		out.writeRawByte((length >>> 24) & 0xff);
+		out.writeRawByte((length >>> 16) & 0xff);
+		out.writeRawByte((length >>> 8) & 0xff);
+		out.writeRawByte(length & 0xff);
+	}
+}
@@ -0,0 +1,108 @@
+package net.osmand.router;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.data.LatLon;
+import net.osmand.router.RoutePlannerFrontEnd.RouteCalculationMode;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TrafficSpeedProfilesTest {
+
+	private static String line(long wayId, int daySpeed, int rushSpeed) {
+		StringBuilder b = new StringBuilder().append(wayId);
+		for (int i = 0; i < TrafficSpeedProfiles.BUCKETS; i++) {
+			// rush hour 8:00 - 9:00
+			b.append(',').append(i >= 32 && i < 36 ? rushSpeed : daySpeed);
+		}
+		return b.append('\n').toString();
+	}
+
+	@Test
+	public void testRead() throws IOException {
+		String text = "# way id, speeds\n" + line(100, 72, 18) + "\n" + line(200, 300, 0);
+		TrafficSpeedProfiles profiles = TrafficSpeedProfiles.read(new ByteArrayInputStream(text.getBytes("UTF-8")));
+		Assert.assertEquals(2, profiles.size());
+		Assert.assertNull(profiles.getProfile(300));
+
+		byte[] p = profiles.getProfile(100);
+		Assert.assertEquals(20f, TrafficSpeedProfiles.getSpeed(p, 7 * 3600 + 59 * 60), 1e-3);
+		Assert.assertEquals(5f, TrafficSpeedProfiles.getSpeed(p, 8 * 3600), 1e-3);
+		Assert.assertEquals(5f, TrafficSpeedProfiles.getSpeed(p, 8 * 3600 + 59 * 60), 1e-3);
+		// next day
+		Assert.assertEquals(5f, TrafficSpeedProfiles.getSpeed(p, 24 * 3600 + 8 * 3600), 1e-3);
+
+		byte[] clamped = profiles.getProfile(200);
+		Assert.assertEquals(255 / 3.6f, TrafficSpeedProfiles.getSpeed(clamped, 0), 1e-3);
+		Assert.assertEquals(0f, TrafficSpeedProfiles.getSpeed(clamped, 8 * 3600), 1e-3);
+	}
+
+	@Test(expected = IOException.class)
+	public void testWrongLine() throws IOException {
+		TrafficSpeedProfiles.read(new ByteArrayInputStream("100,50,60\n".getBytes("UTF-8")));
+	}
+
+	private static long time(TimeZone timeZone, int hour, int minute) {
+		Calendar c = Calendar.getInstance(timeZone);
+		c.clear();
+		c.set(2020, Calendar.MARCH, 2, hour, minute);
+		return c.getTimeInMillis();
+	}
+
+	private static float routeTime(RoutingConfiguration config, BinaryMapIndexReader reader, long departure,
+			TimeZone timeZone) throws Exception {
+		RoutePlannerFrontEnd fe = new RoutePlannerFrontEnd(false);
+		RoutingContext ctx = fe.buildRoutingContext(config, null, new BinaryMapIndexReader[] { reader },
+				RouteCalculationMode.NORMAL);
+		ctx.setDepartureTime(departure, timeZone);
+		List<RouteSegmentResult> res = fe.searchRoute(ctx, new LatLon(52.0, 4.001), new LatLon(52.0, 4.029), null);
+		return (res.get(res.size() - 1).getArrivalTime() - departure) / 1000f;
+	}
+
+	@Test
+	public void testDepartureTime() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		// roads of osm ways 1, 2, 3
+		String[] primary = new String[] { "highway", "primary" };
+		BinaryMapIndexReader reader = new TestRoadNetwork().addRoad(64, primary, 52.0, 4.0, 52.0, 4.01)
+				.addRoad(128, primary, 52.0, 4.01, 52.0, 4.02).addRoad(192, primary, 52.0, 4.02, 52.0, 4.03).write(file);
+		try {
+			RoutingConfiguration.Builder builder = TestRoadNetwork.parseRoutingConfig();
+			String text = line(1, 72, 18) + line(2, 72, 18) + line(3, 72, 18);
+			builder.setSpeedProfiles(TrafficSpeedProfiles.read(new ByteArrayInputStream(text.getBytes("UTF-8"))));
+			RoutingConfiguration config = builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+			TimeZone utc = TimeZone.getTimeZone("UTC");
+			float night = routeTime(config, reader, time(utc, 3, 0), utc);
+			float rush = routeTime(config, reader, time(utc, 8, 15), utc);
+			// 72 and 18 km/h by profile
+			Assert.assertTrue(rush + " " + night, rush > 2 * night);
+			Assert.assertEquals(night, routeTime(config, reader, time(utc, 12, 0), utc), 1e-3);
+			// the same moment is rush hour in other time zone
+			TimeZone east = TimeZone.getTimeZone("GMT+5");
+			Assert.assertEquals(rush, routeTime(config, reader, time(east, 8, 15), east), 1e-3);
+			Assert.assertEquals(night, routeTime(config, reader, time(utc, 8, 15), east), 1e-3);
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testMaxSpeedOfRouter() throws Exception {
+		TrafficSpeedProfiles profiles = TrafficSpeedProfiles.read(new ByteArrayInputStream(line(1, 250, 18)
+				.getBytes("UTF-8")));
+		RoutingConfiguration.Builder builder = TestRoadNetwork.parseRoutingConfig();
+		builder.setSpeedProfiles(profiles);
+		RoutingConfiguration config = builder.build("car", RoutingConfiguration.DEFAULT_MEMORY_LIMIT);
+		Assert.assertSame(profiles, config.speedProfiles);
+		Assert.assertEquals(130 / 3.6f, TrafficSpeedProfiles.getSpeed(profiles.getProfile(1), 0, config.router), 1e-3);
+		Assert.assertEquals(5f, TrafficSpeedProfiles.getSpeed(profiles.getProfile(1), 8 * 3600, config.router), 1e-3);
+	}
+}
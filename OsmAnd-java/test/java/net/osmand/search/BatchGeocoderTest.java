@@ -0,0 +1,163 @@
+package net.osmand.search;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapReaderPool;
+import net.osmand.binary.GeocodingUtilities.GeocodingResult;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.router.RoutingConfiguration;
+import net.osmand.router.TestRoadNetwork;
+import net.osmand.search.BatchGeocoder.GeocodingAnswer;
+import net.osmand.search.BatchGeocoder.GeocodingQuery;
+import net.osmand.search.BatchGeocoder.Statistics;
+import net.osmand.search.core.ObjectType;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BatchGeocoderTest {
+
+	@Test
+	public void testSearchLocations() throws InterruptedException {
+		int queries = 50;
+		List<GeocodingQuery> lst = new ArrayList<GeocodingQuery>();
+		for (int i = 0; i < queries; i++) {
+			lst.add(GeocodingQuery.search((10 + i) + ".5, 20.25", null));
+		}
+		final List<GeocodingAnswer> answers = new ArrayList<GeocodingAnswer>();
+		// location is found without map files
+		BatchGeocoder geocoder = new BatchGeocoder(Collections.<BinaryMapReaderPool>emptyList(),
+				MapPoiTypes.getDefaultNoInit(), "en", 4);
+		try {
+			Statistics stats = geocoder.geocode(lst.iterator(), new ResultMatcher<GeocodingAnswer>() {
+				@Override
+				public boolean publish(GeocodingAnswer object) {
+					answers.add(object);
+					return true;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return false;
+				}
+			});
+			Assert.assertEquals(queries, stats.getQueries());
+			Assert.assertEquals(0, stats.getErrors());
+			Assert.assertEquals(0, stats.getEmpty());
+			Assert.assertTrue(stats.getLatencyMillis(50) <= stats.getLatencyMillis(99));
+			Assert.assertTrue(stats.getQueriesPerSecond() > 0);
+		} finally {
+			geocoder.close();
+		}
+		Assert.assertEquals(queries, answers.size());
+		for (GeocodingAnswer a : answers) {
+			Assert.assertEquals(ObjectType.LOCATION, a.getSearchResults().get(0).objectType);
+			Assert.assertEquals(a.getQuery().getText(), Math.round(a.getSearchResults().get(0).location.getLatitude() * 10) / 10.
+					+ ", 20.25");
+		}
+	}
+
+	private static BinaryMapReaderPool writeStreets(File file) throws Exception {
+		BinaryMapIndexReader reader = new TestRoadNetwork()
+				.addRoad(64, new String[] { "highway", "primary", "name", "Main Street" }, 52.0, 4.0, 52.0, 4.01)
+				.addRoad(128, new String[] { "highway", "residential", "name", "Side Street" }, 52.0, 4.01, 52.01, 4.01)
+				.write(file);
+		return new BinaryMapReaderPool(reader);
+	}
+
+	@Test
+	public void testReverse() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		BinaryMapReaderPool pool = writeStreets(file);
+		BatchGeocoder geocoder = new BatchGeocoder(Collections.singletonList(pool), MapPoiTypes.getDefaultNoInit(),
+				"en", 2);
+		try {
+			geocoder.setRoutingConfiguration(TestRoadNetwork.parseRoutingConfig(), 10);
+			List<GeocodingQuery> lst = new ArrayList<GeocodingQuery>();
+			for (int i = 0; i < 20; i++) {
+				// near the first road or near the second one
+				lst.add(i % 2 == 0 ? GeocodingQuery.reverse(52.0001, 4.002 + i * 0.0002) :
+						GeocodingQuery.reverse(52.002 + i * 0.0002, 4.0101));
+			}
+			final List<GeocodingAnswer> answers = new ArrayList<GeocodingAnswer>();
+			Statistics stats = geocoder.geocode(lst.iterator(), new ResultMatcher<GeocodingAnswer>() {
+				@Override
+				public boolean publish(GeocodingAnswer object) {
+					answers.add(object);
+					return true;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return false;
+				}
+			});
+			Assert.assertEquals(0, stats.getErrors());
+			Assert.assertEquals(0, stats.getEmpty());
+			for (GeocodingAnswer a : answers) {
+				GeocodingResult r = a.getGeocodingResults().get(0);
+				boolean first = a.getQuery().getLocation().getLatitude() < 52.001;
+				Assert.assertEquals(first ? "Main Street" : "Side Street", r.streetName);
+				Assert.assertTrue(r.getDistance() < 20);
+			}
+			// readers are kept by workers between queries
+			Assert.assertTrue(pool.getCreatedReadersCount() <= 2);
+		} finally {
+			geocoder.close();
+			Assert.assertEquals(0, pool.getAcquiredReadersCount());
+			pool.close();
+			file.delete();
+		}
+	}
+
+	@Test
+	public void testFailedWorkerIsDiscarded() throws Exception {
+		File file = File.createTempFile("osmand", ".obf");
+		BinaryMapReaderPool pool = writeStreets(file);
+		BatchGeocoder geocoder = new BatchGeocoder(Collections.singletonList(pool), MapPoiTypes.getDefaultNoInit(),
+				"en", 1);
+		try {
+			geocoder.setRoutingConfiguration(new RoutingConfiguration.Builder() {
+				@Override
+				public RoutingConfiguration build(String router, int memoryLimitMB) {
+					throw new IllegalStateException("Routing is not configured");
+				}
+			}, 10);
+			GeocodingAnswer failed = geocoder.answer(GeocodingQuery.reverse(52.0001, 4.002));
+			Assert.assertTrue(failed.getError() instanceof IllegalStateException);
+			// readers of failed worker are closed, not returned to pool
+			Assert.assertEquals(0, pool.getAcquiredReadersCount());
+			Assert.assertEquals(1, pool.getCreatedReadersCount());
+
+			GeocodingAnswer a = geocoder.answer(GeocodingQuery.search("52.5, 4.25", null));
+			Assert.assertNull(a.getError());
+			Assert.assertEquals(2, pool.getCreatedReadersCount());
+			Assert.assertEquals(1, pool.getAcquiredReadersCount());
+		} finally {
+			geocoder.close();
+			Assert.assertEquals(0, pool.getAcquiredReadersCount());
+			pool.close();
+			file.delete();
+		}
+
+		// worker isn't created if one of its readers can't be acquired
+		BinaryMapReaderPool closed = writeStreets(file);
+		closed.close();
+		pool = writeStreets(file);
+		geocoder = new BatchGeocoder(Arrays.asList(pool, closed), MapPoiTypes.getDefaultNoInit(), "en", 1);
+		try {
+			Assert.assertNotNull(geocoder.answer(GeocodingQuery.search("52.5, 4.25", null)).getError());
+			Assert.assertEquals(0, pool.getAcquiredReadersCount());
+		} finally {
+			geocoder.close();
+			pool.close();
+			file.delete();
+		}
+	}
+}
@@ -0,0 +1,127 @@
+package net.osmand.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import net.osmand.binary.BinaryMapAddressReaderAdapter;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.BinaryMapReaderPool;
+import net.osmand.binary.IndexedStringTableCache;
+import net.osmand.binary.ReverseGeocodingCache;
+import net.osmand.data.City;
+import net.osmand.data.LatLon;
+import net.osmand.data.Street;
+import net.osmand.osm.MapPoiTypes;
+import net.osmand.search.BatchGeocoder.GeocodingQuery;
+import net.osmand.search.BatchGeocoder.Statistics;
+
+/**
+ * Measures throughput and latency of {@link BatchGeocoder} with 1 and many threads.
+ * Usage: BatchGeocodingBenchmark &lt;file.obf&gt; [queries] [threads]
+ * Synthetic queries are built from streets of the file itself (random with fixed seed): text search of
+ * "street city" and reverse geocoding of points near the street (a few consecutive points near the same street
+ * as in a track). Reverse geocoding is measured with and without {@link ReverseGeocodingCache}.
+ * The first pass warms up caches.
+ */
+public class BatchGeocodingBenchmark {
+
+	private static final int SEED = 17;
+	private static final int MAX_CITIES = 500;
+	// ~ 50 m
+	private static final double JITTER = 0.0005;
+	private static final int TRACK_POINTS = 10;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		if (args.length == 0) {
+			System.out.println("Usage: BatchGeocodingBenchmark <file.obf> [queries] [threads]");
+			return;
+		}
+		File file = new File(args[0]);
+		int queries = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		BinaryMapReaderPool pool = new BinaryMapReaderPool(file, true);
+		try {
+			List<GeocodingQuery> search = new ArrayList<GeocodingQuery>();
+			List<GeocodingQuery> reverse = new ArrayList<GeocodingQuery>();
+			buildQueries(pool, queries, search, reverse);
+			if (search.isEmpty()) {
+				System.out.println("No streets in " + file.getName());
+				return;
+			}
+			System.out.println(String.format("%d text queries and %d reverse queries from %s", search.size(),
+					reverse.size(), file.getName()));
+			MapPoiTypes poiTypes = MapPoiTypes.getDefault();
+			IndexedStringTableCache cache = new IndexedStringTableCache(64 << 20, null);
+			run(pool, poiTypes, cache, null, threads, search, "warm up");
+			int[] threadsToRun = threads > 1 ? new int[] { 1, threads } : new int[] { 1 };
+			for (int t : threadsToRun) {
+				run(pool, poiTypes, cache, null, t, search, "search, " + t + " threads");
+				run(pool, poiTypes, cache, null, t, reverse, "reverse, " + t + " threads");
+				ReverseGeocodingCache reverseCache = new ReverseGeocodingCache(64 << 20);
+				run(pool, poiTypes, cache, reverseCache, t, reverse, "reverse with cache, " + t + " threads");
+				System.out.println(String.format("   reverse geocoding cache: %d entries (%d kb), %d hits, %d misses",
+						reverseCache.size(), reverseCache.getMemoryUsage() / 1024, reverseCache.getHits(),
+						reverseCache.getMisses()));
+			}
+			System.out.println(String.format("String tables cache: %d tables (%d kb), %d hits, %d misses", cache.size(),
+					cache.getMemoryUsage() / 1024, cache.getHits(), cache.getMisses()));
+		} finally {
+			pool.close();
+		}
+	}
+
+	private static void buildQueries(BinaryMapReaderPool pool, int queries, List<GeocodingQuery> search,
+			List<GeocodingQuery> reverse) throws IOException {
+		Random random = new Random(SEED);
+		List<Street> streets = new ArrayList<Street>();
+		BinaryMapIndexReader reader = pool.acquire();
+		try {
+			List<City> cities = reader.getCities(null, BinaryMapAddressReaderAdapter.CITY_TOWN_TYPE);
+			Collections.shuffle(cities, random);
+			for (City c : cities.subList(0, Math.min(MAX_CITIES, cities.size()))) {
+				reader.preloadStreets(c, null);
+				for (Street s : c.getStreets()) {
+					if (s.getLocation() != null && s.getName().length() > 0) {
+						streets.add(s);
+					}
+				}
+			}
+		} finally {
+			pool.release(reader);
+		}
+		if (streets.isEmpty()) {
+			return;
+		}
+		for (int i = 0; i < queries; i++) {
+			Street s = streets.get(random.nextInt(streets.size()));
+			search.add(GeocodingQuery.search(s.getName() + " " + s.getCity().getName(), null));
+		}
+		Street s = null;
+		for (int i = 0; i < queries; i++) {
+			if (i % TRACK_POINTS == 0) {
+				s = streets.get(random.nextInt(streets.size()));
+			}
+			LatLon l = s.getLocation();
+			reverse.add(GeocodingQuery.reverse(l.getLatitude() + (random.nextDouble() - 0.5) * JITTER,
+					l.getLongitude() + (random.nextDouble() - 0.5) * JITTER));
+		}
+	}
+
+	private static void run(BinaryMapReaderPool pool, MapPoiTypes poiTypes, IndexedStringTableCache cache,
+			ReverseGeocodingCache reverseCache, int threads, List<GeocodingQuery> queries, String name)
+			throws InterruptedException {
+		BatchGeocoder geocoder = new BatchGeocoder(Collections.singletonList(pool), poiTypes, "en", threads);
+		geocoder.setStringTableCache(cache);
+		geocoder.setReverseGeocodingCache(reverseCache);
+		try {
+			Statistics stats = geocoder.geocode(queries.iterator(), null);
+			System.out.println(name + ": " + stats);
+		} finally {
+			geocoder.close();
+		}
+	}
+}
@@ -1,11 +1,17 @@
 package net.osmand.search;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import net.osmand.OsmAndCollator;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.binary.IndexedStringTableCache;
 import net.osmand.data.LatLon;
+import net.osmand.router.TestRoadNetwork;
 import net.osmand.search.SearchUICore.SearchResultCollection;
 import net.osmand.search.core.SearchPhrase;
 import net.osmand.search.core.SearchResult;
@@ -35,6 +41,35 @@ public class SearchCoreUITest {
 		Assert.assertSame(b2, cll.getCurrentSearchResults().get(2));
 	}
 	
+	@Test
+	public void testStringTableCache() throws IOException {
+		File file = File.createTempFile("osmand", ".obf");
+		BinaryMapIndexReader reader = new TestRoadNetwork().addRoad(64, new String[] { "highway", "primary" },
+				52.0, 4.0, 52.0, 4.01).write(file);
+		try {
+			// cache is not created (and its thread is not started) unless it is set
+			SearchUICore disabled = new SearchUICore(null, "en", false);
+			Assert.assertNull(disabled.getStringTableCache());
+			disabled.updateSettings(new SearchSettings(Collections.singletonList(reader)));
+			Assert.assertNull(reader.getStringTableCache());
+
+			IndexedStringTableCache cache = new IndexedStringTableCache(1 << 20, null);
+			SearchUICore core = new SearchUICore(null, "en", false);
+			core.setStringTableCache(cache);
+			core.updateSettings(new SearchSettings(Collections.singletonList(reader)));
+			Assert.assertSame(cache, reader.getStringTableCache());
+
+			BinaryMapIndexReader other = new BinaryMapIndexReader(reader.getRaf(), reader);
+			other.setStringTableCache(null);
+			core.setStringTableCache(null);
+			core.updateSettings(new SearchSettings(Collections.singletonList(other)));
+			Assert.assertNull(other.getStringTableCache());
+		} finally {
+			reader.close();
+			file.delete();
+		}
+	}
+
 	@Test
 	public void testNoResort() throws IOException {
 		SearchSettings ss = new SearchSettings((SearchSettings)null);
@@ -92,6 +127,69 @@ public class SearchCoreUITest {
 		
 	}
 
+	@Test
+	public void testIncrementalResort() throws IOException {
+		SearchSettings ss = new SearchSettings((SearchSettings)null);
+		ss = ss.setOriginalLocation(new LatLon(0, 0));
+		SearchPhrase phrase = new SearchPhrase(ss, OsmAndCollator.primaryCollator());
+		Random random = new Random(11);
+		List<SearchResult> all = new ArrayList<>();
+		SearchResultCollection cll = new SearchUICore.SearchResultCollection(phrase);
+		List<SearchResult> rs = new ArrayList<>();
+		for (int i = 0; i < 300; i++) {
+			// same names at the same point are duplicates
+			searchResult(rs, phrase, "n" + random.nextInt(40), random.nextInt(50) * 100);
+		}
+		cll.addSearchResults(rs, true, true);
+		all.addAll(rs);
+		for (int k = 0; k < 20; k++) {
+			rs.clear();
+			for (int i = 0; i < 10; i++) {
+				searchResult(rs, phrase, "n" + random.nextInt(40), random.nextInt(50) * 100);
+			}
+			cll.addSearchResults(rs, true, true);
+			all.addAll(rs);
+		}
+		SearchResultCollection full = new SearchUICore.SearchResultCollection(phrase);
+		full.addSearchResults(all, true, true);
+		Assert.assertEquals(full.getCurrentSearchResults(), cll.getCurrentSearchResults());
+	}
+
+	@Test
+	public void testIncrementalDuplicate() throws IOException {
+		SearchSettings ss = new SearchSettings((SearchSettings)null);
+		ss = ss.setOriginalLocation(new LatLon(0, 0));
+		SearchPhrase phrase = new SearchPhrase(ss, OsmAndCollator.primaryCollator());
+		SearchResultCollection cll = new SearchUICore.SearchResultCollection(phrase);
+		List<SearchResult> rs = new ArrayList<>();
+		SearchResult a1 = searchResult(rs, phrase, "a", 100);
+		SearchResult b2 = searchResult(rs, phrase, "b", 200);
+		cll.addSearchResults(rs, true, true);
+		rs.clear();
+
+		// worse duplicate is skipped
+		searchResult(rs, phrase, "b", 210);
+		cll.addSearchResults(rs, true, true);
+		rs.clear();
+		Assert.assertEquals(2, cll.getCurrentSearchResults().size());
+		Assert.assertSame(b2, cll.getCurrentSearchResults().get(1));
+
+		// better duplicate replaces existing result
+		SearchResult b3 = searchResult(rs, phrase, "b", 190);
+		cll.addSearchResults(rs, true, true);
+		rs.clear();
+		Assert.assertEquals(2, cll.getCurrentSearchResults().size());
+		Assert.assertSame(a1, cll.getCurrentSearchResults().get(0));
+		Assert.assertSame(b3, cll.getCurrentSearchResults().get(1));
+
+		SearchResult b1 = searchResult(rs, phrase, "b", 50);
+		cll.addSearchResults(rs, true, true);
+		Assert.assertEquals(3, cll.getCurrentSearchResults().size());
+		Assert.assertSame(a1, cll.getCurrentSearchResults().get(0));
+		Assert.assertSame(b1, cll.getCurrentSearchResults().get(1));
+		Assert.assertSame(b3, cll.getCurrentSearchResults().get(2));
+	}
+
 	private SearchResult searchResult(List<SearchResult> rs, SearchPhrase phrase, String text, int dist) {
 		SearchResult res = new SearchResult(phrase);
 		res.localeName = text;
@@ -0,0 +1,251 @@
+package net.osmand.search;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import net.osmand.OsmAndCollator;
+import net.osmand.ResultMatcher;
+import net.osmand.binary.BinaryMapIndexReader;
+import net.osmand.search.SearchUICore.SearchResultMatcher;
+import net.osmand.router.TestRoadNetwork;
+import net.osmand.search.core.ObjectType;
+import net.osmand.search.core.SearchCoreFactory.OrderedRegionSearch;
+import net.osmand.search.core.SearchCoreFactory.RegionSearch;
+import net.osmand.search.core.SearchCoreFactory.SearchBaseAPI;
+import net.osmand.search.core.SearchPhrase;
+import net.osmand.search.core.SearchResult;
+import net.osmand.search.core.SearchSettings;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SearchParallelTest {
+
+	private static final int REGIONS = 10;
+
+	private static class RegionsAPI extends SearchBaseAPI {
+		private final List<BinaryMapIndexReader> regions;
+
+		RegionsAPI(List<BinaryMapIndexReader> regions) {
+			super(ObjectType.POI);
+			this.regions = regions;
+		}
+
+		@Override
+		public boolean search(final SearchPhrase phrase, SearchResultMatcher resultMatcher) throws IOException {
+			searchRegions(regions.iterator(), phrase, resultMatcher, new RegionSearch() {
+				@Override
+				public void search(BinaryMapIndexReader r, SearchResultMatcher regionMatcher) throws IOException {
+					int i = regions.indexOf(r);
+					for (int j = 0; j < 3; j++) {
+						try {
+							// the first regions are the slowest
+							Thread.sleep(regions.size() - i);
+						} catch (InterruptedException e) {
+							throw new IOException(e);
+						}
+						regionMatcher.publish(result(phrase, "r" + i + "_" + j));
+					}
+				}
+			});
+			return true;
+		}
+	}
+
+	/**
+	 * Regions find the same objects, duplicates and objects over limit are skipped in order of regions.
+	 */
+	private static class DuplicatesAPI extends SearchBaseAPI {
+		private static final int LIMIT = 7;
+		private final List<BinaryMapIndexReader> regions;
+
+		DuplicatesAPI(List<BinaryMapIndexReader> regions) {
+			super(ObjectType.POI);
+			this.regions = regions;
+		}
+
+		@Override
+		public boolean search(final SearchPhrase phrase, SearchResultMatcher resultMatcher) throws IOException {
+			final Set<String> ids = new HashSet<>();
+			searchRegions(regions.iterator(), phrase, resultMatcher, new OrderedRegionSearch() {
+				@Override
+				public void search(BinaryMapIndexReader r, SearchResultMatcher regionMatcher) throws IOException {
+					int i = regions.indexOf(r);
+					for (int j = 0; j < 3; j++) {
+						try {
+							// the first regions are the slowest
+							Thread.sleep(2 * (regions.size() - i));
+						} catch (InterruptedException e) {
+							throw new IOException(e);
+						}
+						regionMatcher.publish(result(phrase, "poi" + (i + j)));
+					}
+				}
+
+				@Override
+				public boolean accept(SearchResult result) {
+					return ids.size() < LIMIT && ids.add(result.localeName);
+				}
+			});
+			return true;
+		}
+	}
+
+	private static SearchResult result(SearchPhrase phrase, String name) {
+		SearchResult sr = new SearchResult(phrase);
+		sr.localeName = name;
+		sr.objectType = ObjectType.POI;
+		return sr;
+	}
+
+	private static List<String> search(ExecutorService executor, final List<String> published, SearchBaseAPI api)
+			throws IOException {
+		SearchPhrase phrase = new SearchPhrase(new SearchSettings((SearchSettings) null), OsmAndCollator.primaryCollator());
+		SearchResultMatcher matcher = new SearchResultMatcher(new ResultMatcher<SearchResult>() {
+			@Override
+			public boolean publish(SearchResult object) {
+				published.add(object.objectType == ObjectType.POI ? object.localeName : object.objectType.name());
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+		}, phrase, 1, new AtomicInteger(1), -1, executor);
+		api.search(phrase, matcher);
+		List<String> names = new ArrayList<>();
+		for (SearchResult sr : matcher.getRequestResults()) {
+			names.add(sr.localeName);
+		}
+		return names;
+	}
+
+	private static List<BinaryMapIndexReader> writeRegions(List<File> files, int count) throws IOException {
+		List<BinaryMapIndexReader> regions = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			File f = File.createTempFile("osmand", ".obf");
+			files.add(f);
+			regions.add(new TestRoadNetwork().addRoad(64, new String[] { "highway", "primary" },
+					52.0, 4.0 + i * 0.01, 52.0, 4.01 + i * 0.01).write(f));
+		}
+		return regions;
+	}
+
+	private static void close(List<BinaryMapIndexReader> regions, List<File> files) throws IOException {
+		for (BinaryMapIndexReader r : regions) {
+			r.close();
+		}
+		for (File f : files) {
+			f.delete();
+		}
+	}
+
+	@Test
+	public void testRegionsOrder() throws IOException {
+		List<File> files = new ArrayList<>();
+		List<BinaryMapIndexReader> regions = writeRegions(files, REGIONS);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<String> sequentialPublished = new ArrayList<>();
+			List<String> sequential = search(null, sequentialPublished, new RegionsAPI(regions));
+			Assert.assertEquals(REGIONS * 3, sequential.size());
+			Assert.assertEquals("r0_0", sequential.get(0));
+
+			List<String> parallelPublished = Collections.synchronizedList(new ArrayList<String>());
+			Assert.assertEquals(sequential, search(executor, parallelPublished, new RegionsAPI(regions)));
+			Collections.sort(sequentialPublished);
+			Collections.sort(parallelPublished);
+			Assert.assertEquals(sequentialPublished, parallelPublished);
+		} finally {
+			executor.shutdown();
+			close(regions, files);
+		}
+	}
+
+	@Test
+	public void testDuplicatesInOrderOfRegions() throws IOException {
+		List<File> files = new ArrayList<>();
+		List<BinaryMapIndexReader> regions = writeRegions(files, 6);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<String> sequentialPublished = new ArrayList<>();
+			List<String> sequential = search(null, sequentialPublished, new DuplicatesAPI(regions));
+			Assert.assertEquals(DuplicatesAPI.LIMIT, sequential.size());
+			for (int i = 0; i < sequential.size(); i++) {
+				Assert.assertEquals("poi" + i, sequential.get(i));
+			}
+			for (int k = 0; k < 5; k++) {
+				List<String> parallelPublished = Collections.synchronizedList(new ArrayList<String>());
+				Assert.assertEquals(sequential, search(executor, parallelPublished, new DuplicatesAPI(regions)));
+				// results and finish of regions are published in the same order as well
+				Assert.assertEquals(sequentialPublished, parallelPublished);
+			}
+		} finally {
+			executor.shutdown();
+			close(regions, files);
+		}
+	}
+
+	@Test
+	public void testApisInParallel() throws InterruptedException {
+		final CountDownLatch started = new CountDownLatch(2);
+		final AtomicInteger parallel = new AtomicInteger();
+		SearchUICore core = new SearchUICore(null, "en", false);
+		for (final String name : new String[] { "a", "b" }) {
+			core.registerAPI(new SearchBaseAPI(ObjectType.POI) {
+				@Override
+				public boolean search(SearchPhrase phrase, SearchResultMatcher resultMatcher) throws IOException {
+					started.countDown();
+					try {
+						// both APIs are searching at the same time
+						if (started.await(5, TimeUnit.SECONDS)) {
+							parallel.incrementAndGet();
+						}
+					} catch (InterruptedException e) {
+						throw new IOException(e);
+					}
+					resultMatcher.publish(result(phrase, name));
+					return true;
+				}
+			});
+		}
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			core.setSearchExecutor(executor);
+			final CountDownLatch finished = new CountDownLatch(1);
+			core.search("", false, new ResultMatcher<SearchResult>() {
+				@Override
+				public boolean publish(SearchResult object) {
+					if (object.objectType == ObjectType.SEARCH_FINISHED) {
+						finished.countDown();
+					}
+					return true;
+				}
+
+				@Override
+				public boolean isCancelled() {
+					return false;
+				}
+			});
+			Assert.assertTrue(finished.await(10, TimeUnit.SECONDS));
+			Assert.assertEquals(2, parallel.get());
+			List<SearchResult> res = core.getCurrentSearchResult().getCurrentSearchResults();
+			Assert.assertEquals(2, res.size());
+			Assert.assertEquals("a", res.get(0).localeName);
+			Assert.assertEquals("b", res.get(1).localeName);
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -681,6 +681,7 @@ public class ResourceManager {
 			}
 		}
 		log.debug("All map files initialized " + (System.currentTimeMillis() - val) + " ms");
+		log.debug(cachedOsmandIndexes.getTimingStatistics());
 		if (files.size() > 0 && (!indCache.exists() || indCache.canWrite())) {
 			try {
 				cachedOsmandIndexes.writeToFile(indCache);